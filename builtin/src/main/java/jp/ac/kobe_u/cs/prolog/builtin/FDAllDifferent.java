@@ -0,0 +1,65 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+import java.util.Arrays;
+/**
+ * Constraint that all variables of a list take different values.<br>
+ * The propagator is woken when some of the variables are instantiated,
+ * and removes their values from the domains of the others.
+ *
+ * @see FDSolver
+ * @version 1.2
+ */
+final class FDAllDifferent extends FDPropagator {
+    /** Holds the variables. */
+    final Term[] x;
+
+    FDAllDifferent(Term[] x) {
+	this.x = x;
+    }
+
+    /** Subscribes this propagator to its variables and schedules it on <code>s</code>. */
+    void post(FDSolver s) {
+	for (int i = 0; i < x.length; i++) {
+	    Term t = x[i].dereference();
+	    if (t.isVariable())
+		s.variable((VariableTerm) t).subscribe(this, false, s.engine);
+	}
+	s.schedule(this);
+    }
+
+    boolean propagate(FDSolver s) {
+	int n = x.length;
+	int[] fixed = new int[n];
+	int m = 0;
+	for (int i = 0; i < n; i++) {
+	    Term t = x[i].dereference();
+	    if (! t.isVariable())
+		fixed[m++] = FDSolver.domain(t).min;
+	}
+	if (m == 0)
+	    return true;
+	Arrays.sort(fixed, 0, m);
+	for (int i = 1; i < m; i++) {
+	    if (fixed[i] == fixed[i - 1])
+		return false;
+	}
+	for (int i = 0; i < n; i++) {
+	    Term t = x[i].dereference();
+	    if (! (t instanceof FDVariable))
+		continue;
+	    FDVariable v = (FDVariable) t;
+	    FDDomain d = v.dom;
+	    int lo = Arrays.binarySearch(fixed, 0, m, d.min);
+	    if (lo < 0)
+		lo = -lo - 1;
+	    for (int j = lo; j < m && fixed[j] <= d.max; j++) {
+		d = d.remove(fixed[j]);
+		if (d == null)
+		    return false;
+	    }
+	    if (! s.narrow(v, d))
+		return false;
+	}
+	return true;
+    }
+}
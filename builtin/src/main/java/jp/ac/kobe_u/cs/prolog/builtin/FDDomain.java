@@ -0,0 +1,308 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+import java.io.Serializable;
+/**
+ * Domain of a finite domain variable.<br>
+ * An <code>FDDomain</code> is an immutable set of integers between <code>min</code> and <code>max</code>.
+ * It is either the whole interval, or the values whose bits are set in a bitset.
+ * Narrowing the bounds of a domain shares its bitset, and removing a value copies it,
+ * so that a domain is restored on backtracking just by restoring a reference.<br>
+ * The bounds <code>INF</code> and <code>SUP</code> stand for the infinities.
+ * Holes are kept only in domains of at most <code>MAX_BITS</code> values;
+ * a wider domain is approximated by its bounds, which is safe since
+ * every propagator checks the values of instantiated variables.
+ *
+ * @see FDVariable
+ * @version 1.2
+ */
+final class FDDomain implements Serializable {
+    /** The lower bound of an unbounded domain. No value is equal to or smaller than it. */
+    static final int INF = Integer.MIN_VALUE;
+    /** The upper bound of an unbounded domain. No value is equal to or larger than it. */
+    static final int SUP = Integer.MAX_VALUE;
+    /** The maximum number of values of a domain that keeps its holes. */
+    static final int MAX_BITS = 1 << 16;
+
+    /** The domain of all integers. */
+    static final FDDomain ALL = new FDDomain(INF, SUP, null, 0);
+
+    static final SymbolTerm SYM_INF    = SymbolTerm.makeSymbol("inf");
+    static final SymbolTerm SYM_SUP    = SymbolTerm.makeSymbol("sup");
+    static final SymbolTerm SYM_DOTS_2 = SymbolTerm.makeSymbol("..", 2);
+    static final SymbolTerm SYM_UNION_2 = SymbolTerm.makeSymbol("\\/", 2);
+
+    /** The smallest value, or <code>INF</code>. */
+    final int min;
+    /** The largest value, or <code>SUP</code>. */
+    final int max;
+    /** Holds a bit for each value from <code>base</code>, or <code>null</code> if all values from <code>min</code> to <code>max</code> are included. */
+    final long[] bits;
+    /** The value of the first bit of <code>bits</code>. */
+    final int base;
+    /** The number of values, or <code>SUP</code> if this domain is unbounded. */
+    final int size;
+
+    private FDDomain(int min, int max, long[] bits, int base) {
+	this.min  = min;
+	this.max  = max;
+	this.bits = bits;
+	this.base = base;
+	if (min == INF || max == SUP)
+	    size = SUP;
+	else if (bits == null)
+	    size = (int) Math.min((long) max - min + 1, SUP - 1);
+	else
+	    size = count(bits, min - base, max - base);
+    }
+
+    /** Returns the domain of the values from <code>lo</code> to <code>hi</code>, or <code>null</code> if it is empty. */
+    static FDDomain interval(int lo, int hi) {
+	if (lo > hi || lo == SUP || hi == INF)
+	    return null;
+	if (lo == INF && hi == SUP)
+	    return ALL;
+	return new FDDomain(lo, hi, null, 0);
+    }
+
+    /** Returns the domain of <code>v</code>. */
+    static FDDomain singleton(int v) { return new FDDomain(v, v, null, 0); }
+
+    /** Returns <code>true</code> if this domain has finite bounds. */
+    boolean isFinite() { return min != INF && max != SUP; }
+
+    /** Returns <code>true</code> if this domain contains the integer <code>t</code>. */
+    boolean contains(Term t) {
+	return t.tag == Term.TAG_INTEGER && contains(((IntegerTerm) t).longValue());
+    }
+
+    /** Returns <code>true</code> if this domain contains <code>v</code>. */
+    boolean contains(long v) {
+	if (v < min || v > max || v == INF || v == SUP)
+	    return false;
+	return bits == null || get(bits, (int) v - base);
+    }
+
+    /**
+     * Returns the values of this domain from <code>lo</code> to <code>hi</code>,
+     * <code>this</code> if they are all the values, or <code>null</code> if there are none.
+     */
+    FDDomain restrict(int lo, int hi) {
+	if (lo <= min && hi >= max)
+	    return this;
+	lo = Math.max(lo, min);
+	hi = Math.min(hi, max);
+	if (lo > hi)
+	    return null;
+	if (bits == null)
+	    return new FDDomain(lo, hi, null, 0);
+	int i = nextSet(bits, lo - base, hi - base);
+	if (i < 0)
+	    return null;
+	int j = prevSet(bits, hi - base, lo - base);
+	return new FDDomain(base + i, base + j, bits, base);
+    }
+
+    /** Returns the values of this domain other than <code>v</code>, <code>this</code> if <code>v</code> is not one of them, or <code>null</code> if there are none. */
+    FDDomain remove(int v) {
+	if (! contains(v))
+	    return this;
+	if (v == min)
+	    return min == max ? null : restrict(v + 1, max);
+	if (v == max)
+	    return restrict(min, v - 1);
+	long[] b;
+	int bs;
+	if (bits == null) {
+	    if ((long) max - min >= MAX_BITS)
+		return this; // holes are not represented
+	    bs = min;
+	    b = new long[((max - min) >>> 6) + 1];
+	    for (int i = 0; i <= max - min; i++)
+		set(b, i);
+	} else {
+	    bs = base;
+	    b = (long[]) bits.clone();
+	}
+	clear(b, v - bs);
+	return new FDDomain(min, max, b, bs);
+    }
+
+    /** Returns the values of both this domain and <code>d</code>, or <code>null</code> if there are none. */
+    FDDomain intersect(FDDomain d) {
+	if (d.bits == null)
+	    return restrict(d.min, d.max);
+	if (bits == null)
+	    return d.restrict(min, max);
+	int lo = Math.max(min, d.min);
+	int hi = Math.min(max, d.max);
+	if (lo > hi)
+	    return null;
+	long[] b = new long[((hi - lo) >>> 6) + 1];
+	boolean any = false;
+	for (int v = lo; v <= hi; v++) {
+	    if (get(bits, v - base) && get(d.bits, v - d.base)) {
+		set(b, v - lo);
+		any = true;
+	    }
+	}
+	if (! any)
+	    return null;
+	return new FDDomain(lo + nextSet(b, 0, hi - lo), lo + prevSet(b, hi - lo, 0), b, lo);
+    }
+
+    /**
+     * Returns the values of either this domain or <code>d</code>.
+     * If the result is unbounded or has more than <code>MAX_BITS</code> values, the values between them are included.
+     */
+    FDDomain union(FDDomain d) {
+	int lo = Math.min(min, d.min);
+	int hi = Math.max(max, d.max);
+	if (lo == INF || hi == SUP || (long) hi - lo >= MAX_BITS)
+	    return interval(lo, hi);
+	long[] b = new long[((hi - lo) >>> 6) + 1];
+	for (int v = lo; v <= hi; v++) {
+	    if (contains(v) || d.contains(v))
+		set(b, v - lo);
+	}
+	return new FDDomain(lo, hi, b, lo);
+    }
+
+    /**
+     * Returns the domain denoted by <code>t</code>, which is an integer, <code>Lo..Hi</code>,
+     * or <code>D1 \/ D2</code>, where <code>Lo</code> and <code>Hi</code> are integers, <code>inf</code>, or <code>sup</code>.
+     * An empty interval denotes no value.
+     * @return the domain, or <code>null</code> if it is empty.
+     * @exception PInstantiationException if <code>t</code> is not instantiated enough.
+     * @exception IllegalTypeException if <code>t</code> is not a domain.
+     */
+    static FDDomain parse(Term t) {
+	t = t.dereference();
+	if (t.isVariable())
+	    throw new PInstantiationException();
+	if (t.isInteger())
+	    return singleton(value(t));
+	if (t.isStructure()) {
+	    StructureTerm s = (StructureTerm) t;
+	    if (s.functor() == SYM_DOTS_2)
+		return interval(bound(s.args()[0]), bound(s.args()[1]));
+	    if (s.functor() == SYM_UNION_2) {
+		FDDomain d1 = parse(s.args()[0]);
+		FDDomain d2 = parse(s.args()[1]);
+		if (d1 == null)
+		    return d2;
+		return d2 == null ? d1 : d1.union(d2);
+	    }
+	}
+	throw new IllegalTypeException("clpfd_domain", t);
+    }
+
+    private static int bound(Term t) {
+	t = t.dereference();
+	if (t.isVariable())
+	    throw new PInstantiationException();
+	if (t == SYM_INF || t == SYM_SUP)
+	    return t == SYM_INF ? INF : SUP;
+	if (! t.isInteger())
+	    throw new IllegalTypeException("integer", t);
+	return value(t);
+    }
+
+    /**
+     * Returns the value of the integer <code>t</code>.
+     * @exception RepresentationException if it is not larger than <code>INF</code> and smaller than <code>SUP</code>.
+     */
+    static int value(Term t) {
+	if (t.tag == Term.TAG_BIGINTEGER)
+	    throw new RepresentationException("clpfd_integer");
+	long v = ((IntegerTerm) t).longValue();
+	if (v <= INF || v >= SUP)
+	    throw new RepresentationException("clpfd_integer");
+	return (int) v;
+    }
+
+    /** Returns a term representation of this domain, for example <code>1..3\/5\/7..sup</code>. */
+    Term toTerm() {
+	if (bits == null)
+	    return term(min, max);
+	Term t = null;
+	int v = min;
+	while (v <= max) {
+	    int hi = v;
+	    while (hi < max && get(bits, hi + 1 - base))
+		hi++;
+	    Term r = term(v, hi);
+	    if (t == null) {
+		t = r;
+	    } else {
+		Term[] args = {t, r};
+		t = new StructureTerm(SYM_UNION_2, args);
+	    }
+	    if (hi == max)
+		break;
+	    v = base + nextSet(bits, hi + 1 - base, max - base);
+	}
+	return t;
+    }
+
+    /** Returns <code>lo</code> if it is equal to <code>hi</code>, otherwise <code>lo..hi</code>. */
+    private static Term term(int lo, int hi) {
+	if (lo == hi)
+	    return IntegerTerm.valueOf(lo);
+	Term[] args = {lo == INF ? (Term) SYM_INF : IntegerTerm.valueOf(lo),
+		       hi == SUP ? (Term) SYM_SUP : IntegerTerm.valueOf(hi)};
+	return new StructureTerm(SYM_DOTS_2, args);
+    }
+
+    public String toString() { return toTerm().toString(); }
+
+    /* Bitset operations */
+    private static boolean get(long[] b, int i) { return (b[i >>> 6] & (1L << i)) != 0; }
+
+    private static void set(long[] b, int i) { b[i >>> 6] |= 1L << i; }
+
+    private static void clear(long[] b, int i) { b[i >>> 6] &= ~(1L << i); }
+
+    /** Returns the first set bit from <code>i</code> up to <code>limit</code>, or <code>-1</code>. */
+    private static int nextSet(long[] b, int i, int limit) {
+	int w = i >>> 6;
+	long word = b[w] & (-1L << i);
+	while (true) {
+	    if (word != 0) {
+		int j = (w << 6) + Long.numberOfTrailingZeros(word);
+		return j <= limit ? j : -1;
+	    }
+	    if (++w > (limit >>> 6))
+		return -1;
+	    word = b[w];
+	}
+    }
+
+    /** Returns the last set bit from <code>i</code> down to <code>limit</code>, or <code>-1</code>. */
+    private static int prevSet(long[] b, int i, int limit) {
+	int w = i >>> 6;
+	long word = b[w] & (-1L >>> (63 - (i & 63)));
+	while (true) {
+	    if (word != 0) {
+		int j = (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+		return j >= limit ? j : -1;
+	    }
+	    if (--w < (limit >>> 6))
+		return -1;
+	    word = b[w];
+	}
+    }
+
+    /** Returns the number of set bits from <code>i</code> to <code>j</code>. */
+    private static int count(long[] b, int i, int j) {
+	int n = 0;
+	for (int w = i >>> 6; w <= (j >>> 6); w++) {
+	    long word = b[w];
+	    if (w == (i >>> 6))
+		word &= -1L << i;
+	    if (w == (j >>> 6))
+		word &= -1L >>> (63 - (j & 63));
+	    n += Long.bitCount(word);
+	}
+	return n;
+    }
+}
@@ -0,0 +1,128 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * Linear constraint <code>a<sub>1</sub>x<sub>1</sub>+...+a<sub>n</sub>x<sub>n</sub> rel k</code>,
+ * where <code>rel</code> is one of <code>=</code>, <code>\=</code>, and <code>=&lt;</code>.<br>
+ * Equalities and inequalities are propagated on bounds: each variable is restricted
+ * by the smallest and the largest sums of the other terms.
+ * A disequality is propagated when all but one of its variables are instantiated.
+ * Sums are computed with overflow checks, and nothing is pruned by a sum that overflows.
+ *
+ * @see FDSolver
+ * @version 1.2
+ */
+final class FDLinear extends FDPropagator {
+    static final int EQ = 0;
+    static final int NE = 1;
+    static final int LE = 2;
+
+    /** Holds the coefficients. None is zero. */
+    final int[] a;
+    /** Holds the variables. */
+    final Term[] x;
+    /** The constant of the right hand side. */
+    final long k;
+    /** One of <code>EQ</code>, <code>NE</code>, and <code>LE</code>. */
+    final int rel;
+
+    FDLinear(int[] a, Term[] x, long k, int rel) {
+	this.a   = a;
+	this.x   = x;
+	this.k   = k;
+	this.rel = rel;
+    }
+
+    /** Subscribes this propagator to its variables and schedules it on <code>s</code>. */
+    void post(FDSolver s) {
+	boolean bounds = rel != NE;
+	for (int i = 0; i < x.length; i++) {
+	    Term t = x[i].dereference();
+	    if (t.isVariable())
+		s.variable((VariableTerm) t).subscribe(this, bounds, s.engine);
+	}
+	s.schedule(this);
+    }
+
+    boolean propagate(FDSolver s) {
+	switch (rel) {
+	case EQ:
+	    return bounds(s, 1) && bounds(s, -1);
+	case LE:
+	    return bounds(s, 1);
+	default:
+	    return differ(s);
+	}
+    }
+
+    /** Propagates <code>sign*(a<sub>1</sub>x<sub>1</sub>+...+a<sub>n</sub>x<sub>n</sub>) =&lt; sign*k</code>. */
+    private boolean bounds(FDSolver s, int sign) {
+	int n = x.length;
+	long sum = 0;   // the sum of the finite smallest terms
+	int inf = -1;   // the index of the only infinite smallest term, -1 if none, or -2 if more
+	for (int i = 0; i < n; i++) {
+	    long c = (long) sign * a[i];
+	    FDDomain d = FDSolver.domain(x[i]);
+	    int b = c > 0 ? d.min : d.max;
+	    if (b == FDDomain.INF || b == FDDomain.SUP) {
+		inf = inf == -1 ? i : -2;
+		if (inf == -2)
+		    return true;
+		continue;
+	    }
+	    long t = c * b;
+	    long r = sum + t;
+	    if (((sum ^ r) & (t ^ r)) < 0)
+		return true;
+	    sum = r;
+	}
+	long bound = sign * k;
+	if (inf == -1 && sum > bound)
+	    return false;
+	for (int i = 0; i < n; i++) {
+	    if (inf >= 0 && inf != i)
+		continue;
+	    long c = (long) sign * a[i];
+	    long rest = sum;
+	    if (inf != i) {
+		FDDomain d = FDSolver.domain(x[i]);
+		rest -= c * (c > 0 ? d.min : d.max);
+	    }
+	    long slack = bound - rest;
+	    if (((bound ^ rest) & (bound ^ slack)) < 0)
+		continue;
+	    boolean ok = c > 0 ? s.restrict(x[i], Long.MIN_VALUE, FDSolver.floorDiv(slack, c))
+		                   : s.restrict(x[i], FDSolver.ceilDiv(slack, c), Long.MAX_VALUE);
+	    if (! ok)
+		return false;
+	}
+	return true;
+    }
+
+    /** Propagates <code>a<sub>1</sub>x<sub>1</sub>+...+a<sub>n</sub>x<sub>n</sub> \= k</code>. */
+    private boolean differ(FDSolver s) {
+	long sum = 0;
+	int free = -1;
+	for (int i = 0; i < x.length; i++) {
+	    Term t = x[i].dereference();
+	    if (t.isVariable()) {
+		if (free >= 0)
+		    return true;
+		free = i;
+		continue;
+	    }
+	    long v = (long) a[i] * FDSolver.domain(t).min;
+	    long r = sum + v;
+	    if (((sum ^ r) & (v ^ r)) < 0)
+		return true;
+	    sum = r;
+	}
+	long rest = k - sum;
+	if (((k ^ sum) & (k ^ rest)) < 0)
+	    return true;
+	if (free < 0)
+	    return rest != 0;
+	if (rest % a[free] != 0)
+	    return true;
+	return s.remove(x[free], rest / a[free]);
+    }
+}
@@ -0,0 +1,26 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+import java.io.Serializable;
+/**
+ * Propagator of a finite domain constraint.<br>
+ * A propagator is subscribed to the variables of its constraint,
+ * and is put on the propagation queue of <code>FDSolver</code> when their domains change.
+ * It then narrows the domains of the variables so that they have no value
+ * which is inconsistent with the constraint, as far as it can do so cheaply.
+ * Propagators keep no state of their own, so that nothing but domains and
+ * subscriptions needs to be restored on backtracking.
+ *
+ * @see FDSolver
+ * @see FDVariable
+ * @version 1.2
+ */
+abstract class FDPropagator implements Serializable {
+    /** A flag that indicates whether this propagator is on the propagation queue. */
+    transient boolean queued = false;
+
+    /**
+     * Narrows the domains of the variables of this constraint by <code>s</code>.
+     * @return <code>false</code> if the constraint is not satisfied, otherwise <code>true</code>.
+     */
+    abstract boolean propagate(FDSolver s);
+}
@@ -0,0 +1,169 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+import java.util.ArrayDeque;
+/**
+ * Propagation queue of finite domain constraints.<br>
+ * An <code>FDSolver</code> narrows the domains of variables on behalf of a builtin predicate,
+ * puts the propagators subscribed to the changed variables on its queue,
+ * and runs them until no domain changes any more, or some domain becomes empty.
+ * A variable whose domain becomes a singleton is bound to its value.<br>
+ * Bounds are given as <code>long</code> values, so that propagators need not
+ * care about overflow; a bound beyond the range of domains restricts nothing or everything.
+ *
+ * @see FDVariable
+ * @see FDPropagator
+ * @version 1.2
+ */
+final class FDSolver {
+    /** Holds the engine whose trail records the changes. */
+    final Prolog engine;
+    /** Holds the propagators to be run. */
+    private final ArrayDeque<FDPropagator> queue = new ArrayDeque<FDPropagator>();
+
+    /** Constructs a new solver for <code>engine</code>. */
+    FDSolver(Prolog engine) {
+	this.engine = engine;
+    }
+
+    /**
+     * Returns the finite domain variable of the unbound variable <code>v</code>,
+     * attaching a new one with the domain of all integers if it has none.
+     * @param v the variable. It must be dereferenced.
+     */
+    FDVariable variable(VariableTerm v) {
+	if (v instanceof FDVariable)
+	    return (FDVariable) v;
+	FDVariable x = new FDVariable(FDDomain.ALL, engine);
+	engine.attach(v, x);
+	return x;
+    }
+
+    /**
+     * Returns the domain of <code>t</code>.
+     * @exception IllegalTypeException if <code>t</code> is neither a variable nor an integer.
+     * @exception RepresentationException if <code>t</code> is an integer out of the range of domains.
+     */
+    static FDDomain domain(Term t) {
+	t = t.dereference();
+	if (t instanceof FDVariable)
+	    return ((FDVariable) t).dom;
+	if (t.isVariable())
+	    return FDDomain.ALL;
+	if (! t.isInteger())
+	    throw new IllegalTypeException("integer", t);
+	return FDDomain.singleton(FDDomain.value(t));
+    }
+
+    /**
+     * Removes the values smaller than <code>lo</code> or larger than <code>hi</code> from the domain of <code>t</code>.
+     * @return <code>false</code> if no value is left, otherwise <code>true</code>.
+     */
+    boolean restrict(Term t, long lo, long hi) {
+	if (lo > hi || lo >= FDDomain.SUP || hi <= FDDomain.INF)
+	    return false;
+	t = t.dereference();
+	if (! t.isVariable()) {
+	    long v = domain(t).min;
+	    return lo <= v && v <= hi;
+	}
+	FDVariable x = variable((VariableTerm) t);
+	return narrow(x, x.dom.restrict((int) Math.max(lo, FDDomain.INF), (int) Math.min(hi, FDDomain.SUP)));
+    }
+
+    /**
+     * Removes <code>v</code> from the domain of <code>t</code>.
+     * @return <code>false</code> if no value is left, otherwise <code>true</code>.
+     */
+    boolean remove(Term t, long v) {
+	if (v <= FDDomain.INF || v >= FDDomain.SUP)
+	    return true;
+	t = t.dereference();
+	if (! t.isVariable())
+	    return domain(t).min != v;
+	FDVariable x = variable((VariableTerm) t);
+	return narrow(x, x.dom.remove((int) v));
+    }
+
+    /**
+     * Sets the domain of <code>x</code> to <code>d</code>, which must be a subset of its domain,
+     * and schedules the propagators concerned.
+     * @return <code>false</code> if <code>d</code> is <code>null</code>, otherwise <code>true</code>.
+     */
+    boolean narrow(FDVariable x, FDDomain d) {
+	if (d == null)
+	    return false;
+	FDDomain old = x.dom;
+	if (d == old)
+	    return true;
+	x.setDomain(d, engine);
+	boolean fixed = d.min == d.max;
+	if (fixed)
+	    x.instantiate(d.min, engine);
+	if (fixed || d.min != old.min || d.max != old.max)
+	    schedule(x.onBounds, x.nBounds);
+	if (fixed)
+	    schedule(x.onFix, x.nFix);
+	return true;
+    }
+
+    /** Puts the first <code>n</code> propagators of <code>ps</code> on the queue, unless they are already there. */
+    void schedule(FDPropagator[] ps, int n) {
+	for (int i = 0; i < n; i++) {
+	    FDPropagator p = ps[i];
+	    if (! p.queued) {
+		p.queued = true;
+		queue.add(p);
+	    }
+	}
+    }
+
+    /** Puts <code>p</code> on the queue, unless it is already there. */
+    void schedule(FDPropagator p) {
+	if (! p.queued) {
+	    p.queued = true;
+	    queue.add(p);
+	}
+    }
+
+    /** Schedules all propagators of <code>x</code>. */
+    void scheduleAll(FDVariable x) {
+	schedule(x.onBounds, x.nBounds);
+	schedule(x.onFix, x.nFix);
+    }
+
+    /**
+     * Runs the propagators on the queue until it is empty.
+     * The queue is emptied also when a propagator fails or raises an exception.
+     * @return <code>false</code> if some constraint is not satisfied, otherwise <code>true</code>.
+     */
+    boolean run() {
+	FDPropagator p;
+	try {
+	    while ((p = queue.poll()) != null) {
+		p.queued = false;
+		if (! p.propagate(this))
+		    return false;
+	    }
+	    return true;
+	} finally {
+	    while ((p = queue.poll()) != null)
+		p.queued = false;
+	}
+    }
+
+    /** Returns the largest integer not greater than <code>a/b</code>, where <code>b</code> is not zero. */
+    static long floorDiv(long a, long b) {
+	long q = a / b;
+	if ((a % b != 0) && ((a < 0) != (b < 0)))
+	    q--;
+	return q;
+    }
+
+    /** Returns the smallest integer not less than <code>a/b</code>, where <code>b</code> is not zero. */
+    static long ceilDiv(long a, long b) {
+	long q = a / b;
+	if ((a % b != 0) && ((a < 0) == (b < 0)))
+	    q++;
+	return q;
+    }
+}
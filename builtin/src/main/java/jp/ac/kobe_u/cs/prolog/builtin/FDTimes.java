@@ -0,0 +1,77 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * Nonlinear constraint <code>x*y = z</code>.<br>
+ * <code>z</code> is restricted by the products of the bounds of <code>x</code> and <code>y</code>,
+ * and <code>x</code> by the quotients of the bounds of <code>z</code> and <code>y</code>
+ * when the domain of <code>y</code> does not include zero, and vice versa.
+ * Infinite bounds restrict nothing.
+ *
+ * @see FDSolver
+ * @version 1.2
+ */
+final class FDTimes extends FDPropagator {
+    final Term x, y, z;
+
+    FDTimes(Term x, Term y, Term z) {
+	this.x = x;
+	this.y = y;
+	this.z = z;
+    }
+
+    /** Subscribes this propagator to its variables and schedules it on <code>s</code>. */
+    void post(FDSolver s) {
+	Term[] vs = {x, y, z};
+	for (int i = 0; i < vs.length; i++) {
+	    Term t = vs[i].dereference();
+	    if (t.isVariable())
+		s.variable((VariableTerm) t).subscribe(this, true, s.engine);
+	}
+	s.schedule(this);
+    }
+
+    boolean propagate(FDSolver s) {
+	FDDomain dx = FDSolver.domain(x);
+	FDDomain dy = FDSolver.domain(y);
+	if (dx.isFinite() && dy.isFinite()) {
+	    long p1 = (long) dx.min * dy.min;
+	    long p2 = (long) dx.min * dy.max;
+	    long p3 = (long) dx.max * dy.min;
+	    long p4 = (long) dx.max * dy.max;
+	    long lo = Math.min(Math.min(p1, p2), Math.min(p3, p4));
+	    long hi = Math.max(Math.max(p1, p2), Math.max(p3, p4));
+	    if (! s.restrict(z, lo, hi))
+		return false;
+	}
+	return divide(s, x, y) && divide(s, y, x);
+    }
+
+    /** Restricts <code>u</code> by the quotients of the bounds of <code>z</code> and <code>v</code>. */
+    private boolean divide(FDSolver s, Term u, Term v) {
+	FDDomain dz = FDSolver.domain(z);
+	FDDomain dv = FDSolver.domain(v);
+	if (! dz.isFinite() || ! dv.isFinite())
+	    return true;
+	if (dv.min <= 0 && dv.max >= 0) {
+	    if (dv.min == 0 && dv.max == 0)
+		return s.restrict(z, 0, 0);
+	    return true;
+	}
+	long lo = Long.MAX_VALUE;
+	long hi = Long.MIN_VALUE;
+	long[] zs = {dz.min, dz.max};
+	long[] vs = {dv.min, dv.max};
+	for (int i = 0; i < 2; i++) {
+	    for (int j = 0; j < 2; j++) {
+		lo = Math.min(lo, FDSolver.ceilDiv(zs[i], vs[j]));
+		hi = Math.max(hi, FDSolver.floorDiv(zs[i], vs[j]));
+	    }
+	}
+	if (! s.restrict(u, lo, hi))
+	    return false;
+	Term t = u.dereference();
+	if (t.isVariable() || v.dereference().isVariable() || z.dereference().isVariable())
+	    return true;
+	return FDSolver.domain(t).min * FDSolver.domain(v).min == FDSolver.domain(z).min;
+    }
+}
@@ -0,0 +1,145 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+import java.io.Serializable;
+/**
+ * Finite domain variable.<br>
+ * An <code>FDVariable</code> is a suspended variable that carries a domain
+ * and the propagators of the constraints on it.
+ * A variable is constrained by attaching a new <code>FDVariable</code> to it.
+ * The suspended goal <code>'$fd_wake'(V)</code> revises the constraints when the variable
+ * is bound by unification; the solver itself binds a variable whose domain becomes
+ * a singleton without waking that goal.<br>
+ * Changes of the domain and the subscriptions are recorded on the trail, and undone on backtracking.
+ * The domain is trailed at most once per choice point.<br>
+ * A copy of a finite domain variable has the same domain and the other goals suspended on it,
+ * but none of its constraints, whose propagators relate it to other variables.
+ *
+ * @see FDDomain
+ * @see FDSolver
+ * @see Prolog#attach(VariableTerm, SuspendedVariable)
+ * @version 1.2
+ */
+final class FDVariable extends SuspendedVariable {
+    static final SymbolTerm SYM_FD_WAKE_1 = SymbolTerm.makeSymbol("$fd_wake", 1);
+    static final FDPropagator[] NONE = new FDPropagator[0];
+
+    /** Holds the domain of this variable. */
+    FDDomain dom;
+    /** The time stamp of the top choice point when <code>dom</code> was last trailed. */
+    int stamp;
+    /** Holds the propagators to be woken when the bounds of this variable change. */
+    FDPropagator[] onBounds = NONE;
+    /** The number of propagators in <code>onBounds</code>. */
+    int nBounds = 0;
+    /** Holds the propagators to be woken when this variable is instantiated. */
+    FDPropagator[] onFix = NONE;
+    /** The number of propagators in <code>onFix</code>. */
+    int nFix = 0;
+    /** Holds the goal <code>'$fd_wake'(V)</code> of this variable. */
+    final Term wake;
+
+    /** Constructs a new finite domain variable with the domain <code>dom</code>. */
+    FDVariable(FDDomain dom, Prolog engine) {
+	super(null);
+	Term[] args = {new JavaObjectTerm(this)};
+	wake = new StructureTerm(SYM_FD_WAKE_1, args);
+	goals = wake;
+	this.dom = dom;
+	stamp = engine.getCPFTimeStamp();
+    }
+
+    /** Returns the number of propagators subscribed to this variable. */
+    int degree() { return nBounds + nFix; }
+
+    /** Sets the domain of this variable to <code>d</code>, trailing the old one if necessary. */
+    void setDomain(FDDomain d, Prolog engine) {
+	int top = engine.topTimeStamp;
+	if (stamp < top) {
+	    engine.trail.push(new DomainChange(this, dom, stamp));
+	    stamp = Math.min(top, Integer.MAX_VALUE - 1);
+	}
+	dom = d;
+    }
+
+    /** Subscribes <code>p</code> to the changes of the bounds, or only to the instantiation, of this variable. */
+    void subscribe(FDPropagator p, boolean bounds, Prolog engine) {
+	engine.trail.push(new Subscription(this, bounds));
+	if (bounds) {
+	    if (nBounds == onBounds.length)
+		onBounds = grow(onBounds);
+	    onBounds[nBounds++] = p;
+	} else {
+	    if (nFix == onFix.length)
+		onFix = grow(onFix);
+	    onFix[nFix++] = p;
+	}
+    }
+
+    private static FDPropagator[] grow(FDPropagator[] ps) {
+	FDPropagator[] a = new FDPropagator[Math.max(4, ps.length * 2)];
+	System.arraycopy(ps, 0, a, 0, ps.length);
+	return a;
+    }
+
+    /**
+     * Binds this variable to the integer <code>v</code>.
+     * If no goal other than <code>'$fd_wake'(V)</code> is suspended on it, no goal is woken.
+     */
+    void instantiate(int v, Prolog engine) {
+	Term t = IntegerTerm.valueOf(v);
+	if (goals != wake) {
+	    bind(t, engine.trail);
+	    return;
+	}
+	val = t;
+	engine.trail.push(this);
+    }
+
+    /** Returns a new finite domain variable with the domain of this variable. */
+    protected SuspendedVariable copyVariable(Prolog engine) {
+	return new FDVariable(dom, engine);
+    }
+
+    /** Returns a copy of <code>goal</code>, or <code>null</code> if it is <code>'$fd_wake'(V)</code> of this variable. */
+    protected Term copyGoal(Term goal, Prolog engine) {
+	if (goal == wake)
+	    return null;
+	return super.copyGoal(goal, engine);
+    }
+
+    /** A trail entry that restores the domain of a variable on backtracking. */
+    static final class DomainChange implements Serializable, Undoable {
+	final FDVariable var;
+	final FDDomain dom;
+	final int stamp;
+
+	DomainChange(FDVariable var, FDDomain dom, int stamp) {
+	    this.var   = var;
+	    this.dom   = dom;
+	    this.stamp = stamp;
+	}
+
+	public void undo() {
+	    var.dom   = dom;
+	    var.stamp = stamp;
+	}
+    }
+
+    /** A trail entry that removes the last subscription of a variable on backtracking. */
+    static final class Subscription implements Serializable, Undoable {
+	final FDVariable var;
+	final boolean bounds;
+
+	Subscription(FDVariable var, boolean bounds) {
+	    this.var    = var;
+	    this.bounds = bounds;
+	}
+
+	public void undo() {
+	    if (bounds)
+		var.nBounds--;
+	    else
+		var.nFix--;
+	}
+    }
+}
@@ -51,18 +51,44 @@ class PRED_$begin_sync_2 extends BlockPredicate {
 	this.outOfScope = false;
 	this.outOfLoop  = false;
 	engine.trail.push(new OutOfLoop(this));
-	main_loop:while(true) {
-	    synchronized (o) {
-		while (! outOfScope) {
+	engine.loopLevel++;
+	try {
+	    main_loop:while(true) {
+		synchronized (o) {
+		    while (! outOfScope) {
+			if (engine.exceptionRaised != 0) {
+			    switch (engine.exceptionRaised) {
+			    case 1:  // halt/0
+				break main_loop;
+			    case 2:  // goals woken by freeze/2, when/2, or dif/2
+				code = engine.wakeUp(code);
+				continue;
+			    default:
+				break main_loop;
+			    }
+			}
+			if (engine.control.thread == null)
+			    break main_loop;
+			if (outOfLoop)
+			    break main_loop;
+			try {
+			    code = code.exec(engine);
+			    if (++engine.inferences >= engine.nextCheck)
+				engine.checkLimits(code);
+			} catch (RuntimeException e) {
+			    code = engine.handleException(e);
+			}
+		    }
+
+		}
+		while (outOfScope) {
 		    if (engine.exceptionRaised != 0) {
 			switch (engine.exceptionRaised) {
 			case 1:  // halt/0
 			    break main_loop;
-			case 2:  // freeze/2
-			    throw new SystemException("freeze/2 is not supported yet");
-			    // Do something here
-			    // engine.exceptionRaised = 0 ;
-			    // break
+			case 2:  // goals woken by freeze/2, when/2, or dif/2
+			    code = engine.wakeUp(code);
+			    continue;
 			default:
 			    break main_loop;
 			}
@@ -71,31 +97,18 @@ class PRED_$begin_sync_2 extends BlockPredicate {
 			break main_loop;
 		    if (outOfLoop)
 			break main_loop;
-		    code = code.exec(engine);
-		}
-
-	    }
-	    while (outOfScope) {
-		if (engine.exceptionRaised != 0) {
-		    switch (engine.exceptionRaised) {
-		    case 1:  // halt/0
-			break main_loop;
-		    case 2:  // freeze/2
-			throw new SystemException("freeze/2 is not supported yet");
-			// Do something here
-			// engine.exceptionRaised = 0 ;
-			// break
-		    default:
-			break main_loop;
+		    try {
+			code = code.exec(engine);
+			if (++engine.inferences >= engine.nextCheck)
+			    engine.checkLimits(code);
+		    } catch (RuntimeException e) {
+			code = engine.handleException(e);
 		    }
 		}
-		if (engine.control.thread == null)
-		    break main_loop;
-		if (outOfLoop)
-		    break main_loop;
-		code = code.exec(engine);
-	    }
 
+	    }
+	} finally {
+	    engine.loopLevel--;
 	}
 	return code;
     }
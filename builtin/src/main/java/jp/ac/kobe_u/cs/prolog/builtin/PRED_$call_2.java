@@ -11,6 +11,7 @@ class PRED_$call_2 extends Predicate {
     Term arg1, arg2;
     Predicate cont;
     public static SymbolTerm SYM_SLASH_2 = SymbolTerm.makeSymbol("/", 2);
+    private static final Object[] NO_ARGS = new Object[0];
 
     public PRED_$call_2() {}
     public PRED_$call_2(Term a1, Term a2, Predicate cont) {
@@ -35,42 +36,31 @@ class PRED_$call_2 extends Predicate {
 	a1 = arg1.dereference(); // a1 must be atom of package name
 	a2 = arg2.dereference(); // a2 must be callable name
 
-	String functor;
-	int arity;
+	SymbolTerm functor;
 	Term[] args;
-	Class clazz;
-	Constructor constr;
+	Constructor<?> constr;
 	Predicate pred;
 
 	try {
 	    if (! a1.isSymbol())
 		throw new IllegalTypeException(this, 1, "atom", a1);
 	    if (a2.isSymbol()) {
-		functor = ((SymbolTerm)a2).name();
+		functor = (SymbolTerm)a2;
 		args    = null;
-		arity   = 0;
 	    } else if (a2.isStructure()) {
-		functor = ((StructureTerm)a2).functor().name();
+		functor = ((StructureTerm)a2).functor();
 		args    = ((StructureTerm)a2).args();
-		arity   = ((StructureTerm)a2).arity();
 	    } else {
 		throw new IllegalTypeException(this, 2, "callable", a2);
 	    }
-	    try {
-		clazz = engine.pcl.loadPredicateClass(((SymbolTerm)a1).name(), functor, arity, true);
-	    } catch (ClassNotFoundException e) {
-		try {
-		    clazz = engine.pcl.loadPredicateClass("jp.ac.kobe_u.cs.prolog.builtin", functor, arity, true);
-		} catch (ClassNotFoundException ee) {
-		    if ((engine.getUnknown()).equals("fail"))
-			return engine.fail();
-		    Term[] fa = {SymbolTerm.makeSymbol(functor), new IntegerTerm(arity)};
-		    throw new ExistenceException(this, 0, "procedure", new StructureTerm(SYM_SLASH_2, fa), "");
-		}
+	    constr = engine.pcl.predicateConstructor(((SymbolTerm)a1).name(), functor);
+	    if (constr == null) {
+		if ((engine.getUnknown()).equals("fail"))
+		    return engine.fail();
+		Term[] fa = {SymbolTerm.makeSymbol(functor.name()), new IntegerTerm(functor.arity())};
+		throw new ExistenceException(this, 0, "procedure", new StructureTerm(SYM_SLASH_2, fa), "");
 	    }
-	    constr = clazz.getConstructor();
-	    constr.setAccessible(true);
-	    pred = (Predicate)constr.newInstance();
+	    pred = (Predicate)constr.newInstance(NO_ARGS);
 	    pred.setArgument(args, cont);
 	    return pred;
 	} catch (NoSuchMethodException e) {
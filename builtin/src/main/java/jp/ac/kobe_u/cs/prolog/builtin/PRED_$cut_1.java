@@ -36,7 +36,7 @@ public class PRED_$cut_1 extends Predicate {
         if (! a1.isInteger()) {
             throw new IllegalTypeException("integer", a1);
         } else {
-            engine.cut(((IntegerTerm) a1).intValue());
+            engine.cut(((IntegerTerm) a1).intValueExact());
         }
         return cont;
     }
@@ -34,11 +34,9 @@ class PRED_$end_exception_1 extends Predicate {
 	if (! a1.isJavaObject())
 	    throw new IllegalTypeException(this, 1, "java", a1);
 	Object obj = ((JavaObjectTerm)a1).object();
-	if (! (obj instanceof PRED_$begin_exception_1))
-	    throw new SystemException("a1 must be an object of PRED_$begin_exception_1: " + this.toString());
-	PRED_$begin_exception_1 p = ((PRED_$begin_exception_1) obj);
-	p.outOfScope = true;
-	engine.trail.push(new OutOfScope(p));
+	if (! (obj instanceof CatchFrame))
+	    throw new SystemException("a1 must be an object of CatchFrame: " + this.toString());
+	engine.endCatch((CatchFrame) obj);
 	return cont;
     }
 }
@@ -33,7 +33,7 @@ class PRED_$erase_1 extends Predicate {
 	a1 = a1.dereference();
 	if (! a1.isInteger())
 	    throw new IllegalTypeException(this, 1, "integer", a1);
-	idx = ((IntegerTerm)a1).intValue();
+	idx = ((IntegerTerm)a1).intValueExact(this, 1);
 	engine.internalDB.erase(idx);
 	return cont;
     }
@@ -0,0 +1,62 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+import java.util.ArrayList;
+/**
+ * <code>'$fd_all_different'/1</code><br>
+ * <code>'$fd_all_different'(Vars)</code> constrains the elements of the list <code>Vars</code>,
+ * which are variables or integers, to take different values.
+ * @see FDAllDifferent
+ * @version 1.2
+ */
+class PRED_$fd_all_different_1 extends Predicate {
+    Term arg1;
+
+    public PRED_$fd_all_different_1(Term a1, Predicate cont) {
+	arg1 = a1;
+	this.cont = cont;
+    }
+
+    public PRED_$fd_all_different_1() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	this.cont = cont;
+    }
+
+    public int arity() { return 1; }
+
+    public String toString() { return "$fd_all_different(" + arg1 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1;
+	a1 = arg1.dereference();
+
+	ArrayList<Term> vs = new ArrayList<Term>();
+	while (a1.isList()) {
+	    Term t = ((ListTerm) a1).car().dereference();
+	    if (! t.isVariable()) {
+		if (! t.isInteger())
+		    throw new IllegalTypeException(this, 1, "integer", t);
+		try {
+		    FDDomain.value(t);
+		} catch (BuiltinException e) {
+		    e.goal = this;
+		    e.argNo = 1;
+		    throw e;
+		}
+	    }
+	    vs.add(t);
+	    a1 = ((ListTerm) a1).cdr().dereference();
+	}
+	if (a1.isVariable())
+	    throw new PInstantiationException(this, 1);
+	if (! a1.isNil())
+	    throw new IllegalTypeException(this, 1, "list", arg1);
+	FDSolver s = new FDSolver(engine);
+	new FDAllDifferent(vs.toArray(new Term[vs.size()])).post(s);
+	if (! s.run())
+	    return engine.fail();
+	return cont;
+    }
+}
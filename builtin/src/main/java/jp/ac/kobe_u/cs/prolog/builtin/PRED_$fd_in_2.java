@@ -0,0 +1,57 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$fd_in'/2</code><br>
+ * <code>'$fd_in'(X, Dom)</code> restricts the domain of <code>X</code> to the values of <code>Dom</code>,
+ * which is an integer, <code>Lo..Hi</code>, or <code>Dom1 \/ Dom2</code>,
+ * and propagates the change.
+ * @see FDDomain#parse(Term)
+ * @version 1.2
+ */
+class PRED_$fd_in_2 extends Predicate {
+    Term arg1, arg2;
+
+    public PRED_$fd_in_2(Term a1, Term a2, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	this.cont = cont;
+    }
+
+    public PRED_$fd_in_2() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	this.cont = cont;
+    }
+
+    public int arity() { return 2; }
+
+    public String toString() { return "$fd_in(" + arg1 + "," + arg2 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1;
+	a1 = arg1.dereference();
+
+	if (! a1.isVariable() && ! a1.isInteger())
+	    throw new IllegalTypeException(this, 1, "integer", a1);
+	FDDomain d;
+	try {
+	    d = FDDomain.parse(arg2);
+	} catch (BuiltinException e) {
+	    e.goal = this;
+	    e.argNo = 2;
+	    throw e;
+	}
+	if (d == null)
+	    return engine.fail();
+	if (! a1.isVariable())
+	    return d.contains(a1) ? cont : engine.fail();
+	FDSolver s = new FDSolver(engine);
+	FDVariable x = s.variable((VariableTerm) a1);
+	if (! s.narrow(x, x.dom.intersect(d)) || ! s.run())
+	    return engine.fail();
+	return cont;
+    }
+}
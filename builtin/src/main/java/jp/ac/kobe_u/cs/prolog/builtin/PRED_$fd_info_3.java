@@ -0,0 +1,69 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$fd_info'/3</code><br>
+ * <code>'$fd_info'(X, Key, Value)</code> unifies <code>Value</code> with a property of the domain of <code>X</code>,
+ * which is a variable or an integer.
+ * <code>Key</code> is <code>dom</code> for the domain as a term, <code>inf</code> for the smallest value,
+ * <code>sup</code> for the largest value, or <code>size</code> for the number of values.
+ * Infinite bounds and sizes are <code>inf</code> or <code>sup</code>.
+ * @see FDDomain
+ * @version 1.2
+ */
+class PRED_$fd_info_3 extends Predicate {
+    static final SymbolTerm SYM_DOM  = SymbolTerm.makeSymbol("dom");
+    static final SymbolTerm SYM_SIZE = SymbolTerm.makeSymbol("size");
+    Term arg1, arg2, arg3;
+
+    public PRED_$fd_info_3(Term a1, Term a2, Term a3, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	arg3 = a3;
+	this.cont = cont;
+    }
+
+    public PRED_$fd_info_3() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	arg3 = args[2];
+	this.cont = cont;
+    }
+
+    public int arity() { return 3; }
+
+    public String toString() { return "$fd_info(" + arg1 + "," + arg2 + "," + arg3 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2;
+	a1 = arg1.dereference();
+	a2 = arg2.dereference();
+
+	if (! a1.isVariable() && ! a1.isInteger())
+	    throw new IllegalTypeException(this, 1, "integer", a1);
+	FDDomain d;
+	try {
+	    d = FDSolver.domain(a1);
+	} catch (BuiltinException e) {
+	    e.goal = this;
+	    e.argNo = 1;
+	    throw e;
+	}
+	Term v;
+	if (a2 == SYM_DOM)
+	    v = d.toTerm();
+	else if (a2 == FDDomain.SYM_INF)
+	    v = d.min == FDDomain.INF ? (Term) FDDomain.SYM_INF : IntegerTerm.valueOf(d.min);
+	else if (a2 == FDDomain.SYM_SUP)
+	    v = d.max == FDDomain.SUP ? (Term) FDDomain.SYM_SUP : IntegerTerm.valueOf(d.max);
+	else if (a2 == SYM_SIZE)
+	    v = d.size == FDDomain.SUP ? (Term) FDDomain.SYM_SUP : IntegerTerm.valueOf(d.size);
+	else
+	    throw new IllegalDomainException(this, 2, "clpfd_property", a2);
+	if (! arg3.unify(v, engine.trail))
+	    return engine.fail();
+	return cont;
+    }
+}
@@ -0,0 +1,289 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+/**
+ * <code>'$fd_post'/3</code><br>
+ * <code>'$fd_post'(Rel, L, R)</code> posts the arithmetic constraint <code>L Rel R</code>,
+ * where <code>Rel</code> is one of <code>#=</code>, <code>#\=</code>, <code>#&lt;</code>,
+ * <code>#&gt;</code>, <code>#=&lt;</code>, and <code>#&gt;=</code>,
+ * and propagates it.<br>
+ * The expressions <code>L</code> and <code>R</code> consist of variables, integers,
+ * <code>+</code>, <code>-</code>, and <code>*</code>. They are linearized:
+ * each product of two non-constant expressions is replaced with a new variable
+ * constrained by <code>FDTimes</code>.
+ * A constraint on a single variable narrows its domain, and posts no propagator.
+ * @see FDLinear
+ * @see FDTimes
+ * @version 1.2
+ */
+class PRED_$fd_post_3 extends Predicate {
+    static final SymbolTerm SYM_EQ = SymbolTerm.makeSymbol("#=");
+    static final SymbolTerm SYM_NE = SymbolTerm.makeSymbol("#\\=");
+    static final SymbolTerm SYM_LT = SymbolTerm.makeSymbol("#<");
+    static final SymbolTerm SYM_GT = SymbolTerm.makeSymbol("#>");
+    static final SymbolTerm SYM_LE = SymbolTerm.makeSymbol("#=<");
+    static final SymbolTerm SYM_GE = SymbolTerm.makeSymbol("#>=");
+    static final SymbolTerm SYM_PLUS_2  = SymbolTerm.makeSymbol("+", 2);
+    static final SymbolTerm SYM_MINUS_2 = SymbolTerm.makeSymbol("-", 2);
+    static final SymbolTerm SYM_TIMES_2 = SymbolTerm.makeSymbol("*", 2);
+    static final SymbolTerm SYM_MINUS_1 = SymbolTerm.makeSymbol("-", 1);
+    Term arg1, arg2, arg3;
+
+    public PRED_$fd_post_3(Term a1, Term a2, Term a3, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	arg3 = a3;
+	this.cont = cont;
+    }
+
+    public PRED_$fd_post_3() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	arg3 = args[2];
+	this.cont = cont;
+    }
+
+    public int arity() { return 3; }
+
+    public String toString() { return "$fd_post(" + arg1 + "," + arg2 + "," + arg3 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1;
+	a1 = arg1.dereference();
+
+	Sum sum = new Sum(engine);
+	sum.add(arg2, 1, 2);
+	sum.add(arg3, -1, 3);
+	// sum + k rel 0
+	int rel;
+	int sign = 1;
+	long k = -sum.k;
+	if (a1 == SYM_EQ) {
+	    rel = FDLinear.EQ;
+	} else if (a1 == SYM_NE) {
+	    rel = FDLinear.NE;
+	} else if (a1 == SYM_LE) {
+	    rel = FDLinear.LE;
+	} else if (a1 == SYM_LT) {
+	    rel = FDLinear.LE;
+	    k--;
+	} else if (a1 == SYM_GE) {
+	    rel = FDLinear.LE;
+	    sign = -1;
+	    k = -k;
+	} else if (a1 == SYM_GT) {
+	    rel = FDLinear.LE;
+	    sign = -1;
+	    k = -k - 1;
+	} else {
+	    throw new IllegalDomainException(this, 1, "clpfd_relation", a1);
+	}
+	FDSolver s = new FDSolver(engine);
+	for (int i = 0; i < sum.posts.size(); i++)
+	    post(s, sum.posts.get(i));
+	if (! constrain(s, sum.coefficients(sign), sum.vars(), k, rel) || ! s.run())
+	    return engine.fail();
+	return cont;
+    }
+
+    private static void post(FDSolver s, FDPropagator p) {
+	if (p instanceof FDLinear)
+	    ((FDLinear) p).post(s);
+	else
+	    ((FDTimes) p).post(s);
+    }
+
+    /** Posts <code>a<sub>1</sub>x<sub>1</sub>+...+a<sub>n</sub>x<sub>n</sub> rel k</code> on <code>s</code>. */
+    private static boolean constrain(FDSolver s, int[] a, Term[] x, long k, int rel) {
+	switch (x.length) {
+	case 0:
+	    if (rel == FDLinear.EQ)
+		return k == 0;
+	    if (rel == FDLinear.NE)
+		return k != 0;
+	    return 0 <= k;
+	case 1:
+	    long c = a[0];
+	    if (rel == FDLinear.LE) {
+		if (c > 0)
+		    return s.restrict(x[0], Long.MIN_VALUE, FDSolver.floorDiv(k, c));
+		return s.restrict(x[0], FDSolver.ceilDiv(k, c), Long.MAX_VALUE);
+	    }
+	    if (k % c != 0)
+		return rel == FDLinear.NE;
+	    if (rel == FDLinear.EQ)
+		return s.restrict(x[0], k / c, k / c);
+	    return s.remove(x[0], k / c);
+	default:
+	    new FDLinear(a, x, k, rel).post(s);
+	    return true;
+	}
+    }
+
+    /**
+     * Linear sum of terms built from an expression.<br>
+     * Propagators for the auxiliary variables are collected in <code>posts</code>,
+     * and are posted after the whole expression has been checked.
+     */
+    private final class Sum {
+	final Prolog engine;
+	/** Holds the variables in the order of their first occurrences. */
+	final ArrayList<Term> vars = new ArrayList<Term>();
+	/** Maps each variable to its index in <code>vars</code>. */
+	final IdentityHashMap<Term,Integer> index = new IdentityHashMap<Term,Integer>();
+	/** Holds the coefficients of <code>vars</code>. */
+	long[] coefs = new long[8];
+	/** The constant term. */
+	long k = 0;
+	/** Holds the propagators of the auxiliary variables. */
+	final ArrayList<FDPropagator> posts;
+
+	Sum(Prolog engine) {
+	    this(engine, new ArrayList<FDPropagator>());
+	}
+
+	Sum(Prolog engine, ArrayList<FDPropagator> posts) {
+	    this.engine = engine;
+	    this.posts  = posts;
+	}
+
+	/** Adds <code>m*e</code> to this sum, where <code>e</code> is the argument <code>argNo</code>. */
+	void add(Term e, long m, int argNo) {
+	    e = e.dereference();
+	    if (e.isVariable()) {
+		addVariable(e, m);
+		return;
+	    }
+	    if (e.isInteger()) {
+		k = plus(k, m * value(e, argNo), argNo);
+		return;
+	    }
+	    if (e.isStructure()) {
+		SymbolTerm f = ((StructureTerm) e).functor();
+		Term[] args = ((StructureTerm) e).args();
+		if (f == SYM_PLUS_2) {
+		    add(args[0], m, argNo);
+		    add(args[1], m, argNo);
+		    return;
+		}
+		if (f == SYM_MINUS_2) {
+		    add(args[0], m, argNo);
+		    add(args[1], -m, argNo);
+		    return;
+		}
+		if (f == SYM_MINUS_1) {
+		    add(args[0], -m, argNo);
+		    return;
+		}
+		if (f == SYM_TIMES_2) {
+		    Term x = args[0].dereference();
+		    Term y = args[1].dereference();
+		    if (x.isInteger()) {
+			add(y, times(m, value(x, argNo), argNo), argNo);
+		    } else if (y.isInteger()) {
+			add(x, times(m, value(y, argNo), argNo), argNo);
+		    } else {
+			Term z = new FDVariable(FDDomain.ALL, engine);
+			posts.add(new FDTimes(operand(x, argNo), operand(y, argNo), z));
+			addVariable(z, m);
+		    }
+		    return;
+		}
+	    }
+	    throw new IllegalTypeException(PRED_$fd_post_3.this, argNo, "evaluable", e);
+	}
+
+	/** Returns a variable or an integer equal to the expression <code>e</code>. */
+	private Term operand(Term e, int argNo) {
+	    if (e.isVariable())
+		return e;
+	    if (e.isInteger()) {
+		value(e, argNo);
+		return e;
+	    }
+	    Sum t = new Sum(engine, posts);
+	    t.add(e, 1, argNo);
+	    Term z = new FDVariable(FDDomain.ALL, engine);
+	    t.addVariable(z, -1);
+	    posts.add(new FDLinear(t.coefficients(1), t.vars(), -t.k, FDLinear.EQ));
+	    return z;
+	}
+
+	private void addVariable(Term v, long m) {
+	    Integer i = index.get(v);
+	    if (i == null) {
+		i = Integer.valueOf(vars.size());
+		index.put(v, i);
+		vars.add(v);
+		if (i.intValue() == coefs.length) {
+		    long[] a = new long[coefs.length * 2];
+		    System.arraycopy(coefs, 0, a, 0, coefs.length);
+		    coefs = a;
+		}
+	    }
+	    coefs[i.intValue()] = plus(coefs[i.intValue()], m, 0);
+	}
+
+	/** Returns the value of the integer <code>e</code> in the argument <code>argNo</code>. */
+	private long value(Term e, int argNo) {
+	    try {
+		return FDDomain.value(e);
+	    } catch (BuiltinException ex) {
+		ex.goal = PRED_$fd_post_3.this;
+		ex.argNo = argNo;
+		throw ex;
+	    }
+	}
+
+	private long plus(long x, long y, int argNo) {
+	    long r = x + y;
+	    if (((x ^ r) & (y ^ r)) < 0)
+		throw new RepresentationException(PRED_$fd_post_3.this, argNo, "clpfd_integer");
+	    return r;
+	}
+
+	private long times(long m, long c, int argNo) {
+	    long r = m * c;
+	    if (r <= FDDomain.INF || r >= FDDomain.SUP)
+		throw new RepresentationException(PRED_$fd_post_3.this, argNo, "clpfd_integer");
+	    return r;
+	}
+
+	/** Returns the variables with nonzero coefficients. */
+	Term[] vars() {
+	    ArrayList<Term> vs = new ArrayList<Term>();
+	    for (int i = 0; i < vars.size(); i++) {
+		if (coefs[i] != 0)
+		    vs.add(vars.get(i));
+	    }
+	    return vs.toArray(new Term[vs.size()]);
+	}
+
+	/**
+	 * Returns the nonzero coefficients multiplied by <code>sign</code>.
+	 * @exception RepresentationException if some of them is out of the range of domains.
+	 */
+	int[] coefficients(int sign) {
+	    int n = 0;
+	    for (int i = 0; i < vars.size(); i++) {
+		if (coefs[i] != 0)
+		    n++;
+	    }
+	    int[] a = new int[n];
+	    n = 0;
+	    for (int i = 0; i < vars.size(); i++) {
+		long c = coefs[i] * sign;
+		if (c == 0)
+		    continue;
+		if (c <= FDDomain.INF || c >= FDDomain.SUP)
+		    throw new RepresentationException(PRED_$fd_post_3.this, 0, "clpfd_integer");
+		a[n++] = (int) c;
+	    }
+	    return a;
+	}
+    }
+}
@@ -0,0 +1,97 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$fd_select'/3</code><br>
+ * <code>'$fd_select'(Vars, Strategy, X)</code> unifies <code>X</code> with the variable of the list <code>Vars</code>
+ * to be labeled next, and fails if all elements are integers.
+ * <code>Strategy</code> is <code>leftmost</code> for the first variable,
+ * <code>ff</code> for the first one of the smallest domain,
+ * <code>ffc</code> for the first one of the smallest domain and the most constraints,
+ * <code>min</code> for the first one of the smallest lower bound, or
+ * <code>max</code> for the first one of the largest upper bound.
+ * Every variable must have a finite domain.
+ * @version 1.2
+ */
+class PRED_$fd_select_3 extends Predicate {
+    static final SymbolTerm SYM_LEFTMOST = SymbolTerm.makeSymbol("leftmost");
+    static final SymbolTerm SYM_FF       = SymbolTerm.makeSymbol("ff");
+    static final SymbolTerm SYM_FFC      = SymbolTerm.makeSymbol("ffc");
+    static final SymbolTerm SYM_MIN      = SymbolTerm.makeSymbol("min");
+    static final SymbolTerm SYM_MAX      = SymbolTerm.makeSymbol("max");
+    Term arg1, arg2, arg3;
+
+    public PRED_$fd_select_3(Term a1, Term a2, Term a3, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	arg3 = a3;
+	this.cont = cont;
+    }
+
+    public PRED_$fd_select_3() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	arg3 = args[2];
+	this.cont = cont;
+    }
+
+    public int arity() { return 3; }
+
+    public String toString() { return "$fd_select(" + arg1 + "," + arg2 + "," + arg3 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2;
+	a1 = arg1.dereference();
+	a2 = arg2.dereference();
+
+	if (a2 != SYM_LEFTMOST && a2 != SYM_FF && a2 != SYM_FFC && a2 != SYM_MIN && a2 != SYM_MAX)
+	    throw new IllegalDomainException(this, 2, "labeling_option", a2);
+	Term best = null;
+	FDDomain bd = null;
+	while (a1.isList()) {
+	    Term t = ((ListTerm) a1).car().dereference();
+	    a1 = ((ListTerm) a1).cdr().dereference();
+	    if (! t.isVariable()) {
+		if (! t.isInteger())
+		    throw new IllegalTypeException(this, 1, "integer", t);
+		continue;
+	    }
+	    FDDomain d = FDSolver.domain(t);
+	    if (! d.isFinite())
+		throw new PInstantiationException(this, 1);
+	    if (best == null || better(a2, t, d, best, bd)) {
+		best = t;
+		bd = d;
+		if (a2 == SYM_LEFTMOST)
+		    break;
+	    }
+	}
+	if (best == null) {
+	    if (a1.isVariable())
+		throw new PInstantiationException(this, 1);
+	    if (! a1.isNil())
+		throw new IllegalTypeException(this, 1, "list", arg1);
+	    return engine.fail();
+	}
+	if (! arg3.unify(best, engine.trail))
+	    return engine.fail();
+	return cont;
+    }
+
+    /** Returns <code>true</code> if <code>t</code> of the domain <code>d</code> is strictly better than <code>u</code> of <code>e</code>. */
+    private static boolean better(Term s, Term t, FDDomain d, Term u, FDDomain e) {
+	if (s == SYM_MIN)
+	    return d.min < e.min;
+	if (s == SYM_MAX)
+	    return d.max > e.max;
+	if (d.size != e.size)
+	    return d.size < e.size;
+	return s == SYM_FFC && degree(t) > degree(u);
+    }
+
+    private static int degree(Term t) {
+	return t instanceof FDVariable ? ((FDVariable) t).degree() : 0;
+    }
+}
@@ -0,0 +1,66 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$fd_wake'/1</code><br>
+ * <code>'$fd_wake'(V)</code> is the goal suspended on the finite domain variable <code>V</code>,
+ * which is given as a Java object.
+ * It is woken when <code>V</code> is bound by unification.
+ * If <code>V</code> is bound to an integer, the integer is checked against the domain of <code>V</code>.
+ * If it is bound to another finite domain variable, the domains are intersected,
+ * and the constraints of <code>V</code> are moved to the other variable.
+ * The constraints of <code>V</code> are then propagated.
+ * @see FDVariable
+ * @version 1.2
+ */
+class PRED_$fd_wake_1 extends Predicate {
+    Term arg1;
+
+    public PRED_$fd_wake_1(Term a1, Predicate cont) {
+	arg1 = a1;
+	this.cont = cont;
+    }
+
+    public PRED_$fd_wake_1() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	this.cont = cont;
+    }
+
+    public int arity() { return 1; }
+
+    public String toString() { return "$fd_wake(" + arg1 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	FDVariable x = (FDVariable) ((JavaObjectTerm) arg1.dereference()).object();
+	Term t = x.dereference();
+	if (t == x)
+	    return cont;
+	FDSolver s = new FDSolver(engine);
+	if (t.isVariable()) {
+	    FDVariable y;
+	    if (t instanceof FDVariable) {
+		y = (FDVariable) t;
+		if (! s.narrow(y, y.dom.intersect(x.dom)))
+		    return engine.fail();
+	    } else {
+		y = new FDVariable(x.dom, engine);
+		engine.attach((VariableTerm) t, y);
+	    }
+	    for (int i = 0; i < x.nBounds; i++)
+		y.subscribe(x.onBounds[i], true, engine);
+	    for (int i = 0; i < x.nFix; i++)
+		y.subscribe(x.onFix[i], false, engine);
+	} else {
+	    if (! t.isInteger())
+		throw new IllegalTypeException(this, 1, "integer", t);
+	    if (! x.dom.contains(t))
+		return engine.fail();
+	}
+	s.scheduleAll(x);
+	if (! s.run())
+	    return engine.fail();
+	return cont;
+    }
+}
@@ -53,7 +53,7 @@ class PRED_$get_instances_2 extends Predicate {
 	    if (! car.isInteger()) 
 		throw new RepresentationException(this, 1, "integer");
 	    // car is an integer
-	    int i = ((IntegerTerm)car).intValue();
+	    int i = ((IntegerTerm)car).intValueExact(this, 1);
 	    Term e = engine.internalDB.get(i);
 	    if (e != null) {
 		Term[] arg = {e, car};
@@ -0,0 +1,53 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$get_limit'/2</code><br>
+ * Unifies the second argument with the current limit of the resource
+ * <code>inferences</code> or <code>time</code>, wrapped by <code>JavaObjectTerm</code>.
+ * @version 1.2
+ */
+class PRED_$get_limit_2 extends Predicate {
+    static SymbolTerm SYM_INFERENCES = SymbolTerm.makeSymbol("inferences");
+    static SymbolTerm SYM_TIME       = SymbolTerm.makeSymbol("time");
+
+    Term arg1, arg2;
+
+    public PRED_$get_limit_2(Term a1, Term a2, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	this.cont = cont;
+    }
+
+    public PRED_$get_limit_2() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	this.cont = cont;
+    }
+
+    public int arity() { return 2; }
+
+    public String toString() { return "$get_limit(" + arg1 + "," + arg2 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2;
+	a1 = arg1;
+	a2 = arg2;
+	long limit;
+
+	a1 = a1.dereference();
+	if (a1.isVariable())
+	    throw new PInstantiationException(this, 1);
+	if (a1.equals(SYM_INFERENCES))
+	    limit = engine.getInferenceLimit();
+	else if (a1.equals(SYM_TIME))
+	    limit = engine.getDeadline();
+	else
+	    throw new IllegalDomainException(this, 1, "resource", a1);
+	if (! a2.unify(new JavaObjectTerm(Long.valueOf(limit)), engine.trail))
+	    return engine.fail();
+	return cont;
+    }
+}
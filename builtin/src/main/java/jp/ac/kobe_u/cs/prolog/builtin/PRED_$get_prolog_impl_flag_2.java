@@ -19,6 +19,9 @@ class PRED_$get_prolog_impl_flag_2 extends Predicate {
     static SymbolTerm UNKNOWN                   = SymbolTerm.makeSymbol("unknown");
     static SymbolTerm DOUBLE_QUOTES             = SymbolTerm.makeSymbol("double_quotes");
     static SymbolTerm PRINT_STACK_TRACE         = SymbolTerm.makeSymbol("print_stack_trace");
+    static SymbolTerm INITIAL_CHOICE_STACK_SIZE = SymbolTerm.makeSymbol("initial_choice_stack_size");
+    static SymbolTerm INITIAL_TRAIL_SIZE        = SymbolTerm.makeSymbol("initial_trail_size");
+    static SymbolTerm INITIAL_INTERNAL_DATABASE_SIZE = SymbolTerm.makeSymbol("initial_internal_database_size");
 
     public Term arg1, arg2;
 
@@ -59,10 +62,10 @@ class PRED_$get_prolog_impl_flag_2 extends Predicate {
 		    return engine.fail();
 	    }
 	} else if (a1.equals(MAX_INTEGER)) {
-	    if (! a2.unify(new IntegerTerm(engine.getMaxInteger()), engine.trail))
+	    if (! a2.unify(IntegerTerm.valueOf(engine.getMaxInteger()), engine.trail))
 		return engine.fail();
 	} else if (a1.equals(MIN_INTEGER)) {
-	    if (! a2.unify(new IntegerTerm(engine.getMinInteger()), engine.trail))
+	    if (! a2.unify(IntegerTerm.valueOf(engine.getMinInteger()), engine.trail))
 		return engine.fail();
 	} else if (a1.equals(INTEGER_ROUNDING_FUNCTION)) {
 	    if (! a2.unify(SymbolTerm.makeSymbol(engine.getIntegerRoundingFunction()), engine.trail))
@@ -85,6 +88,15 @@ class PRED_$get_prolog_impl_flag_2 extends Predicate {
 	} else if (a1.equals(PRINT_STACK_TRACE)) {
 	    if (! a2.unify(SymbolTerm.makeSymbol(engine.getPrintStackTrace()), engine.trail))
 		return engine.fail();
+	} else if (a1.equals(INITIAL_CHOICE_STACK_SIZE)) {
+	    if (! a2.unify(new IntegerTerm(engine.getInitialChoiceStackSize()), engine.trail))
+		return engine.fail();
+	} else if (a1.equals(INITIAL_TRAIL_SIZE)) {
+	    if (! a2.unify(new IntegerTerm(engine.getInitialTrailSize()), engine.trail))
+		return engine.fail();
+	} else if (a1.equals(INITIAL_INTERNAL_DATABASE_SIZE)) {
+	    if (! a2.unify(new IntegerTerm(engine.getInitialInternalDatabaseSize()), engine.trail))
+		return engine.fail();
 	} else {
 	    return engine.fail();
 	}
@@ -57,7 +57,7 @@ class PRED_$hash_remove_first_3 extends Predicate {
 	if (! (hash instanceof HashtableOfTerm))
 	    throw new InternalException(this + ": Hash is not HashtableOfTerm");
 	a2 = a2.dereference();
-	Term elem = ((HashtableOfTerm) hash).get(a2);
+	Term elem = ((HashtableOfTerm) hash).getForUpdate(a2);
 	if (elem == null || elem.isNil())
 	    return cont;
 	a3 = a3.dereference();
@@ -0,0 +1,62 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$limit_exceeded'/3</code><br>
+ * Succeeds if the new limit (the third argument) of the resource 
+ * <code>inferences</code> or <code>time</code> has been exceeded
+ * and is stricter than the old one (the second argument).
+ * @version 1.2
+ */
+class PRED_$limit_exceeded_3 extends Predicate {
+    Term arg1, arg2, arg3;
+
+    public PRED_$limit_exceeded_3(Term a1, Term a2, Term a3, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	arg3 = a3;
+	this.cont = cont;
+    }
+
+    public PRED_$limit_exceeded_3() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	arg3 = args[2];
+	this.cont = cont;
+    }
+
+    public int arity() { return 3; }
+
+    public String toString() { return "$limit_exceeded(" + arg1 + "," + arg2 + "," + arg3 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2, a3;
+	a1 = arg1;
+	a2 = arg2;
+	a3 = arg3;
+	long oldLimit, newLimit, now;
+
+	a2 = a2.dereference();
+	a3 = a3.dereference();
+	if (! a2.isJavaObject() || ! (((JavaObjectTerm) a2).object() instanceof Long))
+	    throw new IllegalTypeException(this, 2, "java", a2);
+	if (! a3.isJavaObject() || ! (((JavaObjectTerm) a3).object() instanceof Long))
+	    throw new IllegalTypeException(this, 3, "java", a3);
+	oldLimit = ((Long) ((JavaObjectTerm) a2).object()).longValue();
+	newLimit = ((Long) ((JavaObjectTerm) a3).object()).longValue();
+	a1 = a1.dereference();
+	if (a1.isVariable())
+	    throw new PInstantiationException(this, 1);
+	if (a1.equals(PRED_$get_limit_2.SYM_INFERENCES))
+	    now = engine.getInferences();
+	else if (a1.equals(PRED_$get_limit_2.SYM_TIME))
+	    now = System.nanoTime();
+	else
+	    throw new IllegalDomainException(this, 1, "resource", a1);
+	if (newLimit == oldLimit || now - newLimit < 0)
+	    return engine.fail();
+	return cont;
+    }
+}
@@ -0,0 +1,83 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$new_limit'/3</code><br>
+ * Unifies the third argument with the limit of the resource <code>inferences</code>
+ * or <code>time</code> that allows the given number of inferences or seconds from now,
+ * but does not exceed the current limit.
+ * The number of inferences is a non-negative integer, and a limit beyond
+ * <code>Long.MAX_VALUE</code> inferences or <code>MAX_NANOS</code> nanoseconds is saturated.
+ * @version 1.2
+ */
+class PRED_$new_limit_3 extends Predicate {
+    /** The maximum time from now until a deadline, in nanoseconds. */
+    static final long MAX_NANOS = Long.MAX_VALUE >> 1;
+
+    Term arg1, arg2, arg3;
+
+    public PRED_$new_limit_3(Term a1, Term a2, Term a3, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	arg3 = a3;
+	this.cont = cont;
+    }
+
+    public PRED_$new_limit_3() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	arg3 = args[2];
+	this.cont = cont;
+    }
+
+    public int arity() { return 3; }
+
+    public String toString() { return "$new_limit(" + arg1 + "," + arg2 + "," + arg3 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2, a3;
+	a1 = arg1;
+	a2 = arg2;
+	a3 = arg3;
+	long limit;
+
+	a2 = a2.dereference();
+	if (a2.isVariable())
+	    throw new PInstantiationException(this, 2);
+	if (! a2.isNumber())
+	    throw new IllegalTypeException(this, 2, "number", a2);
+	a1 = a1.dereference();
+	if (a1.isVariable())
+	    throw new PInstantiationException(this, 1);
+	if (a1.equals(PRED_$get_limit_2.SYM_INFERENCES)) {
+	    if (! a2.isInteger())
+		throw new IllegalTypeException(this, 2, "integer", a2);
+	    long amount;
+	    if (a2.tag == Term.TAG_BIGINTEGER) {
+		if (((BigIntegerTerm) a2).bigIntegerValue().signum() < 0)
+		    throw new IllegalDomainException(this, 2, "not_less_than_zero", a2);
+		amount = Long.MAX_VALUE;
+	    } else {
+		amount = ((IntegerTerm) a2).longValue();
+		if (amount < 0)
+		    throw new IllegalDomainException(this, 2, "not_less_than_zero", a2);
+	    }
+	    long n = engine.getInferences();
+	    // saturates instead of overflowing
+	    limit = Math.min(engine.getInferenceLimit(), amount > Long.MAX_VALUE - n ? Long.MAX_VALUE : n + amount);
+	} else if (a1.equals(PRED_$get_limit_2.SYM_TIME)) {
+	    double nanos = ((NumberTerm) a2).doubleValue() * 1.0e9;
+	    // deadlines are compared by differences, even with a passed one, so they are at most MAX_NANOS ahead
+	    limit = System.nanoTime() + (nanos >= MAX_NANOS ? MAX_NANOS : (long) nanos);
+	    if (engine.getDeadline() != Long.MAX_VALUE && limit - engine.getDeadline() > 0)
+		limit = engine.getDeadline();
+	} else {
+	    throw new IllegalDomainException(this, 1, "resource", a1);
+	}
+	if (! a3.unify(new JavaObjectTerm(Long.valueOf(limit)), engine.trail))
+	    return engine.fail();
+	return cont;
+    }
+}
@@ -66,7 +66,7 @@ class PRED_$read_token0_3 extends Predicate {
 	    type = Token.read_token(s, (PushbackReader)stream);
 	    switch(type) {
 	    case 'I':
-		token = new IntegerTerm(Integer.parseInt(s.toString())); 
+		token = IntegerTerm.valueOf(s.toString()); 
 		break;
 	    case 'D':
 		token = new DoubleTerm(Double.parseDouble(s.toString())); 
@@ -0,0 +1,54 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$set_limit'/2</code><br>
+ * Sets the limit of the resource <code>inferences</code> or <code>time</code>
+ * to the value obtained by <code>'$get_limit'/2</code> or <code>'$new_limit'/3</code>.
+ * @version 1.2
+ */
+class PRED_$set_limit_2 extends Predicate {
+    Term arg1, arg2;
+
+    public PRED_$set_limit_2(Term a1, Term a2, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	this.cont = cont;
+    }
+
+    public PRED_$set_limit_2() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	this.cont = cont;
+    }
+
+    public int arity() { return 2; }
+
+    public String toString() { return "$set_limit(" + arg1 + "," + arg2 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2;
+	a1 = arg1;
+	a2 = arg2;
+	long limit;
+
+	a2 = a2.dereference();
+	if (a2.isVariable())
+	    throw new PInstantiationException(this, 2);
+	if (! a2.isJavaObject() || ! (((JavaObjectTerm) a2).object() instanceof Long))
+	    throw new IllegalTypeException(this, 2, "java", a2);
+	limit = ((Long) ((JavaObjectTerm) a2).object()).longValue();
+	a1 = a1.dereference();
+	if (a1.isVariable())
+	    throw new PInstantiationException(this, 1);
+	if (a1.equals(PRED_$get_limit_2.SYM_INFERENCES))
+	    engine.setInferenceLimit(limit);
+	else if (a1.equals(PRED_$get_limit_2.SYM_TIME))
+	    engine.setDeadline(limit);
+	else
+	    throw new IllegalDomainException(this, 1, "resource", a1);
+	return cont;
+    }
+}
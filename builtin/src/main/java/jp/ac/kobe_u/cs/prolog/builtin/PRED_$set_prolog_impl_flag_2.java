@@ -12,6 +12,9 @@ class PRED_$set_prolog_impl_flag_2 extends Predicate {
     static SymbolTerm UNKNOWN           = SymbolTerm.makeSymbol("unknown");
     static SymbolTerm DOUBLE_QUOTES     = SymbolTerm.makeSymbol("double_quotes");
     static SymbolTerm PRINT_STACK_TRACE = SymbolTerm.makeSymbol("print_stack_trace");
+    static SymbolTerm INITIAL_CHOICE_STACK_SIZE = SymbolTerm.makeSymbol("initial_choice_stack_size");
+    static SymbolTerm INITIAL_TRAIL_SIZE        = SymbolTerm.makeSymbol("initial_trail_size");
+    static SymbolTerm INITIAL_INTERNAL_DATABASE_SIZE = SymbolTerm.makeSymbol("initial_internal_database_size");
 
     public Term arg1, arg2;
 
@@ -63,6 +66,18 @@ class PRED_$set_prolog_impl_flag_2 extends Predicate {
 	    if (! a2.isSymbol())
 		return engine.fail();
 	    engine.setPrintStackTrace(((SymbolTerm)a2).name());
+	} else if (a1.equals(INITIAL_CHOICE_STACK_SIZE)) {
+	    if (! a2.isInteger() || ((IntegerTerm)a2).intValueExact(this, 2) < 1)
+		return engine.fail();
+	    engine.setInitialChoiceStackSize(((IntegerTerm)a2).intValue());
+	} else if (a1.equals(INITIAL_TRAIL_SIZE)) {
+	    if (! a2.isInteger() || ((IntegerTerm)a2).intValueExact(this, 2) < 1)
+		return engine.fail();
+	    engine.setInitialTrailSize(((IntegerTerm)a2).intValue());
+	} else if (a1.equals(INITIAL_INTERNAL_DATABASE_SIZE)) {
+	    if (! a2.isInteger() || ((IntegerTerm)a2).intValueExact(this, 2) < 1)
+		return engine.fail();
+	    engine.setInitialInternalDatabaseSize(((IntegerTerm)a2).intValue());
 	} else {
 	    return engine.fail();
 	}
@@ -11,6 +11,8 @@ class PRED_$statistics_2 extends Predicate {
     public static SymbolTerm SYM_RUNTIME = SymbolTerm.makeSymbol("runtime");
     public static SymbolTerm SYM_TRAIL   = SymbolTerm.makeSymbol("trail");
     public static SymbolTerm SYM_CHOICE  = SymbolTerm.makeSymbol("choice");
+    public static SymbolTerm SYM_INFERENCES = SymbolTerm.makeSymbol("inferences");
+    public static SymbolTerm SYM_ATOMS   = SymbolTerm.makeSymbol("atoms");
 
     Term arg1, arg2;
 
@@ -49,8 +51,8 @@ class PRED_$statistics_2 extends Predicate {
 	    val1 = System.currentTimeMillis() - engine.getStartRuntime();
 	    val2 = val1 - engine.getPreviousRuntime();
 	    engine.setPreviousRuntime(val1);
-	    start    = new IntegerTerm((int)val1);
-	    previous = new IntegerTerm((int)val2);
+	    start    = IntegerTerm.valueOf(val1);
+	    previous = IntegerTerm.valueOf(val2);
 	    result   = new ListTerm(start, new ListTerm(previous, Nil));
 	} else if (a1.equals(SYM_TRAIL)) {
 	    int top, max;
@@ -68,6 +70,15 @@ class PRED_$statistics_2 extends Predicate {
 	    used   = new IntegerTerm(top);
 	    free   = new IntegerTerm(max - top);
 	    result = new ListTerm(used, new ListTerm(free, Nil));
+	} else if (a1.equals(SYM_INFERENCES)) {
+	    result = IntegerTerm.valueOf(engine.getInferences());
+	} else if (a1.equals(SYM_ATOMS)) {
+	    SymbolTable table = SymbolTerm.symbolTable();
+	    Term live, collected;
+	    table.expunge();
+	    live      = IntegerTerm.valueOf(table.size());
+	    collected = IntegerTerm.valueOf(table.collected());
+	    result    = new ListTerm(live, new ListTerm(collected, Nil));
 	} else {
 	    return engine.fail();
 	}
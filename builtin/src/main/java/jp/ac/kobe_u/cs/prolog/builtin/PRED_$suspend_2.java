@@ -0,0 +1,53 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$suspend'/2</code><br>
+ * <code>'$suspend'(Vars, Goal)</code> suspends <code>Goal</code> on each unbound variable
+ * of the list <code>Vars</code>, until backtracking.
+ * <code>Goal</code> is woken when any of them is bound to a non-variable term
+ * or to another suspended variable.
+ * @see Prolog#suspend(VariableTerm, Term)
+ * @version 1.2
+ */
+class PRED_$suspend_2 extends Predicate {
+    Term arg1, arg2;
+
+    public PRED_$suspend_2(Term a1, Term a2, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	this.cont = cont;
+    }
+
+    public PRED_$suspend_2() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	this.cont = cont;
+    }
+
+    public int arity() { return 2; }
+
+    public String toString() { return "$suspend(" + arg1 + "," + arg2 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term a1, a2;
+	a1 = arg1;
+	a2 = arg2;
+
+	a2 = a2.dereference();
+	if (a2.isVariable())
+	    throw new PInstantiationException(this, 2);
+	a1 = a1.dereference();
+	while (a1.isList()) {
+	    Term v = ((ListTerm) a1).car().dereference();
+	    if (v.isVariable())
+		engine.suspend((VariableTerm) v, a2);
+	    a1 = ((ListTerm) a1).cdr().dereference();
+	}
+	if (! a1.isNil())
+	    throw new IllegalTypeException(this, 1, "list", arg1);
+	return cont;
+    }
+}
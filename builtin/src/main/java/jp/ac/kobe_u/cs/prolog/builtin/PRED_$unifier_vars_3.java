@@ -0,0 +1,44 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+/**
+ * <code>'$unifier_vars'/3</code><br>
+ * <code>'$unifier_vars'(X, Y, Vars)</code> fails if <code>X</code> and <code>Y</code>
+ * are not unified, and otherwise unifies <code>Vars</code> with the list of the variables
+ * bound by their most general unifier, leaving <code>X</code> and <code>Y</code> as they were.
+ * <code>Vars</code> is <code>[]</code> if <code>X</code> and <code>Y</code> are identical.
+ * @see Prolog#unifierVariables(Term, Term)
+ * @version 1.2
+ */
+class PRED_$unifier_vars_3 extends Predicate {
+    Term arg1, arg2, arg3;
+
+    public PRED_$unifier_vars_3(Term a1, Term a2, Term a3, Predicate cont) {
+	arg1 = a1;
+	arg2 = a2;
+	arg3 = a3;
+	this.cont = cont;
+    }
+
+    public PRED_$unifier_vars_3() {}
+
+    public void setArgument(Term[] args, Predicate cont){
+	arg1 = args[0];
+	arg2 = args[1];
+	arg3 = args[2];
+	this.cont = cont;
+    }
+
+    public int arity() { return 3; }
+
+    public String toString() { return "$unifier_vars(" + arg1 + "," + arg2 + "," + arg3 + ")"; }
+
+    public Predicate exec(Prolog engine) {
+        engine.setB0();
+	Term vars = engine.unifierVariables(arg1, arg2);
+	if (vars == null)
+	    return engine.fail();
+	if (! arg3.unify(vars, engine.trail))
+	    return engine.fail();
+	return cont;
+    }
+}
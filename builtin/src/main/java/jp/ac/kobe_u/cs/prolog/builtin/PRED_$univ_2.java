@@ -38,16 +38,25 @@ public class PRED_$univ_2 extends Predicate {
         a2 = arg2;
 
 	a1 = a1.dereference();
-	if (a1.isSymbol() || a1.isNumber() || a1.isJavaObject() || a1.isClosure()) {
+	switch (a1.tag) {
+	case Term.TAG_SYMBOL:
+	case Term.TAG_INTEGER:
+	case Term.TAG_BIGINTEGER:
+	case Term.TAG_DOUBLE:
+	case Term.TAG_JAVA:
+	case Term.TAG_CLOSURE:
 	    if (! a2.unify(new ListTerm(a1, SYM_NIL), engine.trail))
 		return engine.fail();
-	} else if (a1.isList()) {
+	    break;
+	case Term.TAG_LIST: {
 	    Term t = new ListTerm(((ListTerm)a1).cdr(), SYM_NIL);
 	    t = new ListTerm(((ListTerm)a1).car(), t);
 	    t = new ListTerm(SYM_DOT, t);
 	    if (! a2.unify(t, engine.trail))
 		return engine.fail();
-	} else if (a1.isStructure()) {
+	    break;
+	}
+	case Term.TAG_STRUCTURE: {
 	    SymbolTerm sym = SymbolTerm.makeSymbol(((StructureTerm)a1).functor().name());
 	    Term[] args = ((StructureTerm)a1).args();
 	    Term t = SYM_NIL;
@@ -55,7 +64,9 @@ public class PRED_$univ_2 extends Predicate {
 		t = new ListTerm(args[i-1], t);
 	    if (! a2.unify(new ListTerm(sym, t), engine.trail))
 		return engine.fail();
-	} else if (a1.isVariable()) {
+	    break;
+	}
+	case Term.TAG_VARIABLE: {
 	    a2 = a2.dereference();
 	    if (a2.isVariable())
 		throw new PInstantiationException(this, 2);
@@ -95,7 +106,9 @@ public class PRED_$univ_2 extends Predicate {
 	    }
 	    if (! a1.unify(new StructureTerm(sym, args), engine.trail))
 		return engine.fail();
-	} else {
+	    break;
+	}
+	default:
 	    return engine.fail();
 	}
         return cont;
@@ -58,7 +58,7 @@ public class PRED_arg_3 extends Predicate {
 	} else {
 	    throw new IllegalTypeException(this, 2, "compound", a2);
 	}
-	argNo = ((IntegerTerm)a1).intValue();
+	argNo = ((IntegerTerm)a1).intValueExact(this, 1);
 	if (argNo < 0)
 	    throw new IllegalDomainException(this, 1, "not_less_than_zero", a1);
 	if (argNo > arity || argNo < 1)
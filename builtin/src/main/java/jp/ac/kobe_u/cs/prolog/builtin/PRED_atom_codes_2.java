@@ -50,7 +50,7 @@ public class PRED_atom_codes_2 extends Predicate {
 		if (! car.isInteger()) 
 		    throw new RepresentationException(this, 2, "character_code");
 		// car is an integer
-		int i = ((IntegerTerm)car).intValue();
+		int i = ((IntegerTerm)car).intValueExact(this, 2);
 		if (! Character.isDefined((char)i))
 		    throw new RepresentationException(this, 2, "character_code");
 		sb.append((char)i);
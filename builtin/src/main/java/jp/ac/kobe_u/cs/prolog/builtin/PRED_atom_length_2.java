@@ -49,7 +49,7 @@ public class PRED_atom_length_2 extends Predicate {
 	    if (! a2.unify(new IntegerTerm(length), engine.trail))
 		return engine.fail();
 	} else if (a2.isInteger()) {
-	    int n = ((IntegerTerm)a2).intValue();
+	    int n = ((IntegerTerm)a2).intValueExact(this, 2);
 	    if (n < 0)
 		throw new IllegalDomainException(this, 2, "not_less_than_zero", a2);
 	    if (length != n)
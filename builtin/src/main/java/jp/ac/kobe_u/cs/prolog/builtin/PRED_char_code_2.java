@@ -42,7 +42,7 @@ public class PRED_char_code_2 extends Predicate {
 	    } else if (! a2.isInteger()) {
 		throw new IllegalTypeException(this, 2, "integer", a2);
 	    }
-	    int i = ((IntegerTerm)a2).intValue();
+	    int i = ((IntegerTerm)a2).intValueExact(this, 2);
 	    if (! Character.isDefined(i))
 		throw new RepresentationException(this, 2, "character_code");
 	    if (! a1.unify(SymbolTerm.makeSymbol(String.valueOf((char)i)), engine.trail))
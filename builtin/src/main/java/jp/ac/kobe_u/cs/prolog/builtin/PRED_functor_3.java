@@ -49,7 +49,7 @@ public class PRED_functor_3 extends Predicate {
 		throw new PInstantiationException(this, 3);
 	    if (! a3.isInteger())
 		throw new IllegalTypeException(this, 3, "integer", a3);
-	    int n = ((IntegerTerm)a3).intValue();
+	    int n = ((IntegerTerm)a3).intValueExact(this, 3);
 	    if (n < 0)
 		throw new IllegalDomainException(this, 3, "not_less_than_zero", a3);
 	    if (n == 0) {
@@ -76,16 +76,25 @@ public class PRED_functor_3 extends Predicate {
 	// functor(+X,?Y,?Z)
 	Term functor;
 	IntegerTerm arity;
-	if (a1.isSymbol() || a1.isNumber() || a1.isJavaObject() || a1.isClosure()) {
+	switch (a1.tag) {
+	case Term.TAG_SYMBOL:
+	case Term.TAG_INTEGER:
+	case Term.TAG_BIGINTEGER:
+	case Term.TAG_DOUBLE:
+	case Term.TAG_JAVA:
+	case Term.TAG_CLOSURE:
 	    functor = a1;
 	    arity   = new IntegerTerm(0);
-	} else if (a1.isList()) {
+	    break;
+	case Term.TAG_LIST:
 	    functor = SYM_DOT;
 	    arity   = new IntegerTerm(2);
-	} else if (a1.isStructure()) {
+	    break;
+	case Term.TAG_STRUCTURE:
 	    functor = SymbolTerm.makeSymbol(((StructureTerm)a1).name());
 	    arity   = new IntegerTerm(((StructureTerm)a1).arity());
-	} else {
+	    break;
+	default:
 	    return engine.fail();
 	}
 	if(! a2.unify(functor, engine.trail)) 
@@ -43,7 +43,7 @@ public class PRED_get_2 extends Predicate {
 	if (! a2.isVariable()) {
 	    if (! a2.isInteger())
 		throw new IllegalTypeException(this, 2, "integer", a2);
-	    int n = ((IntegerTerm)a2).intValue();
+	    int n = ((IntegerTerm)a2).intValueExact(this, 2);
 	    if (n != -1 && ! Character.isDefined(n))
 		throw new RepresentationException(this, 2, "in_character_code");
 	}
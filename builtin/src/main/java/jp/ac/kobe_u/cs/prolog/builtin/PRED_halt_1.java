@@ -38,7 +38,7 @@ public class PRED_halt_1 extends Predicate {
 	    throw new PInstantiationException(this, 1);
 	if (! a1.isInteger())
 	    throw new IllegalTypeException(this, 1, "integer", a1);
-	engine.exceptionRaised = ((IntegerTerm)a1).intValue();
+	engine.exceptionRaised = ((IntegerTerm)a1).intValueExact(this, 1);
         return cont;
     }
 }
@@ -1,5 +1,6 @@
 package jp.ac.kobe_u.cs.prolog.builtin;
 import jp.ac.kobe_u.cs.prolog.lang.*;
+import java.math.BigInteger;
 import java.util.Vector;
 /**
  * <code>java_conversion/2</code>
@@ -61,7 +62,9 @@ public class PRED_java_conversion_2 extends Predicate {
 		   o instanceof Short   ||
 		   o instanceof Integer ||
 		   o instanceof Long) {
-	    return new IntegerTerm(((Number)o).intValue());
+	    return IntegerTerm.valueOf(((Number)o).longValue());
+	} else if (o instanceof BigInteger) {
+	    return BigIntegerTerm.valueOf((BigInteger) o);
 	} else if (o instanceof Float || 
 		   o instanceof Double) {
 	    return new DoubleTerm(((Number)o).doubleValue());
@@ -60,7 +60,7 @@ public class PRED_number_chars_2 extends Predicate {
 		x = ((ListTerm)x).cdr().dereference();
 	    }
 	    try {
-		if (! a1.unify(new IntegerTerm(Integer.parseInt(sb.toString())), engine.trail))
+		if (! a1.unify(IntegerTerm.valueOf(sb.toString()), engine.trail))
 		    return engine.fail();
 		return cont;
 	    } catch (NumberFormatException e) {}
@@ -52,14 +52,14 @@ public class PRED_number_codes_2 extends Predicate {
 		if (! car.isInteger()) 
 		    throw new RepresentationException(this, 2, "character_code");
 		// car is an integer
-		int i = ((IntegerTerm)car).intValue();
+		int i = ((IntegerTerm)car).intValueExact(this, 2);
 		if (! Character.isDefined((char)i))
 		    throw new RepresentationException(this, 2, "character_code");
 		sb.append((char)i);
 		x = ((ListTerm)x).cdr().dereference();
 	    }
 	    try {
-		if (! a1.unify(new IntegerTerm(Integer.parseInt(sb.toString())), engine.trail))
+		if (! a1.unify(IntegerTerm.valueOf(sb.toString()), engine.trail))
 		    return engine.fail();
 		return cont;
 	    } catch (NumberFormatException e) {}
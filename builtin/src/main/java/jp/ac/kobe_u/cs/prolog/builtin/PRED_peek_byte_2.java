@@ -44,7 +44,7 @@ public class PRED_peek_byte_2 extends Predicate {
 	if (! a2.isVariable()) {
 	    if (! a2.isInteger())
 		throw new IllegalTypeException(this, 2, "in_byte", a2);
-	    int n = ((IntegerTerm)a2).intValue();
+	    int n = ((IntegerTerm)a2).intValueExact(this, 2);
 	    if (n != -1 && (n < 0 || n > 255))
 		throw new RepresentationException(this, 2, "in_byte");
 	}
@@ -46,7 +46,7 @@ public class PRED_put_byte_2 extends Predicate {
 	    throw new PInstantiationException(this, 2);
 	if (! a2.isInteger())
 	    throw new IllegalTypeException(this, 2, "byte", a2);
-	c = ((IntegerTerm)a2).intValue();
+	c = ((IntegerTerm)a2).intValueExact(this, 2);
 	if (c < 0 || c > 255)
 	    throw new IllegalTypeException(this, 2, "byte", a2);
 	// S_or_a
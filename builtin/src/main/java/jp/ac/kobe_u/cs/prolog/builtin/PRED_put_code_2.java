@@ -61,7 +61,7 @@ public class PRED_put_code_2 extends Predicate {
 	if (! (stream instanceof PrintWriter))
 	    throw new PermissionException(this, "output", "stream", a1, "");
 	// print single character
-	c = ((IntegerTerm)a2).intValue();
+	c = ((IntegerTerm)a2).intValueExact(this, 2);
 	if (! Character.isDefined(c))
 	    throw new RepresentationException(this, 2, "character");
 	((PrintWriter) stream).print((char)c);
@@ -52,7 +52,9 @@ public class PRED_skip_2 extends Predicate {
 		throw e;
 	    }
 	}
-	n = ((NumberTerm)a2).intValue();
+	if (! a2.isInteger())
+	    throw new IllegalTypeException(this, 2, "integer", a2);
+	n = ((IntegerTerm)a2).intValueExact(this, 2);
 	if (! Character.isDefined(n))
 	    throw new RepresentationException(this, 2, "character_code");
 	// S_or_a
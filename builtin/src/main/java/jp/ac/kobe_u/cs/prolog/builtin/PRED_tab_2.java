@@ -53,7 +53,9 @@ public class PRED_tab_2 extends Predicate {
 		throw e;
 	    }
 	}
-	n = ((NumberTerm)a2).intValue();
+	if (! a2.isInteger())
+	    throw new IllegalTypeException(this, 2, "integer", a2);
+	n = ((IntegerTerm)a2).intValueExact(this, 2);
 	// S_or_a
 	a1 = a1.dereference(); 
 	if (a1.isVariable()) {
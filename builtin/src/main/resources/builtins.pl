@@ -93,8 +93,10 @@ call(Term) :-
 	on_exception(X, '$meta_call'(Y, P, Cut, Depth, Mode), '$meta_call'(Z, P, Cut, Depth, Mode)).
 '$meta_call'(catch(X,Y,Z), P, Cut, Depth, Mode) :- !,
 	catch('$meta_call'(X, P, Cut, Depth, Mode), Y, '$meta_call'(Z, P, Cut, Depth, Mode)).
-%'$meta_call'(freeze(X,Y), P, Cut, Depth, Mode) :- !, ???
-%	freeze(X, '$meta_call'(Y, P, Cut, Depth, Mode)).
+'$meta_call'(freeze(X,Y), P, _, _, _) :- !,
+	freeze(X, P:Y).
+'$meta_call'(when(X,Y), P, _, _, _) :- !,
+	when(X, P:Y).
 '$meta_call'(synchronized(X,Y), P, Cut, Depth, Mode) :- !,
 	synchronized(X, '$meta_call'(Y, P, Cut, Depth, Mode)).
 '$meta_call'(clause(X, Y), P, _, _, _) :- !, clause(P:X, Y).
@@ -620,6 +622,7 @@ retractall(_).
 '$builtin_meta_predicates'(catch, 3, [:,?,:]).
 '$builtin_meta_predicates'(synchronized, 2, [?,:]).
 '$builtin_meta_predicates'(freeze, 2, [?,:]).
+'$builtin_meta_predicates'(when, 2, [?,:]).
 
 % clause --> term (for retract)
 '$clause_to_term'(Cl, T, Pkg:F/A, Goal) :- 
@@ -1672,6 +1675,14 @@ current_op(Priority, Op_specifier, Operator) :-
 '$current_operator'(  700, xfx, (>)).
 '$current_operator'(  700, xfx, (=<)).
 '$current_operator'(  700, xfx, (>=)).
+'$current_operator'(  700, xfx, (#=)).
+'$current_operator'(  700, xfx, (#\=)).
+'$current_operator'(  700, xfx, (#<)).
+'$current_operator'(  700, xfx, (#>)).
+'$current_operator'(  700, xfx, (#=<)).
+'$current_operator'(  700, xfx, (#>=)).
+'$current_operator'(  700, xfx, (in)).
+'$current_operator'(  700, xfx, (ins)).
 '$current_operator'(  550, xfy, (:)).
 '$current_operator'(  500, yfx, (+)).
 '$current_operator'(  500, yfx, (-)).
@@ -1679,6 +1690,7 @@ current_op(Priority, Op_specifier, Operator) :-
 '$current_operator'(  500, yfx, (/\)).
 '$current_operator'(  500, yfx, (\/)).
 '$current_operator'(  500,  fx, (+)).
+'$current_operator'(  450, xfx, (..)).
 '$current_operator'(  400, yfx, (*)).
 '$current_operator'(  400, yfx, (/)).
 '$current_operator'(  400, yfx, (//)).
@@ -1707,6 +1719,256 @@ repeat :- repeat.
 
 once(G) :- call(G), !.
 
+%:- public '$get_limit'/2, '$set_limit'/2.     written in Java
+%:- public '$new_limit'/3, '$limit_exceeded'/3. written in Java
+:- public call_with_inference_limit/3.
+:- public call_with_time_limit/2.
+
+call_with_inference_limit(G, L, R) :- integer(L), L >= 0, !,
+	'$get_limit'(inferences, Old),
+	'$new_limit'(inferences, L, New),
+	on_exception(E,
+		     '$call_with_inference_limit'(G, Old, New, R),
+		     '$inference_limit_error'(E, Old, New, R)).
+call_with_inference_limit(G, L, R) :- integer(L), !,
+	illarg(domain(integer,not_less_than_zero), call_with_inference_limit(G,L,R), 2).
+call_with_inference_limit(G, L, R) :-
+	illarg(type(integer), call_with_inference_limit(G,L,R), 2).
+
+'$call_with_inference_limit'(G, Old, New, R) :-
+	(   '$set_limit'(inferences, New) ; '$set_limit'(inferences, Old), fail   ),
+	'$get_current_B'(B0),
+	call(G),
+	'$get_current_B'(B),
+	(   B == B0 -> 
+	    !, '$set_limit'(inferences, Old), R = (!)
+	;   R = true,
+	    (   '$set_limit'(inferences, Old) ; '$set_limit'(inferences, New), fail   )
+	).
+
+'$inference_limit_error'(E, Old, New, R) :-
+	'$set_limit'(inferences, Old),
+	(   E = resource_error(_, inferences), '$limit_exceeded'(inferences, Old, New) ->
+	    R = inference_limit_exceeded
+	;   raise_exception(E)
+	).
+
+call_with_time_limit(T, G) :- number(T), T > 0, !,
+	'$get_limit'(time, Old),
+	'$new_limit'(time, T, New),
+	(   on_exception(E,
+			 '$call_with_time_limit'(G, Old, New),
+			 ('$set_limit'(time, Old), raise_exception(E))) ->
+	    true
+	;   '$set_limit'(time, Old), fail
+	).
+call_with_time_limit(T, G) :- number(T), !,
+	illarg(domain(number,greater_than_zero), call_with_time_limit(T,G), 1).
+call_with_time_limit(T, G) :-
+	illarg(type(number), call_with_time_limit(T,G), 1).
+
+'$call_with_time_limit'(G, Old, New) :-
+	'$set_limit'(time, New),
+	call(G),
+	!,
+	'$set_limit'(time, Old).
+
+%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+% Coroutining
+%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+%:- public '$suspend'/2, '$unifier_vars'/3. written in Java
+:- public freeze/2.
+:- public dif/2.
+:- public when/2.
+
+% A woken goal is called at the next call port after the binding that woke it.
+% Goals suspended on several variables share a variable Done, which is bound
+% when they are woken first, so that they run only once.
+
+freeze(X, Goal) :- var(X), !,
+	'$suspend'([X], '$freeze'(X, Goal)).
+freeze(_, Goal) :- call(Goal).
+
+'$freeze'(X, Goal) :- var(X), !,
+	'$suspend'([X], '$freeze'(X, Goal)).
+'$freeze'(_, Goal) :- call(Goal).
+
+dif(X, Y) :- '$unifier_vars'(X, Y, Vs), !,
+	Vs \== [],
+	'$suspend'(Vs, '$dif'(_Done, X, Y)).
+dif(_, _).
+
+'$dif'(Done, _, _) :- nonvar(Done), !.
+'$dif'(true, X, Y) :- dif(X, Y).
+
+when(Cond, Goal) :- var(Cond), !,
+	illarg(var, when(Cond,Goal), 1).
+when(Cond, Goal) :- '$when_condition'(Cond), !,
+	'$when'(_Done, Cond, Goal).
+when(Cond, Goal) :- 
+	illarg(domain(term,when_condition), when(Cond,Goal), 1).
+
+'$when_condition'(C) :- var(C), !, fail.
+'$when_condition'(nonvar(_)).
+'$when_condition'(ground(_)).
+'$when_condition'(?=(_,_)).
+'$when_condition'((C1,C2)) :- '$when_condition'(C1), '$when_condition'(C2).
+'$when_condition'((C1;C2)) :- '$when_condition'(C1), '$when_condition'(C2).
+
+'$when'(Done, _, _) :- nonvar(Done), !.
+'$when'(true, Cond, Goal) :- 
+	'$when_vars'(Cond, Vs),
+	(   Vs == [] -> call(Goal)
+	;   '$suspend'(Vs, '$when'(_Done, Cond, Goal))
+	).
+
+% variables whose binding may satisfy the condition; [] if it is satisfied.
+'$when_vars'(nonvar(X), Vs) :- !,
+	(var(X) -> Vs = [X] ; Vs = []).
+'$when_vars'(ground(X), Vs) :- !,
+	'$variables_set'(X, Xs),
+	(Xs = [V|_] -> Vs = [V] ; Vs = []).
+'$when_vars'(?=(X,Y), Vs) :- !,
+	('$unifier_vars'(X, Y, Vs0) -> Vs = Vs0 ; Vs = []).
+'$when_vars'((C1,C2), Vs) :- !,
+	'$when_vars'(C1, Vs1),
+	(Vs1 == [] -> '$when_vars'(C2, Vs) ; Vs = Vs1).
+'$when_vars'((C1;C2), Vs) :- 
+	'$when_vars'(C1, Vs1),
+	(   Vs1 == [] -> Vs = []
+	;   '$when_vars'(C2, Vs2),
+	    (Vs2 == [] -> Vs = [] ; '$builtin_append'(Vs1, Vs2, Vs))
+	).
+
+'$builtin_append'([], Zs, Zs).
+'$builtin_append'([X|Xs], Ys, [X|Zs]) :- '$builtin_append'(Xs, Ys, Zs).
+
+%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+% Finite domain constraints
+%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+%:- public '$fd_post'/3, '$fd_in'/2, '$fd_all_different'/1. written in Java
+%:- public '$fd_wake'/1, '$fd_select'/3, '$fd_info'/3.       written in Java
+:- public '#='/2, '#\\='/2, '#<'/2, '#>'/2, '#=<'/2, '#>='/2.
+:- public in/2, ins/2.
+:- public all_different/1, all_distinct/1.
+:- public label/1, labeling/2.
+:- public fd_dom/2, fd_inf/2, fd_sup/2, fd_size/2.
+
+% The domain and the propagators of a constrained variable are kept in a
+% suspended variable bound to it. Constraints are propagated in Java when a
+% domain changes, and when a constrained variable is bound by unification.
+% Expressions consist of variables, integers, +, -, and *.
+
+'#='(X, Y)  :- '$fd_post'('#=', X, Y).
+'#\\='(X, Y) :- '$fd_post'('#\\=', X, Y).
+'#<'(X, Y)  :- '$fd_post'('#<', X, Y).
+'#>'(X, Y)  :- '$fd_post'('#>', X, Y).
+'#=<'(X, Y) :- '$fd_post'('#=<', X, Y).
+'#>='(X, Y) :- '$fd_post'('#>=', X, Y).
+
+in(X, Dom) :- '$fd_in'(X, Dom).
+
+ins(Xs, Dom) :- '$fd_ins'(Xs, Dom, ins(Xs,Dom)).
+
+'$fd_ins'(Xs, _, G) :- var(Xs), !, illarg(var, G, 1).
+'$fd_ins'([], _, _) :- !.
+'$fd_ins'([X|Xs], Dom, G) :- !,
+	'$fd_in'(X, Dom),
+	'$fd_ins'(Xs, Dom, G).
+'$fd_ins'(_, _, G) :- illarg(type(list), G, 1).
+
+all_different(Xs) :- '$fd_all_different'(Xs).
+
+all_distinct(Xs) :- '$fd_all_different'(Xs).
+
+label(Xs) :- labeling([], Xs).
+
+labeling(Opts, Xs) :-
+	'$fd_labeling_options'(Opts, labeling(Opts,Xs), Sel, Ord, Choice),
+	'$fd_label'(Xs, Sel, Ord, Choice).
+
+'$fd_labeling_options'(Opts, G, _, _, _) :- var(Opts), !, illarg(var, G, 1).
+'$fd_labeling_options'([], _, Sel, Ord, Choice) :- !,
+	'$fd_default_option'(Sel, leftmost),
+	'$fd_default_option'(Ord, up),
+	'$fd_default_option'(Choice, step).
+'$fd_labeling_options'([O|Os], G, Sel, Ord, Choice) :- !,
+	'$fd_labeling_option'(O, G, Sel, Ord, Choice),
+	'$fd_labeling_options'(Os, G, Sel, Ord, Choice).
+'$fd_labeling_options'(_, G, _, _, _) :- illarg(type(list), G, 1).
+
+'$fd_labeling_option'(O, G, _, _, _) :- var(O), !, illarg(var, G, 1).
+'$fd_labeling_option'(O, G, Sel, _, _) :- '$fd_option'(selection, O), !,
+	'$fd_set_option'(Sel, O, G).
+'$fd_labeling_option'(O, G, _, Ord, _) :- '$fd_option'(order, O), !,
+	'$fd_set_option'(Ord, O, G).
+'$fd_labeling_option'(O, G, _, _, Choice) :- '$fd_option'(choice, O), !,
+	'$fd_set_option'(Choice, O, G).
+'$fd_labeling_option'(_, G, _, _, _) :- 
+	illarg(domain(term,labeling_option), G, 1).
+
+'$fd_option'(selection, leftmost).
+'$fd_option'(selection, ff).
+'$fd_option'(selection, ffc).
+'$fd_option'(selection, min).
+'$fd_option'(selection, max).
+'$fd_option'(order, up).
+'$fd_option'(order, down).
+'$fd_option'(choice, step).
+'$fd_option'(choice, enum).
+'$fd_option'(choice, bisect).
+
+% options of the same kind must not conflict.
+'$fd_set_option'(X, O, _) :- var(X), !, X = O.
+'$fd_set_option'(X, O, _) :- X == O, !.
+'$fd_set_option'(_, _, G) :- 
+	illarg(domain(term,labeling_option), G, 1).
+
+'$fd_default_option'(X, D) :- var(X), !, X = D.
+'$fd_default_option'(_, _).
+
+'$fd_label'(Xs, Sel, Ord, Choice) :-
+	(   '$fd_select'(Xs, Sel, X) ->
+	    '$fd_choice'(Choice, Ord, X),
+	    '$fd_label'(Xs, Sel, Ord, Choice)
+	;   true
+	).
+
+'$fd_choice'(step, Ord, X) :-
+	'$fd_first_value'(Ord, X, V),
+	(   '#='(X, V)
+	;   '#\\='(X, V)
+	).
+'$fd_choice'(enum, Ord, X) :-
+	'$fd_first_value'(Ord, X, V),
+	(   '#='(X, V)
+	;   '#\\='(X, V),
+	    '$fd_choice'(enum, Ord, X)
+	).
+'$fd_choice'(bisect, Ord, X) :-
+	'$fd_info'(X, inf, L),
+	'$fd_info'(X, sup, H),
+	M is (L+H) >> 1,
+	(   Ord == up ->
+	    (   '#=<'(X, M)
+	    ;   '#>'(X, M)
+	    )
+	;   (   '#>'(X, M)
+	    ;   '#=<'(X, M)
+	    )
+	).
+
+'$fd_first_value'(up, X, V)   :- '$fd_info'(X, inf, V).
+'$fd_first_value'(down, X, V) :- '$fd_info'(X, sup, V).
+
+fd_dom(X, Dom) :- '$fd_info'(X, dom, Dom).
+
+fd_inf(X, Inf) :- '$fd_info'(X, inf, Inf).
+
+fd_sup(X, Sup) :- '$fd_info'(X, sup, Sup).
+
+fd_size(X, Size) :- '$fd_info'(X, size, Size).
+
 %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
 % Atomic term processing
 %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
@@ -1762,6 +2024,11 @@ set_prolog_flag(Flag, Value) :-
 
 '$set_prolog_flag0'(no, Flag, Value, _) :- !,
         illarg(permission(modify,flag,Flag,_), set_prolog_flag(Flag,Value), _).
+'$set_prolog_flag0'(_, Flag, Value, positive_integer) :- !,
+	(   integer(Value), Value >= 1 ->
+	    '$set_prolog_impl_flag'(Flag, Value)
+	;   illarg(domain(term,flag_value), set_prolog_flag(Flag,Value), 2)
+	).
 '$set_prolog_flag0'(_, Flag, Value, Mode) :-
 	'$builtin_member'(Value, Mode),
 	!,
@@ -1789,6 +2056,9 @@ current_prolog_flag(Flag, Term) :-
 '$prolog_impl_flag'(unknown, [error,fail,warning], changeable(yes)).
 '$prolog_impl_flag'(double_quotes, [chars,codes,atom], changeable(no)).
 '$prolog_impl_flag'(print_stack_trace, [on,off], changeable(yes)).
+'$prolog_impl_flag'(initial_choice_stack_size, positive_integer, changeable(yes)).
+'$prolog_impl_flag'(initial_trail_size, positive_integer, changeable(yes)).
+'$prolog_impl_flag'(initial_internal_database_size, positive_integer, changeable(yes)).
 
 :- public halt/0.
 %:- public halt/1. (written in Java)
@@ -2430,6 +2700,8 @@ statistics(Key, Value) :-
 '$statistics_mode'(runtime).
 '$statistics_mode'(trail).
 '$statistics_mode'(choice).
+'$statistics_mode'(inferences).
+'$statistics_mode'(atoms).
 
 print_message(Type, Message) :- var(Type), !,
 	illarg(var, print_message(Type,Message), 1).
@@ -2504,6 +2776,11 @@ print_message(warning, Message) :- !,
 	'$fast_write'(': expected '), '$fast_write'(Type),
 	'$fast_write'(', found '), write(Culprit),
 	'$fast_write'('}'), nl.
+'$error_message'(resource_error(Goal,Resource)) :- !,
+	'$fast_write'('{RESOURCE ERROR: '),
+	'$write_goal'(Goal), 
+	'$fast_write'(' - '), '$fast_write'(Resource), '$fast_write'(' exhausted'),
+	'$fast_write'('}'), nl.
 '$error_message'(system_error(Message)) :- !,
 	'$fast_write'('{SYSTEM ERROR: '), write(Message), '$fast_write'('}'), nl.
 '$error_message'(internal_error(Message)) :- !,
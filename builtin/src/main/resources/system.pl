@@ -197,6 +197,27 @@ system_predicate(current_op(_,_,_)).
 system_predicate(\+(_)).
 system_predicate(once(_)).
 system_predicate(repeat).
+% Coroutining
+system_predicate(freeze(_,_)).
+system_predicate(dif(_,_)).
+system_predicate(when(_,_)).
+% Finite domain constraints
+system_predicate('#='(_,_)).
+system_predicate('#\\='(_,_)).
+system_predicate('#<'(_,_)).
+system_predicate('#>'(_,_)).
+system_predicate('#=<'(_,_)).
+system_predicate('#>='(_,_)).
+system_predicate(in(_,_)).
+system_predicate(ins(_,_)).
+system_predicate(all_different(_)).
+system_predicate(all_distinct(_)).
+system_predicate(label(_)).
+system_predicate(labeling(_,_)).
+system_predicate(fd_dom(_,_)).
+system_predicate(fd_inf(_,_)).
+system_predicate(fd_sup(_,_)).
+system_predicate(fd_size(_,_)).
 % Atomic term processing
 system_predicate(atom_length(_,_)).
 system_predicate(atom_concat(_,_,_)).
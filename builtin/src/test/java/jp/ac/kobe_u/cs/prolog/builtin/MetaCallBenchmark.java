@@ -0,0 +1,48 @@
+package jp.ac.kobe_u.cs.prolog.builtin;
+import  jp.ac.kobe_u.cs.prolog.lang.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+/**
+ * Microbenchmark of meta-calls.<br>
+ * Each round executes <code>'$call'(user, atom_length(abc,L))</code> 20000 times,
+ * which resolves the predicate of the goal and builds its frame without running it,
+ * and reports the time and the bytes allocated per call.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:../lang/target/classes jp.ac.kobe_u.cs.prolog.builtin.MetaCallBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class MetaCallBenchmark {
+    static final int CALLS = 20000;
+
+    /** Returns the bytes allocated by the current thread, or <code>-1</code> if unknown. */
+    static long allocated() {
+	ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+	if (mx instanceof com.sun.management.ThreadMXBean)
+	    return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+	return -1;
+    }
+
+    public static void main(String[] args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	Prolog engine = new PrologControl(new PrologClassLoader()).engine;
+	engine.init();
+	Term[] a = {SymbolTerm.makeSymbol("abc"), new VariableTerm()};
+	Term goal = new StructureTerm(SymbolTerm.makeSymbol("atom_length", 2), a);
+	Predicate call = new PRED_$call_2(SymbolTerm.makeSymbol("user"), goal, null);
+	for (int r = 0; r < rounds; r++) {
+	    long a0 = allocated();
+	    long t0 = System.nanoTime();
+	    for (int j = 0; j < CALLS; j++) {
+		if (call.exec(engine) == null)
+		    throw new AssertionError("no predicate for " + goal);
+	    }
+	    long t1 = System.nanoTime();
+	    long a1 = allocated();
+	    System.out.println(String.format("meta-call: %.0f ns", (t1 - t0) / (double) CALLS)
+			       + (a0 < 0 ? "" : "  " + (a1 - a0) / CALLS + " B"));
+	}
+    }
+}
@@ -0,0 +1,159 @@
+%   File   : clpfd.pl
+%   Updated: 17 October 2026
+%   Purpose: Finite domain constraint puzzles
+:- op(1150,  fx, (package)).
+package(_).
+:- package 'prolog.example'.
+
+% SEND + MORE = MONEY
+send_more_money([S,E,N,D,M,O,R,Y]) :-
+    Vars = [S,E,N,D,M,O,R,Y],
+    Vars ins 0..9,
+    all_different(Vars),
+    S #\= 0, M #\= 0,
+              1000*S + 100*E + 10*N + D
+            + 1000*M + 100*O + 10*R + E
+    #= 10000*M + 1000*O + 100*N + 10*E + Y,
+    labeling([], Vars).
+
+% N-queens, Qs are the rows of the queens in columns 1..N
+queens(N, Qs) :-
+    fd_length(Qs, N),
+    Qs ins 1..N,
+    safe_queens(Qs),
+    labeling([ff], Qs).
+
+safe_queens([]).
+safe_queens([Q|Qs]) :- safe_queens(Qs, Q, 1), safe_queens(Qs).
+
+safe_queens([], _, _).
+safe_queens([Q|Qs], Q0, D0) :-
+    Q0 #\= Q,
+    Q0 - Q #\= D0,
+    Q - Q0 #\= D0,
+    D1 is D0 + 1,
+    safe_queens(Qs, Q0, D1).
+
+% Sudoku, Rows is a list of 9 lists of 9 elements
+sudoku(Rows) :-
+    fd_append_all(Rows, Vs),
+    Vs ins 1..9,
+    fd_all_different_each(Rows),
+    fd_transpose(Rows, Cols),
+    fd_all_different_each(Cols),
+    Rows = [R1,R2,R3,R4,R5,R6,R7,R8,R9],
+    blocks(R1, R2, R3),
+    blocks(R4, R5, R6),
+    blocks(R7, R8, R9),
+    labeling([ff], Vs).
+
+blocks([], [], []).
+blocks([A,B,C|Bs1], [D,E,F|Bs2], [G,H,I|Bs3]) :-
+    all_different([A,B,C,D,E,F,G,H,I]),
+    blocks(Bs1, Bs2, Bs3).
+
+sudoku_problem(1, [[_,_,_,_,_,_,_,_,_],
+                   [_,_,_,_,_,3,_,8,5],
+                   [_,_,1,_,2,_,_,_,_],
+                   [_,_,_,5,_,7,_,_,_],
+                   [_,_,4,_,_,_,1,_,_],
+                   [_,9,_,_,_,_,_,_,_],
+                   [5,_,_,_,_,_,_,7,3],
+                   [_,_,2,_,1,_,_,_,_],
+                   [_,_,_,_,4,_,_,_,9]]).
+
+% Inkala's "hardest" sudoku
+sudoku_problem(2, [[8,_,_,_,_,_,_,_,_],
+                   [_,_,3,6,_,_,_,_,_],
+                   [_,7,_,_,9,_,2,_,_],
+                   [_,5,_,_,_,7,_,_,_],
+                   [_,_,_,_,4,5,7,_,_],
+                   [_,_,_,1,_,_,_,3,_],
+                   [_,_,1,_,_,_,_,6,8],
+                   [_,_,8,5,_,_,_,1,_],
+                   [_,9,_,_,_,_,4,_,_]]).
+
+% N-queens by generate-and-test, the baseline without constraints
+gt_queens(N, Qs) :-
+    gt_numlist(1, N, Ns),
+    gt_permutation(Ns, Qs),
+    gt_safe(Qs).
+
+gt_safe([]).
+gt_safe([Q|Qs]) :- gt_no_attack(Qs, Q, 1), gt_safe(Qs).
+
+gt_no_attack([], _, _).
+gt_no_attack([Q|Qs], Q0, D0) :-
+    Q0 =\= Q + D0,
+    Q0 =\= Q - D0,
+    D1 is D0 + 1,
+    gt_no_attack(Qs, Q0, D1).
+
+gt_numlist(L, H, []) :- L > H, !.
+gt_numlist(L, H, [L|Ls]) :- L1 is L + 1, gt_numlist(L1, H, Ls).
+
+gt_permutation([], []).
+gt_permutation(L, [X|Xs]) :- gt_select(X, L, L1), gt_permutation(L1, Xs).
+
+gt_select(X, [X|Xs], Xs).
+gt_select(X, [Y|Ys], [Y|Zs]) :- gt_select(X, Ys, Zs).
+
+fd_length([], 0) :- !.
+fd_length([_|L], N) :- N1 is N-1, fd_length(L, N1).
+
+fd_all_different_each([]).
+fd_all_different_each([L|Ls]) :- all_different(L), fd_all_different_each(Ls).
+
+fd_append_all([], []).
+fd_append_all([L|Ls], Vs) :- fd_append_all(Ls, Vs0), fd_append(L, Vs0, Vs).
+
+fd_append([], Zs, Zs).
+fd_append([X|Xs], Ys, [X|Zs]) :- fd_append(Xs, Ys, Zs).
+
+fd_transpose([[]|_], []) :- !.
+fd_transpose(Rows, [Col|Cols]) :-
+    fd_firsts(Rows, Col, Rests),
+    fd_transpose(Rests, Cols).
+
+fd_firsts([], [], []).
+fd_firsts([[X|Xs]|Rows], [X|Col], [Xs|Rests]) :- fd_firsts(Rows, Col, Rests).
+
+% Runs the puzzles and prints their solutions, and then times them.
+main :-
+    send_more_money(L), write(L), nl,
+    queens(8, Qs), write(Qs), nl,
+    sudoku_problem(1, Rows1), sudoku(Rows1), write_rows(Rows1), nl,
+    sudoku_problem(2, Rows2), sudoku(Rows2), write_rows(Rows2), nl,
+    benchmarks.
+
+write_rows([]).
+write_rows([R|Rs]) :- write(R), nl, write_rows(Rs).
+
+benchmarks :-
+    bench_all('SEND+MORE=MONEY', send_more_money(_)),
+    bench_all('8-queens', queens(8, _)),
+    bench_all('8-queens by generate-and-test', gt_queens(8, _)),
+    bench_first('20-queens', queens(20, _)),
+    bench_first('50-queens', queens(50, _)),
+    bench_first('100-queens', queens(100, _)),
+    bench_all('sudoku 1', (sudoku_problem(1, R1), sudoku(R1))),
+    bench_all('sudoku 2 (Inkala)', (sudoku_problem(2, R2), sudoku(R2))).
+
+% Prints the number of solutions of Goal and the time to find all of them.
+bench_all(Name, Goal) :-
+    statistics(runtime, [T0,_]),
+    findall(x, Goal, Xs),
+    statistics(runtime, [T1,_]),
+    length(Xs, N),
+    T is T1 - T0,
+    write(Name), write(': '), write(N), write(' solutions in '),
+    write(T), write(' ms'), nl.
+
+% Prints the time to find the first solution of Goal.
+bench_first(Name, Goal) :-
+    statistics(runtime, [T0,_]),
+    (call(Goal) -> R = 'first solution' ; R = 'no solution'),
+    statistics(runtime, [T1,_]),
+    T is T1 - T0,
+    write(Name), write(': '), write(R), write(' in '),
+    write(T), write(' ms'), nl.
@@ -0,0 +1,161 @@
+%   File   : coroutining.pl
+%   Updated: 18 October 2026
+%   Purpose: Coroutining with freeze/2, when/2, and dif/2
+:- op(1150,  fx, (package)).
+package(_).
+:- package 'prolog.example.coroutining'.
+
+% example(Name, Goal, Expected): Goal succeeds if Expected is yes, and fails if no.
+
+% Wakeup
+example('freeze/2 wakes when bound',
+        (freeze(X, W = woken), var(W), X = 1, W == woken), yes).
+example('freeze/2 waits while aliased',
+        (freeze(X, W = woken), X = Y, var(W), Y = 1, W == woken), yes).
+example('freeze/2 on a bound variable runs at once',
+        (freeze(1, W = woken), W == woken), yes).
+example('freeze/2 goal can fail the binding',
+        (freeze(X, X > 1), X = 1), no).
+example('freeze/2 goals run in order',
+        (freeze(X, L = [a|L1]), freeze(X, L1 = [b]), X = 1, L == [a,b]), yes).
+example('freeze/2 wakes again after backtracking',
+        (freeze(X, N = 1), findall(N, (X = 1 ; X = 2), Ns), Ns == [1,1]), yes).
+example('when/2 ground waits for all variables',
+        (when(ground(f(X,Y)), W = woken), X = 1, var(W), Y = 2, W == woken), yes).
+example('when/2 disjunction runs once',
+        (when((nonvar(X) ; nonvar(Y)), L = [x|_]), X = 1, Y = 2, L = [_]), yes).
+example('when/2 ?= wakes when decidable',
+        (when(?=(X, Y), W = woken), X = a, var(W), Y = b, W == woken), yes).
+example('dif/2 of distinct terms',
+        (dif(X, Y), X = a, Y = b), yes).
+example('dif/2 of equal terms',
+        (dif(X, Y), X = a, Y = a), no).
+example('dif/2 waits on the unifier',
+        (dif(f(X,b), f(a,Y)), X = a, Y = b), no).
+example('dif/2 of aliased variables',
+        (dif(X, Y), X = Y), no).
+example('dif/2 of non-unifiable terms',
+        (dif(f(X), g(X)), X = a), yes).
+
+% copy_term/2 copies the goals suspended on the variables
+example('copy_term/2 copies frozen goals',
+        (freeze(X, fail), copy_term(X, Y), Y = 1), no).
+example('copy_term/2 leaves the original suspended',
+        (freeze(X, W = woken), copy_term(X-W, Y-V), Y = 1, var(W), V == woken), yes).
+example('copy_term/2 copies dif/2',
+        (dif(A, B), copy_term(A-B, C-D), C = x, D = x), no).
+example('copy_term/2 copies when/2',
+        (when(nonvar(X), W = woken), copy_term(X-W, Y-V), Y = 1, var(W), V == woken), yes).
+
+% findall/3 copies the goals suspended on the variables of its results
+example('findall/3 copies frozen goals',
+        (freeze(X, fail), findall(X, true, [Y]), Y = 1), no).
+example('findall/3 results can be woken',
+        (freeze(X, true), findall(X, true, [Y]), Y = 1), yes).
+example('findall/3 copies dif/2',
+        (findall(A-B, dif(A, B), [C-D]), C = x, D = x), no).
+
+% N-queens with freeze/2,
+% where each pair of queens is checked as soon as both are placed
+fz_queens(N, Qs) :-
+    q_numlist(1, N, Ns),
+    q_length(Qs, N),
+    fz_safe(Qs),
+    q_place(Qs, Ns).
+
+fz_safe([]).
+fz_safe([Q|Qs]) :- fz_no_attack(Qs, Q, 1), fz_safe(Qs).
+
+fz_no_attack([], _, _).
+fz_no_attack([Q|Qs], Q0, D0) :-
+    freeze(Q0, freeze(Q, (Q0 =\= Q, Q0 =\= Q + D0, Q0 =\= Q - D0))),
+    D1 is D0 + 1,
+    fz_no_attack(Qs, Q0, D1).
+
+% N-queens with dif/2 on the rows and freeze/2 on the diagonals
+dif_queens(N, Qs) :-
+    q_numlist(1, N, Ns),
+    q_length(Qs, N),
+    dif_safe(Qs),
+    q_place(Qs, Ns).
+
+dif_safe([]).
+dif_safe([Q|Qs]) :- dif_no_attack(Qs, Q, 1), dif_safe(Qs).
+
+dif_no_attack([], _, _).
+dif_no_attack([Q|Qs], Q0, D0) :-
+    dif(Q0, Q),
+    freeze(Q0, freeze(Q, (Q0 =\= Q + D0, Q0 =\= Q - D0))),
+    D1 is D0 + 1,
+    dif_no_attack(Qs, Q0, D1).
+
+% N-queens by generate-and-test, the baseline without coroutining
+gt_queens(N, Qs) :-
+    q_numlist(1, N, Ns),
+    q_permutation(Ns, Qs),
+    gt_safe(Qs).
+
+gt_safe([]).
+gt_safe([Q|Qs]) :- gt_no_attack(Qs, Q, 1), gt_safe(Qs).
+
+gt_no_attack([], _, _).
+gt_no_attack([Q|Qs], Q0, D0) :-
+    Q0 =\= Q + D0,
+    Q0 =\= Q - D0,
+    D1 is D0 + 1,
+    gt_no_attack(Qs, Q0, D1).
+
+q_numlist(L, H, []) :- L > H, !.
+q_numlist(L, H, [L|Ls]) :- L1 is L + 1, q_numlist(L1, H, Ls).
+
+q_length([], 0) :- !.
+q_length([_|L], N) :- N1 is N - 1, q_length(L, N1).
+
+q_place([], _).
+q_place([Q|Qs], Ns) :- q_member(Q, Ns), q_place(Qs, Ns).
+
+q_member(X, [X|_]).
+q_member(X, [_|Xs]) :- q_member(X, Xs).
+
+q_permutation([], []).
+q_permutation(L, [X|Xs]) :- q_select(X, L, L1), q_permutation(L1, Xs).
+
+q_select(X, [X|Xs], Xs).
+q_select(X, [Y|Ys], [Y|Zs]) :- q_select(X, Ys, Zs).
+
+% Runs the examples, and then times the queens.
+main :-
+    examples,
+    fz_queens(8, Qs), write(Qs), nl,
+    benchmarks.
+
+examples :-
+    example(Name, Goal, Expected),
+    (\+ \+ call(Goal) -> Result = yes ; Result = no),
+    write(Name), write(': '), write(Result),
+    (Result == Expected -> true ; write(' (expected '), write(Expected), write(')')),
+    nl,
+    fail.
+examples.
+
+benchmarks :-
+    bench_all(6), bench_all(7), bench_all(8).
+
+bench_all(N) :-
+    bench_all(N, 'generate-and-test', gt_queens(N, _)),
+    bench_all(N, 'freeze', fz_queens(N, _)),
+    bench_all(N, 'freeze + dif', dif_queens(N, _)).
+
+% Prints the number of solutions of Goal, and the inferences and time to find all of them.
+bench_all(N, Name, Goal) :-
+    statistics(inferences, I0),
+    statistics(runtime, [T0,_]),
+    findall(x, Goal, Xs),
+    statistics(runtime, [T1,_]),
+    statistics(inferences, I1),
+    length(Xs, S),
+    T is T1 - T0,
+    I is I1 - I0,
+    write(N), write('-queens by '), write(Name), write(': '),
+    write(S), write(' solutions, '), write(I), write(' inferences in '),
+    write(T), write(' ms'), nl.
@@ -1,8 +1,13 @@
 package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.concurrent.ConcurrentHashMap;
 /**
  * The <code>Arithmetic</code> class contains a method
  * for evaluating arithmetic expressions.<br>
- * This class is mainly used by the builtin predicate <code>is/2</code>.
+ * This class is mainly used by the builtin predicate <code>is/2</code>.<br>
+ * Each evaluable functor holds an operation code (see <code>SymbolTerm.arithOp</code>)
+ * on which <code>evaluate</code> dispatches, so that the cost of evaluating a compound
+ * expression does not depend on the number of evaluable functors.
+ * Java functions can be added as evaluable functors by <code>register</code>.
  *
  * @author Mutsunori Banbara (banbara@kobe-u.ac.jp)
  * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
@@ -52,116 +57,469 @@ public class Arithmetic {
     static SymbolTerm SYM_FRACTPART_1  = SymbolTerm.makeSymbol("float_fractional_part", 1);
     static SymbolTerm SYM_TRUNCATE_1   = SymbolTerm.makeSymbol("truncate", 1);
 
+    /* Operation codes. Code 0 means that the symbol is not evaluable. */
+    /* arity 0 */
+    private static final int OP_RANDOM     = 1;
+    private static final int OP_PI         = 2;
+    private static final int OP_E          = 3;
+    /* arity 1 */
+    private static final int OP_ADD_1      = 4;
+    private static final int OP_NEGATE_1   = 5;
+    private static final int OP_NOT_1      = 6;
+    private static final int OP_ABS_1      = 7;
+    private static final int OP_ACOS_1     = 8;
+    private static final int OP_ASIN_1     = 9;
+    private static final int OP_ATAN_1     = 10;
+    private static final int OP_CEIL_1     = 11;
+    private static final int OP_COS_1      = 12;
+    private static final int OP_DEGREES_1  = 13;
+    private static final int OP_EXP_1      = 14;
+    private static final int OP_FLOOR_1    = 15;
+    private static final int OP_LOG_1      = 16;
+    private static final int OP_RADIANS_1  = 17;
+    private static final int OP_RINT_1     = 18;
+    private static final int OP_ROUND_1    = 19;
+    private static final int OP_SIN_1      = 20;
+    private static final int OP_SQRT_1     = 21;
+    private static final int OP_TAN_1      = 22;
+    private static final int OP_SIGN_1     = 23;
+    private static final int OP_FLOAT_1    = 24;
+    private static final int OP_INTPART_1  = 25;
+    private static final int OP_FRACTPART_1= 26;
+    private static final int OP_TRUNCATE_1 = 27;
+    /* arity 2 */
+    private static final int OP_ADD_2        = 28;
+    private static final int OP_SUBTRACT_2   = 29;
+    private static final int OP_MULTIPLY_2   = 30;
+    private static final int OP_DIVIDE_2     = 31;
+    private static final int OP_INTDIVIDE_2  = 32;
+    private static final int OP_MOD_2        = 33;
+    private static final int OP_SHIFTLEFT_2  = 34;
+    private static final int OP_SHIFTRIGHT_2 = 35;
+    private static final int OP_AND_2        = 36;
+    private static final int OP_OR_2         = 37;
+    private static final int OP_XOR_2        = 38;
+    private static final int OP_POW_2        = 39;
+    private static final int OP_MAX_2        = 40;
+    private static final int OP_MIN_2        = 41;
+    /* any arity */
+    private static final int OP_USER         = 42;
+
+    static {
+	SYM_RANDOM.arithOp       = OP_RANDOM;
+	SYM_PI.arithOp           = OP_PI;
+	SYM_E.arithOp            = OP_E;
+	SYM_ADD_1.arithOp        = OP_ADD_1;
+	SYM_NEGATE_1.arithOp     = OP_NEGATE_1;
+	SYM_ADD_2.arithOp        = OP_ADD_2;
+	SYM_SUBTRACT_2.arithOp   = OP_SUBTRACT_2;
+	SYM_MULTIPLY_2.arithOp   = OP_MULTIPLY_2;
+	SYM_DIVIDE_2.arithOp     = OP_DIVIDE_2;
+	SYM_INTDIVIDE_2.arithOp  = OP_INTDIVIDE_2;
+	SYM_MOD_2.arithOp        = OP_MOD_2;
+	SYM_SHIFTLEFT_2.arithOp  = OP_SHIFTLEFT_2;
+	SYM_SHIFTRIGHT_2.arithOp = OP_SHIFTRIGHT_2;
+	SYM_NOT_1.arithOp        = OP_NOT_1;
+	SYM_AND_2.arithOp        = OP_AND_2;
+	SYM_OR_2.arithOp         = OP_OR_2;
+	SYM_XOR_2.arithOp        = OP_XOR_2;
+	SYM_POW_2.arithOp        = OP_POW_2;
+	SYM_ABS_1.arithOp        = OP_ABS_1;
+	SYM_ACOS_1.arithOp       = OP_ACOS_1;
+	SYM_ASIN_1.arithOp       = OP_ASIN_1;
+	SYM_ATAN_1.arithOp       = OP_ATAN_1;
+	SYM_CEIL_1.arithOp       = OP_CEIL_1;
+	SYM_COS_1.arithOp        = OP_COS_1;
+	SYM_DEGREES_1.arithOp    = OP_DEGREES_1;
+	SYM_EXP_1.arithOp        = OP_EXP_1;
+	SYM_FLOOR_1.arithOp      = OP_FLOOR_1;
+	SYM_LOG_1.arithOp        = OP_LOG_1;
+	SYM_MAX_2.arithOp        = OP_MAX_2;
+	SYM_MIN_2.arithOp        = OP_MIN_2;
+	SYM_RADIANS_1.arithOp    = OP_RADIANS_1;
+	SYM_RINT_1.arithOp       = OP_RINT_1;
+	SYM_ROUND_1.arithOp      = OP_ROUND_1;
+	SYM_SIN_1.arithOp        = OP_SIN_1;
+	SYM_SQRT_1.arithOp       = OP_SQRT_1;
+	SYM_TAN_1.arithOp        = OP_TAN_1;
+	SYM_REM_2.arithOp        = OP_MOD_2;
+	SYM_SIGN_1.arithOp       = OP_SIGN_1;
+	SYM_FLOAT_1.arithOp      = OP_FLOAT_1;
+	SYM_INTPART_1.arithOp    = OP_INTPART_1;
+	SYM_FRACTPART_1.arithOp  = OP_FRACTPART_1;
+	SYM_TRUNCATE_1.arithOp   = OP_TRUNCATE_1;
+    }
+
+    /** Holds the functions registered by <code>register</code>, keyed by their functor symbols. */
+    private static final ConcurrentHashMap<SymbolTerm,ArithmeticFunction> FUNCTIONS
+	= new ConcurrentHashMap<SymbolTerm,ArithmeticFunction>();
+
+    /**
+     * The nesting depth of expressions beyond which <code>evaluate</code>
+     * switches from recursion to an explicit stack.
+     */
+    private static final int MAX_RECURSION = 256;
+
+    /** <code>LONG_OPS[op]</code> is <code>true</code> if <code>evaluateLong</code> computes <code>op</code>. */
+    private static final boolean[] LONG_OPS = new boolean[OP_USER + 1];
+
+    static {
+	int[] ops = {
+	    OP_ADD_1, OP_NEGATE_1, OP_NOT_1, OP_ABS_1, OP_SIGN_1,
+	    OP_ADD_2, OP_SUBTRACT_2, OP_MULTIPLY_2, OP_INTDIVIDE_2, OP_MOD_2,
+	    OP_SHIFTLEFT_2, OP_SHIFTRIGHT_2, OP_AND_2, OP_OR_2, OP_XOR_2, OP_MAX_2, OP_MIN_2
+	};
+	for (int i = 0; i < ops.length; i++)
+	    LONG_OPS[ops[i]] = true;
+    }
+
+    /**
+     * Returned by <code>evaluateLong</code> for expressions that it does not compute.
+     * An expression whose value happens to be <code>NOT_LONG</code> is just evaluated twice.
+     */
+    private static final long NOT_LONG = Long.MIN_VALUE + 0x5bd1e995L;
+
+    /**
+     * Registers <code>f</code> as the evaluable functor <code>_name/_arity</code>.
+     * A function registered under the same name and arity is replaced.
+     *
+     * @exception PermissionException if <code>_name/_arity</code> is a standard evaluable functor.
+     */
+    public static void register(String _name, int _arity, ArithmeticFunction f) {
+	SymbolTerm func = SymbolTerm.makeSymbol(_name, _arity);
+	if (func.arithOp != 0 && func.arithOp != OP_USER)
+	    throw new PermissionException(null, "modify", "evaluable", func, "standard evaluable functor");
+	FUNCTIONS.put(func, f);
+	func.arithOp = OP_USER;
+    }
+
+    /**
+     * Removes the function registered as the evaluable functor <code>_name/_arity</code>, if any.
+     */
+    public static void unregister(String _name, int _arity) {
+	SymbolTerm func = SymbolTerm.makeSymbol(_name, _arity);
+	if (func.arithOp != OP_USER)
+	    return;
+	func.arithOp = 0;
+	FUNCTIONS.remove(func);
+    }
+
     /**
      * Evaluates <code>_t</code> as an arithmetic expression, 
      * and returns the resulting number as <code>NumberTerm</code>.
+     * Small integer expressions are computed on <code>long</code> values,
+     * so that only the result is boxed.
+     * Expressions nested deeper than <code>MAX_RECURSION</code> are evaluated
+     * with an explicit stack, so that they do not overflow the Java stack.
      *
      * @exception PInstantiationException if <code>_t</code> contains unbound variables.
      * @exception IllegalDomainException if <code>_t</code> is not an arithmetic expression.
      */
     public static NumberTerm evaluate(Term _t) 
 	throws PInstantiationException,IllegalDomainException {
-	Term t = _t.dereference();
+	Term t = TermTraversal.deref(_t);
+	if (t.tag == Term.TAG_STRUCTURE && LONG_OPS[((StructureTerm)t).functor.arithOp]) {
+	    long v = evaluateLong(t, 0);
+	    if (v != NOT_LONG)
+		return IntegerTerm.valueOf(v);
+	}
+	return evaluate(t, 0);
+    }
 
-	if (t.isVariable())
+    /** Checks whether <code>t</code> is an integer or an operation in <code>LONG_OPS</code>. */
+    private static boolean isLongOperand(Term t) {
+	t = TermTraversal.deref(t);
+	return t.tag == Term.TAG_INTEGER
+	    || (t.tag == Term.TAG_STRUCTURE && LONG_OPS[((StructureTerm)t).functor.arithOp]);
+    }
+
+    /**
+     * Evaluates <code>_t</code> on <code>long</code> values if it is made of the operations
+     * in <code>LONG_OPS</code> on integers that fit in a <code>long</code>.
+     * The arguments of each operation are checked by <code>isLongOperand</code> before any of them is evaluated,
+     * so that an expression mixing integers and floats, such as <code>1.5*3+1</code>, is given up
+     * without computing its integer parts, which the boxed evaluator would compute again.
+     * The arguments are then evaluated from left to right, so that errors are the same as by <code>IntegerTerm</code>.
+     * @return the value of <code>_t</code>, or <code>NOT_LONG</code> if <code>_t</code> is
+     * not such an expression, is nested too deeply, or its value does not fit in a <code>long</code>.
+     */
+    private static long evaluateLong(Term _t, int depth) {
+	Term t = TermTraversal.deref(_t);
+	if (t.tag == Term.TAG_INTEGER)
+	    return ((IntegerTerm)t).val;
+	if (depth >= MAX_RECURSION)
+	    return NOT_LONG;
+	int op = ((StructureTerm)t).functor.arithOp;
+	Term[] args = ((StructureTerm)t).args;
+	for (int i = 0; i < args.length; i++) {
+	    if (! isLongOperand(args[i]))
+		return NOT_LONG;
+	}
+	long x = evaluateLong(args[0], depth+1);
+	if (x == NOT_LONG)
+	    return NOT_LONG;
+	switch (op) {
+	case OP_ADD_1:
+	    return x;
+	case OP_NEGATE_1:
+	    if (x == Long.MIN_VALUE)
+		return NOT_LONG;
+	    return - x;
+	case OP_NOT_1:
+	    return ~ x;
+	case OP_ABS_1:
+	    if (x == Long.MIN_VALUE)
+		return NOT_LONG;
+	    return x < 0 ? - x : x;
+	case OP_SIGN_1:
+	    return Long.signum(x);
+	}
+	long y = evaluateLong(args[1], depth+1);
+	if (y == NOT_LONG)
+	    return NOT_LONG;
+	long r;
+	switch (op) {
+	case OP_ADD_2:
+	    r = x + y;
+	    return ((x ^ r) & (y ^ r)) < 0 ? NOT_LONG : r;
+	case OP_SUBTRACT_2:
+	    r = x - y;
+	    return ((x ^ y) & (x ^ r)) < 0 ? NOT_LONG : r;
+	case OP_MULTIPLY_2:
+	    r = x * y;
+	    if (((Math.abs(x) | Math.abs(y)) >>> 31) != 0
+		&& (y != 0 && (r / y != x || (x == Long.MIN_VALUE && y == -1))))
+		return NOT_LONG;
+	    return r;
+	case OP_INTDIVIDE_2:
+	    if (y == 0)
+		throw new EvaluationException("zero_divisor");
+	    if (x == Long.MIN_VALUE && y == -1)
+		return NOT_LONG;
+	    return x / y;
+	case OP_MOD_2:
+	    if (y == 0)
+		throw new EvaluationException("zero_divisor");
+	    return x % y;
+	case OP_SHIFTLEFT_2:
+	    if (y < 0 || y >= 64 || ((x << y) >> y) != x)
+		return NOT_LONG;
+	    return x << y;
+	case OP_SHIFTRIGHT_2:
+	    if (y < 0 || y > Integer.MAX_VALUE)
+		return NOT_LONG;
+	    return y < 64 ? x >> y : x >> 63;
+	case OP_AND_2:
+	    return x & y;
+	case OP_OR_2:
+	    return x | y;
+	case OP_XOR_2:
+	    return x ^ y;
+	case OP_MAX_2:
+	    return x >= y ? x : y;
+	case OP_MIN_2:
+	    return x <= y ? x : y;
+	default:
+	    throw new InternalException("Invalid integer arithmetic operation " + op);
+	}
+    }
+
+    /** Evaluates <code>_t</code> at the given nesting depth. */
+    private static NumberTerm evaluate(Term _t, int depth) {
+	Term t = TermTraversal.deref(_t);
+	if (depth >= MAX_RECURSION)
+	    return evaluateIteratively(t);
+	if (t.tag == Term.TAG_LIST)
+	    return evaluate(((ListTerm)t).car(), depth+1);
+	if (t.tag != Term.TAG_STRUCTURE)
+	    return evaluateAtomic(t);
+
+	SymbolTerm func = ((StructureTerm)t).functor;
+	Term[] args = ((StructureTerm)t).args;
+	int op = func.arithOp;
+	if (op >= OP_ADD_2 && op < OP_USER)
+	    return apply(op, evaluate(args[0], depth+1), evaluate(args[1], depth+1));
+	if (op >= OP_ADD_1 && op < OP_ADD_2)
+	    return apply(op, evaluate(args[0], depth+1));
+	if (op == OP_USER) {
+	    NumberTerm[] vals = new NumberTerm[args.length];
+	    for (int i = 0; i < vals.length; i++)
+		vals[i] = evaluate(args[i], depth+1);
+	    return apply(func, vals);
+	}
+	throw new IllegalDomainException("arithmetic expression", t);
+    }
+
+    /** Evaluates a dereferenced term that is neither a compound term nor a list. */
+    private static NumberTerm evaluateAtomic(Term t) {
+	switch (t.tag) {
+	case Term.TAG_VARIABLE:
 	    throw new PInstantiationException();
-	else if (t.isInteger())
-	    return (IntegerTerm)t;
-	else if (t.isDouble())
-	    return (DoubleTerm)t;
-	else if (t.equals(SYM_RANDOM))
-	    return new DoubleTerm(Math.random());
-	else if (t.equals(SYM_PI))
-	    return new DoubleTerm(Math.PI);
-	else if (t.equals(SYM_E))
-	    return new DoubleTerm(Math.E);
-	else if (t.isList())
-	    return evaluate(((ListTerm)t).car());
-	else if (! t.isStructure()) 
+	case Term.TAG_INTEGER:
+	case Term.TAG_BIGINTEGER:
+	case Term.TAG_DOUBLE:
+	    return (NumberTerm)t;
+	case Term.TAG_SYMBOL:
+	    switch (((SymbolTerm)t).arithOp) {
+	    case OP_RANDOM:
+		return new DoubleTerm(Math.random());
+	    case OP_PI:
+		return new DoubleTerm(Math.PI);
+	    case OP_E:
+		return new DoubleTerm(Math.E);
+	    case OP_USER:
+		return apply((SymbolTerm)t, new NumberTerm[0]);
+	    default:
+		throw new IllegalDomainException("arithmetic expression", t);
+	    }
+	default:
 	    throw new IllegalDomainException("arithmetic expression", t);
+	}
+    }
 
-	SymbolTerm func = ((StructureTerm)t).functor();
-	Term[] args = ((StructureTerm)t).args();
-
-	if (func.equals(SYM_ADD_1))
-	    return evaluate(args[0]);
-	else if (func.equals(SYM_NEGATE_1))
-	    return evaluate(args[0]).negate();
-	else if (func.equals(SYM_ADD_2))
-	    return evaluate(args[0]).add(evaluate(args[1]));
-	else if (func.equals(SYM_SUBTRACT_2))
-	    return evaluate(args[0]).subtract(evaluate(args[1]));
-	else if (func.equals(SYM_MULTIPLY_2))
-	    return evaluate(args[0]).multiply(evaluate(args[1]));
-	else if (func.equals(SYM_INTDIVIDE_2))
-	    return evaluate(args[0]).intDivide(evaluate(args[1]));
-	else if (func.equals(SYM_DIVIDE_2))
-	    return evaluate(args[0]).divide(evaluate(args[1]));
-	else if (func.equals(SYM_MOD_2))
-	    return evaluate(args[0]).mod(evaluate(args[1]));
-	else if (func.equals(SYM_REM_2))
-	    return evaluate(args[0]).mod(evaluate(args[1]));
-	else if (func.equals(SYM_AND_2))
-	    return evaluate(args[0]).and(evaluate(args[1]));
-	else if (func.equals(SYM_OR_2))
-	    return evaluate(args[0]).or(evaluate(args[1]));
-	else if (func.equals(SYM_XOR_2))
-	    return evaluate(args[0]).xor(evaluate(args[1]));
-	else if (func.equals(SYM_NOT_1))
-	    return evaluate(args[0]).not();
-	else if (func.equals(SYM_SHIFTLEFT_2))
-	    return evaluate(args[0]).shiftLeft(evaluate(args[1]));
-	else if (func.equals(SYM_SHIFTRIGHT_2))
-	    return evaluate(args[0]).shiftRight(evaluate(args[1]));
-	else if (func.equals(SYM_ABS_1))
-	    return evaluate(args[0]).abs();
-	else if (func.equals(SYM_MIN_2))
-	    return evaluate(args[0]).min(evaluate(args[1]));
-	else if (func.equals(SYM_MAX_2))
-	    return evaluate(args[0]).max(evaluate(args[1]));
-	else if (func.equals(SYM_RINT_1))
-	    return evaluate(args[0]).rint();
-	else if (func.equals(SYM_ROUND_1))
-	    return evaluate(args[0]).round();
-	else if (func.equals(SYM_FLOOR_1))
-	    return evaluate(args[0]).floor();
-	else if (func.equals(SYM_CEIL_1))
-	    return evaluate(args[0]).ceil();
-	else if (func.equals(SYM_SIN_1))
-	    return evaluate(args[0]).sin();
-	else if (func.equals(SYM_COS_1))
-	    return evaluate(args[0]).cos();
-	else if (func.equals(SYM_TAN_1))
-	    return evaluate(args[0]).tan();
-	else if (func.equals(SYM_ASIN_1))
-	    return evaluate(args[0]).asin();
-	else if (func.equals(SYM_ACOS_1))
-	    return evaluate(args[0]).acos();
-	else if (func.equals(SYM_ATAN_1))
-	    return evaluate(args[0]).atan();
-	else if (func.equals(SYM_SQRT_1))
-	    return evaluate(args[0]).sqrt();
-	else if (func.equals(SYM_LOG_1))
-	    return evaluate(args[0]).log();
-	else if (func.equals(SYM_EXP_1))
-	    return evaluate(args[0]).exp();
-	else if (func.equals(SYM_POW_2))
-	    return evaluate(args[0]).pow(evaluate(args[1]));
-	else if (func.equals(SYM_DEGREES_1))
-	    return evaluate(args[0]).toDegrees();
-	else if (func.equals(SYM_RADIANS_1))
-	    return evaluate(args[0]).toRadians();
-	else if (func.equals(SYM_SIGN_1))
-	    return evaluate(args[0]).signum();
-	else if (func.equals(SYM_FLOAT_1))
-	    return evaluate(args[0]).toFloat();
-	else if (func.equals(SYM_INTPART_1))
-	    return evaluate(args[0]).floatIntPart();
-	else if (func.equals(SYM_FRACTPART_1))
-	    return evaluate(args[0]).floatFractPart();
-	else if (func.equals(SYM_TRUNCATE_1))
-	    return evaluate(args[0]).truncate();
-	else
-	    throw new IllegalDomainException("arithmetic expression", t);
+    /**
+     * Evaluates the dereferenced term <code>t</code> without recursion.
+     * The arguments of each compound term are evaluated from left to right,
+     * in the same order as by the recursive evaluation.
+     */
+    private static NumberTerm evaluateIteratively(Term t) {
+	/* Pending work: a term to evaluate, or a compound term whose arguments
+	 * are on the value stack, marked by a negative arity. */
+	Term[] work = new Term[64];
+	int[] mark = new int[64];
+	int wp = 0;
+	NumberTerm[] vals = new NumberTerm[64];
+	int vp = 0;
+
+	work[wp] = t;
+	mark[wp++] = 0;
+	while (wp > 0) {
+	    Term x = work[--wp];
+	    int m = mark[wp];
+	    work[wp] = null;
+	    if (m < 0) {
+		StructureTerm s = (StructureTerm)x;
+		int op = s.functor.arithOp;
+		NumberTerm v;
+		if (op == OP_USER) {
+		    NumberTerm[] a = new NumberTerm[-m];
+		    vp -= a.length;
+		    System.arraycopy(vals, vp, a, 0, a.length);
+		    v = apply(s.functor, a);
+		} else if (op >= OP_ADD_2) {
+		    vp -= 2;
+		    v = apply(op, vals[vp], vals[vp+1]);
+		} else {
+		    vp -= 1;
+		    v = apply(op, vals[vp]);
+		}
+		for (int i = vp - m - 1; i > vp; i--)
+		    vals[i] = null;
+		vals[vp++] = v;
+		continue;
+	    }
+	    x = TermTraversal.deref(x);
+	    if (x.tag == Term.TAG_LIST) {
+		/* [X] evaluates X */
+		work[wp] = ((ListTerm)x).car();
+		mark[wp++] = 0;
+		continue;
+	    }
+	    if (x.tag != Term.TAG_STRUCTURE) {
+		if (vp == vals.length)
+		    vals = grow(vals);
+		vals[vp++] = evaluateAtomic(x);
+		continue;
+	    }
+	    int op = ((StructureTerm)x).functor.arithOp;
+	    Term[] args = ((StructureTerm)x).args;
+	    if (op < OP_ADD_1)
+		throw new IllegalDomainException("arithmetic expression", x);
+	    if (wp + args.length + 1 > work.length) {
+		int len = Math.max(work.length * 2, wp + args.length + 1);
+		Term[] w = new Term[len];
+		System.arraycopy(work, 0, w, 0, wp);
+		work = w;
+		int[] k = new int[len];
+		System.arraycopy(mark, 0, k, 0, wp);
+		mark = k;
+	    }
+	    work[wp] = x;
+	    mark[wp++] = -args.length;
+	    for (int i = args.length - 1; i >= 0; i--) {
+		work[wp] = args[i];
+		mark[wp++] = 0;
+	    }
+	}
+	return vals[0];
+    }
+
+    /** Returns a copy of <code>a</code> with the doubled length. */
+    private static NumberTerm[] grow(NumberTerm[] a) {
+	NumberTerm[] b = new NumberTerm[a.length * 2];
+	System.arraycopy(a, 0, b, 0, a.length);
+	return b;
+    }
+
+    /** Applies the unary operation <code>op</code> to <code>x</code>. */
+    private static NumberTerm apply(int op, NumberTerm x) {
+	switch (op) {
+	case OP_ADD_1:       return x;
+	case OP_NEGATE_1:    return x.negate();
+	case OP_NOT_1:       return x.not();
+	case OP_ABS_1:       return x.abs();
+	case OP_ACOS_1:      return x.acos();
+	case OP_ASIN_1:      return x.asin();
+	case OP_ATAN_1:      return x.atan();
+	case OP_CEIL_1:      return x.ceil();
+	case OP_COS_1:       return x.cos();
+	case OP_DEGREES_1:   return x.toDegrees();
+	case OP_EXP_1:       return x.exp();
+	case OP_FLOOR_1:     return x.floor();
+	case OP_LOG_1:       return x.log();
+	case OP_RADIANS_1:   return x.toRadians();
+	case OP_RINT_1:      return x.rint();
+	case OP_ROUND_1:     return x.round();
+	case OP_SIN_1:       return x.sin();
+	case OP_SQRT_1:      return x.sqrt();
+	case OP_TAN_1:       return x.tan();
+	case OP_SIGN_1:      return x.signum();
+	case OP_FLOAT_1:     return x.toFloat();
+	case OP_INTPART_1:   return x.floatIntPart();
+	case OP_FRACTPART_1: return x.floatFractPart();
+	case OP_TRUNCATE_1:  return x.truncate();
+	default:
+	    throw new InternalException("Invalid unary arithmetic operation " + op);
+	}
+    }
+
+    /** Applies the binary operation <code>op</code> to <code>x</code> and <code>y</code>. */
+    private static NumberTerm apply(int op, NumberTerm x, NumberTerm y) {
+	switch (op) {
+	case OP_ADD_2:        return x.add(y);
+	case OP_SUBTRACT_2:   return x.subtract(y);
+	case OP_MULTIPLY_2:   return x.multiply(y);
+	case OP_DIVIDE_2:     return x.divide(y);
+	case OP_INTDIVIDE_2:  return x.intDivide(y);
+	case OP_MOD_2:        return x.mod(y);
+	case OP_SHIFTLEFT_2:  return x.shiftLeft(y);
+	case OP_SHIFTRIGHT_2: return x.shiftRight(y);
+	case OP_AND_2:        return x.and(y);
+	case OP_OR_2:         return x.or(y);
+	case OP_XOR_2:        return x.xor(y);
+	case OP_POW_2:        return x.pow(y);
+	case OP_MAX_2:        return x.max(y);
+	case OP_MIN_2:        return x.min(y);
+	default:
+	    throw new InternalException("Invalid binary arithmetic operation " + op);
+	}
+    }
+
+    /** Applies the function registered as <code>func</code> to <code>args</code>. */
+    private static NumberTerm apply(SymbolTerm func, NumberTerm[] args) {
+	ArithmeticFunction f = FUNCTIONS.get(func);
+	if (f == null) // unregistered concurrently
+	    throw new IllegalDomainException("arithmetic expression", func);
+	return f.apply(args);
     }
 }
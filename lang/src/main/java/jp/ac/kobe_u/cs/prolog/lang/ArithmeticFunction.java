@@ -0,0 +1,25 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+/**
+ * Implementing this interface allows an object to be called as
+ * an evaluable functor in arithmetic expressions.<br>
+ *
+ * <pre>
+ *   Arithmetic.register("hypot", 2, new ArithmeticFunction() {
+ *       public NumberTerm apply(NumberTerm[] args) {
+ *           return new DoubleTerm(Math.hypot(args[0].doubleValue(), args[1].doubleValue()));
+ *       }
+ *   });
+ * </pre>
+ *
+ * @see Arithmetic#register(String, int, ArithmeticFunction)
+ * @version 1.2
+ */
+public interface ArithmeticFunction {
+    /**
+     * Returns the value of this function for the given arguments.<br>
+     * @param args the values of the argument expressions, evaluated from left to right.
+     * The length of <code>args</code> is the arity under which this function is registered.
+     * @exception BuiltinException if the function is not defined for <code>args</code>.
+     */
+    public NumberTerm apply(NumberTerm[] args);
+}
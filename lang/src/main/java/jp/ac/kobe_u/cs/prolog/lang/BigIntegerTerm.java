@@ -0,0 +1,164 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.math.BigInteger;
+/**
+ * Integer of arbitrary size.<br>
+ * The class <code>BigIntegerTerm</code> wraps a <code>java.math.BigInteger</code>
+ * whose value does not fit in a <code>long</code>.
+ * It is created by <code>valueOf</code> when <code>long</code> arithmetic on
+ * <code>IntegerTerm</code> overflows, so that every integer has exactly one representation.
+ * The binary operations of <code>IntegerTerm</code> handle both representations.
+ *
+ * <pre>
+ *   Term t = IntegerTerm.valueOf("123456789012345678901234567890");
+ *   BigInteger b = ((IntegerTerm)t).bigIntegerValue();
+ * </pre>
+ *
+ * @see IntegerTerm
+ * @version 1.2
+ */
+public class BigIntegerTerm extends IntegerTerm {
+    /** The smallest <code>long</code> value. */
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    /** The largest <code>long</code> value. */
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    /**
+     * Holds a <code>BigInteger</code> value that this <code>BigIntegerTerm</code> represents.
+     * The inherited <code>val</code> holds the <code>long</code> value nearest to it,
+     * so that it never passes for a value that fits in a <code>long</code>.
+     */
+    protected final BigInteger bigVal;
+
+    /**
+     * Constructs a new Prolog integer that represents the specified <code>BigInteger</code> value.
+     * Use <code>valueOf</code> instead, unless <code>b</code> is known not to fit in a <code>long</code>.
+     */
+    protected BigIntegerTerm(BigInteger b) {
+	super(TAG_BIGINTEGER, b.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE);
+	bigVal = b;
+    }
+
+    /**
+     * Returns a Prolog integer that represents the specified <code>BigInteger</code> value:
+     * an <code>IntegerTerm</code> if it fits in a <code>long</code>,
+     * otherwise a <code>BigIntegerTerm</code>.
+     */
+    public static IntegerTerm valueOf(BigInteger b) {
+	if (b.compareTo(LONG_MIN) >= 0 && b.compareTo(LONG_MAX) <= 0)
+	    return IntegerTerm.valueOf(b.longValue());
+	return new BigIntegerTerm(b);
+    }
+
+    public BigInteger bigIntegerValue() { return bigVal; }
+
+    /* Term */
+    public boolean unify(Term t, Trail trail) {
+	switch (t.tag) {
+	case TAG_VARIABLE:
+	    return ((VariableTerm)t).unify(this, trail);
+	case TAG_BIGINTEGER:
+	    return bigVal.equals(((BigIntegerTerm)t).bigVal);
+	default:
+	    return false;
+	}
+    }
+
+    /**
+     * @return the <code>boolean</code> whose value is
+     * <code>convertible(BigInteger.class, type)</code>.
+     * @see Term#convertible(Class, Class)
+     */
+    public boolean convertible(Class type) { return convertible(BigInteger.class, type); }
+
+    /**
+     * Returns a <code>java.math.BigInteger</code> corresponds to this <code>BigIntegerTerm</code>.
+     * @return the value of <code>bigVal</code>.
+     */
+    public Object toJava() { return bigVal; }
+
+    /* Object */
+    /** Returns a string representation of this <code>BigIntegerTerm</code>. */
+    public String toString() { return bigVal.toString(); }
+
+    /**
+     * Checks <em>term equality</em> of two terms.
+     * The result is <code>true</code> if and only if the argument is an instance of
+     * <code>BigIntegerTerm</code> and has the same value as this object.
+     * @param obj the object to compare with. This must be dereferenced.
+     * @return <code>true</code> if the given object represents a Prolog integer
+     * equivalent to this <code>BigIntegerTerm</code>, false otherwise.
+     * @see #compareTo
+    */
+    public boolean equals(Object obj) {
+	if (! (obj instanceof BigIntegerTerm))
+	    return false;
+	return bigVal.equals(((BigIntegerTerm)obj).bigVal);
+    }
+
+    public int hashCode() { return bigVal.hashCode(); }
+
+    /* Comparable */
+    /**
+     * Compares two terms in <em>Prolog standard order of terms</em>.<br>
+     * Integers are compared by their values, whichever representation they have.
+     * @param anotherTerm the term to compared with. It must be dereferenced.
+     * @return the value <code>0</code> if two terms are identical;
+     * a value less than <code>0</code> if this term is <em>before</em> the <code>anotherTerm</code>;
+     * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
+     */
+    public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced.
+	if (anotherTerm.tag == TAG_INTEGER)
+	    return bigVal.signum() > 0 ? AFTER : BEFORE;
+	if (anotherTerm.tag != TAG_BIGINTEGER)
+	    return anotherTerm.tag < TAG_BIGINTEGER ? AFTER : BEFORE;
+	int rc = bigVal.compareTo(((BigIntegerTerm)anotherTerm).bigVal);
+	if (rc == 0)
+	    return EQUAL;
+	return rc > 0 ? AFTER : BEFORE;
+    }
+
+    /* NumberTerm */
+    public int intValue() { return bigVal.intValue(); }
+
+    public long longValue() { return bigVal.longValue(); }
+
+    /**
+     * @exception RepresentationException always, since the value does not fit in a <code>long</code>.
+     */
+    public long longValueExact(Predicate goal, int argNo) {
+	throw new RepresentationException(goal, argNo, bigVal.signum() > 0 ? "max_integer" : "min_integer");
+    }
+
+    public double doubleValue() { return bigVal.doubleValue(); }
+
+    public int arithCompareTo(NumberTerm t) {
+	if (t.isDouble())
+	    return - (t.arithCompareTo(this));
+	if (t.tag == TAG_INTEGER)
+	    return bigVal.signum() > 0 ? AFTER : BEFORE;
+	int rc = bigVal.compareTo(((BigIntegerTerm)t).bigVal);
+	if (rc == 0)
+	    return EQUAL;
+	return rc > 0 ? AFTER : BEFORE;
+    }
+
+    public NumberTerm abs() { return bigVal.signum() > 0 ? this : valueOf(bigVal.negate()); }
+
+    public NumberTerm log() { return new DoubleTerm(Math.log(this.doubleValue())); }
+
+    public NumberTerm negate() { return valueOf(bigVal.negate()); }
+
+    public NumberTerm not() { return valueOf(bigVal.not()); }
+
+    public NumberTerm signum() { return IntegerTerm.valueOf(bigVal.signum()); }
+
+    /**
+     * @exception EvaluationException if this object represents
+     * an integer less than <coe>0</code>.
+     */
+    public NumberTerm sqrt() {
+	if (bigVal.signum() < 0)
+	    throw new EvaluationException("undefined");
+	return new DoubleTerm(Math.sqrt(this.doubleValue()));
+    }
+}
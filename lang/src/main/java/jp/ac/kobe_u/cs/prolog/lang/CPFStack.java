@@ -1,40 +1,8 @@
 package jp.ac.kobe_u.cs.prolog.lang;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-/**
- * Choice point frame.<br>
- *
- * @author Mutsunori Banbara (banbara@kobe-u.ac.jp)
- * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
- * @version 1.0
- */
-class CPFEntry implements Serializable {
-    public long timeStamp;
-    public Term[] args;     // argument register
-    public Predicate cont;  // continuation goal
-    public Predicate bp;    // next cluase
-    public int tr;          // trail pointer
-    public int b0;          // cut point
-
-    protected CPFEntry(Term[] args, Predicate cont){
-	this.args = args;
-	this.cont = cont;
-    }
-
-    public String toString() {
-	String t = " time:" + timeStamp + "\n" ;
-	t = t + "args:";
-	for (int i=0; i<args.length; i++) {
-	    t = t + args[i] + " ";
-	}
-	t = t + "\n";
-	t = t + " cont:" + cont + "\n";
-	t = t + " bp:" + bp + "\n";
-	t = t + " tr:" + tr + "\n";
-	t = t + " b0:" + b0 + "\n";
-	return t;
-    }
-}
-
 /**
  * Choice point frame stack.<br>
  * The <code>CPFStack</code> class represents a stack
@@ -48,75 +16,188 @@ class CPFEntry implements Serializable {
  * <li><em>cut point</em>
  * <li><em>time stamp</em>
  * </ul>
+ * The fields are held in parallel arrays indexed by frame number,
+ * and the arguments of all frames share one flat <code>Term</code> segment,
+ * so that creating and discarding a choice point frame allocates nothing
+ * once the arrays are large enough.
  *
  * @author Mutsunori Banbara (banbara@kobe-u.ac.jp)
  * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
- * @version 1.0
+ * @version 1.2
  */
 public class CPFStack implements Serializable {
-    /** Maximum size of enties. Initial size is <code>20000</code>. */
-    protected int maxContents = 20000;
+    /** Initial size of entries. Default value is <code>256</code>. */
+    protected int initialContents = 256;
+
+    /** Maximum size of enties. This is <code>0</code> until the first frame is created. */
+    protected int maxContents = 0;
+
+    /** Time stamps of choice point frames. */
+    protected int[] timeStamp;
+    /** Continuation goals of choice point frames. */
+    protected Predicate[] cont;
+    /** Next clauses of choice point frames. */
+    protected Predicate[] bp;
+    /** Trail pointers of choice point frames. */
+    protected int[] tr;
+    /** Cut points of choice point frames. */
+    protected int[] b0;
+    /** Start indices into <code>args</code> of choice point frames. */
+    protected int[] argBase;
 
-    /** An array of choice point frames. */
-    protected CPFEntry[] buffer;
+    /** Argument registers saved by all choice point frames, laid out frame by frame. */
+    protected Term[] args;
+
+    /** The next free index of <code>args</code>. */
+    protected int argTop;
 
     /** the top index of this <code>CPFStack</code>. */
     protected int top;
 
+    /** The highest value of <code>top</code> since the last <code>shrink()</code>. */
+    protected int highWater;
+
+    /** The highest value of <code>argTop</code> since the last <code>shrink()</code>. */
+    protected int argHighWater;
+
     /** Holds the Prolog engine that this <code>CPFStack</code> belongs to. */
     protected Prolog engine;
-	
+
     /** Constructs a new choice point frame stack. */
     public CPFStack(Prolog _engine) {
 	engine = _engine;
-	buffer = new CPFEntry[maxContents];
+	resizeFrames(0);
+	args = new Term[0];
+	argTop = 0;
 	top = -1;
+	highWater = -1;
+	argHighWater = 0;
     }
 
-    /** Constructs a new choice point frame stack with the given size. */
+    /** Constructs a new choice point frame stack with the given initial size. */
     public CPFStack(Prolog _engine, int n) {
-	engine = _engine;
-	maxContents = n;
-	buffer = new CPFEntry[maxContents];
-	top = -1;
+	this(_engine);
+	setInitialSize(n);
     }
 
     /** Create a new choice point frame.
      * @param args <em>arguments</em>
      * @param p a <em>continuation goal</em>
      */
-    public void create(Term[] args, Predicate p){
-	try {
-	    buffer[++top] = new CPFEntry(args, p);
-	} catch (ArrayIndexOutOfBoundsException e) {
-	    System.out.println("{expanding choice point stack...}");
-	    int len = buffer.length;
-	    CPFEntry[] new_buffer = new CPFEntry[len+10000];
-	    for(int i=0; i<len; i++) {
-		new_buffer[i] = buffer[i];
-	    }
-	    buffer = new_buffer;
-	    buffer[top] = new CPFEntry(args, p);
-	    maxContents = len+10000;
-	}
+    public void create(Term[] args, Predicate p) {
+	create(args, 0, args.length, p);
     }
 
-    /** Discards all choice points. */
-    public void deleteAll() { 
-	while (! empty()) {
-	    buffer[top--] = null;
+    /** Create a new choice point frame
+     * whose <em>arguments</em> are <code>n</code> terms of <code>regs</code>
+     * starting at index <code>from</code>.
+     * The <em>time stamp</em> of the new frame is <code>Integer.MAX_VALUE</code>,
+     * which trails every binding, until <code>setTimeStamp</code> is called.
+     * @param regs argument registers
+     * @param from the first index of <code>regs</code> to be saved
+     * @param n the number of arguments
+     * @param p a <em>continuation goal</em>
+     */
+    public void create(Term[] regs, int from, int n, Predicate p) {
+	if (++top == maxContents)
+	    resizeFrames(maxContents == 0 ? initialContents : maxContents * 2);
+	if (top > highWater)
+	    highWater = top;
+	int base = argTop;
+	argTop = base + n;
+	if (argTop > args.length)
+	    resizeArgs(Math.max(argTop, args.length == 0 ? initialContents : args.length * 2));
+	if (argTop > argHighWater)
+	    argHighWater = argTop;
+	System.arraycopy(regs, from, args, base, n);
+	argBase[top + 1] = argTop;
+	cont[top] = p;
+	timeStamp[top] = Integer.MAX_VALUE;
+	engine.topTimeStamp = Integer.MAX_VALUE;
+    }
+
+    private void resizeFrames(int len) {
+	int n = Math.min(maxContents, len);
+	int[] newTimeStamp  = new int[len];
+	Predicate[] newCont = new Predicate[len];
+	Predicate[] newBp   = new Predicate[len];
+	int[] newTr         = new int[len];
+	int[] newB0         = new int[len];
+	int[] newArgBase    = new int[len + 1];
+	if (n > 0) {
+	    System.arraycopy(timeStamp, 0, newTimeStamp, 0, n);
+	    System.arraycopy(cont,      0, newCont,      0, n);
+	    System.arraycopy(bp,        0, newBp,        0, n);
+	    System.arraycopy(tr,        0, newTr,        0, n);
+	    System.arraycopy(b0,        0, newB0,        0, n);
+	    System.arraycopy(argBase,   0, newArgBase,   0, n + 1);
 	}
+	timeStamp = newTimeStamp;
+	cont      = newCont;
+	bp        = newBp;
+	tr        = newTr;
+	b0        = newB0;
+	argBase   = newArgBase;
+	maxContents = len;
     }
 
+    private void resizeArgs(int len) {
+	Term[] newArgs = new Term[len];
+	System.arraycopy(args, 0, newArgs, 0, Math.min(args.length, len));
+	args = newArgs;
+    }
+
+    /** 
+     * Shrinks this <code>CPFStack</code> to the smallest power-of-two multiple of 
+     * the initial size that holds the high-water mark since the last call,
+     * and then resets the high-water mark.
+     * This is invoked after a query completes.
+     */
+    public void shrink() {
+	int len = maxContents;
+	while (len > initialContents && len / 2 >= highWater + 1)
+	    len /= 2;
+	if (len < maxContents)
+	    resizeFrames(len);
+	len = args.length;
+	while (len > initialContents && len / 2 >= argHighWater)
+	    len /= 2;
+	if (len < args.length)
+	    resizeArgs(len);
+	highWater = top;
+	argHighWater = argTop;
+    }
+
+    /** Discards all choice points. */
+    public void deleteAll() { cut(-1); }
+
     /** Discards all choice points after the value of <code>i</code>. */
     public void cut(int i) {
+	if (top <= i)
+	    return;
+	int base = argBase[i + 1];
+	for (int j = base; j < argTop; j++)
+	    args[j] = null;
+	argTop = base;
 	while (top > i) {
-	    buffer[top--] = null;
+	    cont[top] = null;
+	    bp[top]   = null;
+	    top--;
 	}
+	engine.topTimeStamp = top < 0 ? Integer.MIN_VALUE : timeStamp[top];
     }
 
     /** Discards the top of choice points. */
-    public void delete() { buffer[top--] = null; }
+    public void delete() {
+	int base = argBase[top];
+	for (int j = base; j < argTop; j++)
+	    args[j] = null;
+	argTop = base;
+	cont[top] = null;
+	bp[top]   = null;
+	top--;
+	engine.topTimeStamp = top < 0 ? Integer.MIN_VALUE : timeStamp[top];
+    }
 
     /** Discards all choice points. */
     public void init() { deleteAll(); }
@@ -124,41 +205,134 @@ public class CPFStack implements Serializable {
     /** Tests if this stack has no entry. */
     public boolean empty() { return top == -1; }
 
-    /** Returns the value of <code>top</code>. 
+    /** Returns the value of <code>top</code>.
      * @see #top
      */
     public int top() { return top; }
 
-    /** Returns the value of <code>maxContents</code>. 
+    /** Returns the value of <code>maxContents</code>.
      * @see #maxContents
      */
     public int max() { return maxContents; }
 
-    /** Returns the <em>arguments</em> of current choice point frame. */
-    public Term[] getArgs() { return buffer[top].args; }
+    /** Returns the value of <code>initialContents</code>.
+     * @see #initialContents
+     */
+    public int initialSize() { return initialContents; }
+
+    /**
+     * Sets the value of <code>initialContents</code>.
+     * If no frame has been created yet, the first allocation uses this size.
+     * @see #initialContents
+     */
+    public void setInitialSize(int n) {
+	if (n < 1)
+	    throw new IllegalArgumentException("initial size must be positive: " + n);
+	initialContents = n;
+    }
+
+    /** Returns a copy of the <em>arguments</em> of current choice point frame. */
+    public Term[] getArgs() {
+	int base = argBase[top];
+	Term[] a = new Term[argTop - base];
+	System.arraycopy(args, base, a, 0, a.length);
+	return a;
+    }
+
+    /**
+     * Copies the <em>arguments</em> of current choice point frame
+     * into <code>regs</code> starting at index <code>from</code>.
+     */
+    public void restoreArgs(Term[] regs, int from) {
+	int base = argBase[top];
+	System.arraycopy(args, base, regs, from, argTop - base);
+    }
 
     /** Returns the <em>continuation goal</em> of current choice point frame. */
-    public Predicate getCont() { return buffer[top].cont; }
+    public Predicate getCont() { return cont[top]; }
 
     /** Returns the <em>time stamp</em> of current choice point frame. */
-    public long getTimeStamp() { return buffer[top].timeStamp; }
-    /** Sets the <em>time stamp</em> of current choice point frame. */
-    public void setTimeStamp(long t) { buffer[top].timeStamp = t; }
-    
+    public int getTimeStamp() { return timeStamp[top]; }
+    /**
+     * Sets the <em>time stamp</em> of current choice point frame.
+     * This also updates the cached register <code>Prolog.topTimeStamp</code>.
+     */
+    public void setTimeStamp(int t) {
+	timeStamp[top] = t;
+	engine.topTimeStamp = t;
+    }
+
     /** Returns the <em>next clause</em> of current choice point frame. */
-    public Predicate getBP() { return buffer[top].bp; }
+    public Predicate getBP() { return bp[top]; }
     /** Sets the <em>next clause</em> of current choice point frame. */
-    public void setBP(Predicate p) { buffer[top].bp = p; }
+    public void setBP(Predicate p) { bp[top] = p; }
 
     /** Returns the <em>trail pointer</em> of current choice point frame. */
-    public int getTR() { return buffer[top].tr; }
+    public int getTR() { return tr[top]; }
     /** Sets the <em>trail pointer</em> of current choice point frame. */
-    public void setTR(int i) { buffer[top].tr = i; }
+    public void setTR(int i) { tr[top] = i; }
 
     /** Returns the <em>cut point</em> of current choice point frame. */
-    public int getB0() { return buffer[top].b0; }
+    public int getB0() { return b0[top]; }
     /** Sets the <em>cut point</em> of current choice point frame. */
-    public void setB0(int i) { buffer[top].b0 = i; }
+    public void setB0(int i) { b0[top] = i; }
+
+    /** 
+     * Writes the frames of this <code>CPFStack</code> to <code>out</code>,
+     * without the unused part of its arrays.
+     * @see Checkpoint
+     */
+    void writeFrames(ObjectOutputStream out) throws IOException {
+	out.writeInt(top);
+	out.writeInt(argTop);
+	for (int i=0; i<=top; i++) {
+	    out.writeInt(timeStamp[i]);
+	    out.writeInt(tr[i]);
+	    out.writeInt(b0[i]);
+	    out.writeInt(argBase[i + 1]);
+	    out.writeObject(cont[i]);
+	    out.writeObject(bp[i]);
+	}
+	for (int j=0; j<argTop; j++)
+	    out.writeObject(args[j]);
+    }
+
+    /** 
+     * Replaces the frames of this <code>CPFStack</code> with those read from <code>in</code>.
+     * @see #writeFrames
+     */
+    void readFrames(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	deleteAll();
+	int n = in.readInt();
+	int m = in.readInt();
+	int len = Math.max(maxContents, initialContents);
+	while (len < n + 1)
+	    len *= 2;
+	if (len > maxContents)
+	    resizeFrames(len);
+	len = Math.max(args.length, initialContents);
+	while (len < m)
+	    len *= 2;
+	if (len > args.length)
+	    resizeArgs(len);
+	for (int i=0; i<=n; i++) {
+	    timeStamp[i]   = in.readInt();
+	    tr[i]          = in.readInt();
+	    b0[i]          = in.readInt();
+	    argBase[i + 1] = in.readInt();
+	    cont[i]        = (Predicate) in.readObject();
+	    bp[i]          = (Predicate) in.readObject();
+	}
+	for (int j=0; j<m; j++)
+	    args[j] = (Term) in.readObject();
+	top = n;
+	argTop = m;
+	if (top > highWater)
+	    highWater = top;
+	if (argTop > argHighWater)
+	    argHighWater = argTop;
+	engine.topTimeStamp = top < 0 ? Integer.MIN_VALUE : timeStamp[top];
+    }
 
     /** Shows the contents of this <code>CPFStack</code>. */
     public void show() {
@@ -168,7 +342,17 @@ public class CPFStack implements Serializable {
 	}
 	for (int i=0; i<=top; i++) {
 	    System.out.print("stack[" + i + "]: ");
-	    System.out.println(buffer[i]);
+	    String t = " time:" + timeStamp[i] + "\n" ;
+	    t = t + "args:";
+	    for (int j=argBase[i]; j<argBase[i+1]; j++) {
+		t = t + args[j] + " ";
+	    }
+	    t = t + "\n";
+	    t = t + " cont:" + cont[i] + "\n";
+	    t = t + " bp:" + bp[i] + "\n";
+	    t = t + " tr:" + tr[i] + "\n";
+	    t = t + " b0:" + b0[i] + "\n";
+	    System.out.println(t);
 	}
     }
 }
@@ -0,0 +1,49 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.io.Serializable;
+/**
+ * Catch frame.<br>
+ * A <code>CatchFrame</code> records the scope of a goal called by <code>catch/3</code>:
+ * the top of the choice point stack when the goal was called, and the nesting level
+ * of the continuation passing loop that called it.
+ * The frames in scope are linked from the innermost one, and are pushed and popped
+ * by trail entries, so that backtracking restores them together with the choice points.
+ * No Java loop is nested for the goal, and an exception is handled by the loop that
+ * catches it, by cutting back to the frame and failing into the recovery clause.
+ *
+ * @see Prolog#beginCatch()
+ * @see Prolog#handleException(RuntimeException)
+ * @version 1.2
+ */
+public final class CatchFrame implements Serializable, Undoable {
+    /** The engine that runs the goal. */
+    final Prolog engine;
+    /** The enclosing catch frame, or <code>null</code>. */
+    final CatchFrame prev;
+    /** The top of the choice point stack when the goal was called. */
+    final int B;
+    /** The value of <code>Prolog.loopLevel</code> when the goal was called. */
+    final int level;
+
+    CatchFrame(Prolog engine, CatchFrame prev, int B, int level) {
+	this.engine = engine;
+	this.prev   = prev;
+	this.B      = B;
+	this.level  = level;
+    }
+
+    /** Pops this frame on backtracking out of the goal. */
+    public void undo() { engine.catchTop = prev; }
+
+    /** A trail entry that restores the innermost catch frame on backtracking into a goal that has exited. */
+    static final class Exit implements Serializable, Undoable {
+	final Prolog engine;
+	final CatchFrame top;
+
+	Exit(Prolog engine, CatchFrame top) {
+	    this.engine = engine;
+	    this.top    = top;
+	}
+
+	public void undo() { engine.catchTop = top; }
+    }
+}
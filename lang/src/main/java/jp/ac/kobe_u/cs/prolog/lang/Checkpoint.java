@@ -0,0 +1,268 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+/**
+ * Checkpoint of a goal.<br>
+ * The <code>Checkpoint</code> class writes the state of a goal paused at a check point
+ * of the continuation passing loop, and reads it back into another engine,
+ * possibly on another Java Virtual Machine running the same classes.
+ * The state consists of the next goal with its continuations, the argument registers,
+ * the choice points, the trail, the variable bindings reachable from them,
+ * the internal database, and the hash tables of the engine.
+ * Only the used parts of the stacks are written, and the data are compressed.<br>
+ * The engine, its control, and its standard streams are written as references,
+ * which are resolved to those of the engine that reads the checkpoint.
+ * Symbols are interned again when they are read.
+ * A term that refers to any other object that is not serializable,
+ * for example an open stream, can not be written.<br>
+ * Since terms are serialized recursively, checkpoints are written and read
+ * on threads with a stack of <code>STACK_SIZE</code> bytes,
+ * so that long lists and chains of bindings can be written.
+ *
+ * @see PrologControl#checkpoint(OutputStream)
+ * @see PrologControl#resume(InputStream)
+ * @version 1.2
+ */
+final class Checkpoint {
+    /** The first four bytes of a checkpoint, <code>"PLCK"</code>. */
+    static final int MAGIC = 0x504c434b;
+    /** The format version of checkpoints. */
+    static final int VERSION = 1;
+    /** The stack size in bytes of the threads that write and read checkpoints. */
+    static final long STACK_SIZE = 1L << 30;
+
+    /** Holds the stream to be written. */
+    final OutputStream out;
+    /** A flag that indicates whether the engine has taken this request. Guarded by the lock of the control. */
+    boolean taken = false;
+    /** A flag that indicates whether the checkpoint has been written. Guarded by the lock of the control. */
+    boolean done = false;
+    /** Holds the exception raised while writing, or <code>null</code>. */
+    IOException error;
+
+    /** Constructs a new request to write a checkpoint to <code>out</code>. */
+    Checkpoint(OutputStream out) {
+	this.out = out;
+    }
+
+    /** A reference to an object of the engine that writes or reads a checkpoint. */
+    private static final class Ref implements Serializable {
+	static final int ENGINE  = 0;
+	static final int CONTROL = 1;
+	static final int INPUT   = 2;
+	static final int OUTPUT  = 3;
+	static final int ERROR   = 4;
+
+	final int kind;
+
+	Ref(int kind) { this.kind = kind; }
+    }
+
+    /** An object output stream that writes the objects of the engine as references. */
+    private static final class Output extends ObjectOutputStream {
+	final Prolog engine;
+
+	Output(OutputStream out, Prolog engine) throws IOException {
+	    super(out);
+	    this.engine = engine;
+	    enableReplaceObject(true);
+	}
+
+	protected Object replaceObject(Object obj) {
+	    if (obj == engine)
+		return new Ref(Ref.ENGINE);
+	    if (obj == engine.control)
+		return new Ref(Ref.CONTROL);
+	    if (obj == engine.userInput)
+		return new Ref(Ref.INPUT);
+	    if (obj == engine.userOutput)
+		return new Ref(Ref.OUTPUT);
+	    if (obj == engine.userError)
+		return new Ref(Ref.ERROR);
+	    return obj;
+	}
+    }
+
+    /** An object input stream that resolves references to the objects of the engine. */
+    private static final class Input extends ObjectInputStream {
+	final Prolog engine;
+
+	Input(InputStream in, Prolog engine) throws IOException {
+	    super(in);
+	    this.engine = engine;
+	    enableResolveObject(true);
+	}
+
+	protected Object resolveObject(Object obj) {
+	    if (! (obj instanceof Ref))
+		return obj;
+	    switch (((Ref) obj).kind) {
+	    case Ref.ENGINE:
+		return engine;
+	    case Ref.CONTROL:
+		return engine.control;
+	    case Ref.INPUT:
+		return engine.userInput;
+	    case Ref.OUTPUT:
+		return engine.userOutput;
+	    default:
+		return engine.userError;
+	    }
+	}
+
+	/** Loads classes by the class loader of the engine, so that predicates of consulted programs are found. */
+	protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+	    try {
+		return Class.forName(desc.getName(), false, engine.pcl);
+	    } catch (ClassNotFoundException e) {
+		return super.resolveClass(desc);
+	    }
+	}
+    }
+
+    /** A task that reads or writes a checkpoint. */
+    private interface Task {
+	void run() throws IOException, ClassNotFoundException;
+    }
+
+    /** Runs <code>task</code> on a new thread with a stack of <code>STACK_SIZE</code> bytes, and waits for it. */
+    private static void runOnLargeStack(final Task task) throws IOException, ClassNotFoundException {
+	final Throwable[] thrown = new Throwable[1];
+	Thread t = new Thread(null, new Runnable() {
+		public void run() {
+		    try {
+			task.run();
+		    } catch (Throwable e) {
+			thrown[0] = e;
+		    }
+		}
+	    }, "Prolog checkpoint", STACK_SIZE);
+	t.start();
+	boolean interrupted = false;
+	while (true) {
+	    try {
+		t.join();
+		break;
+	    } catch (InterruptedException e) {
+		interrupted = true;
+	    }
+	}
+	if (interrupted)
+	    Thread.currentThread().interrupt();
+	Throwable e = thrown[0];
+	if (e == null)
+	    return;
+	if (e instanceof IOException)
+	    throw (IOException) e;
+	if (e instanceof ClassNotFoundException)
+	    throw (ClassNotFoundException) e;
+	if (e instanceof StackOverflowError)
+	    throw new IOException("term too deep for a checkpoint");
+	if (e instanceof RuntimeException)
+	    throw (RuntimeException) e;
+	throw (Error) e;
+    }
+
+    /**
+     * Writes the state of <code>engine</code> whose next goal is <code>code</code>.
+     * This must be invoked by the thread executing the goal, between two steps of the loop.
+     * @param engine the engine to be written
+     * @param code the goal to be executed next
+     * @param args the arguments of the goal started by the control, or <code>null</code>
+     */
+    void write(final Prolog engine, final Predicate code, final Term[] args) throws IOException {
+	try {
+	    runOnLargeStack(new Task() {
+		    public void run() throws IOException {
+			writeState(engine, code, args);
+		    }
+		});
+	} catch (ClassNotFoundException e) {
+	    throw new IOException(e);
+	}
+    }
+
+    private void writeState(Prolog engine, Predicate code, Term[] args) throws IOException {
+	DataOutputStream header = new DataOutputStream(out);
+	header.writeInt(MAGIC);
+	header.writeInt(VERSION);
+	header.flush();
+	DeflaterOutputStream z = new DeflaterOutputStream(out);
+	Output o = new Output(z, engine);
+	o.writeObject(code);
+	o.writeObject(args);
+	o.writeObject(engine.aregs);
+	o.writeObject(engine.cont);
+	o.writeInt(engine.B0);
+	o.writeInt(engine.CPFTimeStamp);
+	o.writeLong(engine.inferences);
+	o.writeObject(engine.exception);
+	o.writeObject(engine.catchTop);
+	o.writeObject(engine.pendingGoals);
+	o.writeObject(engine.unknown);
+	o.writeObject(engine.doubleQuotes);
+	o.writeObject(engine.printStackTrace);
+	o.writeObject(engine.internalDB);
+	o.writeObject(engine.hashManager);
+	engine.stack.writeFrames(o);
+	engine.trail.writeEntries(o);
+	o.flush();
+	z.finish();
+	out.flush();
+    }
+
+    /**
+     * Reads a checkpoint from <code>in</code> into the engine of <code>c</code>,
+     * which must have been initialized, and sets the goal and its arguments of <code>c</code>.
+     * @exception StreamCorruptedException if <code>in</code> does not begin with a checkpoint of this version.
+     */
+    static void read(final PrologControl c, final InputStream in) throws IOException, ClassNotFoundException {
+	runOnLargeStack(new Task() {
+		public void run() throws IOException, ClassNotFoundException {
+		    readState(c, in);
+		}
+	    });
+    }
+
+    private static void readState(PrologControl c, InputStream in) throws IOException, ClassNotFoundException {
+	DataInputStream header = new DataInputStream(in);
+	if (header.readInt() != MAGIC)
+	    throw new StreamCorruptedException("not a Prolog checkpoint");
+	int version = header.readInt();
+	if (version != VERSION)
+	    throw new StreamCorruptedException("unsupported checkpoint version: " + version);
+	Prolog engine = c.engine;
+	Input o = new Input(new InflaterInputStream(in), engine);
+	c.code = (Predicate) o.readObject();
+	c.args = (Term[]) o.readObject();
+	Term[] aregs = (Term[]) o.readObject();
+	System.arraycopy(aregs, 0, engine.aregs, 0, Math.min(aregs.length, engine.aregs.length));
+	engine.cont            = (Predicate) o.readObject();
+	engine.B0              = o.readInt();
+	engine.CPFTimeStamp    = o.readInt();
+	engine.inferences      = o.readLong();
+	engine.exception       = (Term) o.readObject();
+	engine.catchTop        = (CatchFrame) o.readObject();
+	engine.pendingGoals    = (Term) o.readObject();
+	engine.unknown         = (String) o.readObject();
+	engine.doubleQuotes    = (String) o.readObject();
+	engine.setPrintStackTrace((String) o.readObject());
+	engine.internalDB      = (InternalDatabase) o.readObject();
+	engine.hashManager     = (HashtableOfTerm) o.readObject();
+	engine.stack.readFrames(o);
+	engine.trail.readEntries(o);
+	engine.exceptionRaised = 0;
+	engine.loopLevel       = 0;
+	engine.nextCheck = Math.min(engine.inferenceLimit, engine.inferences + Prolog.CHECK_INTERVAL);
+    }
+}
@@ -13,7 +13,10 @@ public class ClosureTerm extends Term {
     protected Predicate code;
 
     /** Constructs a new closure structure for the given Prolog goal. */
-    public ClosureTerm(Predicate _code) { code = _code; }
+    public ClosureTerm(Predicate _code) {
+	super(TAG_CLOSURE);
+	code = _code;
+    }
 
     /** Returns the Prolog goal of this <code>ClosureTerm</code>. */
     public Predicate getCode() { return code; }
@@ -21,11 +24,14 @@ public class ClosureTerm extends Term {
     /* Term */
     public boolean unify(Term t, Trail trail) {
 	//	t = t.dereference();
-	if (t.isVariable())
+	switch (t.tag) {
+	case TAG_VARIABLE:
 	    return ((VariableTerm)t).unify(this, trail);
-	if (! t.isClosure())
+	case TAG_CLOSURE:
+	    return code.equals(((ClosureTerm)t).code);
+	default:
 	    return false;
-	return code.equals(((ClosureTerm)t).code);
+	}
     }
 
     public String toQuotedString() { return toString(); }
@@ -67,7 +73,7 @@ public class ClosureTerm extends Term {
      * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
      */
     public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced
-	if (! anotherTerm.isClosure())
+	if (anotherTerm.tag != TAG_CLOSURE)
 	    return AFTER;
 	if (code.equals(((ClosureTerm) anotherTerm).code))
 	    return EQUAL;
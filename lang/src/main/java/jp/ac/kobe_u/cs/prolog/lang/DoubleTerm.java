@@ -21,7 +21,10 @@ public class DoubleTerm extends NumberTerm {
      * Constructs a new Prolog floating point number 
      * that represents the specified <code>double</code> value.
      */
-    public DoubleTerm(double i) { val = i; }
+    public DoubleTerm(double i) {
+	super(TAG_DOUBLE);
+	val = i;
+    }
 
     /**
      * Returns the value of <code>val</code>.
@@ -31,11 +34,14 @@ public class DoubleTerm extends NumberTerm {
 
     /* Term */
     public boolean unify(Term t, Trail trail) {
-	if (t.isVariable())
+	switch (t.tag) {
+	case TAG_VARIABLE:
 	    return ((VariableTerm)t).unify(this, trail);
-	if (! t.isDouble())
+	case TAG_DOUBLE:
+	    return this.val == ((DoubleTerm)t).val;
+	default:
 	    return false;
-	return this.val == ((DoubleTerm)t).value();
+	}
     }
 
     /** 
@@ -90,11 +96,9 @@ public class DoubleTerm extends NumberTerm {
      * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
      */
     public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced
-	if (anotherTerm.isVariable())
-	    return AFTER;
-	if (! anotherTerm.isDouble())
-	    return BEFORE;
-	return Double.compare(this.val, ((DoubleTerm)anotherTerm).value());
+	if (anotherTerm.tag != TAG_DOUBLE)
+	    return anotherTerm.tag < TAG_DOUBLE ? AFTER : BEFORE;
+	return Double.compare(this.val, ((DoubleTerm)anotherTerm).val);
     }
 
     /* NumberTerm */
@@ -125,7 +129,7 @@ public class DoubleTerm extends NumberTerm {
 
     public NumberTerm atan() { return new DoubleTerm(Math.atan(this.val)); }
 
-    public NumberTerm ceil() { return new IntegerTerm((int) Math.ceil(this.val)); }
+    public NumberTerm ceil() { return IntegerTerm.valueOf(Math.ceil(this.val)); }
 
     public NumberTerm cos() { return new DoubleTerm(Math.cos(this.val)); }
 
@@ -149,7 +153,7 @@ public class DoubleTerm extends NumberTerm {
 	return new DoubleTerm(this.val - Math.signum(this.val) * Math.floor(Math.abs(this.val)));
     }
 
-    public NumberTerm floor() { return new IntegerTerm((int) Math.floor(this.val)); }
+    public NumberTerm floor() { return IntegerTerm.valueOf(Math.floor(this.val)); }
 
     /** 
      * Throws a <code>type_error</code>.
@@ -200,7 +204,11 @@ public class DoubleTerm extends NumberTerm {
 
     public NumberTerm rint() { return new DoubleTerm(Math.rint(this.val)); }
 
-    public NumberTerm round() { return new IntegerTerm((int) Math.round(this.val)); }
+    public NumberTerm round() { 
+	if (Math.abs(this.val) < 0x1p52)
+	    return IntegerTerm.valueOf(Math.round(this.val));
+	return IntegerTerm.valueOf(this.val);
+    }
 
     /** 
      * Throws a <code>type_error</code>.
@@ -240,9 +248,9 @@ public class DoubleTerm extends NumberTerm {
 
     public NumberTerm truncate() { 
 	if (this.val >= 0)
-	    return new IntegerTerm((int) Math.floor(this.val));
+	    return IntegerTerm.valueOf(Math.floor(this.val));
 	else 
-	    return new IntegerTerm((int) (-1 * Math.floor(Math.abs(this.val))));
+	    return IntegerTerm.valueOf(-1 * Math.floor(Math.abs(this.val)));
     }
 
     /** 
@@ -0,0 +1,467 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ * Pool of Prolog engines.<br>
+ * The <code>EnginePool</code> class leases initialized <code>PrologControl</code>
+ * objects and takes them back for reuse, so that the stacks, streams, and
+ * hash managers of an engine are built only once.<br>
+ * A released engine is reset in time proportional to the entries used
+ * by its last query, not to the capacity of its stacks.
+ * Its internal databases (dynamic clauses and hash tables) are kept
+ * between leases unless <code>setResetDatabases(true)</code> is called.
+ * Its inference and time limits are restored to those of the pool,
+ * so that limits set by one lessee do not apply to the next.
+ * New engines are created outside of the lock of the pool,
+ * in slots reserved in advance, so that other threads can lease and release
+ * engines meanwhile.
+ *
+ * <pre>
+ * EnginePool pool = new EnginePool(new PrologClassLoader(), 16, 1000);
+ * PrologControl p = pool.lease();
+ * try {
+ *     Term[] args = {SymbolTerm.makeSymbol("abraham"), new VariableTerm()};
+ *     if (p.execute(new PRED_father_2(), args))
+ *         System.out.println(args[1]);
+ * } finally {
+ *     pool.release(p);
+ * }
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class EnginePool {
+    /** Holds the class loader shared by the engines of this pool. */
+    protected PrologClassLoader pcl;
+
+    /** Holds the control whose engine new engines are forked from, or <code>null</code>. */
+    protected PrologControl template;
+
+    /** The maximum number of engines, leased or idle. */
+    protected int maxSize;
+
+    /**
+     * The maximum time in milliseconds that <code>lease()</code> waits for an engine.
+     * A negative value means to wait forever.
+     */
+    protected long maxWaitMillis;
+
+    /** A flag that indicates whether internal databases are discarded when an engine is released. */
+    protected boolean resetDatabases = false;
+
+    /** A flag that indicates whether new engines execute goals on the caller's thread. */
+    protected boolean callerThread = false;
+
+    /** The maximum number of inferences of each goal of leased engines, or <code>0</code> for no limit. */
+    protected volatile long inferenceLimit = 0;
+    /** The maximum time in milliseconds of each goal of leased engines, or <code>0</code> for no limit. */
+    protected volatile long timeLimit = 0;
+
+    /** Engines that are ready to be leased, most recently released first. */
+    protected final ArrayDeque<PrologControl> idle = new ArrayDeque<PrologControl>();
+
+    /** The engines currently leased, compared by identity. */
+    protected final Set<PrologControl> leased =
+	Collections.newSetFromMap(new IdentityHashMap<PrologControl,Boolean>());
+
+    /** The number of engines currently leased, including those being created for a lease. */
+    protected int active = 0;
+
+    /** The number of engines being created by <code>prestart</code>. */
+    protected int starting = 0;
+
+    /** The number of engines created by this pool. */
+    protected long created = 0;
+    /** The number of successful leases. */
+    protected long leases = 0;
+    /** The number of leases that gave up waiting. */
+    protected long timeouts = 0;
+    /** The total time in nanoseconds spent waiting for an engine. */
+    protected long waitNanos = 0;
+    /** The longest time in nanoseconds spent waiting for an engine. */
+    protected long maxWaitNanos = 0;
+
+    /** Guards the fields of this pool. */
+    protected final ReentrantLock lock = new ReentrantLock();
+    /** Is signalled whenever an engine is returned to this pool. */
+    protected final Condition available = lock.newCondition();
+
+    /**
+     * Constructs a new pool of at most <code>maxSize</code> engines
+     * that waits for an engine without time limit.
+     */
+    public EnginePool(PrologClassLoader pcl, int maxSize) {
+	this(pcl, maxSize, -1);
+    }
+
+    /**
+     * Constructs a new pool of at most <code>maxSize</code> engines
+     * that waits for an engine at most <code>maxWaitMillis</code> milliseconds.
+     */
+    public EnginePool(PrologClassLoader pcl, int maxSize, long maxWaitMillis) {
+	if (maxSize < 1)
+	    throw new IllegalArgumentException("pool size must be positive: " + maxSize);
+	this.pcl           = pcl;
+	this.maxSize       = maxSize;
+	this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Constructs a new pool of at most <code>maxSize</code> engines
+     * forked from the engine of <code>template</code>,
+     * that waits for an engine at most <code>maxWaitMillis</code> milliseconds.
+     * Released engines restore their databases to the template
+     * if <code>setResetDatabases(true)</code> is called.
+     * The inference and time limits of the pool are initially those of the template.
+     * @see Prolog#fork
+     */
+    public EnginePool(PrologControl template, int maxSize, long maxWaitMillis) {
+	this(template.engine.pcl, maxSize, maxWaitMillis);
+	this.template = template;
+	this.callerThread = template.isCallerThread();
+	this.inferenceLimit = template.engine.getMaxInferences();
+	this.timeLimit = template.engine.getMaxTimeMillis();
+    }
+
+    /** Creates up to <code>n</code> idle engines in advance. */
+    public void prestart(int n) {
+	while (n-- > 0) {
+	    lock.lock();
+	    try {
+		if (active + idle.size() + starting >= maxSize)
+		    return;
+		starting++;
+	    } finally {
+		lock.unlock();
+	    }
+	    PrologControl c = null;
+	    try {
+		c = create();
+	    } finally {
+		lock.lock();
+		try {
+		    starting--;
+		    if (c != null) {
+			created++;
+			idle.push(c);
+		    }
+		    available.signal();
+		} finally {
+		    lock.unlock();
+		}
+	    }
+	}
+    }
+
+    /**
+     * Creates a new engine.
+     * Subclasses may override this to configure engines,
+     * for example their stack sizes or thread factories.
+     */
+    protected PrologControl newControl() {
+	if (template != null)
+	    return new PrologControl(template);
+	return new PrologControl(pcl);
+    }
+
+    /** Creates a new engine. This is called without holding <code>lock</code>. */
+    private PrologControl create() {
+	PrologControl c = newControl();
+	c.setCallerThread(callerThread);
+	restoreLimits(c);
+	c.engine.init();
+	return c;
+    }
+
+    /** Sets the inference and time limits of <code>c</code> to those of this pool. */
+    private void restoreLimits(PrologControl c) {
+	c.setInferenceLimit(inferenceLimit);
+	c.setTimeLimit(timeLimit);
+    }
+
+    /**
+     * Leases an engine, waiting at most <code>maxWaitMillis</code> milliseconds
+     * if all engines are in use.
+     * @exception SystemException if no engine became available in time.
+     */
+    public PrologControl lease() {
+	PrologControl c = lease(maxWaitMillis, TimeUnit.MILLISECONDS);
+	if (c == null)
+	    throw new SystemException("no Prolog engine available within " + maxWaitMillis + " ms");
+	return c;
+    }
+
+    /**
+     * Leases an engine, waiting at most the given time if all engines are in use.
+     * A negative <code>timeout</code> means to wait forever.
+     * @return an engine, or <code>null</code> if no engine became available in time.
+     */
+    public PrologControl lease(long timeout, TimeUnit unit) {
+	long start = System.nanoTime();
+	long remaining = unit.toNanos(timeout);
+	lock.lock();
+	try {
+	    while (idle.isEmpty() && active + starting >= maxSize) {
+		if (timeout < 0) {
+		    available.awaitUninterruptibly();
+		} else {
+		    if (remaining <= 0) {
+			timeouts++;
+			recordWait(start);
+			return null;
+		    }
+		    try {
+			remaining = available.awaitNanos(remaining);
+		    } catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			timeouts++;
+			recordWait(start);
+			return null;
+		    }
+		}
+	    }
+	    active++;
+	    recordWait(start);
+	    if (! idle.isEmpty()) {
+		PrologControl c = idle.pop();
+		restoreLimits(c);
+		leased.add(c);
+		leases++;
+		return c;
+	    }
+	} finally {
+	    lock.unlock();
+	}
+	// creates a new engine in the slot reserved above
+	PrologControl c = null;
+	try {
+	    c = create();
+	} finally {
+	    lock.lock();
+	    try {
+		if (c == null) {
+		    active--;
+		    available.signal();
+		} else {
+		    created++;
+		    leases++;
+		    leased.add(c);
+		}
+	    } finally {
+		lock.unlock();
+	    }
+	}
+	return c;
+    }
+
+    private void recordWait(long start) {
+	long t = System.nanoTime() - start;
+	waitNanos += t;
+	if (t > maxWaitNanos)
+	    maxWaitNanos = t;
+    }
+
+    /**
+     * Returns a leased engine to this pool.<br>
+     * This method resets <code>c</code> by <code>PrologControl.reset()</code>,
+     * which discards only the entries used by the last query,
+     * and restores its inference and time limits to those of this pool.
+     * Internal databases are also discarded if <code>isResetDatabases()</code> is <code>true</code>.
+     * If the reset fails, <code>c</code> is discarded instead of being reused.
+     * @exception IllegalArgumentException if <code>c</code> is not leased from this pool,
+     * for example if it has already been released.
+     */
+    public void release(PrologControl c) {
+	checkLeased(c);
+	boolean reset = false;
+	try {
+	    c.reset();
+	    restoreLimits(c);
+	    if (resetDatabases)
+		c.engine.resetDatabases();
+	    reset = true;
+	} finally {
+	    lock.lock();
+	    try {
+		active--;
+		if (reset)
+		    idle.push(c);
+		available.signal();
+	    } finally {
+		lock.unlock();
+	    }
+	}
+    }
+
+    /**
+     * Removes <code>c</code> from the leased engines.
+     * @exception IllegalArgumentException if <code>c</code> is not leased from this pool.
+     */
+    private void checkLeased(PrologControl c) {
+	lock.lock();
+	try {
+	    if (! leased.remove(c))
+		throw new IllegalArgumentException("engine not leased from this pool: " + c);
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Removes a leased engine from this pool without reusing it,
+     * for example after it has been left in an unknown state.
+     * @exception IllegalArgumentException if <code>c</code> is not leased from this pool.
+     */
+    public void invalidate(PrologControl c) {
+	checkLeased(c);
+	try {
+	    c.stop();
+	} finally {
+	    lock.lock();
+	    try {
+		active--;
+		available.signal();
+	    } finally {
+		lock.unlock();
+	    }
+	}
+    }
+
+    /** Discards all idle engines. */
+    public void clear() {
+	lock.lock();
+	try {
+	    idle.clear();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns <code>true</code> if internal databases are discarded when an engine is released. */
+    public boolean isResetDatabases() { return resetDatabases; }
+    /**
+     * Sets whether internal databases are discarded when an engine is released.
+     * @see Prolog#resetDatabases
+     */
+    public void setResetDatabases(boolean b) { resetDatabases = b; }
+
+    /** Returns <code>true</code> if engines created after this call execute goals on the caller's thread. */
+    public boolean isCallerThread() { return callerThread; }
+    /**
+     * Sets whether engines created after this call execute goals on the caller's thread.
+     * @see PrologControl#setCallerThread
+     */
+    public void setCallerThread(boolean b) { callerThread = b; }
+
+    /** Returns the maximum number of inferences of each goal of leased engines, or <code>0</code> for no limit. */
+    public long getInferenceLimit() { return inferenceLimit; }
+    /**
+     * Sets the maximum number of inferences of each goal of engines leased after this call.
+     * Engines are given this limit when they are created, leased, and released,
+     * whatever limit was set on them while they were leased.
+     * <code>0</code> means no limit.
+     * @see PrologControl#setInferenceLimit
+     */
+    public void setInferenceLimit(long n) { inferenceLimit = n; }
+
+    /** Returns the maximum time in milliseconds of each goal of leased engines, or <code>0</code> for no limit. */
+    public long getTimeLimit() { return timeLimit; }
+    /**
+     * Sets the maximum time in milliseconds of each goal of engines leased after this call.
+     * Engines are given this limit when they are created, leased, and released,
+     * whatever limit was set on them while they were leased.
+     * <code>0</code> means no limit.
+     * @see PrologControl#setTimeLimit
+     */
+    public void setTimeLimit(long millis) { timeLimit = millis; }
+
+    /** Returns the maximum number of engines. */
+    public int getMaxSize() { return maxSize; }
+
+    /** Returns the number of engines currently leased. */
+    public int getActive() {
+	lock.lock();
+	try {
+	    return active;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns the number of idle engines. */
+    public int getIdle() {
+	lock.lock();
+	try {
+	    return idle.size();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns the number of engines created by this pool. */
+    public long getCreated() {
+	lock.lock();
+	try {
+	    return created;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns the number of successful leases. */
+    public long getLeases() {
+	lock.lock();
+	try {
+	    return leases;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns the number of leases that gave up waiting. */
+    public long getTimeouts() {
+	lock.lock();
+	try {
+	    return timeouts;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns the total time in milliseconds spent waiting for an engine. */
+    public long getWaitTimeMillis() {
+	lock.lock();
+	try {
+	    return waitNanos / 1000000;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns the longest time in milliseconds spent waiting for an engine. */
+    public long getMaxWaitTimeMillis() {
+	lock.lock();
+	try {
+	    return maxWaitNanos / 1000000;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns a string representation of the metrics of this pool. */
+    public String toString() {
+	lock.lock();
+	try {
+	    return "EnginePool(active=" + active + ", idle=" + idle.size()
+		+ ", max=" + maxSize + ", created=" + created + ", leases=" + leases
+		+ ", timeouts=" + timeouts + ", wait=" + waitNanos / 1000000 + "ms)";
+	} finally {
+	    lock.unlock();
+	}
+    }
+}
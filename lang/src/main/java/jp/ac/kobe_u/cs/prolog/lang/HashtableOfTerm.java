@@ -1,21 +1,220 @@
 package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
 /**
  * <code>Hashtable&lt;Term,Term&gt;</code>.<br>
  * <font color="red">This document is under construction.</font>
  *
+ * A <code>HashtableOfTerm</code> created by <code>fork()</code> is a copy-on-write
+ * view of another table, its <em>template</em>.
+ * It shares the entries of the template until they are overwritten or removed,
+ * and a nested <code>HashtableOfTerm</code> value (wrapped by <code>JavaObjectTerm</code>)
+ * is forked in turn when it is first looked up.
+ * The template must not be modified while it has forks.
+ *
  * @author Mutsunori Banbara (banbara@kobe-u.ac.jp)
  * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
  * @version 1.0
  */
 public class HashtableOfTerm extends Hashtable<Term,Term> {
-    public HashtableOfTerm() { 
-	super(); 
+    /** Holds the table whose entries are shared, or <code>null</code>. */
+    protected HashtableOfTerm template;
+    /** Keys of <code>template</code> that have been removed from this table. */
+    protected HashSet<Term> removed;
+    /** Keys whose list values have been copied from shared ones and may be modified in place. */
+    protected HashSet<Term> owned;
+
+    public HashtableOfTerm() {
+	super();
     }
-    public HashtableOfTerm(int initialCapacity) { 
+    public HashtableOfTerm(int initialCapacity) {
 	super(initialCapacity);
     }
     public HashtableOfTerm(int initialCapacity, float loadFactor) {
 	super(initialCapacity, loadFactor);
     }
-}
\ No newline at end of file
+
+    /** Constructs a copy-on-write view of <code>t</code>. */
+    protected HashtableOfTerm(HashtableOfTerm t) {
+	super();
+	template = t;
+	removed  = new HashSet<Term>();
+	owned    = new HashSet<Term>();
+    }
+
+    /**
+     * Returns a new table that shares the entries of this table copy-on-write.
+     * This table must not be modified while the returned table is in use.
+     */
+    public HashtableOfTerm fork() {
+	return new HashtableOfTerm(this);
+    }
+
+    /** Returns the value from <code>template</code>, forking it if it is a nested table. */
+    private Term inherit(Object key) {
+	if (removed.contains(key))
+	    return null;
+	Term v = template.get(key);
+	if (v != null && v.isJavaObject()) {
+	    Object o = ((JavaObjectTerm) v).object();
+	    if (o instanceof HashtableOfTerm) {
+		v = new JavaObjectTerm(((HashtableOfTerm) o).fork());
+		super.put((Term) key, v);
+	    }
+	}
+	return v;
+    }
+
+    public synchronized Term get(Object key) {
+	Term v = super.get(key);
+	if (v != null || template == null)
+	    return v;
+	return inherit(key);
+    }
+
+    /**
+     * Returns the value to which <code>key</code> is mapped,
+     * like <code>get(key)</code>, so that the caller may modify its list cells in place.
+     * If the list is shared with the template, it is copied first.
+     * The modified value should then be stored by <code>put(key, value)</code>.
+     */
+    public synchronized Term getForUpdate(Term key) {
+	Term v = get(key);
+	if (template == null || v == null || ! v.isList() || owned.contains(key))
+	    return v;
+	ListTerm head = new ListTerm(((ListTerm) v).car(), Prolog.Nil);
+	ListTerm last = head;
+	Term x = ((ListTerm) v).cdr().dereference();
+	while (x.isList()) {
+	    ListTerm c = new ListTerm(((ListTerm) x).car(), Prolog.Nil);
+	    last.setCdr(c);
+	    last = c;
+	    x = ((ListTerm) x).cdr().dereference();
+	}
+	last.setCdr(x);
+	super.put(key, head);
+	owned.add(key);
+	return head;
+    }
+
+    public synchronized Term put(Term key, Term value) {
+	if (template == null)
+	    return super.put(key, value);
+	Term old = get(key);
+	if (old != value)
+	    owned.remove(key);
+	super.put(key, value);
+	removed.remove(key);
+	return old;
+    }
+
+    public synchronized Term remove(Object key) {
+	if (template == null)
+	    return super.remove(key);
+	Term old = get(key);
+	super.remove(key);
+	owned.remove(key);
+	if (template.containsKey(key))
+	    removed.add((Term) key);
+	return old;
+    }
+
+    public synchronized boolean containsKey(Object key) {
+	if (super.containsKey(key))
+	    return true;
+	return template != null && ! removed.contains(key) && template.containsKey(key);
+    }
+
+    public synchronized int size() {
+	if (template == null)
+	    return super.size();
+	int n = super.size();
+	for (Enumeration<Term> e = template.keys(); e.hasMoreElements();) {
+	    Term k = e.nextElement();
+	    if (! removed.contains(k) && ! super.containsKey(k))
+		n++;
+	}
+	return n;
+    }
+
+    public synchronized boolean isEmpty() {
+	return size() == 0;
+    }
+
+    public synchronized Enumeration<Term> keys() {
+	if (template == null)
+	    return super.keys();
+	Vector<Term> v = new Vector<Term>();
+	for (Enumeration<Term> e = super.keys(); e.hasMoreElements();)
+	    v.add(e.nextElement());
+	for (Enumeration<Term> e = template.keys(); e.hasMoreElements();) {
+	    Term k = e.nextElement();
+	    if (! removed.contains(k) && ! super.containsKey(k))
+		v.add(k);
+	}
+	return v.elements();
+    }
+
+    public synchronized void clear() {
+	super.clear();
+	template = null;
+	removed  = null;
+	owned    = null;
+    }
+
+    /** Copies all entries of <code>template</code> into this table and stops sharing them. */
+    protected synchronized void materialize() {
+	if (template == null)
+	    return;
+	for (Enumeration<Term> e = keys(); e.hasMoreElements();) {
+	    Term k = e.nextElement();
+	    Term v = getForUpdate(k);
+	    if (! super.containsKey(k))
+		super.put(k, v);
+	}
+	template = null;
+	removed  = null;
+	owned    = null;
+    }
+
+    public synchronized Enumeration<Term> elements() {
+	materialize();
+	return super.elements();
+    }
+
+    public synchronized boolean contains(Object value) {
+	materialize();
+	return super.contains(value);
+    }
+
+    public synchronized boolean containsValue(Object value) {
+	materialize();
+	return super.containsValue(value);
+    }
+
+    public synchronized Set<Term> keySet() {
+	materialize();
+	return super.keySet();
+    }
+
+    public synchronized Set<Map.Entry<Term,Term>> entrySet() {
+	materialize();
+	return super.entrySet();
+    }
+
+    public synchronized Collection<Term> values() {
+	materialize();
+	return super.values();
+    }
+
+    /** Serializes the entries of <code>template</code> together with this table. */
+    protected Object writeReplace() {
+	materialize();
+	return this;
+    }
+}
@@ -1,55 +1,130 @@
 package jp.ac.kobe_u.cs.prolog.lang;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 /**
  * Integer.<br>
- * The class <code>IntegerTerm</code> wraps a value of primitive type 
- * <code>int</code>. 
+ * The class <code>IntegerTerm</code> wraps a value of primitive type
+ * <code>long</code>.
  * <pre>
- *   Term t = new IntegerTerm(100);
+ *   Term t = IntegerTerm.valueOf(100);
  *   int i = ((IntegerTerm)t).intValue();
  * </pre>
  *
+ * Arithmetic on two <code>IntegerTerm</code> objects is done in <code>long</code>,
+ * and the result is promoted to a <code>BigIntegerTerm</code> only when it overflows.
+ * Results in the range from <code>-1024</code> to <code>65535</code> are
+ * shared instances returned by <code>valueOf</code>.
+ *
+ * @see BigIntegerTerm
  * @author Mutsunori Banbara (banbara@kobe-u.ac.jp)
  * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
  * @version 1.0
  */
 public class IntegerTerm extends NumberTerm {
-    /** Holds an <code>int</code> value that this <code>IntegerTerm</code> represents. */
-    protected int val;
+    /** The smallest value of the cached instances. */
+    private static final int CACHE_LOW  = -1024;
+    /** The largest value of the cached instances. */
+    private static final int CACHE_HIGH = 65535;
+    /** Holds the cached instances, created when first requested. */
+    private static final IntegerTerm[] cache = new IntegerTerm[CACHE_HIGH - CACHE_LOW + 1];
+
+    /** Holds a <code>long</code> value that this <code>IntegerTerm</code> represents. */
+    protected final long val;
 
     /** Constructs a new Prolog integer that represents the specified <code>int</code> value. */
-    public IntegerTerm(int i) {	val = i; }
+    public IntegerTerm(int i) {
+	super(TAG_INTEGER);
+	val = i;
+    }
+
+    /** Constructs a new Prolog integer that represents the specified <code>long</code> value. */
+    public IntegerTerm(long i) {
+	super(TAG_INTEGER);
+	val = i;
+    }
 
     /**
-     * Constructs a new Prolog integer that represents integer value 
+     * Constructs a new Prolog integer that represents integer value
      * of specified <code>String</code> parameter.
      * @exception NumberFormatException
-     * if the <code>String</code> does not contain a parsable integer.
+     * if the <code>String</code> does not contain a parsable <code>long</code>.
+     * @see #valueOf(String)
      */
     public IntegerTerm(String i) {
+	super(TAG_INTEGER);
+	val = Long.parseLong(i);
+    }
+
+    /** Constructs a new Prolog integer with the given type tag. */
+    protected IntegerTerm(byte _tag, long i) {
+	super(_tag);
+	val = i;
+    }
+
+    /**
+     * Returns a Prolog integer that represents the specified <code>long</code> value.
+     * Small values are returned from a cache instead of being allocated.
+     */
+    public static IntegerTerm valueOf(long i) {
+	if (i >= CACHE_LOW && i <= CACHE_HIGH) {
+	    int k = (int) i - CACHE_LOW;
+	    IntegerTerm t = cache[k];
+	    if (t == null)
+		cache[k] = t = new IntegerTerm(i);
+	    return t;
+	}
+	return new IntegerTerm(i);
+    }
+
+    /**
+     * Returns a Prolog integer that represents integer value
+     * of specified <code>String</code> parameter, of any size.
+     * @exception NumberFormatException
+     * if the <code>String</code> does not contain a parsable integer.
+     */
+    public static IntegerTerm valueOf(String i) {
 	try {
-	    val = Integer.parseInt(i);
+	    return valueOf(Long.parseLong(i));
 	} catch (NumberFormatException e) {
-	    throw e;
+	    return BigIntegerTerm.valueOf(new BigInteger(i));
 	}
     }
 
     /**
-     * Returns the value of <code>val</code>.
-     * @see #val
+     * Returns a Prolog integer that represents the integer part of <code>d</code>.
+     * @exception EvaluationException if <code>d</code> is infinite or NaN.
+     */
+    static IntegerTerm valueOf(double d) {
+	if (d >= -0x1p63 && d < 0x1p63)
+	    return valueOf((long) d);
+	if (Double.isNaN(d) || Double.isInfinite(d))
+	    throw new EvaluationException("undefined");
+	return BigIntegerTerm.valueOf(new BigDecimal(d).toBigInteger());
+    }
+
+    /**
+     * Returns the value of this integer narrowed to <code>int</code>.
+     * @see #intValue
+     * @see #intValueExact()
      */
-    public int value() { return val; }
+    public int value() { return intValue(); }
+
+    /** Returns the value of this integer as a <code>BigInteger</code>. */
+    public BigInteger bigIntegerValue() { return BigInteger.valueOf(val); }
 
     /* Term */
     public boolean unify(Term t, Trail trail) {
-	if (t.isVariable())
+	switch (t.tag) {
+	case TAG_VARIABLE:
 	    return ((VariableTerm)t).unify(this, trail);
-	if (! t.isInteger())
+	case TAG_INTEGER:
+	    return this.val == ((IntegerTerm)t).val;
+	default:
 	    return false;
-	else 
-	    return this.val == ((IntegerTerm)t).value();
+	}
     }
 
-    /** 
+    /**
      * @return the <code>boolean</code> whose value is
      * <code>convertible(Integer.class, type)</code>.
      * @see Term#convertible(Class, Class)
@@ -58,51 +133,59 @@ public class IntegerTerm extends NumberTerm {
 
     //    protected Term copy(Prolog engine) { return new IntegerTerm(val); }
 
-    /** 
+    /**
      * Returns a <code>java.lang.Integer</code> corresponds to this <code>IntegerTerm</code>
-     * according to <em>Prolog Cafe interoperability with Java</em>.
-     * @return a <code>java.lang.Integer</code> object equivalent to
+     * according to <em>Prolog Cafe interoperability with Java</em>,
+     * or a <code>java.lang.Long</code> if the value does not fit in an <code>int</code>.
+     * @return a <code>java.lang.Integer</code> or <code>java.lang.Long</code> object equivalent to
      * this <code>IntegerTerm</code>.
      */
-    public Object toJava() { return new Integer(this.val); }
+    public Object toJava() {
+	if (this.val == (int) this.val)
+	    return Integer.valueOf((int) this.val);
+	return Long.valueOf(this.val);
+    }
 
     /* Object */
     /** Returns a string representation of this <code>IntegerTerm</code>. */
-    public String toString() { return Integer.toString(this.val); }
+    public String toString() { return Long.toString(this.val); }
 
     /**
      * Checks <em>term equality</em> of two terms.
      * The result is <code>true</code> if and only if the argument is an instance of
-     * <code>IntegerTerm</code> and has the same <code>int</code> value as this object.
+     * <code>IntegerTerm</code> and has the same value as this object.
      * @param obj the object to compare with. This must be dereferenced.
-     * @return <code>true</code> if the given object represents a Prolog integer 
+     * @return <code>true</code> if the given object represents a Prolog integer
      * equivalent to this <code>IntegerTerm</code>, false otherwise.
      * @see #compareTo
     */
     public boolean equals(Object obj) {
-	if (! (obj instanceof IntegerTerm))
+	if (! (obj instanceof IntegerTerm) || ((IntegerTerm)obj).tag != TAG_INTEGER)
 	    return false;
-	return this.val == ((IntegerTerm)obj).value();
+	return this.val == ((IntegerTerm)obj).val;
     }
 
-    public int hashCode() { return this.val; }
+    public int hashCode() {
+	int h = (int) this.val;
+	return h == this.val ? h : h ^ (int) (this.val >>> 32);
+    }
 
     /* Comparable */
-    /** 
+    /**
      * Compares two terms in <em>Prolog standard order of terms</em>.<br>
      * It is noted that <code>t1.compareTo(t2) == 0</code> has the same
      * <code>boolean</code> value as <code>t1.equals(t2)</code>.
      * @param anotherTerm the term to compared with. It must be dereferenced.
-     * @return the value <code>0</code> if two terms are identical; 
+     * @return the value <code>0</code> if two terms are identical;
      * a value less than <code>0</code> if this term is <em>before</em> the <code>anotherTerm</code>;
      * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
      */
     public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced.
-	if (anotherTerm.isVariable() || anotherTerm.isDouble())
-	    return AFTER;
-	if (! anotherTerm.isInteger())
-	    return BEFORE;
-	int v = ((IntegerTerm)anotherTerm).value();
+	if (anotherTerm.tag == TAG_BIGINTEGER)
+	    return - anotherTerm.compareTo(this);
+	if (anotherTerm.tag != TAG_INTEGER)
+	    return anotherTerm.tag < TAG_INTEGER ? AFTER : BEFORE;
+	long v = ((IntegerTerm)anotherTerm).val;
 	if (this.val == v)
 	    return EQUAL;
 	if (this.val > v)
@@ -111,16 +194,48 @@ public class IntegerTerm extends NumberTerm {
     }
 
     /* NumberTerm */
-    public int intValue() { return this.val; }
+    /** Returns the value of this integer narrowed to <code>int</code>, which may lose its magnitude and sign. */
+    public int intValue() { return (int) this.val; }
+
+    /** Returns the value of this integer narrowed to <code>long</code>, which may lose its magnitude and sign. */
+    public long longValue() { return this.val; }
 
-    public long longValue() { return (long)(this.val); }
+    /**
+     * Returns the value of this integer as an <code>int</code>.
+     * @exception RepresentationException if the value does not fit in an <code>int</code>.
+     */
+    public int intValueExact() { return intValueExact(null, 0); }
+
+    /**
+     * Returns the value of this integer, which is the argument <code>argNo</code> of <code>goal</code>, as an <code>int</code>.
+     * @exception RepresentationException if the value does not fit in an <code>int</code>.
+     * The flag of the error is <code>max_integer</code> or <code>min_integer</code>.
+     */
+    public int intValueExact(Predicate goal, int argNo) {
+	if (this.val != (int) this.val)
+	    throw new RepresentationException(goal, argNo, this.val > 0 ? "max_integer" : "min_integer");
+	return (int) this.val;
+    }
+
+    /**
+     * Returns the value of this integer as a <code>long</code>.
+     * @exception RepresentationException if the value does not fit in a <code>long</code>.
+     */
+    public long longValueExact() { return longValueExact(null, 0); }
+
+    /**
+     * Returns the value of this integer, which is the argument <code>argNo</code> of <code>goal</code>, as a <code>long</code>.
+     * @exception RepresentationException if the value does not fit in a <code>long</code>.
+     * The flag of the error is <code>max_integer</code> or <code>min_integer</code>.
+     */
+    public long longValueExact(Predicate goal, int argNo) { return this.val; }
 
     public double doubleValue() { return (double)(this.val); }
 
     public int arithCompareTo(NumberTerm t) {
-	if (t.isDouble())
+	if (t.tag != TAG_INTEGER)
 	    return - (t.arithCompareTo(this));
-	int v = t.intValue();
+	long v = ((IntegerTerm)t).val;
 	if (this.val == v)
 	    return EQUAL;
 	if (this.val > v)
@@ -128,24 +243,52 @@ public class IntegerTerm extends NumberTerm {
 	return BEFORE;
     }
 
-    public NumberTerm abs() { return new IntegerTerm(Math.abs(this.val)); }
+    /** Checks whether both this and <code>t</code> are <code>long</code> integers. */
+    private boolean isSmall(NumberTerm t) {
+	return this.tag == TAG_INTEGER && t.tag == TAG_INTEGER;
+    }
+
+    /**
+     * Returns the value of <code>t</code> as a <code>BigInteger</code>.
+     * @exception IllegalTypeException if <code>t</code> is a floating point number.
+     */
+    private static BigInteger big(NumberTerm t) {
+	if (t.isDouble())
+	    throw new IllegalTypeException("integer", t);
+	return ((IntegerTerm)t).bigIntegerValue();
+    }
+
+    public NumberTerm abs() {
+	if (this.val >= 0)
+	    return this;
+	if (this.val == Long.MIN_VALUE)
+	    return BigIntegerTerm.valueOf(bigIntegerValue().negate());
+	return valueOf(- this.val);
+    }
 
     public NumberTerm acos() { return new DoubleTerm(Math.acos(this.doubleValue())); }
 
     public NumberTerm add(NumberTerm t) {
-	if (t.isDouble())
+	if (isSmall(t)) {
+	    long x = this.val;
+	    long y = ((IntegerTerm)t).val;
+	    long r = x + y;
+	    if (((x ^ r) & (y ^ r)) >= 0)
+		return valueOf(r);
+	} else if (t.isDouble()) {
 	    return t.add(this);
-	return new IntegerTerm(this.val + t.intValue());
+	}
+	return BigIntegerTerm.valueOf(bigIntegerValue().add(big(t)));
     }
 
-    /** 
+    /**
      * @exception IllegalTypeException if the given argument
      * <code>NumberTerm</code> is a floating point number.
      */
     public NumberTerm and(NumberTerm t) {
-	if (t.isDouble())
-	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val & t.intValue());
+	if (isSmall(t))
+	    return valueOf(this.val & ((IntegerTerm)t).val);
+	return BigIntegerTerm.valueOf(bigIntegerValue().and(big(t)));
     }
 
     public NumberTerm asin() { return new DoubleTerm(Math.asin(this.doubleValue())); }
@@ -156,14 +299,14 @@ public class IntegerTerm extends NumberTerm {
 
     public NumberTerm cos() { return new DoubleTerm(Math.cos(this.doubleValue())); }
 
-    /** 
+    /**
      * @exception EvaluationException if the given argument
      * <code>NumberTerm</code> represents <coe>0</code>.
      */
-    public NumberTerm divide(NumberTerm t) { 
+    public NumberTerm divide(NumberTerm t) {
 	if (t.doubleValue() == 0)
 	    throw new EvaluationException("zero_divisor");
-	return new DoubleTerm(this.doubleValue() / t.doubleValue()); 
+	return new DoubleTerm(this.doubleValue() / t.doubleValue());
     }
 
     public NumberTerm exp() { return new DoubleTerm(Math.exp(this.doubleValue())); }
@@ -174,73 +317,97 @@ public class IntegerTerm extends NumberTerm {
 
     public NumberTerm floor() { return this; }
 
-    /** 
+    /**
      * @exception IllegalTypeException if the given argument
      * <code>NumberTerm</code> is a floating point number.
      * @exception EvaluationException if the given argument
      * <code>NumberTerm</code> represents <coe>0</code>.
      */
     public NumberTerm intDivide(NumberTerm t) {
-	if (t.isDouble())
-	    throw new IllegalTypeException("integer", t);
-	if (t.intValue() == 0)
+	if (isSmall(t)) {
+	    long y = ((IntegerTerm)t).val;
+	    if (y == 0)
+		throw new EvaluationException("zero_divisor");
+	    if (! (this.val == Long.MIN_VALUE && y == -1))
+		return valueOf(this.val / y);
+	}
+	BigInteger y = big(t);
+	if (y.signum() == 0)
 	    throw new EvaluationException("zero_divisor");
-	return new IntegerTerm((int) (this.val / t.intValue()));
+	return BigIntegerTerm.valueOf(bigIntegerValue().divide(y));
     }
 
-    /** 
+    /**
      * @exception EvaluationException if this object represents <coe>0</code>.
      */
-    public NumberTerm log() { 
+    public NumberTerm log() {
 	if (this.val == 0)
 	    throw new EvaluationException("undefined");
-	return new DoubleTerm(Math.log(this.doubleValue())); 
+	return new DoubleTerm(Math.log(this.doubleValue()));
     }
 
     public NumberTerm max(NumberTerm t) {
-	if (t.isDouble()) 
+	if (t.isDouble())
 	    return t.max(this);
-	return new IntegerTerm(Math.max(this.val, t.intValue()));
+	return arithCompareTo(t) >= 0 ? this : t;
     }
 
     public NumberTerm min(NumberTerm t) {
-	if (t.isDouble()) 
+	if (t.isDouble())
 	    return t.min(this);
-	return new IntegerTerm(Math.min(this.val, t.intValue()));
+	return arithCompareTo(t) <= 0 ? this : t;
     }
 
-    /** 
+    /**
      * @exception IllegalTypeException if the given argument
      * <code>NumberTerm</code> is a floating point number.
      * @exception EvaluationException if the given argument
      * <code>NumberTerm</code> represents <coe>0</code>.
      */
     public NumberTerm mod(NumberTerm t) {
-	if (t.isDouble())
-	    throw new IllegalTypeException("integer", t);
-	if (t.intValue() == 0)
+	if (isSmall(t)) {
+	    long y = ((IntegerTerm)t).val;
+	    if (y == 0)
+		throw new EvaluationException("zero_divisor");
+	    return valueOf(this.val % y);
+	}
+	BigInteger y = big(t);
+	if (y.signum() == 0)
 	    throw new EvaluationException("zero_divisor");
-	return new IntegerTerm(this.val % t.intValue());
+	return BigIntegerTerm.valueOf(bigIntegerValue().remainder(y));
     }
 
     public NumberTerm multiply(NumberTerm t) {
-	if (t.isDouble())
+	if (isSmall(t)) {
+	    long x = this.val;
+	    long y = ((IntegerTerm)t).val;
+	    long r = x * y;
+	    if (((Math.abs(x) | Math.abs(y)) >>> 31) == 0)
+		return valueOf(r);
+	    if ((y == 0 || (r / y == x && ! (x == Long.MIN_VALUE && y == -1))))
+		return valueOf(r);
+	} else if (t.isDouble()) {
 	    return t.multiply(this);
-	return new IntegerTerm(this.val * t.intValue());
+	}
+	return BigIntegerTerm.valueOf(bigIntegerValue().multiply(big(t)));
     }
 
-    public NumberTerm negate() { return new IntegerTerm(- this.val); }
+    public NumberTerm negate() {
+	if (this.val == Long.MIN_VALUE)
+	    return BigIntegerTerm.valueOf(bigIntegerValue().negate());
+	return valueOf(- this.val);
+    }
 
-    public NumberTerm not() { return new IntegerTerm(~ this.val); }
+    public NumberTerm not() { return valueOf(~ this.val); }
 
-    /** 
+    /**
      * @exception IllegalTypeException if the given argument
      * <code>NumberTerm</code> is a floating point number.
      */
     public NumberTerm or(NumberTerm t) {
-	if (t.isDouble())
-	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val | t.intValue());
+	if (isSmall(t))
+	    return valueOf(this.val | ((IntegerTerm)t).val);
+	return BigIntegerTerm.valueOf(bigIntegerValue().or(big(t)));
     }
 
     public NumberTerm pow(NumberTerm t) { return new DoubleTerm(Math.pow(this.doubleValue(), t.doubleValue())); }
@@ -249,63 +416,81 @@ public class IntegerTerm extends NumberTerm {
 
     public NumberTerm round() { return this; }
 
-    /** 
+    /**
      * @exception IllegalTypeException if the given argument
      * <code>NumberTerm</code> is a floating point number.
+     * @exception RepresentationException if the given argument does not fit in an <code>int</code>.
      */
     public NumberTerm shiftLeft(NumberTerm t) {
 	if (t.isDouble())
 	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val << t.intValue());
+	int n = ((IntegerTerm)t).intValueExact();
+	if (isSmall(t) && n >= 0 && n < 64) {
+	    long r = this.val << n;
+	    if ((r >> n) == this.val)
+		return valueOf(r);
+	}
+	return BigIntegerTerm.valueOf(bigIntegerValue().shiftLeft(n));
     }
 
-    /** 
+    /**
      * @exception IllegalTypeException if the given argument
      * <code>NumberTerm</code> is a floating point number.
+     * @exception RepresentationException if the given argument does not fit in an <code>int</code>.
      */
     public NumberTerm shiftRight(NumberTerm t) {
 	if (t.isDouble())
 	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val >> t.intValue());
+	int n = ((IntegerTerm)t).intValueExact();
+	if (isSmall(t) && n >= 0)
+	    return valueOf(n < 64 ? this.val >> n : this.val >> 63);
+	return BigIntegerTerm.valueOf(bigIntegerValue().shiftRight(n));
     }
 
-    public NumberTerm signum() {return new IntegerTerm((int) Math.signum((double) this.val)); }
+    public NumberTerm signum() { return valueOf(Long.signum(this.val)); }
 
     public NumberTerm sin() { return new DoubleTerm(Math.sin(this.doubleValue())); }
 
-    /** 
+    /**
      * @exception EvaluationException if this object represents
      * an integer less than <coe>0</code>.
      */
-    public NumberTerm sqrt() { 
+    public NumberTerm sqrt() {
 	if (this.val < 0)
 	    throw new EvaluationException("undefined");
-	return new DoubleTerm(Math.sqrt(this.doubleValue())); 
+	return new DoubleTerm(Math.sqrt(this.doubleValue()));
     }
 
     public NumberTerm subtract(NumberTerm t) {
-	if (t.isDouble())
+	if (isSmall(t)) {
+	    long x = this.val;
+	    long y = ((IntegerTerm)t).val;
+	    long r = x - y;
+	    if (((x ^ y) & (x ^ r)) >= 0)
+		return valueOf(r);
+	} else if (t.isDouble()) {
 	    return new DoubleTerm(this.doubleValue() - t.doubleValue());
-	return new IntegerTerm(this.val - t.intValue());
+	}
+	return BigIntegerTerm.valueOf(bigIntegerValue().subtract(big(t)));
     }
 
     public NumberTerm tan() { return new DoubleTerm(Math.tan(this.doubleValue())); }
 
     public NumberTerm toDegrees() { return new DoubleTerm(Math.toDegrees(this.doubleValue())); }
 
-    public NumberTerm toFloat() { return new DoubleTerm((double) this.val); }
+    public NumberTerm toFloat() { return new DoubleTerm(this.doubleValue()); }
 
     public NumberTerm toRadians() { return new DoubleTerm(Math.toRadians(this.doubleValue())); }
 
     public NumberTerm truncate() { return this; }
 
-    /** 
+    /**
      * @exception IllegalTypeException if the given argument
      * <code>NumberTerm</code> is a floating point number.
      */
     public NumberTerm xor(NumberTerm t) {
-	if (t.isDouble())
-	    throw new IllegalTypeException("integer", t);
-	return new IntegerTerm(this.val ^ t.intValue());
+	if (isSmall(t))
+	    return valueOf(this.val ^ ((IntegerTerm)t).val);
+	return BigIntegerTerm.valueOf(bigIntegerValue().xor(big(t)));
     }
 }
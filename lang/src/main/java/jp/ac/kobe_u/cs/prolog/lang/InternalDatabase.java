@@ -9,8 +9,11 @@ import java.util.LinkedList;
  * @version 1.1
  */
 public class InternalDatabase implements Serializable {
-    /** Maximum size of enties. Initial size is <code>100000</code>. */
-    protected int maxContents = 100000;
+    /** Initial size of entries. Default value is <code>256</code>. */
+    protected int initialContents = 256;
+
+    /** Maximum size of enties. This is <code>0</code> until the first entry is inserted. */
+    protected int maxContents = 0;
 
     /** An array of <code>Term</code> entries. */
     protected Term[] buffer;
@@ -22,48 +25,98 @@ public class InternalDatabase implements Serializable {
     /** the top index of this <code>InternalDatabase</code>. */
     protected int top;
 
+    /** 
+     * A flag that indicates whether <code>buffer</code> is shared with other internal databases
+     * created by <code>fork()</code>. A shared buffer is copied before it is modified.
+     */
+    protected boolean shared = false;
+
     /** Constructs a new internal dababase. */
     public InternalDatabase() {
-	buffer = new Term[maxContents];
+	buffer = new Term[0];
 	top = -1;
     }
 
-    /** Constructs a new internal dababase with the given size. */
+    /** Constructs a new internal dababase with the given initial size. */
     public InternalDatabase(int n) {
-	maxContents = n;
-	buffer = new Term[maxContents];
-	top = -1;
+	this();
+	setInitialSize(n);
     }
 
     /** Discards all entries. */
     public void init() { eraseAll(); }
 
+    /**
+     * Returns a new internal database that shares the entries of this database.
+     * Either database copies the entry array before its first modification,
+     * while the entries themselves stay shared.
+     */
+    public InternalDatabase fork() {
+	InternalDatabase d = new InternalDatabase();
+	d.initialContents = initialContents;
+	d.maxContents     = maxContents;
+	d.buffer          = buffer;
+	d.top             = top;
+	d.reusableIndices = new LinkedList<Integer>(reusableIndices);
+	d.shared          = true;
+	shared = true;
+	return d;
+    }
+
+    /** Copies <code>buffer</code> if it is shared. */
+    protected void unshare() {
+	if (shared) {
+	    buffer = buffer.clone();
+	    shared = false;
+	}
+    }
+
     /** Inserts an entry to this <code>InternalDatabase</code>. */
     public int insert(Term t) {
-	try {
-	    if (reusableIndices.isEmpty()) {
-		buffer[++top] = t;
-		return top;
-	    } else {
-		int i = reusableIndices.remove();
-		//		System.out.println("Reuse " + i);
-		buffer[i] = t;
-		return i;
-	    }
-	} catch (ArrayIndexOutOfBoundsException e) {
-	    System.out.println("{expanding internal database...}");
-	    int len = buffer.length;
-	    Term[] new_buffer = new Term[len+10000];
-	    for(int i=0; i<len; i++){
-		new_buffer[i] = buffer[i];
-	    }
-	    buffer = new_buffer;
+	unshare();
+	if (reusableIndices.isEmpty()) {
+	    if (++top == maxContents)
+		expand();
 	    buffer[top] = t;
-	    maxContents = len+20000;
 	    return top;
+	} else {
+	    int i = reusableIndices.remove();
+	    //		System.out.println("Reuse " + i);
+	    buffer[i] = t;
+	    return i;
 	}
     }
 
+    /** Doubles the size of this <code>InternalDatabase</code>. */
+    protected void expand() {
+	int len = maxContents == 0 ? initialContents : maxContents * 2;
+	Term[] new_buffer = new Term[len];
+	System.arraycopy(buffer, 0, new_buffer, 0, maxContents);
+	buffer = new_buffer;
+	maxContents = len;
+    }
+
+    /** Returns the value of <code>maxContents</code>. 
+     * @see #maxContents
+     */
+    public int max() { return maxContents; }
+
+    /** Returns the value of <code>initialContents</code>. 
+     * @see #initialContents
+     */
+    public int initialSize() { return initialContents; }
+
+    /** 
+     * Sets the value of <code>initialContents</code>.
+     * If no entry has been inserted yet, the first allocation uses this size.
+     * @see #initialContents
+     */
+    public void setInitialSize(int n) {
+	if (n < 1)
+	    throw new IllegalArgumentException("initial size must be positive: " + n);
+	initialContents = n;
+    }
+
     /** Returns an entry with the given index from this <code>InternalDatabase</code>. */
     public Term get(int i) {
 	return buffer[i];
@@ -71,6 +124,7 @@ public class InternalDatabase implements Serializable {
 
     /** Erases an entry with the given index from this <code>InternalDatabase</code>. */
     public Term erase(int i) {
+	unshare();
 	Term t = buffer[i];
 	buffer[i] = null;
 	//	System.out.println("add Reuse index" + i);
@@ -80,9 +134,16 @@ public class InternalDatabase implements Serializable {
 
     /** Discards all entries. */
     protected void eraseAll() {
+	if (shared) {
+	    buffer = new Term[0];
+	    maxContents = 0;
+	    top = -1;
+	    shared = false;
+	}
 	while (! empty()) {
 	    buffer[top--] = null;
 	}	
+	reusableIndices.clear();
     }
 
     /** Tests if this has no entry. */
@@ -22,6 +22,7 @@ public class JavaObjectTerm extends Term {
 
     /** Constructs a new Prolog java-term that wraps the argument object. */
     public JavaObjectTerm(Object _obj) { 
+	super(TAG_JAVA);
 	if (_obj != null)
 	    setObject(_obj);
     }
@@ -42,11 +43,14 @@ public class JavaObjectTerm extends Term {
 
     /* Term */
     public boolean unify(Term t, Trail trail) {
-	if (t.isVariable())
+	switch (t.tag) {
+	case TAG_VARIABLE:
 	    return ((VariableTerm)t).unify(this, trail);
-	if (! t.isJavaObject())
+	case TAG_JAVA:
+	    return obj.equals(((JavaObjectTerm)t).obj);
+	default:
 	    return false;
-	return obj.equals(((JavaObjectTerm)t).obj);
+	}
     }
 
     /** 
@@ -103,14 +107,8 @@ public class JavaObjectTerm extends Term {
      * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
      */
     public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced.
-	if (anotherTerm.isVariable() 
-	    || anotherTerm.isNumber() 
-	    || anotherTerm.isSymbol()
-	    || anotherTerm.isList()
-	    || anotherTerm.isStructure())
-	    return AFTER;
-	if (! anotherTerm.isJavaObject())
-	    return BEFORE;
+	if (anotherTerm.tag != TAG_JAVA)
+	    return anotherTerm.tag < TAG_JAVA ? AFTER : BEFORE;
 	if (obj.equals(((JavaObjectTerm) anotherTerm).obj))
 	    return EQUAL;
 	return obj.hashCode() - ((JavaObjectTerm) anotherTerm).obj.hashCode(); //???
@@ -43,6 +43,13 @@ public class ListTerm extends Term {
      */
     protected Term cdr;
 
+    /**
+     * Is <code>true</code> if this list is known to be ground,
+     * that is, if its elements were ground when it was constructed.
+     * @see TermTraversal#knownGround
+     */
+    protected boolean ground;
+
     /**
      * Constructs a new Prolog list structure
      * such that <code>_car</code> is the first element of this list, and 
@@ -50,8 +57,10 @@ public class ListTerm extends Term {
      * elements of this list but the first one.
      */
     public ListTerm(Term _car, Term _cdr) { 
+	super(TAG_LIST);
 	car = _car;
 	cdr = _cdr; 
+	ground = TermTraversal.knownGround(_car) && TermTraversal.knownGround(_cdr);
     }
 
     /** Returns the value of <code>car</code>.
@@ -65,26 +74,31 @@ public class ListTerm extends Term {
     public Term cdr() { return cdr; }
 
     /** Sets the value to <code>car</code>.
+     * This list must not be a subterm of another list or structure known to be ground.
      * @see #car
      */
-    public void setCar(Term t) { car = t; }
+    public void setCar(Term t) { 
+	car = t; 
+	ground = TermTraversal.knownGround(car) && TermTraversal.knownGround(cdr);
+    }
 
     /** Sets the value to <code>cdr</code>.
+     * This list must not be a subterm of another list or structure known to be ground.
      * @see #cdr
      */
-    public void setCdr(Term t) { cdr = t; }
+    public void setCdr(Term t) { 
+	cdr = t; 
+	ground = TermTraversal.knownGround(car) && TermTraversal.knownGround(cdr);
+    }
 
     /* Term */
+    /**
+     * Checks whether the argument term is unified with this one,
+     * by the iterative <code>unify</code> method of the engine that owns <code>trail</code>.
+     * @see Prolog#unify(Term, Term)
+     */
     public boolean unify(Term t, Trail trail) {
-	t = t.dereference();
-	if (t.isVariable()) {
-	    ((VariableTerm) t).bind(this, trail);
-	    return true;
-	}
-	if (! t.isList())
-	    return false;
-	return car.unify(((ListTerm)t).car(), trail) 
-	    && cdr.unify(((ListTerm)t).cdr(), trail);
+	return trail.engine.unify(this, t);
     }
 
     /** 
@@ -97,15 +111,11 @@ public class ListTerm extends Term {
     }
 
     protected Term copy(Prolog engine) { 
-	return new ListTerm(car.copy(engine), cdr.copy(engine)); 
+	return TermTraversal.copy(this, engine);
     }
 
     public boolean isGround() {
-	if (! car.isGround())
-	    return false;
-	if (! cdr.isGround())
-	    return false;
-	return true;
+	return TermTraversal.isGround(this);
     }
 
     /** Returns the length of this <code>ListTerm</code>. */
@@ -136,19 +146,7 @@ public class ListTerm extends Term {
     }
 
     public String toQuotedString() {
-	Term x = this;
-	String s = "[";
-	for (;;) {
-	    s += ((ListTerm)x).car.dereference().toQuotedString();
-	    x  = ((ListTerm)x).cdr.dereference();
-	    if (! x.isList())
-		break;
-	    s += ",";
-	}
-	if (! x.isNil())
-	    s += "|" + x.toQuotedString();
-	s += "]";
-	return s;
+	return TermTraversal.toString(this, true);
     }
 
     /* Object */
@@ -165,33 +163,16 @@ public class ListTerm extends Term {
     public boolean equals(Object obj) {
     	if (! (obj instanceof ListTerm))
     	    return false;
-	return car.equals(((ListTerm)obj).car().dereference()) 
-	    && cdr.equals(((ListTerm)obj).cdr().dereference());
+	return TermTraversal.equals(this, (ListTerm) obj);
     }
 
     public int hashCode() {
-	int h = 1;
-	h = 31*h + SYM_DOT.hashCode();
-	h = 31*h + car.dereference().hashCode();
-	h = 31*h + cdr.dereference().hashCode();
-	return h;
+	return TermTraversal.hashCode(this);
     }
 
     /** Returns a string representation of this <code>ListTerm</code>. */
     public String toString() {
-	Term x = this;	
-	String s = "[";
-	for (;;) {
-	    s += ((ListTerm)x).car.dereference().toString();
-	    x  = ((ListTerm)x).cdr.dereference();
-	    if (! x.isList())
-		break;
-	    s += ",";
-	}
-	if (! x.isNil())
-	    s += "|" + x.toString();
-	s += "]";
-	return s;
+	return TermTraversal.toString(this, false);
     }
 
     /* Comparable */
@@ -205,33 +186,6 @@ public class ListTerm extends Term {
      * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
      */
     public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced.
-	if (anotherTerm.isVariable() || anotherTerm.isNumber() || anotherTerm.isSymbol())
-	    return AFTER;
-	if (anotherTerm.isStructure()) {
-	    int arity = ((StructureTerm)anotherTerm).arity();
-	    if (2 != arity)
-		return (2 - arity);
-	    SymbolTerm functor = ((StructureTerm)anotherTerm).functor();
-	    if (! SYM_DOT.equals(functor))
-		return SYM_DOT.compareTo(functor);
-	}
-	Term[] args = new Term[2];
-	if (anotherTerm.isList()) {
-	    args[0] = ((ListTerm)anotherTerm).car();
-	    args[1] = ((ListTerm)anotherTerm).cdr();
-	} else if (anotherTerm.isStructure()) {
-	    args = ((StructureTerm)anotherTerm).args();
-	} else {
-	    return BEFORE;
-	}
-	Term tmp = car;
-	int rc;
-	for (int i=0; i<2; i++) {
-	    rc = tmp.compareTo(args[i].dereference());
-	    if (rc != EQUAL) 
-		return rc;
-	    tmp = cdr;
-	}
-	return EQUAL;
+	return TermTraversal.compare(this, anotherTerm);
     }
 }
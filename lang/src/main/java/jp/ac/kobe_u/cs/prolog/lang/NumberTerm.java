@@ -7,6 +7,9 @@ package jp.ac.kobe_u.cs.prolog.lang;
  * @version 1.0
  */
 public abstract class NumberTerm extends Term {
+    /** Constructs a new number with the given type tag. */
+    protected NumberTerm(byte _tag) { super(_tag); }
+
     /** Returns the numeric value represented by this object after conversion to type <code>int</code>. */
     abstract public int intValue();
     /** Returns the numeric value represented by this object after conversion to type <code>long</code>. */
@@ -28,6 +28,8 @@ import java.util.regex.Matcher;
  * @version 1.1
  */
 public class PredicateEncoder {
+    /** The pattern of characters that must be encoded. */
+    private static final Pattern SPECIAL = Pattern.compile("([^a-zA-Z0-9_'$'])");
 
     /**
      * Returns a string representation of class for
@@ -40,8 +42,7 @@ public class PredicateEncoder {
      */
     public static String encode(String pkg, String functor, int arity) {
 	String x = functor;
-	Pattern p = Pattern.compile("([^a-zA-Z0-9_'$'])");
-	Matcher m = p.matcher(x);
+	Matcher m = SPECIAL.matcher(x);
 	StringBuffer sb = new StringBuffer();
 	boolean result = m.find();
 	while (result) {
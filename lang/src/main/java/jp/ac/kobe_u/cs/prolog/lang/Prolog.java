@@ -1,5 +1,7 @@
 package jp.ac.kobe_u.cs.prolog.lang;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.io.*;
 /**
  * Prolog engine.
@@ -19,8 +21,8 @@ public class Prolog implements Serializable {
     public CPFStack stack;
     /** Trail stack */
     public Trail trail;
-    /* Push down list */
-    //    public PushDownList pdl;
+    /** Push down list, used by <code>unify</code> */
+    public PushDownList pdl;
     /** Cut pointer */
     public int B0;
     /** Class loader */
@@ -28,24 +30,79 @@ public class Prolog implements Serializable {
     /** Internal Database */
     public InternalDatabase internalDB;
 
-    /** Current time stamp of choice point frame */
-    protected long CPFTimeStamp;
+    /**
+     * Current time stamp of choice point frame.
+     * New variables are stamped with this value, and it is incremented
+     * whenever a choice point frame is created, until it saturates at
+     * <code>Integer.MAX_VALUE - 1</code>.
+     */
+    protected int CPFTimeStamp;
+    /**
+     * Time stamp of the top choice point frame, kept up to date by <code>CPFStack</code>.
+     * A variable needs trailing on binding if and only if its time stamp is less than this.
+     */
+    public int topTimeStamp;
 
     /**
      * Exception level of continuation passing loop:
      * <li><code>0</code> for no exception,
      * <li><code>1</code> for <code>halt/0</code>,
-     * <li><code>2</code> for <code>freeze/2</code> (not supported yet)
+     * <li><code>2</code> for goals woken by binding suspended variables
+     * <li><code>3</code> for a solution found in caller-thread mode of <code>PrologControl</code>
+     * <li><code>4</code> for cancellation of the goal
+     * <li><code>5</code> for the end of a time slice given by a <code>Scheduler</code>
      * </ul>
      */
     public int exceptionRaised;
 
-    /** <font color="red">Not supported yet</font>. Prolog implementation flag: <code>bounded</code>. */
+    /**
+     * The nesting level of the continuation passing loop.
+     * It is <code>0</code> in the loop of <code>PrologControl</code>, and is incremented
+     * by builtin predicates that run a loop of their own, such as <code>synchronized/2</code>.
+     */
+    public int loopLevel;
+    /** Holds the innermost catch frame in scope, or <code>null</code>. */
+    protected CatchFrame catchTop;
+
+    /** 
+     * The number of inferences of the current goal.
+     * An inference is counted for each step of the continuation passing loop.
+     */
+    public long inferences;
+    /** 
+     * The value of <code>inferences</code> at which the continuation passing loop
+     * must invoke <code>checkLimits</code>.
+     */
+    public long nextCheck;
+    /** The maximum number of inferences between two invocations of <code>checkLimits</code>. */
+    public static final int CHECK_INTERVAL = 1024;
+    /** The value of <code>inferences</code> at which the current time slice ends. */
+    protected long yieldAt = Long.MAX_VALUE;
+
+    /** The value of <code>inferences</code> beyond which a resource error is raised. */
+    protected long inferenceLimit = Long.MAX_VALUE;
+    /** The value of <code>System.nanoTime()</code> beyond which a resource error is raised, if <code>hasDeadline</code>. */
+    protected long deadline;
+    /** A flag that indicates whether <code>deadline</code> is set. */
+    protected boolean hasDeadline = false;
+    /** The maximum number of inferences of each goal, or <code>0</code> for no limit. */
+    protected long maxInferences = 0;
+    /** The maximum time in milliseconds of each goal, or <code>0</code> for no limit. */
+    protected long maxTimeMillis = 0;
+    /** The cancellation token that is polled by <code>checkLimits</code>. */
+    protected AtomicBoolean cancelToken = new AtomicBoolean(false);
+    /** A flag that indicates whether <code>cancelToken</code> was given by <code>setCancellationToken</code>. */
+    protected boolean sharedCancelToken = false;
+
+    /** 
+     * Prolog implementation flag: <code>bounded</code>.
+     * Integers are unbounded, since they are promoted to <code>BigIntegerTerm</code> on overflow.
+     */
     protected boolean bounded = false;
-    /** Prolog implementation flag: <code>max_integer</code>. */
-    protected int maxInteger = Integer.MAX_VALUE;
-    /** Prolog implementation flag: <code>min_integer</code>. */
-    protected int minInteger = Integer.MIN_VALUE;
+    /** Prolog implementation flag: <code>max_integer</code>, the largest integer without promotion. */
+    protected long maxInteger = Long.MAX_VALUE;
+    /** Prolog implementation flag: <code>min_integer</code>, the smallest integer without promotion. */
+    protected long minInteger = Long.MIN_VALUE;
     /** Prolog implementation flag: <code>integer_rounding_function</code>. */
     protected String integerRoundingFunction = "down";
     /** <font color="red">Not supported yet</font>. Prolog implementation flag: <code>char_conversion</code>. */
@@ -61,7 +118,7 @@ public class Prolog implements Serializable {
     /** Prolog implementation flag: <code>print_stack_trace</code>. */
     protected String printStackTrace;
 
-    /** Holds a list of frozen goals for <code>freeze/2</code> (not implemented yet). */
+    /** Holds the conjunction of the goals woken since the last call port, or <code>[]</code> if none. */
     protected Term pendingGoals; 
     /** Holds an exception term for <code>catch/3</code> and <code>throw/1</code>. */
     protected Term exception;
@@ -71,8 +128,17 @@ public class Prolog implements Serializable {
     /** Holds the previous time as <code>long</code> for <code>statistics/2</code>. */
     protected long previousRuntime;
 
-    /** Hashtable for creating a copy of term. */
-    protected Hashtable<VariableTerm,VariableTerm> copyHash;
+    /** Identity map from variables to their copies, for creating a copy of term. */
+    protected VariableMap copyHash;
+
+    /** The number of entries of the cache of switch tables. It is a power of two. */
+    protected static final int SWITCH_CACHE_SIZE = 256;
+    /** Holds the hashtables given to <code>switch_on_hash</code> whose switch tables are cached. */
+    protected transient Hashtable<?,?>[] switchKeys;
+    /** Holds the switch tables built from <code>switchKeys</code>. */
+    protected transient SwitchTable[] switchTables;
+    /** Holds all the switch tables built by this engine, keyed by the identity of their hashtables. */
+    protected transient IdentityHashMap<Hashtable<Term,Predicate>,SwitchTable> switchTableMap;
 
     /** The size of the pushback buffer used for creating input streams. */
     public static int PUSHBACK_SIZE = 3;
@@ -94,9 +160,17 @@ public class Prolog implements Serializable {
     /** Hashtable for managing internal databases. */
     protected HashtableOfTerm hashManager;
 
+    /** Holds the snapshot of <code>hashManager</code> taken by <code>makeTemplate()</code> or inherited by <code>fork</code>. */
+    protected HashtableOfTerm templateHashManager;
+    /** Holds the snapshot of <code>internalDB</code> taken by <code>makeTemplate()</code> or inherited by <code>fork</code>. */
+    protected InternalDatabase templateInternalDB;
+
     /** Holds an atom <code>[]<code> (empty list). */
     public static SymbolTerm Nil     = SymbolTerm.makeSymbol("[]");
 
+    /** Holds the symbol <code>call/1</code>, by which woken goals are executed. */
+    static final SymbolTerm SYM_CALL_1 = SymbolTerm.makeSymbol("call", 1);
+
     /* Some symbols for stream options */
     static SymbolTerm SYM_MODE_1     = SymbolTerm.makeSymbol("mode", 1);
     static SymbolTerm SYM_ALIAS_1    = SymbolTerm.makeSymbol("alias", 1);
@@ -117,12 +191,26 @@ public class Prolog implements Serializable {
 	cont       = null;
 	stack      = new CPFStack(this);
 	trail      = new Trail(this);
-	//	pdl        = new PushDownList();
+	pdl        = new PushDownList();
 	this.pcl   = pcl;
 	internalDB = new InternalDatabase();
 	initOnce();
     }
 
+    /** 
+     * Constructs new Prolog engine with the given initial sizes of
+     * choice point stack, trail stack, and internal database.
+     * The stacks are allocated lazily, double when full, and 
+     * shrink back towards these sizes after each query.
+     */
+    public Prolog(PrologControl c, PrologClassLoader pcl, 
+		  int choiceStackSize, int trailSize, int internalDatabaseSize) { 
+	this(c, pcl);
+	stack.setInitialSize(choiceStackSize);
+	trail.setInitialSize(trailSize);
+	internalDB.setInitialSize(internalDatabaseSize);
+    }
+
     /** 
      * Initializes some local instances only once.
      * This <code>initOnce</code> method is invoked in the constructor
@@ -141,7 +229,7 @@ public class Prolog implements Serializable {
 	userOutput  = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)), true);
 	userError   = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.err)), true);
 
-	copyHash      = new Hashtable<VariableTerm,VariableTerm>();
+	copyHash      = new VariableMap();
 	hashManager   = new HashtableOfTerm();
 	streamManager = new HashtableOfTerm();
 
@@ -160,19 +248,31 @@ public class Prolog implements Serializable {
     public void init() { 
 	stack.init();
 	trail.init();
-	//	pdl.init();
+	pdl.init();
 	B0 = stack.top();
-	CPFTimeStamp = Long.MIN_VALUE;
+	CPFTimeStamp = Integer.MIN_VALUE;
 
 	// Creates an initial choice point frame.
 	Term[] noarg = {};
 	stack.create(noarg, null);
 	stack.setTR(trail.top());
-	stack.setTimeStamp(++CPFTimeStamp);
+	stack.setTimeStamp(nextTimeStamp());
 	stack.setBP(new Failure(control));
 	stack.setB0(B0);
 
 	exceptionRaised = 0;
+	loopLevel = 0;
+	catchTop = null;
+
+	inferences = 0;
+	inferenceLimit = maxInferences > 0 ? maxInferences : Long.MAX_VALUE;
+	hasDeadline = maxTimeMillis > 0;
+	if (hasDeadline)
+	    deadline = System.nanoTime() + maxTimeMillis * 1000000L;
+	if (! sharedCancelToken)
+	    cancelToken.set(false);
+	yieldAt = Long.MAX_VALUE;
+	nextCheck = Math.min(inferenceLimit, CHECK_INTERVAL);
 
 	charConversion  = "off";
 	debug           = "off";
@@ -191,6 +291,148 @@ public class Prolog implements Serializable {
 	currentOutput = userOutput;
     }
 
+    /** 
+     * Shrinks the choice point stack and trail stack 
+     * to the high-water marks of the last query.
+     * @see CPFStack#shrink
+     * @see Trail#shrink
+     * @see VariableMap#shrink
+     */
+    public void shrinkStacks() {
+	stack.shrink();
+	trail.shrink();
+	pdl.shrink();
+	copyHash.shrink();
+    }
+
+    /** 
+     * Discards all internal databases, dynamic clauses, and hash tables
+     * created by <code>new_hash/2</code>.
+     * If this engine has a template snapshot, the databases are restored to it instead.
+     * Otherwise, the loaded packages must be initialized again before their dynamic predicates are used.
+     * @see EnginePool#setResetDatabases
+     * @see #makeTemplate
+     */
+    public void resetDatabases() {
+	if (templateHashManager != null) {
+	    internalDB  = templateInternalDB.fork();
+	    hashManager = templateHashManager.fork();
+	    return;
+	}
+	internalDB.init();
+	hashManager.clear();
+    }
+
+    /** 
+     * Takes a snapshot of the internal databases of this engine for <code>fork</code>.<br>
+     * The current databases become read-only and are shared copy-on-write
+     * by this engine and its forks; later changes made by this engine
+     * are not seen by the forks unless <code>makeTemplate()</code> is invoked again.
+     * This engine must be idle.
+     */
+    public synchronized void makeTemplate() {
+	templateInternalDB  = internalDB;
+	templateHashManager = hashManager;
+	internalDB  = templateInternalDB.fork();
+	hashManager = templateHashManager.fork();
+    }
+
+    /**
+     * Returns a new engine for the control <code>c</code> whose internal databases are
+     * those of the template snapshot of this engine, shared copy-on-write.<br>
+     * The dynamic clauses are shared until either engine modifies them, 
+     * and an index table is copied when the new engine first modifies the predicate.
+     * If this engine has no snapshot yet, <code>makeTemplate()</code> is invoked first.
+     * The new engine has its own stacks, streams, and Prolog flags.
+     * This engine must be idle.
+     * @see #makeTemplate
+     */
+    public synchronized Prolog fork(PrologControl c) {
+	if (templateHashManager == null)
+	    makeTemplate();
+	Prolog p = new Prolog(c, pcl, stack.initialSize(), trail.initialSize(), internalDB.initialSize());
+	p.maxInferences = maxInferences;
+	p.maxTimeMillis = maxTimeMillis;
+	p.templateInternalDB  = templateInternalDB;
+	p.templateHashManager = templateHashManager;
+	p.internalDB  = templateInternalDB.fork();
+	p.hashManager = templateHashManager.fork();
+	return p;
+    }
+
+    /**
+     * Is invoked by the continuation passing loop when <code>inferences</code> reaches <code>nextCheck</code>.<br>
+     * This method sets <code>exceptionRaised</code> to <code>4</code> if the goal has been cancelled,
+     * and throws a <code>ResourceException</code> if the inference limit 
+     * or the deadline has been exceeded.
+     * Otherwise, outside of any nested loop, it writes the checkpoint requested by
+     * <code>PrologControl.checkpoint</code>, and sets <code>exceptionRaised</code> to <code>5</code>
+     * if the time slice has ended. Finally, it sets the next check point.
+     * Nothing is done while <code>exceptionRaised</code> is already set,
+     * for example on the step where a solution has just been found;
+     * the check is then made on the next step.
+     * @param goal the goal to be executed next
+     * @exception ResourceException if the inference limit or the deadline has been exceeded
+     */
+    public void checkLimits(Predicate goal) {
+	if (exceptionRaised != 0)
+	    return;
+	if (cancelToken.get()) {
+	    exceptionRaised = 4;
+	    nextCheck = inferences + CHECK_INTERVAL;
+	    return;
+	}
+	if (inferences >= inferenceLimit) {
+	    nextCheck = inferences + CHECK_INTERVAL;
+	    throw new ResourceException(goal, "inferences");
+	}
+	if (hasDeadline && System.nanoTime() - deadline >= 0) {
+	    hasDeadline = false;
+	    nextCheck = inferences + CHECK_INTERVAL;
+	    throw new ResourceException(goal, "time");
+	}
+	if (control.checkpoint != null && loopLevel == 0)
+	    control.writeCheckpoint(goal);
+	if (inferences >= yieldAt) {
+	    if (loopLevel == 0) {
+		yieldAt = Long.MAX_VALUE;
+		exceptionRaised = 5;
+	    }
+	    nextCheck = Math.min(inferenceLimit, inferences + CHECK_INTERVAL);
+	    return;
+	}
+	nextCheck = Math.min(Math.min(inferenceLimit, yieldAt), inferences + CHECK_INTERVAL);
+    }
+
+    /** 
+     * Starts a time slice of <code>n</code> inferences.
+     * When it ends, the continuation passing loop returns with <code>exceptionRaised</code> set to <code>5</code>,
+     * so that the goal can be resumed later.
+     * @see Scheduler
+     */
+    public void setTimeSlice(long n) {
+	yieldAt = inferences + n;
+	nextCheck = Math.min(nextCheck, yieldAt);
+    }
+
+    /** 
+     * Cancels the current goal.
+     * It is stopped within <code>CHECK_INTERVAL</code> inferences.
+     * This method may be invoked from any thread.
+     */
+    public void cancel() { cancelToken.set(true); }
+
+    /** 
+     * Sets the cancellation token polled by this engine.
+     * Setting <code>token</code> to <code>true</code> cancels the current goal,
+     * and the token is not reset by <code>init()</code>.
+     * If <code>token</code> is <code>null</code>, this engine uses its own token.
+     */
+    public void setCancellationToken(AtomicBoolean token) {
+	sharedCancelToken = token != null;
+	cancelToken = sharedCancelToken ? token : new AtomicBoolean(false);
+    }
+
     /** Sets the top of choice porint stack to <code>B0</code> (cut pointer). */
     public void setB0()    { B0 = stack.top(); }
 
@@ -200,6 +442,161 @@ public class Prolog implements Serializable {
     /** Discards all choice points after the value of <code>B0</code>. */
     public void neckCut()  { stack.cut(B0); }
 
+    /**
+     * Pushes a catch frame for a goal called by <code>catch/3</code>.
+     * The frame is popped on backtracking out of the goal.
+     * @return the new catch frame, which must be given to <code>endCatch</code> when the goal exits.
+     */
+    public CatchFrame beginCatch() {
+	CatchFrame f = new CatchFrame(this, catchTop, stack.top(), loopLevel);
+	trail.push(f);
+	catchTop = f;
+	return f;
+    }
+
+    /**
+     * Pops the catch frame <code>f</code> when its goal exits.
+     * The frame is pushed again on backtracking into the goal.
+     */
+    public void endCatch(CatchFrame f) {
+	trail.push(new CatchFrame.Exit(this, catchTop));
+	catchTop = f.prev;
+    }
+
+    /**
+     * Handles an exception thrown in the continuation passing loop.<br>
+     * If the innermost catch frame was pushed at the current <code>loopLevel</code> or deeper,
+     * this method sets the exception term, that is, a copy of the message term of
+     * a <code>PrologException</code> or a <code>JavaObjectTerm</code> of any other exception,
+     * discards all choice points after the frame, and fails into the recovery clause.
+     * Otherwise, the exception is thrown again, so that it leaves the current loop.
+     * @param e the exception thrown
+     * @return the continuation goal
+     */
+    public Predicate handleException(RuntimeException e) {
+	CatchFrame f = catchTop;
+	if (f == null || f.level < loopLevel)
+	    throw e;
+	if (e instanceof PrologException)
+	    setException(copy(((PrologException) e).getMessageTerm()));
+	else
+	    setException(new JavaObjectTerm(e));
+	cut(f.B);
+	return fail();
+    }
+
+    /**
+     * Suspends <code>goal</code> on the unbound variable <code>v</code>.
+     * The goal is woken when <code>v</code> is bound to a non-variable term or to another
+     * suspended variable, and is then executed by <code>call/1</code> at the next call port.
+     * The suspension is undone on backtracking.
+     * @param v the variable. It must be dereferenced.
+     * @param goal the goal to be suspended
+     * @see SuspendedVariable
+     */
+    public void suspend(VariableTerm v, Term goal) {
+	if (v instanceof SuspendedVariable)
+	    ((SuspendedVariable) v).addGoal(goal, trail);
+	else
+	    attach(v, new SuspendedVariable(goal));
+    }
+
+    /**
+     * Binds the unbound variable <code>v</code> to the new suspended variable <code>s</code>
+     * without waking any goal. If <code>v</code> is suspended, its goals are put before those of <code>s</code>.
+     * The binding is undone on backtracking.
+     * @param v the variable. It must be dereferenced.
+     * @param s a suspended variable that is bound to no other variable yet
+     */
+    public void attach(VariableTerm v, SuspendedVariable s) {
+	if (v instanceof SuspendedVariable) {
+	    Term[] args = {((SuspendedVariable) v).goals, s.goals};
+	    s.goals = new StructureTerm(SuspendedVariable.SYM_COMMA_2, args);
+	}
+	v.val = s;
+	if (v.timeStamp < topTimeStamp)
+	    trail.push(v);
+    }
+
+    /**
+     * Puts the conjunction <code>goals</code> on the wakeup queue, and sets
+     * <code>exceptionRaised</code> to <code>2</code> unless it is already set,
+     * so that the continuation passing loop executes them before the next goal.
+     */
+    void queueGoals(Term goals) {
+	if (pendingGoals == Nil) {
+	    pendingGoals = goals;
+	} else {
+	    Term[] args = {pendingGoals, goals};
+	    pendingGoals = new StructureTerm(SuspendedVariable.SYM_COMMA_2, args);
+	}
+	if (exceptionRaised == 0)
+	    exceptionRaised = 2;
+    }
+
+    /**
+     * Empties the wakeup queue, and returns a goal that calls the woken goals
+     * and then continues with <code>code</code>.
+     * This is invoked by the continuation passing loop when <code>exceptionRaised</code> is <code>2</code>,
+     * that is, at the call port following the bindings that woke the goals.
+     * @param code the goal to be executed next
+     * @return the goal to be executed next
+     */
+    public Predicate wakeUp(Predicate code) {
+	Term goals = pendingGoals;
+	pendingGoals = Nil;
+	exceptionRaised = 0;
+	if (goals == Nil)
+	    return code;
+	Predicate p;
+	try {
+	    p = (Predicate) pcl.predicateConstructor(PrologClassLoader.BUILTIN_PACKAGE, SYM_CALL_1).newInstance();
+	} catch (Exception e) {
+	    throw new SystemException(e.toString() + " in waking up " + goals);
+	}
+	Term[] args = {goals};
+	p.setArgument(args, code);
+	return p;
+    }
+
+    /**
+     * Returns the variables bound by the most general unifier of two terms,
+     * or <code>null</code> if they are not unified.
+     * Both variables of a binding between two variables are returned.
+     * The terms are left as they were, and no goal is woken.
+     * An empty list is returned if the terms are identical.
+     * @param t1 a term to be unified.
+     * @param t2 the term to be unified with.
+     * @return a list of variables, or <code>null</code>
+     */
+    public Term unifierVariables(Term t1, Term t2) {
+	int mark = trail.top();
+	int stamp = topTimeStamp;
+	Term pending = pendingGoals;
+	int raised = exceptionRaised;
+	topTimeStamp = Integer.MAX_VALUE; // trails every binding
+	boolean unified;
+	try {
+	    unified = unify(t1, t2);
+	} finally {
+	    topTimeStamp = stamp;
+	}
+	Term vars = Nil;
+	while (trail.top() > mark) {
+	    Undoable u = trail.pop();
+	    if (u instanceof VariableTerm) {
+		VariableTerm v = (VariableTerm) u;
+		vars = new ListTerm(v, vars);
+		if (v.val.tag == Term.TAG_VARIABLE)
+		    vars = new ListTerm(v.val, vars);
+	    }
+	    u.undo();
+	}
+	pendingGoals = pending;
+	exceptionRaised = raised;
+	return unified ? vars : null;
+    }
+
     /**
      * Returns a copy of term <code>t</code>. 
      * @param t a term to be copied. It must be dereferenced.
@@ -209,51 +606,110 @@ public class Prolog implements Serializable {
 	return t.copy(this);
     }
 
-    /* 
+    /**
+     * Checks whether two terms are unified, binding variables on <code>trail</code>.<br>
+     * This method does not recurse. Pairs of arguments that remain to be unified
+     * are saved on <code>pdl</code>, the last argument of a structure and
+     * the tail of a list are unified in the loop itself, and atomic elements of a list
+     * are unified in place. It is safe for lists and nested terms of any length.
+     * Bindings made before a failure are undone by backtracking, as usual.
+     * @param a1 a term to be unified.
+     * @param a2 the term to be unified with.
+     * @return <code>true</code> if succeeds, otherwise <code>false</code>.
+     */
     public boolean unify(Term a1, Term a2) {
-	Term d1, d2;
-	pdl.init();
-	pdl.push(a1);
-	pdl.push(a2);
-	while (! pdl.empty()) {
-	    d1 = pdl.pop().dereference();
-	    d2 = pdl.pop().dereference();
-	    if (d1 != d2) {
-		if (d1.isVariable()) {
-		    ((VariableTerm)d1).bind(d2, trail);
-		} else if (d2.isVariable()) {
-		    ((VariableTerm)d2).bind(d1, trail);
-		} else if (d2.isList()) {
-		    if (! d1.isList())
-			return false;
-		    pdl.push(((ListTerm)d1).cdr());
-		    pdl.push(((ListTerm)d2).cdr());
-		    pdl.push(((ListTerm)d1).car());
-		    pdl.push(((ListTerm)d2).car());
-		} else if (d2.isStructure()) {
-		    if (! d1.isStructure())
-			return false;
-		    if (! ((StructureTerm)d1).functor.equals(((StructureTerm)d2).functor))
-			return false;
-		    for (int i=0; i<((StructureTerm)d1).arity; i++) {
-			pdl.push(((StructureTerm)d1).args[i]);
-			pdl.push(((StructureTerm)d2).args[i]);
-		    }
-		} else if (! d1.equals(d2)) {
-		    return false;
+	int base = pdl.top;
+	Term d1 = a1;
+	Term d2 = a2;
+	for (;;) {
+	    d1 = TermTraversal.deref(d1);
+	    d2 = TermTraversal.deref(d2);
+	    if (d1.tag == Term.TAG_LIST && d2.tag == Term.TAG_LIST) {
+		if (d1 == d2)
+		    ;
+		else if (! unifyArg(((ListTerm) d1).car, ((ListTerm) d2).car))
+		    break;
+		else {
+		    d1 = ((ListTerm) d1).cdr;
+		    d2 = ((ListTerm) d2).cdr;
+		    continue;
+		}
+	    } else if (d1.tag == Term.TAG_STRUCTURE && d2.tag == Term.TAG_STRUCTURE && d1 != d2) {
+		StructureTerm s1 = (StructureTerm) d1;
+		StructureTerm s2 = (StructureTerm) d2;
+		if (s1.functor != s2.functor && ! s1.functor.equals(s2.functor))
+		    break;
+		int last = s1.arity - 1;
+		Term[] args1 = s1.args;
+		Term[] args2 = s2.args;
+		int i = 0;
+		while (i < last && unifyArg(args1[i], args2[i]))
+		    i++;
+		if (i < last)
+		    break;
+		if (last >= 0) {
+		    d1 = args1[last];
+		    d2 = args2[last];
+		    continue;
 		}
+	    } else if (! unifyArg(d1, d2)) {
+		break;
 	    }
+	    if (pdl.top == base)
+		return true;
+	    d2 = pdl.pop();
+	    d1 = pdl.pop();
+	}
+	pdl.cut(base);
+	return false;
+    }
+
+    /** 
+     * Unifies <code>t1</code> with <code>t2</code> if either is a variable or both are atomic,
+     * or pushes them to <code>pdl</code> if both are compound terms.
+     * Returns <code>false</code> if they are known not to be unified.
+     */
+    private boolean unifyArg(Term t1, Term t2) {
+	t1 = TermTraversal.deref(t1);
+	t2 = TermTraversal.deref(t2);
+	if (t1 == t2)
+	    return true;
+	if (t1.tag == Term.TAG_VARIABLE) {
+	    ((VariableTerm) t1).bind(t2, trail);
+	    return true;
+	}
+	if (t2.tag == Term.TAG_VARIABLE) {
+	    ((VariableTerm) t2).bind(t1, trail);
+	    return true;
+	}
+	switch (t1.tag) {
+	case Term.TAG_SYMBOL:
+	    return false;
+	case Term.TAG_INTEGER:
+	    return t2.tag == Term.TAG_INTEGER && ((IntegerTerm) t1).val == ((IntegerTerm) t2).val;
+	case Term.TAG_LIST:
+	case Term.TAG_STRUCTURE:
+	    if (t1.tag != t2.tag)
+		return false;
+	    pdl.push(t1);
+	    pdl.push(t2);
+	    return true;
+	default:
+	    return t1.unify(t2, trail);
 	}
-	return true;
     }
-    */
 
     /** 
      * Do backtrak.
-     * This method restores the value of <code>B0</code>
+     * This method discards the goals woken since the last call port, whose bindings are undone,
+     * restores the value of <code>B0</code>
      * and returns the backtrak point in current choice point.
      */
     public Predicate fail() {
+	if (exceptionRaised == 2) { // discard goals woken by undone bindings
+	    exceptionRaised = 0;
+	    pendingGoals = Nil;
+	}
 	B0 = stack.getB0();     // restore B0
 	return stack.getBP();   // execute next clause
     }
@@ -274,19 +730,21 @@ public class Prolog implements Serializable {
 				    Predicate str, 
 				    Predicate lis) {
 	Term arg1 = aregs[1].dereference();
-	if (arg1.isVariable())
-	    return var;
-	if (arg1.isInteger())
+	switch (arg1.tag) {
+	case Term.TAG_INTEGER:
+	case Term.TAG_BIGINTEGER:
 	    return Int;
-	if (arg1.isDouble())
+	case Term.TAG_DOUBLE:
 	    return flo;
-	if (arg1.isSymbol())
+	case Term.TAG_SYMBOL:
 	    return con;
-	if (arg1.isStructure())
+	case Term.TAG_STRUCTURE:
 	    return str;
-	if (arg1.isList())
+	case Term.TAG_LIST:
 	    return lis;
-	return var;
+	default:
+	    return var;
+	}
     }
 
     /**
@@ -307,38 +765,55 @@ public class Prolog implements Serializable {
      * this returns <code>otherwise</code>.
      */
     public Predicate switch_on_hash(Hashtable<Term,Predicate> hash, Predicate otherwise) {
-	Term arg1 = aregs[1].dereference();
-	Term key;
-	if (arg1.isInteger() || arg1.isDouble() || arg1.isSymbol()) {
-	    key = arg1;
-	} else if (arg1.isStructure()) {
-	    key = ((StructureTerm) arg1).functor();
-	} else {
-	    throw new SystemException("Invalid argument in switch_on_hash");
+	return switchTable(hash).get(aregs[1].dereference(), otherwise);
+    }
+
+    /**
+     * Works as <code>switch_on_hash(Hashtable, Predicate)</code>, 
+     * but looks up the key in switch table <code>table</code>.
+     * @see SwitchTable
+     */
+    public Predicate switch_on_hash(SwitchTable table, Predicate otherwise) {
+	return table.get(aregs[1].dereference(), otherwise);
+    }
+
+    /**
+     * Returns the switch table that has the same mappings as <code>hash</code>.
+     * The tables are built on first use and kept by the identity of <code>hash</code>,
+     * assuming that the hashtables of compiled predicates are not modified once they are initialized.
+     * Recently used tables are found in a direct-mapped cache in front of <code>switchTableMap</code>.
+     */
+    protected SwitchTable switchTable(Hashtable<Term,Predicate> hash) {
+	if (switchKeys == null) {
+	    switchKeys     = new Hashtable<?,?>[SWITCH_CACHE_SIZE];
+	    switchTables   = new SwitchTable[SWITCH_CACHE_SIZE];
+	    switchTableMap = new IdentityHashMap<Hashtable<Term,Predicate>,SwitchTable>();
+	}
+	int h = System.identityHashCode(hash) * 0x9E3779B9;
+	int i = (h ^ (h >>> 16)) & (SWITCH_CACHE_SIZE - 1);
+	if (switchKeys[i] != hash) {
+	    SwitchTable table = switchTableMap.get(hash);
+	    if (table == null) {
+		table = new SwitchTable(hash);
+		switchTableMap.put(hash, table);
+	    }
+	    switchTables[i] = table;
+	    switchKeys[i] = hash;
 	}
-	Predicate p = hash.get(key);
-	if (p != null)
-	    return p;
-	else 
-	    return otherwise;
+	return switchTables[i];
     }
 
     /** Restores the argument registers and continuation goal register from the current choice point frame. */
     public void restore() {
-	Term[] args = stack.getArgs();
-	int i = args.length;
-	System.arraycopy(args, 0, aregs, 1, i);
+	stack.restoreArgs(aregs, 1);
 	cont = stack.getCont();
     }
 
     /** Creates a new choice point frame. */
     public Predicate jtry(Predicate p, Predicate next) {
-	int i = p.arity();
-	Term[] args = new Term[i];
-	System.arraycopy(aregs, 1, args, 0, i);
-	stack.create(args, cont);
+	stack.create(aregs, 1, p.arity(), cont);
 	stack.setTR(trail.top());
-	stack.setTimeStamp(++CPFTimeStamp);
+	stack.setTimeStamp(nextTimeStamp());
 	stack.setBP(next);
 	stack.setB0(B0);
 	return p;
@@ -381,16 +856,29 @@ public class Prolog implements Serializable {
     }
 
     /** Returns the current time stamp of choice point frame. */
-    public long    getCPFTimeStamp() { return CPFTimeStamp; }
+    public int     getCPFTimeStamp() { return CPFTimeStamp; }
+
+    /**
+     * Returns the time stamp for a new choice point frame.
+     * After about 2<sup>32</sup> choice points since <code>init()</code>, 
+     * the time stamps saturate: choice points are stamped with <code>Integer.MAX_VALUE</code>
+     * and variables with <code>Integer.MAX_VALUE - 1</code>, so that 
+     * variables are trailed conservatively but never missed.
+     */
+    protected int nextTimeStamp() {
+	if (CPFTimeStamp < Integer.MAX_VALUE - 1)
+	    return ++CPFTimeStamp;
+	return Integer.MAX_VALUE;
+    }
 
     /** Returns the value of Prolog implementation flag: <code>bounded</code>. */
     public boolean isBounded() { return bounded; }
 
     /** Returns the value of Prolog implementation flag: <code>max_integer</code>. */
-    public int getMaxInteger() { return maxInteger; }
+    public long getMaxInteger() { return maxInteger; }
 
     /** Returns the value of Prolog implementation flag: <code>min_integer</code>. */
-    public int getMinInteger() { return minInteger; }
+    public long getMinInteger() { return minInteger; }
 
     /** Returns the value of Prolog implementation flag: <code>integer_rounding_function</code>. */
     public String getIntegerRoundingFunction() { return integerRoundingFunction; }
@@ -420,8 +908,18 @@ public class Prolog implements Serializable {
 
     /** Returns the value of Prolog implementation flag: <code>print_stack_trace</code>. */
     public String getPrintStackTrace() { return printStackTrace; }
-    /** Sets the value of Prolog implementation flag: <code>print_stack_trace</code>. */
-    public void setPrintStackTrace(String mode) { printStackTrace = mode;}
+    /**
+     * Sets the value of Prolog implementation flag: <code>print_stack_trace</code>.
+     * Prolog exceptions are created without stack traces unless it is <code>on</code>.
+     * The flag applies to this engine only: it takes effect in the current thread at once,
+     * and in the thread that runs each goal of this engine when the goal starts or resumes.
+     * @see PrologException#setFillInStackTrace(boolean)
+     * @see PrologControl#run
+     */
+    public void setPrintStackTrace(String mode) {
+	printStackTrace = mode;
+	PrologException.setFillInStackTrace(mode.equals("on"));
+    }
 
     /** Returns the value of <code>exception</code>. This is used in <code>catch/3</code>. */
     public Term getException() { return exception; }
@@ -431,6 +929,58 @@ public class Prolog implements Serializable {
     /** Returns the value of <code>startRuntime</code>. This is used in <code>statistics/2</code>. */
     public long getStartRuntime() { return startRuntime; }
 
+    /** Returns the value of Prolog implementation flag: <code>initial_choice_stack_size</code>. */
+    public int getInitialChoiceStackSize() { return stack.initialSize(); }
+    /** Sets the value of Prolog implementation flag: <code>initial_choice_stack_size</code>. */
+    public void setInitialChoiceStackSize(int n) { stack.setInitialSize(n); }
+
+    /** Returns the value of Prolog implementation flag: <code>initial_trail_size</code>. */
+    public int getInitialTrailSize() { return trail.initialSize(); }
+    /** Sets the value of Prolog implementation flag: <code>initial_trail_size</code>. */
+    public void setInitialTrailSize(int n) { trail.setInitialSize(n); }
+
+    /** Returns the value of Prolog implementation flag: <code>initial_internal_database_size</code>. */
+    public int getInitialInternalDatabaseSize() { return internalDB.initialSize(); }
+    /** Sets the value of Prolog implementation flag: <code>initial_internal_database_size</code>. */
+    public void setInitialInternalDatabaseSize(int n) { internalDB.setInitialSize(n); }
+
+    /** Returns the value of <code>inferences</code>. This is used in <code>statistics/2</code>. */
+    public long getInferences() { return inferences; }
+
+    /** Returns the value of <code>inferenceLimit</code>. This is used in <code>call_with_inference_limit/3</code>. */
+    public long getInferenceLimit() { return inferenceLimit; }
+    /** Sets the value of <code>inferenceLimit</code>. This is used in <code>call_with_inference_limit/3</code>. */
+    public void setInferenceLimit(long n) {
+	inferenceLimit = n;
+	nextCheck = Math.min(Math.min(inferenceLimit, yieldAt), inferences + CHECK_INTERVAL);
+    }
+
+    /** 
+     * Returns the value of <code>deadline</code> as <code>System.nanoTime()</code>,
+     * or <code>Long.MAX_VALUE</code> if no deadline is set. 
+     * This is used in <code>call_with_time_limit/2</code>.
+     */
+    public long getDeadline() { return hasDeadline ? deadline : Long.MAX_VALUE; }
+    /** 
+     * Sets the value of <code>deadline</code> as <code>System.nanoTime()</code>.
+     * <code>Long.MAX_VALUE</code> means no deadline.
+     * This is used in <code>call_with_time_limit/2</code>.
+     */
+    public void setDeadline(long t) {
+	hasDeadline = t != Long.MAX_VALUE;
+	deadline = t;
+    }
+
+    /** Returns the maximum number of inferences of each goal, or <code>0</code> for no limit. */
+    public long getMaxInferences() { return maxInferences; }
+    /** Sets the maximum number of inferences of each goal. <code>0</code> means no limit. */
+    public void setMaxInferences(long n) { maxInferences = n; }
+
+    /** Returns the maximum time in milliseconds of each goal, or <code>0</code> for no limit. */
+    public long getMaxTimeMillis() { return maxTimeMillis; }
+    /** Sets the maximum time in milliseconds of each goal. <code>0</code> means no limit. */
+    public void setMaxTimeMillis(long t) { maxTimeMillis = t; }
+
     /** Returns the value of <code>previousRuntime</code>. This is used in <code>statistics/2</code>. */
     public long getPreviousRuntime() { return previousRuntime; }
     /** Sets the value of <code>previousRuntime</code>. This is used in <code>statistics/2</code>. */
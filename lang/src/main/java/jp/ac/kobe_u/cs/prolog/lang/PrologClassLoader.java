@@ -1,6 +1,10 @@
 package jp.ac.kobe_u.cs.prolog.lang;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Prolog class loader.
@@ -10,6 +14,16 @@ import java.io.Serializable;
  * @version 1.1
  */
 public class PrologClassLoader extends ClassLoader implements Serializable {
+    /** The package of builtin predicates, in which <code>predicateConstructor</code> looks up next. */
+    public static final String BUILTIN_PACKAGE = "jp.ac.kobe_u.cs.prolog.builtin";
+
+    /**
+     * Holds the constructors found by <code>predicateConstructor</code>,
+     * keyed by package name and then by functor symbol.
+     * It is not serialized, and is created again by <code>readObject</code>.
+     */
+    private transient volatile ConcurrentHashMap<String,ConcurrentHashMap<SymbolTerm,Constructor<?>>> constructors =
+	new ConcurrentHashMap<String,ConcurrentHashMap<SymbolTerm,Constructor<?>>>();
 
     public PrologClassLoader() {
         super();
@@ -36,6 +50,47 @@ public class PrologClassLoader extends ClassLoader implements Serializable {
         return loadClass(PredicateEncoder.encode(pkg, functor, arity), resolve);
     }
 
+    /**
+     * Returns the no-argument constructor of the predicate class for <code>pkg:functor</code>,
+     * or of the builtin predicate class for <code>functor</code> if the former does not exist.
+     * The constructors are cached, so that meta-calls of the same predicate load and
+     * look up its class only once, and then allocate nothing but the goal itself.
+     * @param pkg package name
+     * @param functor predicate name and arity
+     * @return the accessible no-argument constructor, or <code>null</code> if neither class exists.
+     * @exception NoSuchMethodException if the class has no public no-argument constructor.
+     */
+    public Constructor<?> predicateConstructor(String pkg, SymbolTerm functor) throws NoSuchMethodException {
+	ConcurrentHashMap<SymbolTerm,Constructor<?>> cache = constructors.get(pkg);
+	if (cache == null) {
+	    constructors.putIfAbsent(pkg, new ConcurrentHashMap<SymbolTerm,Constructor<?>>());
+	    cache = constructors.get(pkg);
+	}
+	Constructor<?> constr = cache.get(functor);
+	if (constr != null)
+	    return constr;
+	Class<?> clazz;
+	try {
+	    clazz = loadPredicateClass(pkg, functor.name(), functor.arity(), true);
+	} catch (ClassNotFoundException e) {
+	    try {
+		clazz = loadPredicateClass(BUILTIN_PACKAGE, functor.name(), functor.arity(), true);
+	    } catch (ClassNotFoundException ee) {
+		return null;
+	    }
+	}
+	constr = clazz.getConstructor();
+	constr.setAccessible(true);
+	cache.put(functor, constr);
+	return constr;
+    }
+
+    /** Restores this class loader, with an empty cache of constructors. */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	constructors = new ConcurrentHashMap<String,ConcurrentHashMap<SymbolTerm,Constructor<?>>>();
+    }
+
     /**
      * Check whether the predicate class for the given arguments is defined.
      * @param pkg package name
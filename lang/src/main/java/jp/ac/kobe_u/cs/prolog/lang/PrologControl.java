@@ -1,5 +1,14 @@
 package jp.ac.kobe_u.cs.prolog.lang;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 /**
  * Prolog thread.<br>
  * The <code>PrologControl</code> class is an implementation of 
@@ -92,6 +101,25 @@ import java.io.Serializable;
  *    }
  * }
  * </pre>
+ *
+ * <pre>
+ * // An example of caller-thread execution
+ * // iterates over all solutions of <code>father(abraham, X)</code>
+ * // without creating a thread.
+ * PrologControl p = new PrologControl();
+ * p.setCallerThread(true);
+ * Term[] args = {SymbolTerm.makeSymbol("abraham"), new VariableTerm()};
+ * Iterator&lt;Term[]&gt; it = p.solutions(new PRED_father_2(), args);
+ * while (it.hasNext()) {
+ *     System.out.println(it.next()[1]);
+ * }
+ * </pre>
+ *
+ * <pre>
+ * // Goals are executed on threads created by a <code>ThreadFactory</code>.
+ * // On JDK 21 or later, virtual threads can be used for all new controls.
+ * PrologControl.setDefaultThreadFactory(PrologControl.virtualThreadFactory());
+ * </pre>
  * 
  * @author Mutsunori Banbara (banbara@kobe-u.ac.jp)
  * @author Naoyuki Tamura (tamura@kobe-u.ac.jp)
@@ -101,18 +129,86 @@ public class PrologControl implements Runnable, Serializable {
     /** A volatile instance variable holding a thread. */
     public volatile Thread thread;
 
+    /** Holds the exception that terminated the last goal, or <code>null</code>. */
+    protected PrologException exception;
+
+    /** Holds the last thread allocated to execute the goal, until <code>reset()</code> waits for it. */
+    protected Thread worker;
+
     /** Holds a Prolog engine. */
     public Prolog engine;
 
     /** Holds a Prolog goal to be executed. */
     public Predicate code;
 
+    /** Holds the arguments of the goal, or <code>null</code> if they are not known. */
+    protected Term[] args;
+
+    /** Holds the pending request to write a checkpoint, or <code>null</code>. */
+    volatile Checkpoint checkpoint;
+
     /** A flag that indicates whether the result of goal is <code>true</code> or <code>false</code>. */
     public boolean result;
 
     /** A flag that indicates whether the result of goal is ready or not. */
     public boolean resultReady;
 
+    /** 
+     * A flag that indicates whether choice points remained when the last solution was found.
+     * If <code>false</code>, there is no further solution and <code>redo()</code> 
+     * returns <code>false</code> without resuming the goal.
+     */
+    public boolean hasMoreSolutions;
+
+    /** 
+     * A flag that indicates whether the goal is executed on the caller's thread
+     * instead of a newly allocated <code>Thread</code>.
+     * Its initial value is <code>false</code>.
+     */
+    protected boolean callerThread = false;
+
+    /** 
+     * Holds the factory of threads that execute goals,
+     * or <code>null</code> to allocate a platform <code>Thread</code> for each goal.
+     */
+    protected ThreadFactory threadFactory = defaultThreadFactory;
+
+    /** Holds the initial value of <code>threadFactory</code> for new controls. */
+    protected static volatile ThreadFactory defaultThreadFactory = null;
+
+    /** 
+     * Holds the scheduler that executes goals in time slices on its carrier threads,
+     * or <code>null</code> to execute them on threads of their own.
+     */
+    protected transient Scheduler scheduler;
+
+    /** The scheduling priority, from <code>Scheduler.MIN_PRIORITY</code> to <code>Scheduler.MAX_PRIORITY</code>. */
+    protected int priority = Scheduler.NORM_PRIORITY;
+
+    /** A flag that indicates whether a time slice of the goal is being executed. Guarded by <code>lock</code>. */
+    boolean running;
+    /** A flag that indicates whether the goal was resumed during its time slice. Guarded by <code>lock</code>. */
+    boolean resumed;
+    /** The weighted number of inferences executed so far. Guarded by the lock of <code>scheduler</code>. */
+    long vruntime;
+    /** The order in which the goal was put on the run queue. Guarded by the lock of <code>scheduler</code>. */
+    long seq;
+    /** A flag that indicates whether the goal is on the run queue. Guarded by the lock of <code>scheduler</code>. */
+    boolean queued;
+
+    /** 
+     * Guards the handshake between this control and the thread executing the goal.
+     * A lock is used instead of the monitor of this object so that 
+     * a virtual thread waiting for the other side does not pin its carrier thread.
+     */
+    protected final ReentrantLock lock = new ReentrantLock();
+
+    /** Is signalled whenever <code>resultReady</code> or <code>thread</code> changes. */
+    protected final Condition changed = lock.newCondition();
+
+    /** Is signalled whenever a time slice of the goal ends. */
+    protected final Condition sliceEnded = lock.newCondition();
+
     /** Constructs a new <code>PrologControl</code>. */
     public PrologControl(PrologClassLoader pcl) {
 	thread = null;
@@ -122,12 +218,45 @@ public class PrologControl implements Runnable, Serializable {
 	resultReady = false;
     }
 
+    /** 
+     * Constructs a new <code>PrologControl</code> whose engine has the given
+     * initial sizes of choice point stack, trail stack, and internal database.
+     * @see Prolog#Prolog(PrologControl, PrologClassLoader, int, int, int)
+     */
+    public PrologControl(PrologClassLoader pcl, 
+			 int choiceStackSize, int trailSize, int internalDatabaseSize) {
+	thread = null;
+	engine = new Prolog(this, pcl, choiceStackSize, trailSize, internalDatabaseSize);
+	code = null;
+	result = false;
+	resultReady = false;
+    }
+
+    /** 
+     * Constructs a new <code>PrologControl</code> whose engine is forked from 
+     * the engine of <code>template</code>, and which has the same execution mode
+     * and thread factory.
+     * @see Prolog#fork
+     */
+    public PrologControl(PrologControl template) {
+	thread = null;
+	engine = template.engine.fork(this);
+	code = null;
+	result = false;
+	resultReady = false;
+	callerThread = template.callerThread;
+	threadFactory = template.threadFactory;
+	scheduler = template.scheduler;
+	priority = template.priority;
+    }
+
     /** Sets a goal and its arguments to this Prolog thread. 
      * An initial continuation goal (a <code>Success</code> object)
      * is set to the <code>cont</code> field of goal <code>p</code> as continuation.
      */
     public void setPredicate(Predicate p, Term[] args) {
 	code = p;
+	this.args = args;
 	code.setArgument(args, new Success(this));
     }
 
@@ -140,6 +269,7 @@ public class PrologControl implements Runnable, Serializable {
 	    Class clazz = engine.pcl.loadPredicateClass("jp.ac.kobe_u.cs.prolog.builtin", "call", 1, true);
 	    Term[] args = {engine.copy(t)};
 	    code = (Predicate)(clazz.newInstance());
+	    this.args = args;
 	    code.setArgument(args, new Success(this));
 	} catch (Exception e){
 	    e.printStackTrace();
@@ -153,22 +283,43 @@ public class PrologControl implements Runnable, Serializable {
      * This method is useful to find only one solution.<br>
      *
      * This method first initilizes the Prolog engine by invoking <code>engine.init()</code>,
-     * allocates a new <code>Thread</code> object, and start the execution of the given goal.
+     * allocates a new <code>Thread</code> object by <code>newThread()</code>, and start the execution.of the given goal.
      * And then it stops the thread and returns <code>true</code> 
      * if the goal succeeds, <code>false</code> otherwise.
      * @see #run
      */
-    public synchronized boolean execute(Predicate p, Term[] args) {
-	engine.init();
-	code = p;
-	code.setArgument(args, new Success(this));
-	thread = new Thread(this);
-	thread.start(); // execute run() in new thread.
+    public boolean execute(Predicate p, Term[] args) {
+	lock.lock();
 	try {
-	    wait();     // wait caller's thread.
-	} catch (InterruptedException e) {}
-	stop();
-	return result;
+	    awaitSlice();
+	    engine.init();
+	    exception = null;
+	    code = p;
+	    this.args = args;
+	    code.setArgument(args, new Success(this));
+	    if (callerThread) {
+		thread = Thread.currentThread();
+		run();
+		stop();
+		return result;
+	    }
+	    if (scheduler != null) {
+		thread = Thread.currentThread();
+		scheduler.submit(this, true);
+		while (thread != null && ! resultReady)
+		    await();
+		stop();
+		return result;
+	    }
+	    thread = worker = newThread();
+	    thread.start(); // execute run() in new thread.
+	    while (thread != null && ! resultReady)
+		await();    // wait caller's thread.
+	    stop();
+	    return result;
+	} finally {
+	    lock.unlock();
+	}
     }
 
     /**
@@ -182,9 +333,14 @@ public class PrologControl implements Runnable, Serializable {
      * @see #start
      * @see #next
      */
-    public synchronized boolean call() {
-	start();
-	return next();
+    public boolean call() {
+	lock.lock();
+	try {
+	    start();
+	    return next();
+	} finally {
+	    lock.unlock();
+	}
     }
 
     /**
@@ -193,14 +349,265 @@ public class PrologControl implements Runnable, Serializable {
      * 
      * This method first invokes the <code>cont()</code> method that
      * sets the <code>resultReady</code> to <code>false</code>
-     * and wakes up all threads that are waiting on this object's monitor.
+     * and wakes up all threads that are waiting on <code>changed</code>.
      * And then it returns the <code>boolean</code> whose value is <code>next()</code>.
      * @see #cont
      * @see #next
      */
-    public synchronized boolean redo() {
-	cont();
-	return next();
+    public boolean redo() {
+	lock.lock();
+	try {
+	    if (resultReady && result && ! hasMoreSolutions) {
+		stop();
+		return false;
+	    }
+	    cont();
+	    return next();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** 
+     * Sets the maximum number of inferences of each goal started after this call.
+     * A goal exceeding it raises <code>resource_error(Goal, inferences)</code>,
+     * which can be caught by <code>catch/3</code>.
+     * <code>0</code> means no limit.
+     * @see Prolog#setMaxInferences
+     */
+    public void setInferenceLimit(long n) { engine.setMaxInferences(n); }
+
+    /** 
+     * Sets the maximum time in milliseconds of each goal started after this call.
+     * A goal exceeding it raises <code>resource_error(Goal, time)</code>,
+     * which can be caught by <code>catch/3</code>.
+     * <code>0</code> means no limit.
+     * @see Prolog#setMaxTimeMillis
+     */
+    public void setTimeLimit(long millis) { engine.setMaxTimeMillis(millis); }
+
+    /** 
+     * Cancels the current goal.
+     * The goal stops within <code>Prolog.CHECK_INTERVAL</code> inferences and fails;
+     * unlike resource errors, cancellation can not be caught by <code>catch/3</code>.
+     * This method may be invoked from any thread.
+     * @see Prolog#cancel
+     */
+    public void cancel() { engine.cancel(); }
+
+    /** 
+     * Returns the exception that terminated the last goal,
+     * for example a <code>ResourceException</code>, or <code>null</code>.
+     */
+    public PrologException getException() { return exception; }
+
+    /** 
+     * Returns <code>true</code> if this <code>PrologControl</code> executes goals
+     * on the caller's thread.
+     * @see #callerThread
+     */
+    public boolean isCallerThread() { return callerThread; }
+
+    /** 
+     * Sets the execution mode of this <code>PrologControl</code>.<br>
+     *
+     * If <code>b</code> is <code>true</code>, <code>execute</code>, <code>call</code>,
+     * <code>redo</code>, and <code>next</code> run the goal on the caller's thread
+     * until it finds a solution or fails, instead of handing it over to
+     * a newly allocated <code>Thread</code>.
+     * Solutions found within <code>synchronized/2</code> release its lock, 
+     * so that backtracking into the goal is not synchronized in this mode.
+     * @see #callerThread
+     */
+    public void setCallerThread(boolean b) {
+	lock.lock();
+	try {
+	    callerThread = b;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** 
+     * Returns the factory of threads that execute goals of this <code>PrologControl</code>.
+     * @see #threadFactory
+     */
+    public ThreadFactory getThreadFactory() { return threadFactory; }
+
+    /** 
+     * Sets the factory of threads that execute goals of this <code>PrologControl</code>.
+     * If <code>f</code> is <code>null</code>, a platform <code>Thread</code> is allocated for each goal.
+     * @see #threadFactory
+     */
+    public void setThreadFactory(ThreadFactory f) { threadFactory = f; }
+
+    /** 
+     * Sets the initial thread factory of <code>PrologControl</code> objects created after this call.
+     * @see #defaultThreadFactory
+     */
+    public static void setDefaultThreadFactory(ThreadFactory f) { defaultThreadFactory = f; }
+
+    /** 
+     * Returns a factory of virtual threads,
+     * or <code>null</code> if the running Java Virtual Machine does not support them.
+     * Virtual threads are obtained reflectively (<code>Thread.ofVirtual().factory()</code>)
+     * so that this class still runs on older Java platforms.
+     */
+    public static ThreadFactory virtualThreadFactory() {
+	try {
+	    Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+	    Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+	    return (ThreadFactory) factory.invoke(builder);
+	} catch (Exception e) {
+	    return null;
+	}
+    }
+
+    /** 
+     * Returns the scheduler that executes goals of this <code>PrologControl</code>, or <code>null</code>.
+     * @see #scheduler
+     */
+    public Scheduler getScheduler() { return scheduler; }
+
+    /** 
+     * Sets the scheduler that executes goals of this <code>PrologControl</code> started after this call.<br>
+     * If <code>s</code> is not <code>null</code>, goals are executed in time slices on the carrier threads
+     * of <code>s</code>, instead of on threads of their own, unless <code>isCallerThread()</code> is <code>true</code>.
+     * Solutions found within <code>synchronized/2</code> release its lock as in caller-thread mode.
+     * @see Scheduler
+     */
+    public void setScheduler(Scheduler s) {
+	lock.lock();
+	try {
+	    scheduler = s;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns the scheduling priority of this <code>PrologControl</code>. */
+    public int getPriority() { return priority; }
+
+    /** 
+     * Sets the scheduling priority of this <code>PrologControl</code>.
+     * A goal receives inferences in proportion to its priority
+     * when it competes with other goals for the carrier threads of a <code>Scheduler</code>.
+     * @exception IllegalArgumentException if <code>p</code> is out of range.
+     */
+    public void setPriority(int p) {
+	if (p < Scheduler.MIN_PRIORITY || p > Scheduler.MAX_PRIORITY)
+	    throw new IllegalArgumentException("priority out of range: " + p);
+	priority = p;
+    }
+
+    /** Returns a new thread that executes the <code>run</code> method of this control. */
+    protected Thread newThread() {
+	if (threadFactory == null)
+	    return new Thread(this);
+	return threadFactory.newThread(this);
+    }
+
+    /** Waits until <code>changed</code> is signalled. The caller must hold <code>lock</code>. */
+    private void await() {
+	try {
+	    changed.await();
+	} catch (InterruptedException e) {}
+    }
+
+    /** 
+     * Waits until no time slice of the goal is being executed by a carrier thread,
+     * so that the engine is no longer touched. The caller must hold <code>lock</code>.
+     */
+    private void awaitSlice() {
+	while (running)
+	    sliceEnded.awaitUninterruptibly();
+    }
+
+    /**
+     * Executes the goal for a time slice of at most <code>n</code> inferences on the current thread.
+     * This is invoked by the carrier threads of <code>scheduler</code>.
+     * @return <code>true</code> if the goal must be put on the run queue again,
+     * <code>false</code> if it has finished, has been stopped, or waits for <code>cont()</code>.
+     */
+    boolean runSlice(long n) {
+	lock.lock();
+	try {
+	    if (thread == null || resultReady)
+		return false;
+	    thread = Thread.currentThread();
+	    running = true;
+	} finally {
+	    lock.unlock();
+	}
+	boolean again = false;
+	try {
+	    engine.setTimeSlice(n);
+	    run();
+	    again = engine.exceptionRaised == 5;
+	} finally {
+	    lock.lock();
+	    try {
+		running = false;
+		again |= resumed;
+		resumed = false;
+		sliceEnded.signalAll();
+	    } finally {
+		lock.unlock();
+	    }
+	}
+	return again;
+    }
+
+    /**
+     * Returns an iterator over the solutions of the goal <code>p</code> with arguments <code>args</code>.<br>
+     *
+     * Each element is an array of copies of <code>args</code> as instantiated by the solution.
+     * The goal is started on the first <code>hasNext()</code>, and resumed by <code>redo()</code>
+     * on the later ones; it runs on the caller's thread if <code>isCallerThread()</code> is <code>true</code>.
+     * @see #call
+     * @see #redo
+     */
+    public Iterator<Term[]> solutions(Predicate p, final Term[] args) {
+	setPredicate(p, args);
+	return new Iterator<Term[]>() {
+	    boolean started = false;
+	    boolean fetched = false;
+	    boolean found   = false;
+
+	    public boolean hasNext() {
+		if (! fetched) {
+		    found = started ? redo() : call();
+		    started = true;
+		    fetched = true;
+		}
+		return found;
+	    }
+
+	    public Term[] next() {
+		if (! hasNext())
+		    throw new NoSuchElementException();
+		fetched = false;
+		return copyArgs(args);
+	    }
+
+	    public void remove() {
+		throw new UnsupportedOperationException();
+	    }
+	};
+    }
+
+    /** Returns copies of <code>args</code> which share their fresh variables. */
+    protected Term[] copyArgs(Term[] args) {
+	lock.lock();
+	try {
+	    Term[] a = new Term[args.length];
+	    engine.copyHash.clear();
+	    for (int i=0; i<args.length; i++)
+		a[i] = args[i].copy(engine);
+	    return a;
+	} finally {
+	    lock.unlock();
+	}
     }
 
     /**
@@ -210,23 +617,34 @@ public class PrologControl implements Runnable, Serializable {
      * (a <code>Success</code> object).<br>
      * 
      * This method first sets the <code>resultReady</code> and <code>result</code> to <code>true</code>.
-     * And then it wakes up all threads that are waiting by <code>notifyAll()</code>.
+     * And then it wakes up all threads that are waiting on <code>changed</code>.
      * Finally, while the <code>thread</code> is not <code>null</code> and 
      * the <code>resultReady</code> is <code>true</code>, 
-     * it waits until another thread invokes the <code>notify()</code> method 
-     * or the <code>notifyAll()</code> method for this object.
+     * it waits until another thread signals <code>changed</code>.
      * @see #resultReady
      * @see #result
      * @see #thread
      */
-    protected synchronized void success() {
-	resultReady = true;
-	result = true;
-	notifyAll();
-	while (thread != null && resultReady) {
-	    try {
-		wait();
-	    } catch (InterruptedException e) {}
+    protected void success() {
+	lock.lock();
+	try {
+	    resultReady = true;
+	    result = true;
+	    hasMoreSolutions = engine.stack.top() > 0;
+	    if (callerThread) {
+		engine.exceptionRaised = 3; // suspend
+		return;
+	    }
+	    if (scheduler != null) {
+		engine.exceptionRaised = 3; // suspend until cont()
+		changed.signalAll();
+		return;
+	    }
+	    changed.signalAll();
+	    while (thread != null && resultReady)
+		await();
+	} finally {
+	    lock.unlock();
 	}
     }
 
@@ -237,34 +655,42 @@ public class PrologControl implements Runnable, Serializable {
      * 
      * This method first sets the <code>resultReady</code> and <code>result</code> 
      * to <code>true</code> and <code>false</code> respectively.
-     * And then it wakes up all threads that are waiting by <code>notifyAll()</code>.
+     * And then it wakes up all threads that are waiting on <code>changed</code>.
      * Finally, while the <code>thread</code> is not <code>null</code> and 
      * the <code>resultReady</code> is <code>true</code>, 
-     * it waits until another thread invokes the <code>notify()</code> method 
-     * or the <code>notifyAll()</code> method for this object.
+     * it waits until another thread signals <code>changed</code>.
      * @see #resultReady
      * @see #result
      * @see #thread
      */
-    protected synchronized void fail() {
-	resultReady = true;
-	result = false;
-	notifyAll();
-	while (thread != null && resultReady) {
-	    try {
-		wait();
-	    } catch (InterruptedException e) {}
+    protected void fail() {
+	lock.lock();
+	try {
+	    resultReady = true;
+	    result = false;
+	    hasMoreSolutions = false;
+	    if (callerThread)
+		return;
+	    changed.signalAll();
+	    if (scheduler != null)
+		return;
+	    while (thread != null && resultReady)
+		await();
+	} finally {
+	    lock.unlock();
 	}
     }
 
     /** Waits for this thread to die. */
-    public synchronized void join() {
-	while (thread != null && ! resultReady) {
-	    try {
-		wait();
-	    } catch (InterruptedException e) {}
+    public void join() {
+	lock.lock();
+	try {
+	    while (thread != null && ! resultReady)
+		await();
+	    stop();
+	} finally {
+	    lock.unlock();
 	}
-	stop();
     }
 
     /** 
@@ -272,41 +698,216 @@ public class PrologControl implements Runnable, Serializable {
      *
      * This method first sets the <code>resultReady</code> and <code>thread</code> 
      * to <code>false</code> and <code>null</code> respectively.
-     * And then it wakes up all threads that are waiting by <code>notifyAll()</code>.
+     * And then it wakes up all threads that are waiting on <code>changed</code>.
      * @see #resultReady
      * @see #thread
      */
-    public synchronized void stop() {
-	resultReady = false;
-	thread = null;
-	notifyAll();
+    public void stop() {
+	lock.lock();
+	try {
+	    resultReady = false;
+	    thread = null;
+	    changed.signalAll();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Stops the goal and initializes the Prolog engine for reuse.<br>
+     *
+     * This method first invokes <code>stop()</code>, and then waits for 
+     * the thread that executed the goal to finish, so that it no longer touches the engine.
+     * Finally, it initilizes the engine by invoking <code>engine.init()</code>,
+     * which discards only the entries used by the last goal.
+     * @see EnginePool#release
+     */
+    public void reset() {
+	Thread t = worker;
+	stop();
+	lock.lock();
+	try {
+	    awaitSlice();
+	} finally {
+	    lock.unlock();
+	}
+	if (t != null && t != Thread.currentThread()) {
+	    boolean interrupted = false;
+	    while (t.isAlive()) {
+		try {
+		    t.join();
+		} catch (InterruptedException e) {
+		    interrupted = true;
+		}
+	    }
+	    if (interrupted)
+		Thread.currentThread().interrupt();
+	}
+	worker = null;
+	engine.init();
     }
 
     /**
      * Forces the thread to start the execution.<br>
      *
      * This method initilizes the Prolog engine by invoking <code>engine.init()</code>,
-     * allocates a new <code>Thread</code> object, and start the execution.
+     * allocates a new <code>Thread</code> object by <code>newThread()</code>, and start the execution.
      * The Java Virtual Machine calls the <code>run</code> method of this thread.
      * @see #run
      */
-    public synchronized void start() {
-	resultReady = false;
-	engine.init();
-	thread = new Thread(this);
+    public void start() {
+	lock.lock();
+	try {
+	    resultReady = false;
+	    awaitSlice();
+	    engine.init();
+	    exception = null;
+	    launch();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** 
+     * Starts the execution of <code>code</code> in the execution mode of this control.
+     * The caller must hold <code>lock</code>.
+     */
+    private void launch() {
+	if (callerThread) {
+	    thread = Thread.currentThread();
+	    return;
+	}
+	if (scheduler != null) {
+	    thread = Thread.currentThread();
+	    scheduler.submit(this, true);
+	    return;
+	}
+	thread = worker = newThread();
 	thread.start();
     }
 
+    /** 
+     * Returns the arguments of the goal given by <code>setPredicate</code> or <code>execute</code>,
+     * or restored by <code>resume</code>, or <code>null</code>.
+     */
+    public Term[] getArguments() { return args; }
+
+    /**
+     * Writes a checkpoint of the running goal to <code>out</code>.<br>
+     *
+     * This method waits until the goal reaches the next check point of
+     * the continuation passing loop, that is, within <code>Prolog.CHECK_INTERVAL</code> inferences.
+     * The thread executing the goal then writes the state of the goal, and continues it.
+     * A goal inside <code>synchronized/2</code> is checkpointed after it leaves the block.
+     * The checkpoint can be given to <code>resume</code> of a control 
+     * whose engine has loaded the same program, in this or another Java Virtual Machine.
+     * This method must not be invoked by the thread executing the goal.
+     * @return <code>true</code> if the checkpoint has been written, 
+     * <code>false</code> if no goal is running, or the goal has found a solution, failed, or been stopped
+     * before reaching a check point.
+     * @exception IOException if the state can not be written, for example because
+     * a term refers to an object that is not serializable.
+     * @see Checkpoint
+     */
+    public boolean checkpoint(OutputStream out) throws IOException {
+	lock.lock();
+	try {
+	    if (thread == null || resultReady)
+		return false;
+	    Checkpoint r = new Checkpoint(out);
+	    checkpoint = r;
+	    while (! r.done && (r.taken || (thread != null && ! resultReady)))
+		await();
+	    if (checkpoint == r)
+		checkpoint = null;
+	    if (! r.done)
+		return false;
+	    if (r.error != null)
+		throw r.error;
+	    return true;
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Writes the requested checkpoint with the next goal <code>goal</code>.
+     * This is invoked by <code>Prolog.checkLimits</code> on the thread executing the goal.
+     */
+    void writeCheckpoint(Predicate goal) {
+	Checkpoint r;
+	lock.lock();
+	try {
+	    r = checkpoint;
+	    checkpoint = null;
+	    if (r == null)
+		return;
+	    r.taken = true;
+	} finally {
+	    lock.unlock();
+	}
+	try {
+	    r.write(engine, goal, args);
+	} catch (IOException e) {
+	    r.error = e;
+	} catch (RuntimeException e) {
+	    r.error = new IOException(e);
+	}
+	lock.lock();
+	try {
+	    r.done = true;
+	    changed.signalAll();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /**
+     * Resumes the goal of a checkpoint read from <code>in</code>.<br>
+     *
+     * This method initializes the engine, restores the state of the goal into it,
+     * and starts the execution like <code>start()</code>.
+     * The solutions are obtained by <code>next()</code> and <code>redo()</code>,
+     * and the arguments of the goal by <code>getArguments()</code>.
+     * @exception IOException if the checkpoint can not be read.
+     * @exception ClassNotFoundException if a class of the checkpoint can not be found.
+     * @see #checkpoint(OutputStream)
+     */
+    public void resume(InputStream in) throws IOException, ClassNotFoundException {
+	lock.lock();
+	try {
+	    resultReady = false;
+	    awaitSlice();
+	    engine.init();
+	    exception = null;
+	    Checkpoint.read(this, in);
+	    launch();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
     /**
      * Forces the thread to continue the execution.<br>
      * 
      * This method sets the <code>resultReady</code> to <code>false</code>,
-     * and then wakes up all threads that are waiting by <code>notifyAll()</code>.
+     * and then wakes up all threads that are waiting on <code>changed</code>.
      * @see #resultReady
      */
-    public synchronized void cont() {
-	resultReady = false;
-	notifyAll();
+    public void cont() {
+	lock.lock();
+	try {
+	    resultReady = false;
+	    changed.signalAll();
+	    if (scheduler != null && ! callerThread && thread != null) {
+		if (running)
+		    resumed = true;
+		else
+		    scheduler.submit(this, false);
+	    }
+	} finally {
+	    lock.unlock();
+	}
     }
 
     /** 
@@ -315,8 +916,13 @@ public class PrologControl implements Runnable, Serializable {
      * @return a <code>boolean</code> whose value is <code>resultReady</code>.
      * @see #resultReady
      */
-    public synchronized boolean ready() {
-	return resultReady;
+    public boolean ready() {
+	lock.lock();
+	try {
+	    return resultReady;
+	} finally {
+	    lock.unlock();
+	}
     }
 
     /** 
@@ -325,7 +931,7 @@ public class PrologControl implements Runnable, Serializable {
      * @see #ready
      * @see #result
      */
-    public synchronized boolean in_success() {
+    public boolean in_success() {
 	return ready() && result;
     }
 
@@ -335,7 +941,7 @@ public class PrologControl implements Runnable, Serializable {
      * @see #ready
      * @see #result
      */
-    public synchronized boolean in_failure() {
+    public boolean in_failure() {
 	return ready() && ! result;
     }
 
@@ -343,59 +949,101 @@ public class PrologControl implements Runnable, Serializable {
      * Wait until the system finds a next solution,
      * and then returns the result as <code>boolean</code>.<br>
      *
-     * This method first waits until another thread invokes the <code>notify()</code>
-     * method or the <code>notifyAll()</code> method for this object, 
+     * This method first waits until another thread signals <code>changed</code>,
      * while the <code>thread</code> is not <code>null</code> and 
      * the <code>resultReady</code> is <code>false</code>.
+     * If the goal has been stopped or cancelled meanwhile without a new result,
+     * the <code>result</code> is set to <code>false</code>.
      * And then invokes the <code>stop()</code> if the <code>result</code> is <code>false</code>.
      * Finally, returns the <code>result</code>.
      * @see #resultReady
      * @see #result
      * @see #thread
      */
-    public synchronized boolean next() {
-	while (thread != null && ! resultReady) {
-	    try {
-		wait();
-	    } catch (InterruptedException e) {}
-	}
-	if (! result) {
-	    stop();
+    public boolean next() {
+	lock.lock();
+	try {
+	    if (callerThread) {
+		if (thread != null && ! resultReady)
+		    run();
+	    }
+	    while (thread != null && ! resultReady)
+		await();
+	    if (! resultReady)
+		result = false;
+	    if (! result) {
+		stop();
+	    }
+	    return result;
+	} finally {
+	    lock.unlock();
 	}
-	return result;
     }
 
     /**
      * Executes the goal.<br>
      *
      * Every time finding a solution, the <code>success</code> method is invoked.
+     * In caller-thread mode, this returns to the caller at each solution, 
+     * and the next invocation resumes the goal.
      * And then the <code>fail</code> method is invoked after failure of all trials.
-     * Finally, the <code>stop</code> method is invoked at the end of this <code>run</code>.
+     * Finally, unless another goal has been started meanwhile,
+     * the stacks of the engine are shrunk to the high-water marks of this goal,
+     * and the <code>stop</code> method is invoked at the end of this <code>run</code>.
+     * While the goal runs, Prolog exceptions created in this thread have stack traces
+     * only if the <code>print_stack_trace</code> flag of this engine is <code>on</code>.
+     * @see Prolog#shrinkStacks
+     * @see PrologException#setFillInStackTrace(boolean)
      * @see #success
      * @see #fail
      * @see #stop
      */
     public void run() {
+	boolean saved = PrologException.getFillInStackTrace();
+	PrologException.setFillInStackTrace(engine.getPrintStackTrace().equals("on"));
+	try {
+	    runGoal();
+	} finally {
+	    PrologException.setFillInStackTrace(saved);
+	}
+    }
+
+    /** Executes the goal in the current thread. */
+    private void runGoal() {
+	result = false;
+	engine.exceptionRaised = engine.pendingGoals == Prolog.Nil ? 0 : 2;
 	try {
 	    main_loop:while(true) {
-		while (engine.exceptionRaised == 0) {
-		    if (thread == null)
-			break main_loop;
-		    code = code.exec(engine);
+		try {
+		    while (engine.exceptionRaised == 0) {
+			if (thread != Thread.currentThread())
+			    break main_loop;
+			code = code.exec(engine);
+			if (++engine.inferences >= engine.nextCheck)
+			    engine.checkLimits(code);
+		    }
+		} catch (RuntimeException e) {
+		    code = engine.handleException(e);
+		    continue;
 		}
 		switch (engine.exceptionRaised) {
 		case 1:  // halt/0
 		    break main_loop;
-		case 2:  // freeze/2
-		    throw new SystemException("freeze/2 is not supported yet");
-		    // Do something here
-		    // engine.exceptionRaised = 0 ;
-		    // break;
+		case 2:  // goals woken by freeze/2, when/2, or dif/2
+		    code = engine.wakeUp(code);
+		    break;
+		case 3:  // solution found in caller-thread mode
+		    return;
+		case 4:  // cancelled
+		    break main_loop;
+		case 5:  // time slice expired
+		    return;
 		default:
 		    throw new SystemException("Invalid value of exceptionRaised");
 		}
 	    }
 	} catch (PrologException e){
+	    exception = e;
 	    if (engine.getPrintStackTrace().equals("on"))
 		e.printStackTrace();
 	    else 
@@ -403,6 +1051,14 @@ public class PrologControl implements Runnable, Serializable {
 	} catch (Exception e){
 	    e.printStackTrace();
 	}
-	stop();
+	lock.lock();
+	try {
+	    if (thread == null || thread == Thread.currentThread()) {
+		engine.shrinkStacks();
+		stop();
+	    }
+	} finally {
+	    lock.unlock();
+	}
     }
 }
@@ -8,10 +8,37 @@ import java.io.Serializable;
  * @version 1.0
  */
 public abstract class PrologException extends RuntimeException implements Serializable {
+    /**
+     * A flag that indicates whether the stack trace is filled in when a Prolog exception 
+     * is created in the current thread.
+     * It is set from the Prolog implementation flag <code>print_stack_trace</code>
+     * of the engine running in the thread.
+     */
+    private static final ThreadLocal<Boolean> fillInStackTrace = new ThreadLocal<Boolean>();
 
     /** Constructs a new Prolog exception. */
     public PrologException() {}
 
+    /**
+     * Sets whether Prolog exceptions created from now on in the current thread have stack traces.
+     * Without them, <code>throw/1</code> and builtin errors do not walk the Java stack.
+     * @see Prolog#setPrintStackTrace(String)
+     */
+    public static void setFillInStackTrace(boolean b) {
+	if (b)
+	    fillInStackTrace.set(Boolean.TRUE);
+	else
+	    fillInStackTrace.remove();
+    }
+
+    /** Returns <code>true</code> if Prolog exceptions created in the current thread have stack traces. */
+    public static boolean getFillInStackTrace() { return fillInStackTrace.get() != null; }
+
+    /** Fills in the stack trace only if <code>setFillInStackTrace(true)</code> has been invoked in the current thread. */
+    public Throwable fillInStackTrace() {
+	return fillInStackTrace.get() != null ? super.fillInStackTrace() : this;
+    }
+
     /** Returns the message term of this object. */
     abstract public Term getMessageTerm();
 }
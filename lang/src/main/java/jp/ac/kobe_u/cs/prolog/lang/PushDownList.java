@@ -8,7 +8,10 @@ import java.io.Serializable;
  * @version 1.1
  */
 public class PushDownList implements Serializable {
-    /** Maximum size of enties. Initial size is <code>10000</code>. */
+    /** Initial size of enties. Default value is <code>1000</code>. */
+    protected int initialContents = 1000;
+
+    /** Maximum size of enties. Initial size is <code>1000</code>. */
     protected int maxContents = 1000;
 
     /** An array of <code>Term</code> entries. */
@@ -25,6 +28,7 @@ public class PushDownList implements Serializable {
 
     /** Constructs a new pdl with the given size. */
     public PushDownList(int n) {
+	initialContents = n;
 	maxContents = n;
 	buffer = new Term[maxContents];
 	top = -1;
@@ -35,19 +39,14 @@ public class PushDownList implements Serializable {
 
     /** Pushs an entry to this <code>PushDownList</code>. */
     public void push(Term t) {
-	try {
-	    buffer[++top] = t;
-	} catch (ArrayIndexOutOfBoundsException e) {
-	    System.out.println("{expanding pdl...}");
-	    int len = buffer.length;
-	    Term[] new_buffer = new Term[len+10000];
-	    for(int i=0; i<len; i++){
-		new_buffer[i] = buffer[i];
-	    }
+	if (++top == maxContents) {
+	    int len = Math.max(1, maxContents * 2);
+	    Term[] new_buffer = new Term[len];
+	    System.arraycopy(buffer, 0, new_buffer, 0, maxContents);
 	    buffer = new_buffer;
-	    buffer[top] = t;
-	    maxContents = len+10000;
+	    maxContents = len;
 	}
+	buffer[top] = t;
     }
 
     /** Pops an entry from this <code>PushDownList</code>. */
@@ -64,6 +63,24 @@ public class PushDownList implements Serializable {
 	}	
     }
 
+    /** Discards all entries after the value of <code>i</code>. */
+    public void cut(int i) {
+	while (top > i) {
+	    buffer[top--] = null;
+	}
+    }
+
+    /** 
+     * Reallocates the buffer with the initial size 
+     * if this <code>PushDownList</code> is empty and has grown.
+     */
+    public void shrink() {
+	if (empty() && maxContents > initialContents) {
+	    maxContents = initialContents;
+	    buffer = new Term[maxContents];
+	}
+    }
+
     /** Tests if this pdl has no entry. */
     public boolean empty() {
 	return top == -1;
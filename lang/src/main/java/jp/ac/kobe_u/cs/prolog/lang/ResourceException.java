@@ -0,0 +1,49 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+/**
+ * Resource error.<br>
+ * There will be a resource error when the execution of a goal
+ * runs out of a resource, such as its inference budget or time limit.
+ *
+ * @version 1.2
+ */
+public class ResourceException extends BuiltinException {
+    /** A functor symbol of <code>resource_error/2</code>. */
+    public static SymbolTerm RESOURCE_ERROR = SymbolTerm.makeSymbol("resource_error", 2);
+
+    /*
+      resource ::= inferences | time
+    */
+    /** Holds a string representation of resource. */
+    public String resource;
+
+    /** Constructs a new <code>ResourceException</code> with a resource. */
+    public ResourceException(String _resource) {
+	resource = _resource;
+    }
+
+    /** Constructs a new <code>ResourceException</code> with the given arguments. */
+    public ResourceException(Predicate _goal, String _resource) {
+	this.goal = _goal;
+	resource  = _resource;
+    }
+
+    /** Returns a term representation of this <code>ResourceException</code>:
+     * <code>resource_error(goal,resource)</code>.
+     */
+    public Term getMessageTerm() {
+	Term[] args = {
+	    new JavaObjectTerm(goal),
+	    SymbolTerm.makeSymbol(resource)};
+	return new StructureTerm(RESOURCE_ERROR, args);
+    }
+
+    /** Returns a string representation of this <code>ResourceException</code>. */
+    public String toString() {
+	String s = "{RESOURCE ERROR: ";
+	if (goal != null)
+	    s += goal.toString() + " - ";
+	s += resource + " exhausted";
+	s += "}";
+	return s;
+    }
+}
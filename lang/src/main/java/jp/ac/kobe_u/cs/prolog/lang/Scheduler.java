@@ -0,0 +1,247 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+/**
+ * Scheduler of Prolog goals.<br>
+ * The <code>Scheduler</code> class executes the goals of many <code>PrologControl</code> objects
+ * on a fixed number of carrier threads. Each goal runs for a time slice of a given number
+ * of inferences, and is then put back on the run queue, so that a long search cannot
+ * monopolize a thread while short queries wait.
+ * A goal that finds a solution leaves the run queue until it is resumed by <code>cont()</code>
+ * or <code>redo()</code>, so that it holds no carrier thread while its caller processes the solution.<br>
+ * The next goal to run is the one that has executed the smallest number of inferences
+ * weighted by its priority, that is, a goal of priority <code>p</code> receives inferences in proportion
+ * to <code>p</code> while it competes with others. A new goal, or a goal resumed after a solution,
+ * starts from the smallest weighted count of the goals in the run queue,
+ * so that it runs after the goals that have been waiting, but before long searches.
+ *
+ * <pre>
+ * Scheduler s = new Scheduler(4);
+ * PrologControl p = new PrologControl(new PrologClassLoader());
+ * p.setScheduler(s);
+ * p.setPriority(Scheduler.MAX_PRIORITY);
+ * Term[] args = {SymbolTerm.makeSymbol("abraham"), new VariableTerm()};
+ * if (p.execute(new PRED_father_2(), args))
+ *     System.out.println(args[1]);
+ * s.shutdown();
+ * </pre>
+ *
+ * @see PrologControl#setScheduler(Scheduler)
+ * @see PrologControl#setPriority(int)
+ * @version 1.2
+ */
+public class Scheduler {
+    /** The lowest priority. */
+    public static final int MIN_PRIORITY = 1;
+    /** The default priority. */
+    public static final int NORM_PRIORITY = 5;
+    /** The highest priority. */
+    public static final int MAX_PRIORITY = 10;
+
+    /** The default number of inferences in a time slice. */
+    public static final int DEFAULT_TIME_SLICE = 10000;
+
+    /** The number of inferences in a time slice. */
+    protected final int timeSlice;
+
+    /** Holds the carrier threads. */
+    protected final Thread[] carriers;
+
+    /** Guards the fields of this scheduler and the scheduling state of its controls. */
+    protected final ReentrantLock lock = new ReentrantLock();
+
+    /** Is signalled whenever a goal is put on the run queue or the scheduler is shut down. */
+    protected final Condition changed = lock.newCondition();
+
+    /** Holds the goals ready to run, ordered by their weighted inferences and then by arrival. */
+    private final PriorityQueue<PrologControl> runQueue =
+	new PriorityQueue<PrologControl>(64, new Comparator<PrologControl>() {
+		public int compare(PrologControl x, PrologControl y) {
+		    if (x.vruntime != y.vruntime)
+			return x.vruntime < y.vruntime ? -1 : 1;
+		    return x.seq < y.seq ? -1 : (x.seq == y.seq ? 0 : 1);
+		}
+	    });
+
+    /** The weighted inferences of the goal that was taken from the run queue last. */
+    private long minVruntime = 0;
+
+    /** The number of goals put on the run queue so far. */
+    private long nextSeq = 0;
+
+    /** The number of time slices executed so far. */
+    private long slices = 0;
+
+    /** A flag that indicates whether this scheduler has been shut down. */
+    private boolean shutdown = false;
+
+    /**
+     * Constructs a new scheduler with <code>n</code> carrier threads
+     * and time slices of <code>DEFAULT_TIME_SLICE</code> inferences.
+     */
+    public Scheduler(int n) {
+	this(n, DEFAULT_TIME_SLICE, null);
+    }
+
+    /**
+     * Constructs a new scheduler with <code>n</code> carrier threads created by <code>factory</code>,
+     * and time slices of <code>timeSlice</code> inferences.
+     * If <code>factory</code> is <code>null</code>, daemon platform threads are created.
+     * @exception IllegalArgumentException if <code>n</code> or <code>timeSlice</code> is not positive.
+     */
+    public Scheduler(int n, int timeSlice, ThreadFactory factory) {
+	if (n < 1)
+	    throw new IllegalArgumentException("number of carrier threads must be positive: " + n);
+	if (timeSlice < 1)
+	    throw new IllegalArgumentException("time slice must be positive: " + timeSlice);
+	this.timeSlice = timeSlice;
+	carriers = new Thread[n];
+	Runnable carrier = new Runnable() {
+		public void run() { carry(); }
+	    };
+	for (int i = 0; i < n; i++) {
+	    Thread t;
+	    if (factory == null) {
+		t = new Thread(carrier, "Prolog carrier " + i);
+		t.setDaemon(true);
+	    } else {
+		t = factory.newThread(carrier);
+	    }
+	    carriers[i] = t;
+	}
+	for (int i = 0; i < n; i++)
+	    carriers[i].start();
+    }
+
+    /**
+     * Puts the goal of <code>c</code> on the run queue, unless it is already there.
+     * The caller may hold the lock of <code>c</code>, but this scheduler never
+     * takes the lock of a control while it holds its own lock.
+     * @param c the control whose goal is to be executed
+     * @param newGoal <code>true</code> if the goal has just been started
+     * @exception SystemException if this scheduler has been shut down.
+     */
+    void submit(PrologControl c, boolean newGoal) {
+	lock.lock();
+	try {
+	    if (shutdown)
+		throw new SystemException("scheduler has been shut down");
+	    if (c.queued)
+		return;
+	    if (newGoal)
+		c.vruntime = 0;
+	    enqueue(c);
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Puts <code>c</code> on the run queue. The caller must hold <code>lock</code>. */
+    private void enqueue(PrologControl c) {
+	if (c.vruntime < minVruntime)
+	    c.vruntime = minVruntime;
+	c.seq = nextSeq++;
+	c.queued = true;
+	runQueue.add(c);
+	changed.signal();
+    }
+
+    /** Executes time slices of the goals on the run queue until this scheduler is shut down. */
+    private void carry() {
+	while (true) {
+	    PrologControl c;
+	    lock.lock();
+	    try {
+		while (runQueue.isEmpty() && ! shutdown)
+		    changed.awaitUninterruptibly();
+		if (shutdown)
+		    return;
+		c = runQueue.poll();
+		c.queued = false;
+		if (c.vruntime > minVruntime)
+		    minVruntime = c.vruntime;
+		slices++;
+	    } finally {
+		lock.unlock();
+	    }
+	    long start = c.engine.inferences;
+	    boolean again = false;
+	    try {
+		again = c.runSlice(timeSlice);
+	    } catch (Throwable t) {
+		c.stop();
+		t.printStackTrace();
+	    }
+	    long used = Math.max(c.engine.inferences - start, 1);
+	    boolean stop = false;
+	    lock.lock();
+	    try {
+		if (! c.queued) {
+		    c.vruntime += used * NORM_PRIORITY / c.priority;
+		    if (again) {
+			if (shutdown)
+			    stop = true;
+			else
+			    enqueue(c);
+		    }
+		}
+	    } finally {
+		lock.unlock();
+	    }
+	    if (stop)
+		c.stop();
+	}
+    }
+
+    /**
+     * Shuts down this scheduler.<br>
+     * The goals on the run queue are stopped, and the carrier threads terminate
+     * when they finish their current time slices.
+     */
+    public void shutdown() {
+	ArrayList<PrologControl> stopped;
+	lock.lock();
+	try {
+	    shutdown = true;
+	    stopped = new ArrayList<PrologControl>(runQueue);
+	    for (PrologControl c : stopped)
+		c.queued = false;
+	    runQueue.clear();
+	    changed.signalAll();
+	} finally {
+	    lock.unlock();
+	}
+	for (PrologControl c : stopped)
+	    c.stop();
+    }
+
+    /** Returns the number of carrier threads. */
+    public int getCarrierCount() { return carriers.length; }
+
+    /** Returns the number of inferences in a time slice. */
+    public int getTimeSlice() { return timeSlice; }
+
+    /** Returns the number of goals on the run queue. */
+    public int getQueueLength() {
+	lock.lock();
+	try {
+	    return runQueue.size();
+	} finally {
+	    lock.unlock();
+	}
+    }
+
+    /** Returns the number of time slices executed so far. */
+    public long getSliceCount() {
+	lock.lock();
+	try {
+	    return slices;
+	} finally {
+	    lock.unlock();
+	}
+    }
+}
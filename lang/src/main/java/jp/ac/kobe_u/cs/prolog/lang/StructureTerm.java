@@ -30,17 +30,37 @@ public class StructureTerm extends Term {
     /** Holds the arity of this <code>StructureTerm</code>. */
     protected int arity;
 
+    /**
+     * Is <code>true</code> if this structure is known to be ground,
+     * that is, if its arguments were ground when it was constructed.
+     * @see TermTraversal#knownGround
+     */
+    protected boolean ground;
+
+    /**
+     * Holds the hash code of this structure once computed if it is ground, or <code>0</code>.
+     * It is not serialized, and is computed again after deserialization,
+     * since the hash codes of some subterms differ between Java Virtual Machines.
+     */
+    protected transient int hash;
+
     /**
      * Constructs a new Prolog compound term
      * such that <code>_functor</code> is the functor symbol, and 
      * <code>_args</code> is the argument terms respectively.
      */
     public StructureTerm(SymbolTerm _functor, Term[] _args){
+	super(TAG_STRUCTURE);
 	functor = _functor;
 	arity = functor.arity();
 	args = _args;
 	if (arity != args.length)
 	    throw new InternalException("Invalid argument length in StructureTerm");
+	for (int i = 0; i < arity; i++) {
+	    if (! TermTraversal.knownGround(args[i]))
+		return;
+	}
+	ground = true;
     }
 
     /** Returns the functor symbol of this <code>StructureTerm</code>.
@@ -84,52 +104,26 @@ public class StructureTerm extends Term {
     } */
 
 
+    /**
+     * Checks whether the argument term is unified with this one,
+     * by the iterative <code>unify</code> method of the engine that owns <code>trail</code>.
+     * @see Prolog#unify(Term, Term)
+     */
     public boolean unify(Term t, Trail trail) {
-	t = t.dereference();
-	if (t.isVariable()) {
-	    ((VariableTerm) t).bind(this, trail);
-	    return true;
-	}
-	if (! t.isStructure())
-	    return false;
-	if (! functor.equals(((StructureTerm)t).functor()))
-	    return false;
-	for (int i=0; i<arity; i++) {
-	    if (! args[i].unify(((StructureTerm)t).args[i], trail))
-		return false;
-	}
-	return true;
+	return trail.engine.unify(this, t);
     }
 
-    //    public boolean unify(Term t, Trail trail) {
-    //	return trail.engine.unify(this, t);
-    //    }
-
 
     protected Term copy(Prolog engine) {
-	Term[] a = new Term[arity];
-	for (int i=0; i<arity; i++)
-	    a[i] = args[i].copy(engine);
-	return new StructureTerm(functor, a);
+	return TermTraversal.copy(this, engine);
     }
 
     public boolean isGround() {
-	for (int i=0; i<arity; i++) {
-	    if (! args[i].isGround())
-		return false;
-	}
-	return true;
+	return TermTraversal.isGround(this);
     }
 
     public String toQuotedString() {
-	String delim = "";
-	String s = functor.toQuotedString() + "(";
-	for (int i=0; i<arity; i++) {
-	    s += delim + args[i].toQuotedString();
-	    delim = ",";
-	}
-	s += ")";
-	return s;
+	return TermTraversal.toString(this, true);
     }
 
     /* Object */
@@ -146,33 +140,16 @@ public class StructureTerm extends Term {
     public boolean equals(Object obj) {
 	if (! (obj instanceof StructureTerm))
 	    return false;
-	if (! functor.equals(((StructureTerm)obj).functor()))
-	    return false;
-	for (int i=0; i<arity; i++) {
-	    if (! args[i].equals(((StructureTerm)obj).args[i].dereference()))
-		return false;
-	}
-	return true;
+	return TermTraversal.equals(this, (StructureTerm) obj);
     }
 
     public int hashCode() {
-	int h = 1;
-	h = 31*h + functor.hashCode();
-	for(int i=0; i<arity; i++)
-	    h = 31*h + args[i].dereference().hashCode();
-	return h;
+	return TermTraversal.hashCode(this);
     }
 
     /** Returns a string representation of this <code>StructureTerm</code>. */
     public String toString() {
-	String delim = "";
-	String s = functor.toString() + "(";
-	for (int i=0; i<arity; i++) {
-	    s += delim + args[i].toString();
-	    delim = ",";
-	}
-	s += ")";
-	return s;
+	return TermTraversal.toString(this, false);
     }
 
     /* Comparable */
@@ -186,34 +163,6 @@ public class StructureTerm extends Term {
      * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
      */
     public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced.
-	SymbolTerm functor2;
-	Term[] args2;
-	int arity2, rc;
-
-	if (anotherTerm.isVariable() || anotherTerm.isNumber() || anotherTerm.isSymbol())
-	    return AFTER;
-	if (anotherTerm.isList()) {
-	    functor2 = ListTerm.SYM_DOT;
-	    args2    = new Term[2];
-	    args2[0] = ((ListTerm)anotherTerm).car();
-	    args2[1] = ((ListTerm)anotherTerm).cdr();
-	    arity2   = 2;
-	} else if (anotherTerm.isStructure()) {
-	    functor2 = ((StructureTerm)anotherTerm).functor();
-	    args2    = ((StructureTerm)anotherTerm).args();
-	    arity2   = ((StructureTerm)anotherTerm).arity();
-	} else {
-	    return BEFORE;
-	}
-	if (arity != arity2)
-	    return (arity - arity2);
-	if (! functor.equals(functor2))
-	    return functor.compareTo(functor2);
-	for (int i=0; i<arity; i++) {
-	    rc = args[i].compareTo(args2[i].dereference());
-	    if (rc != EQUAL) 
-		return rc;
-	}
-	return EQUAL;
+	return TermTraversal.compare(this, anotherTerm);
     }
 }
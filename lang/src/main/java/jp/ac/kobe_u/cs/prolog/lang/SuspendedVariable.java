@@ -0,0 +1,140 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.io.Serializable;
+import java.util.ArrayList;
+/**
+ * Suspended variable.<br>
+ * A <code>SuspendedVariable</code> is an unbound variable that carries the goals
+ * suspended on it by <code>freeze/2</code>, <code>when/2</code>, or <code>dif/2</code>.
+ * A variable is suspended by binding it to a new <code>SuspendedVariable</code>,
+ * so that ordinary variables need no room for suspended goals.<br>
+ * When a suspended variable is bound to a non-variable term or to another suspended variable,
+ * its goals are put on the wakeup queue of the engine, and are executed at the next
+ * call port. When an ordinary variable is unified with it, the ordinary variable is bound
+ * to it, and no goal is woken.<br>
+ * The time stamp of a suspended variable is older than any choice point,
+ * so that its binding is always trailed.<br>
+ * A copy of a suspended variable, made by <code>copy_term/2</code>, <code>assert/1</code>,
+ * or <code>findall/3</code> for example, carries copies of its goals.
+ *
+ * @see Prolog#suspend(VariableTerm, Term)
+ * @see Prolog#attach(VariableTerm, SuspendedVariable)
+ * @see Prolog#wakeUp(Predicate)
+ * @version 1.2
+ */
+public class SuspendedVariable extends VariableTerm {
+    /** Holds the conjunction of the goals suspended on this variable. */
+    protected Term goals;
+
+    /** Holds the symbol <code>','/2</code>. */
+    static final SymbolTerm SYM_COMMA_2 = SymbolTerm.makeSymbol(",", 2);
+
+    /**
+     * Constructs a new suspended variable with the goal <code>goal</code>.
+     * Subclasses may keep state of their own, such as the domain of a finite domain variable,
+     * and are attached to variables by <code>Prolog.attach</code>.
+     * @see Prolog#attach(VariableTerm, SuspendedVariable)
+     */
+    protected SuspendedVariable(Term goal) {
+	super();
+	goals = goal;
+    }
+
+    /** Returns the conjunction of the goals suspended on this variable. */
+    public Term goals() { return goals; }
+
+    /** Adds <code>goal</code> after the goals suspended on this variable, until backtracking. */
+    void addGoal(Term goal, Trail trail) {
+	trail.push(new Goals(this, goals));
+	Term[] args = {goals, goal};
+	goals = new StructureTerm(SYM_COMMA_2, args);
+    }
+
+    /**
+     * Binds this variable to a given term.
+     * If <code>t</code> is an ordinary variable, it is bound to this instead.
+     * Otherwise, this variable is bound and trailed, and its goals are woken.
+     * @param t a term to be bound. It must be dereferenced.
+     * @param trail Trail Stack
+     * @see Prolog#queueGoals(Term)
+     */
+    public void bind(Term t, Trail trail) {
+	if (t.tag == TAG_VARIABLE && ! (t instanceof SuspendedVariable)) {
+	    ((VariableTerm) t).bind(this, trail);
+	    return;
+	}
+	val = t;
+	trail.push(this);
+	trail.engine.queueGoals(goals);
+    }
+
+    /**
+     * Returns a copy of this object if unbound variable, that carries copies of the goals
+     * suspended on this variable.
+     * Otherwise, returns the value of <code>val.copy(engine)</code>.
+     * The goals are copied with the same variable mapping as the term being copied,
+     * so that the variables they share with the term are replaced by the same copies.
+     * @see #copyVariable(Prolog)
+     * @see #copyGoal(Term, Prolog)
+     */
+    protected Term copy(Prolog engine) {
+	if (val != this)
+	    return val.copy(engine);
+	Term co = engine.copyHash.get(this);
+	if (co != null)
+	    return co;
+	SuspendedVariable s = copyVariable(engine);
+	engine.copyHash.put(this, s);
+	// copies the goals of the conjunction from left to right
+	ArrayList<Term> work = new ArrayList<Term>();
+	work.add(goals);
+	while (! work.isEmpty()) {
+	    Term g = work.remove(work.size() - 1);
+	    if (g.tag == TAG_STRUCTURE && ((StructureTerm) g).functor() == SYM_COMMA_2) {
+		work.add(((StructureTerm) g).args()[1]);
+		work.add(((StructureTerm) g).args()[0]);
+		continue;
+	    }
+	    Term c = copyGoal(g, engine);
+	    if (c == null)
+		continue;
+	    if (s.goals == null) {
+		s.goals = c;
+	    } else {
+		Term[] args = {s.goals, c};
+		s.goals = new StructureTerm(SYM_COMMA_2, args);
+	    }
+	}
+	return s;
+    }
+
+    /**
+     * Returns a new suspended variable for a copy of this variable.
+     * Its goals are <code>null</code> or the goals that its own state needs, and the
+     * copies of the goals of this variable are added after them.
+     * Subclasses with state of their own override this to copy the state.
+     */
+    protected SuspendedVariable copyVariable(Prolog engine) {
+	return new SuspendedVariable(null);
+    }
+
+    /**
+     * Returns a copy of the goal <code>goal</code> suspended on this variable,
+     * or <code>null</code> if a copy of this variable does not need it.
+     */
+    protected Term copyGoal(Term goal, Prolog engine) {
+	return goal.copy(engine);
+    }
+
+    /** A trail entry that restores the goals of a suspended variable on backtracking. */
+    static final class Goals implements Serializable, Undoable {
+	final SuspendedVariable var;
+	final Term goals;
+
+	Goals(SuspendedVariable var, Term goals) {
+	    this.var   = var;
+	    this.goals = goals;
+	}
+
+	public void undo() { var.goals = goals; }
+    }
+}
@@ -0,0 +1,244 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.HashMap;
+import java.util.Map;
+/**
+ * Switch table for second-level indexing.<br>
+ * The <code>SwitchTable</code> class maps the keys of <code>switch_on_hash</code>,
+ * that is, atoms, functors and numbers, to the predicates to be executed.
+ * Atoms and functors are looked up by identity, starting from a slot computed from
+ * their identifiers (see <code>SymbolTerm.id()</code>).
+ * Integers are looked up by value, directly by index if their range is compact
+ * when the table is built from a map.
+ * Lookups take no lock and compute no hash code of a term.
+ * A <code>SwitchTable</code> must not be modified once it is in use.
+ *
+ * <pre>
+ *   SwitchTable t = new SwitchTable();
+ *   t.put(SymbolTerm.makeSymbol("a"), p1);
+ *   t.put(SymbolTerm.makeSymbol("f", 2), p2);
+ *   t.put(new IntegerTerm(1), p3);
+ *   Predicate p = t.get(key, otherwise);
+ * </pre>
+ *
+ * @see Prolog#switch_on_hash(SwitchTable, Predicate)
+ * @version 1.2
+ */
+public final class SwitchTable {
+    /** Open-addressing table of atoms and functors; <code>null</code> for empty slots. */
+    private SymbolTerm[] symKeys = new SymbolTerm[8];
+    /** Holds the predicates corresponding to <code>symKeys</code>. */
+    private Predicate[] symVals = new Predicate[8];
+    /** The number of atoms and functors. */
+    private int symSize;
+
+    /** Integers, keyed by value. */
+    private final LongTable ints = new LongTable();
+    /** Floating point numbers, keyed by <code>Double.doubleToLongBits</code>. */
+    private final LongTable doubles = new LongTable();
+    /** Integers that do not fit in a <code>long</code>, or <code>null</code> if there are none. */
+    private Map<Term,Predicate> bigs;
+
+    /** Open-addressing table of predicates keyed by <code>long</code> values. */
+    private static final class LongTable {
+	/** Holds the keys. */
+	long[] keys = new long[8];
+	/** Holds the predicates corresponding to <code>keys</code>; <code>null</code> for empty slots. */
+	Predicate[] vals = new Predicate[8];
+	/** The number of entries. */
+	int size;
+	/** The smallest key. */
+	long min = Long.MAX_VALUE;
+	/** The largest key. */
+	long max = Long.MIN_VALUE;
+	/** Holds the predicates indexed by <code>key - min</code>, or <code>null</code> if the keys are not compact. */
+	Predicate[] dense;
+
+	static int slot(long k, int mask) {
+	    return (int)((k * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+	}
+
+	Predicate get(long k) {
+	    Predicate[] d = dense;
+	    if (d != null) {
+		long i = k - min;
+		return (i >= 0 && i < d.length) ? d[(int) i] : null;
+	    }
+	    int mask = keys.length - 1;
+	    for (int i = slot(k, mask); vals[i] != null; i = (i + 1) & mask) {
+		if (keys[i] == k)
+		    return vals[i];
+	    }
+	    return null;
+	}
+
+	void put(long k, Predicate p) {
+	    int mask = keys.length - 1;
+	    int i = slot(k, mask);
+	    for (; vals[i] != null; i = (i + 1) & mask) {
+		if (keys[i] == k) {
+		    vals[i] = p;
+		    dense = null;
+		    return;
+		}
+	    }
+	    keys[i] = k;
+	    vals[i] = p;
+	    if (k < min)
+		min = k;
+	    if (k > max)
+		max = k;
+	    if (++size * 2 > keys.length)
+		rehash();
+	    dense = null;
+	}
+
+	void rehash() {
+	    long[] ok = keys;
+	    Predicate[] ov = vals;
+	    keys = new long[ok.length * 2];
+	    vals = new Predicate[ok.length * 2];
+	    int mask = keys.length - 1;
+	    for (int j = 0; j < ok.length; j++) {
+		if (ov[j] == null)
+		    continue;
+		int i = slot(ok[j], mask);
+		while (vals[i] != null)
+		    i = (i + 1) & mask;
+		keys[i] = ok[j];
+		vals[i] = ov[j];
+	    }
+	}
+
+	/** Builds <code>dense</code> if the keys span at most twice as many values as there are keys. */
+	void compact() {
+	    long span = max - min; // negative on overflow
+	    if (size == 0 || span < 0 || span >= 2L * size + 8)
+		return;
+	    Predicate[] d = new Predicate[(int)(max - min + 1)];
+	    for (int j = 0; j < keys.length; j++) {
+		if (vals[j] != null)
+		    d[(int)(keys[j] - min)] = vals[j];
+	    }
+	    dense = d;
+	}
+    }
+
+    /** Constructs a new empty switch table. */
+    public SwitchTable() {}
+
+    /**
+     * Constructs a new switch table that has the same mappings as <code>hash</code>.
+     * If the integer keys are compact, they are indexed directly until the next <code>put</code>.
+     */
+    public SwitchTable(Map<Term,Predicate> hash) {
+	synchronized (hash) {
+	    for (Map.Entry<Term,Predicate> e : hash.entrySet())
+		put(e.getKey(), e.getValue());
+	}
+	ints.compact();
+    }
+
+    /** Returns the first slot to probe for <code>sym</code> in a table of length <code>len</code>. */
+    private static int slot(SymbolTerm sym, int len) {
+	return (int)((sym.id * 0x9E3779B97F4A7C15L) >>> 40) & (len - 1);
+    }
+
+    /**
+     * Maps <code>key</code> to <code>p</code>.
+     * @exception SystemException if <code>key</code> is neither an atom, a functor, nor a number.
+     */
+    public void put(Term key, Predicate p) {
+	switch (key.tag) {
+	case Term.TAG_SYMBOL:
+	    putSymbol((SymbolTerm) key, p);
+	    break;
+	case Term.TAG_INTEGER:
+	    ints.put(((IntegerTerm) key).val, p);
+	    break;
+	case Term.TAG_DOUBLE:
+	    doubles.put(Double.doubleToLongBits(((DoubleTerm) key).value()), p);
+	    break;
+	case Term.TAG_BIGINTEGER:
+	    if (bigs == null)
+		bigs = new HashMap<Term,Predicate>();
+	    bigs.put(key, p);
+	    break;
+	default:
+	    throw new SystemException("Invalid key in SwitchTable");
+	}
+    }
+
+    private void putSymbol(SymbolTerm sym, Predicate p) {
+	int mask = symKeys.length - 1;
+	int i = slot(sym, symKeys.length);
+	for (; symKeys[i] != null; i = (i + 1) & mask) {
+	    if (symKeys[i] == sym) {
+		symVals[i] = p;
+		return;
+	    }
+	}
+	symKeys[i] = sym;
+	symVals[i] = p;
+	if (++symSize * 2 > symKeys.length) {
+	    SymbolTerm[] ok = symKeys;
+	    Predicate[] ov = symVals;
+	    symKeys = new SymbolTerm[ok.length * 2];
+	    symVals = new Predicate[ok.length * 2];
+	    mask = symKeys.length - 1;
+	    for (int j = 0; j < ok.length; j++) {
+		if (ok[j] == null)
+		    continue;
+		int k = slot(ok[j], symKeys.length);
+		while (symKeys[k] != null)
+		    k = (k + 1) & mask;
+		symKeys[k] = ok[j];
+		symVals[k] = ov[j];
+	    }
+	}
+    }
+
+    /** Returns the predicate to which the atom or functor <code>sym</code> is mapped, or <code>null</code>. */
+    private Predicate getSymbol(SymbolTerm sym) {
+	SymbolTerm[] k = symKeys;
+	int mask = k.length - 1;
+	for (int i = slot(sym, k.length); ; i = (i + 1) & mask) {
+	    SymbolTerm x = k[i];
+	    if (x == sym)
+		return symVals[i];
+	    if (x == null)
+		return null;
+	}
+    }
+
+    /**
+     * Returns the predicate for the first argument <code>arg</code>:
+     * the one to which <code>arg</code> is mapped if it is atomic,
+     * the one to which its functor is mapped if it is a compound term,
+     * or <code>otherwise</code> if there is no mapping.
+     * @param arg the first argument. It must be dereferenced.
+     * @exception SystemException if <code>arg</code> is a variable or a list.
+     */
+    public Predicate get(Term arg, Predicate otherwise) {
+	Predicate p;
+	switch (arg.tag) {
+	case Term.TAG_SYMBOL:
+	    p = getSymbol((SymbolTerm) arg);
+	    break;
+	case Term.TAG_STRUCTURE:
+	    p = getSymbol(((StructureTerm) arg).functor);
+	    break;
+	case Term.TAG_INTEGER:
+	    p = ints.get(((IntegerTerm) arg).val);
+	    break;
+	case Term.TAG_DOUBLE:
+	    p = doubles.get(Double.doubleToLongBits(((DoubleTerm) arg).value()));
+	    break;
+	case Term.TAG_BIGINTEGER:
+	    p = bigs == null ? null : bigs.get(arg);
+	    break;
+	default:
+	    throw new SystemException("Invalid argument in switch_on_hash");
+	}
+	return p != null ? p : otherwise;
+    }
+}
@@ -0,0 +1,196 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+/**
+ * Symbol table.<br>
+ * The <code>SymbolTable</code> class interns atoms and functors by their name and arity,
+ * so that there is exactly one <code>SymbolTerm</code> for each pair as long as it is reachable.
+ * It is a hash table with separate chaining whose lookups take no lock and
+ * allocate nothing when the symbol already exists.
+ * Insertions are serialized by a lock, and each new symbol is given
+ * a dense integer identifier by <code>SymbolTerm.id()</code>.<br>
+ * The table refers to symbols weakly, so that atoms that are no longer reachable,
+ * such as those created from the data of past requests, can be garbage collected.
+ * Their entries are removed, and their identifiers are given to new symbols,
+ * when the table is next modified or <code>expunge</code> is called.
+ * A symbol cannot be collected while a term, a predicate, or a table refers to it,
+ * so the symbol for a name and arity that is still in use never changes.
+ *
+ * @see SymbolTerm#makeSymbol(String, int)
+ * @version 1.2
+ */
+public final class SymbolTable {
+    /**
+     * An entry of a hash chain. All fields are final, so that entries are safely published without locks.
+     * The name and arity are copied from the symbol, so that chains can be searched
+     * without dereferencing the symbols.
+     */
+    private static final class Entry extends WeakReference<SymbolTerm> {
+	final int hash;
+	final String name;
+	final int arity;
+	final int id;
+	final Entry next;
+
+	Entry(SymbolTerm sym, int hash, Entry next, ReferenceQueue<SymbolTerm> queue) {
+	    super(sym, queue);
+	    this.hash  = hash;
+	    this.name  = sym.name;
+	    this.arity = sym.arity;
+	    this.id    = sym.id;
+	    this.next  = next;
+	}
+    }
+
+    /** The initial capacity of the table. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Holds the hash chains. The length is a power of two. */
+    private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+
+    /** Holds the entries whose symbols have been garbage collected. */
+    private final ReferenceQueue<SymbolTerm> queue = new ReferenceQueue<SymbolTerm>();
+
+    /** The number of entries. Guarded by <code>this</code>. */
+    private int size;
+
+    /** The identifier given to the next new symbol, unless one is free. Guarded by <code>this</code>. */
+    private int nextId;
+
+    /** Holds the identifiers of the collected symbols. Guarded by <code>this</code>. */
+    private int[] freeIds = new int[64];
+
+    /** The number of identifiers in <code>freeIds</code>. Guarded by <code>this</code>. */
+    private int freeTop;
+
+    /** The number of symbols created so far. Guarded by <code>this</code>. */
+    private long created;
+
+    /** The number of symbols removed after they were garbage collected. Guarded by <code>this</code>. */
+    private long collected;
+
+    /** Returns the hash code for the pair of <code>name</code> and <code>arity</code>. */
+    private static int hash(String name, int arity) {
+	int h = (name.hashCode() + arity) * 0x9E3779B9;
+	return h ^ (h >>> 16);
+    }
+
+    /** Returns the symbol for the given name and arity, creating it if it does not exist. */
+    public SymbolTerm intern(String name, int arity) {
+	int h = hash(name, arity);
+	Entry[] tab = table;
+	for (Entry e = tab[h & (tab.length - 1)]; e != null; e = e.next) {
+	    if (e.hash == h && e.arity == arity && e.name.equals(name)) {
+		SymbolTerm sym = e.get();
+		if (sym != null)
+		    return sym;
+	    }
+	}
+	return insert(name, arity, h);
+    }
+
+    /**
+     * Returns the symbol for the given name and arity, creating it under the lock.
+     * The chain is searched again, since another thread may have inserted it meanwhile.
+     */
+    private synchronized SymbolTerm insert(String name, int arity, int h) {
+	expungeStale();
+	Entry[] tab = table;
+	int i = h & (tab.length - 1);
+	for (Entry e = tab[i]; e != null; e = e.next) {
+	    if (e.hash == h && e.arity == arity && e.name.equals(name)) {
+		SymbolTerm sym = e.get();
+		if (sym != null)
+		    return sym;
+	    }
+	}
+	int id = freeTop > 0 ? freeIds[--freeTop] : nextId++;
+	SymbolTerm sym = new SymbolTerm(name, arity, id);
+	tab[i] = new Entry(sym, h, tab[i], queue);
+	created++;
+	if (++size > tab.length - (tab.length >>> 2))
+	    resize();
+	return sym;
+    }
+
+    /**
+     * Doubles the capacity. The new chains are built before they are published.
+     * Entries whose symbols have been collected are dropped.
+     */
+    private void resize() {
+	Entry[] old = table;
+	Entry[] tab = new Entry[old.length * 2];
+	int mask = tab.length - 1;
+	for (int j = 0; j < old.length; j++) {
+	    for (Entry e = old[j]; e != null; e = e.next) {
+		SymbolTerm sym = e.get();
+		if (sym == null) {
+		    release(e);
+		    continue;
+		}
+		int i = e.hash & mask;
+		tab[i] = new Entry(sym, e.hash, tab[i], queue);
+	    }
+	}
+	table = tab;
+    }
+
+    /** Removes the entries whose symbols have been collected. Must be called under the lock. */
+    private void expungeStale() {
+	Object r;
+	while ((r = queue.poll()) != null)
+	    remove((Entry) r);
+    }
+
+    /**
+     * Removes <code>x</code> from its chain, if it is still there.
+     * Since entries are immutable, the part of the chain before <code>x</code> is copied,
+     * dropping the other collected entries on the way.
+     */
+    private void remove(Entry x) {
+	Entry[] tab = table;
+	int i = x.hash & (tab.length - 1);
+	Entry e = tab[i];
+	while (e != null && e != x)
+	    e = e.next;
+	if (e == null) // already dropped by resize or an earlier removal
+	    return;
+	Entry head = x.next;
+	for (e = tab[i]; e != x; e = e.next) {
+	    SymbolTerm sym = e.get();
+	    if (sym == null)
+		release(e);
+	    else
+		head = new Entry(sym, e.hash, head, queue);
+	}
+	release(x);
+	tab[i] = head;
+    }
+
+    /** Accounts for the removal of <code>e</code>, and frees its identifier. */
+    private void release(Entry e) {
+	if (freeTop == freeIds.length) {
+	    int[] a = new int[freeIds.length * 2];
+	    System.arraycopy(freeIds, 0, a, 0, freeTop);
+	    freeIds = a;
+	}
+	freeIds[freeTop++] = e.id;
+	size--;
+	collected++;
+    }
+
+    /** Removes the entries of the symbols that have been garbage collected so far. */
+    public synchronized void expunge() { expungeStale(); }
+
+    /**
+     * Returns the number of symbols in the table.
+     * It includes the symbols that have been collected but not yet removed.
+     */
+    public synchronized int size() { return size; }
+
+    /** Returns the number of symbols created so far. */
+    public synchronized long created() { return created; }
+
+    /** Returns the number of symbols removed from the table after they were garbage collected. */
+    public synchronized long collected() { return collected; }
+}
@@ -1,5 +1,4 @@
 package jp.ac.kobe_u.cs.prolog.lang;
-import java.util.Hashtable;
 /**
  * Atom.<br>
  * The <code>SymbolTerm</code> class represents a Prolog atom.<br>
@@ -16,7 +15,7 @@ import java.util.Hashtable;
 public class SymbolTerm extends Term {
 
     /** Symbol table. */
-    protected static Hashtable<String,SymbolTerm> SYMBOL_TABLE = new Hashtable<String,SymbolTerm>();
+    protected static final SymbolTable SYMBOL_TABLE = new SymbolTable();
 
     /** Holds a string representation of this <code>SymbolTerm</code>. */
     protected String name;
@@ -24,6 +23,19 @@ public class SymbolTerm extends Term {
     /** Holds the arity of this <code>SymbolTerm</code>. */
     protected int arity;
 
+    /** Holds the identifier of this <code>SymbolTerm</code> given by the symbol table. */
+    protected final int id;
+
+    /**
+     * Holds the operation code of this symbol as an evaluable functor,
+     * or <code>0</code> if it is not evaluable.
+     * @see Arithmetic
+     */
+    protected int arithOp;
+
+    /** Returns the symbol table, which holds the statistics of atoms. */
+    public static SymbolTable symbolTable() { return SYMBOL_TABLE; }
+
     /** Returns a Prolog atom for the given name. */
     public static SymbolTerm makeSymbol(String _name) {
 	return makeSymbol(_name, 0);
@@ -31,23 +43,15 @@ public class SymbolTerm extends Term {
 
     /** Returns a Prolog functor for the given name and arity. */
     public static SymbolTerm makeSymbol(String _name, int _arity) {
-	String key = _name + "/" + _arity;
-	SymbolTerm sym;
-
-	synchronized (SYMBOL_TABLE) {
-	    sym = SYMBOL_TABLE.get(key);
-	    if (sym == null) {
-		sym = new SymbolTerm(_name, _arity);
-		SYMBOL_TABLE.put(key, sym);
-	    }
-	}
-	return sym;
+	return SYMBOL_TABLE.intern(_name, _arity);
     }
 
-    /** Constructs a new Prolog atom (or functor) with the given symbol name and arity. */
-    protected SymbolTerm(String _name, int _arity) { 
+    /** Constructs a new Prolog atom (or functor) with the given symbol name, arity, and identifier. */
+    protected SymbolTerm(String _name, int _arity, int _id) { 
+	super(TAG_SYMBOL);
 	name  = _name; 
 	arity = _arity;
+	id    = _id;
     }
 
     /** Returns the arity of this <code>SymbolTerm</code>.
@@ -62,10 +66,24 @@ public class SymbolTerm extends Term {
      */
     public String name() { return name; }
 
+    /** Returns the identifier of this <code>SymbolTerm</code>.
+     * Identifiers are small non-negative integers, distinct for distinct symbols,
+     * and can be used as indices of arrays for indexing and dispatch.
+     * @return the value of <code>id</code>.
+     * @see #id
+     */
+    public int id() { return id; }
+
+    /** 
+     * Returns the symbol of the same name and arity in this Java Virtual Machine,
+     * so that deserialized symbols are compared by identity and have valid identifiers.
+     */
+    protected Object readResolve() { return makeSymbol(name, arity); }
+
     /* Term */
     public boolean unify(Term t, Trail trail) {
 	t = t.dereference();
-	if (t.isVariable()) {
+	if (t.tag == TAG_VARIABLE) {
 	    ((VariableTerm) t).bind(this, trail);
 	    return true;
 	}
@@ -93,6 +111,13 @@ public class SymbolTerm extends Term {
     /** Returns a string representation of this <code>SymbolTerm</code>. */
     public String toString() { return name; }
 
+    /* Object */
+    /**
+     * Returns a hash code computed from the name and arity of this <code>SymbolTerm</code>,
+     * so that hash codes of terms are the same in every Java Virtual Machine.
+     */
+    public int hashCode() { return 31*name.hashCode() + arity; }
+
     /* Comparable */
     /** 
      * Compares two terms in <em>Prolog standard order of terms</em>.<br>
@@ -104,10 +129,8 @@ public class SymbolTerm extends Term {
      * and a value greater than <code>0</code> if this term is <em>after</em> the <code>anotherTerm</code>.
      */
     public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced.
-	if (anotherTerm.isVariable() || anotherTerm.isNumber())
-	    return AFTER;
-	if (! anotherTerm.isSymbol())
-	    return BEFORE;
+	if (anotherTerm.tag != TAG_SYMBOL)
+	    return anotherTerm.tag < TAG_SYMBOL ? AFTER : BEFORE;
 	if (this == anotherTerm) 
 	    return EQUAL;
 	int x = name.compareTo(((SymbolTerm)anotherTerm).name());
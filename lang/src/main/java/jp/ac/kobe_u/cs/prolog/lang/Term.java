@@ -18,6 +18,46 @@ public abstract class Term implements Serializable,Comparable<Term> {
     /** Holds an integer value <code>-1</code>. */
     public static int BEFORE = -1;
 
+    /*
+      The type tags are numbered in the standard order of terms,
+      so that terms of different types are compared by their tags alone,
+      except that lists and structures are both compound terms, and
+      integers of both tags are compared by their values.
+    */
+    /** Type tag of <code>VariableTerm</code>. */
+    public static final byte TAG_VARIABLE   = 0;
+    /** Type tag of <code>DoubleTerm</code>. */
+    public static final byte TAG_DOUBLE     = 1;
+    /** Type tag of <code>IntegerTerm</code>. */
+    public static final byte TAG_INTEGER    = 2;
+    /** Type tag of <code>BigIntegerTerm</code>. */
+    public static final byte TAG_BIGINTEGER = 3;
+    /** Type tag of <code>SymbolTerm</code>. */
+    public static final byte TAG_SYMBOL     = 4;
+    /** Type tag of <code>ListTerm</code>. */
+    public static final byte TAG_LIST       = 5;
+    /** Type tag of <code>StructureTerm</code>. */
+    public static final byte TAG_STRUCTURE  = 6;
+    /** Type tag of <code>JavaObjectTerm</code>. */
+    public static final byte TAG_JAVA       = 7;
+    /** Type tag of <code>ClosureTerm</code>. */
+    public static final byte TAG_CLOSURE    = 8;
+    /** Type tag of other subclasses of <code>Term</code>. */
+    public static final byte TAG_OTHER      = 9;
+
+    /** 
+     * Holds the type tag of this term, one of the <code>TAG_*</code> constants.
+     * Dispatching on <code>tag</code> with <code>switch</code> costs a field load 
+     * and a table jump, instead of a chain of <code>instanceof</code> tests.
+     */
+    public final byte tag;
+
+    /** Constructs a new term with the type tag <code>TAG_OTHER</code>. */
+    protected Term() { tag = TAG_OTHER; }
+
+    /** Constructs a new term with the given type tag. */
+    protected Term(byte _tag) { tag = _tag; }
+
     /** 
      * Checks whether the argument term is unified with this one.
      * @param t the term to be unified with.
@@ -28,79 +68,80 @@ public abstract class Term implements Serializable,Comparable<Term> {
 
     /** 
      * Check whether this term is a logical variable.
-     * @return <code>true</code> if <code>this instanceof VariableTerm</code>, 
+     * @return <code>true</code> if <code>tag == TAG_VARIABLE</code>, 
      * otherwise <code>false</code>.
      * @see VariableTerm
      */
-    public boolean isVariable() { return this instanceof VariableTerm; }
+    public final boolean isVariable() { return tag == TAG_VARIABLE; }
 
     /** 
      * Check whether this term is an integer.
-     * @return <code>true</code> if <code>this instanceof IntegerTerm</code>, 
+     * @return <code>true</code> if <code>tag</code> is <code>TAG_INTEGER</code> or <code>TAG_BIGINTEGER</code>, 
      * otherwise <code>false</code>.
      * @see IntegerTerm
+     * @see BigIntegerTerm
      */
-    public boolean isInteger() { return this instanceof IntegerTerm; }
+    public final boolean isInteger() { return tag == TAG_INTEGER || tag == TAG_BIGINTEGER; }
 
     /** 
      * Check whether this term is a float.
-     * @return <code>true</code> if <code>this instanceof DoubleTerm</code>,
+     * @return <code>true</code> if <code>tag == TAG_DOUBLE</code>,
      * otherwise <code>false</code>.
      * @see DoubleTerm
      */
-    public boolean isDouble() { return this instanceof DoubleTerm; }
+    public final boolean isDouble() { return tag == TAG_DOUBLE; }
 
     /** 
      * Check whether this term is a number.
-     * @return <code>true</code> if <code>this instanceof IntegerTerm || this instanceof DoubleTerm</code>, 
-     * otherwise <code>false</code>.
+     * @return <code>true</code> if <code>tag</code> is <code>TAG_DOUBLE</code>, <code>TAG_INTEGER</code>,
+     * or <code>TAG_BIGINTEGER</code>, otherwise <code>false</code>.
      * @see IntegerTerm
      * @see DoubleTerm
      */
-    public boolean isNumber() { return ((this instanceof IntegerTerm) || (this instanceof DoubleTerm)); }
+    public final boolean isNumber() { return tag >= TAG_DOUBLE && tag <= TAG_BIGINTEGER; }
 
     /** 
      * Check whether this term is an atom.
-     * @return <code>true</code> if <code>this instanceof SymbolTerm</code>,
+     * @return <code>true</code> if <code>tag == TAG_SYMBOL</code>,
      * otherwise <code>false</code>.
      * @see SymbolTerm
      */
-    public boolean isSymbol() { return this instanceof SymbolTerm; }
+    public final boolean isSymbol() { return tag == TAG_SYMBOL; }
 
     /** Check whether this term is an empty list. */
-    public boolean isNil() { return Prolog.Nil.equals(this); }
+    public final boolean isNil() { return tag == TAG_SYMBOL && Prolog.Nil.equals(this); }
 
     /** 
      * Check whether this term is a list structure.
-     * @return <code>true</code> if <code>this instanceof ListTerm</code>,
+     * @return <code>true</code> if <code>tag == TAG_LIST</code>,
      * otherwise <code>false</code>.
      * @see ListTerm
      */
-    public boolean isList() { return this instanceof ListTerm; }
+    public final boolean isList() { return tag == TAG_LIST; }
 
     /** 
      * Check whether this term is a compound term.
-     * @return <code>true</code> if <code>this instanceof StructureTerm</code>,
+     * @return <code>true</code> if <code>tag == TAG_STRUCTURE</code>,
      * otherwise <code>false</code>.
      * @see StructureTerm
      */
-    public boolean isStructure() { return this instanceof StructureTerm; }
+    public final boolean isStructure() { return tag == TAG_STRUCTURE; }
 
     /** 
      * Check whether this term is a java term.
-     * @return <code>true</code> if <code>this instanceof JavaObjectTerm</code>,
+     * @return <code>true</code> if <code>tag == TAG_JAVA</code>,
      * otherwise <code>false</code>.
      * @see JavaObjectTerm
      */
-    public boolean isJavaObject() { return this instanceof JavaObjectTerm; }
+    public final boolean isJavaObject() { return tag == TAG_JAVA; }
 
     /** 
      * Check whether this term is a closure term.
-     * @return <code>true</code> if <code>this instanceof ClosureTerm</code>,
+     * @return <code>true</code> if <code>tag == TAG_CLOSURE</code>,
      * otherwise <code>false</code>.
      * @see ClosureTerm
      */
-    public boolean isClosure() { return this instanceof ClosureTerm; }
+    public final boolean isClosure() { return tag == TAG_CLOSURE; }
 
     /** 
      * Check whether this object is convertible with the given Java class type.
@@ -188,13 +229,6 @@ public abstract class Term implements Serializable,Comparable<Term> {
 
     /** Checks whether a given object is an instance of Prolog term. */
     public static boolean instanceOfTerm(Object obj) {
-	return obj instanceof VariableTerm || 
-	    obj instanceof IntegerTerm ||
-	    obj instanceof DoubleTerm ||
-	    obj instanceof SymbolTerm ||
-	    obj instanceof ListTerm ||
-	    obj instanceof StructureTerm ||
-	    obj instanceof JavaObjectTerm ||
-	    obj instanceof ClosureTerm;
+	return obj instanceof Term && ((Term) obj).tag != TAG_OTHER;
     }
 }
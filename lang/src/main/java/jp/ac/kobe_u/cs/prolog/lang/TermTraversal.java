@@ -0,0 +1,558 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+/**
+ * Iterative traversal of terms.<br>
+ * The <code>TermTraversal</code> class implements the operations on compound terms
+ * that visit all their subterms:
+ * <code>copy</code>, <code>isGround</code>, <code>equals</code>, <code>hashCode</code>,
+ * <code>compareTo</code>, <code>toString</code>, and <code>toQuotedString</code>
+ * of <code>ListTerm</code> and <code>StructureTerm</code>.<br>
+ * None of them recurses on the Java stack.
+ * Atomic arguments of a compound term are handled in place, 
+ * the loop descends into its first compound argument, such as the tail of a list
+ * of atomic elements, and only the compound arguments after it are saved on 
+ * an explicit work stack, which is allocated when first needed.
+ * <code>equals</code> and <code>compareTo</code> keep the bottom entry of the stack
+ * in local variables, so that they need no allocation for shallow terms.
+ * Each subterm is dereferenced once per visit.
+ * Terms of any depth and lists of any length can therefore be handled.
+ *
+ * @version 1.2
+ */
+public final class TermTraversal {
+    /** Frame kind of a term to be visited. */
+    private static final int TERM    = 0;
+    /** Frame kind of a string to be appended by <code>toString</code>. */
+    private static final int LITERAL = 1;
+    /** Frame kind of the tail of a list to be printed by <code>toString</code>. */
+    private static final int TAIL    = 2;
+
+    private TermTraversal() {}
+
+    /**
+     * Work stack of frames <code>(a, b, n)</code>.
+     * The meaning of each field depends on the operation.
+     */
+    private static final class Frames {
+	Object[] a = new Object[16];
+	Object[] b = new Object[16];
+	int[]    n = new int[16];
+	int top = -1;
+
+	void push(Object x, Object y, int i) {
+	    if (++top == n.length) {
+		int len = n.length * 2;
+		Object[] na = new Object[len];
+		Object[] nb = new Object[len];
+		int[]    nn = new int[len];
+		System.arraycopy(a, 0, na, 0, top);
+		System.arraycopy(b, 0, nb, 0, top);
+		System.arraycopy(n, 0, nn, 0, top);
+		a = na;
+		b = nb;
+		n = nn;
+	    }
+	    a[top] = x;
+	    b[top] = y;
+	    n[top] = i;
+	}
+
+	boolean empty() { return top < 0; }
+    }
+
+    /** Returns the dereference value of <code>t</code> without virtual calls. */
+    public static Term deref(Term t) {
+	while (t.tag == Term.TAG_VARIABLE) {
+	    Term v = ((VariableTerm) t).val;
+	    if (v == t)
+		break;
+	    t = v;
+	}
+	return t;
+    }
+
+    /** Checks whether <code>t</code> is a list or a structure. */
+    private static boolean isCompound(Term t) {
+	return t.tag == Term.TAG_LIST || t.tag == Term.TAG_STRUCTURE;
+    }
+
+    /**
+     * Checks whether <code>t</code> is known to be ground without visiting its arguments.
+     * Atomic terms are, and lists and structures are if they were ground when constructed.
+     * Variables are not, even if bound, because their bindings may be undone.
+     */
+    static boolean knownGround(Term t) {
+	if (t == null)
+	    return false;
+	switch (t.tag) {
+	case Term.TAG_VARIABLE:
+	case Term.TAG_OTHER:
+	    return false;
+	case Term.TAG_LIST:
+	    return ((ListTerm) t).ground;
+	case Term.TAG_STRUCTURE:
+	    return ((StructureTerm) t).ground;
+	default:
+	    return true;
+	}
+    }
+
+    /**
+     * Marks <code>t</code> and its compound subterms as ground.
+     * It must be called only on a ground term that contains no variables, bound or not.
+     */
+    private static void markGround(Term t) {
+	Frames work = null;
+	for (;;) {
+	    if (isCompound(t) && ! knownGround(t)) {
+		if (t.tag == Term.TAG_LIST)
+		    ((ListTerm) t).ground = true;
+		else
+		    ((StructureTerm) t).ground = true;
+		int n = arity(t);
+		Term next = null;
+		for (int i = 0; i < n; i++) {
+		    Term x = arg(t, i);
+		    if (! isCompound(x) || knownGround(x))
+			continue;
+		    if (next == null) {
+			next = x;
+		    } else {
+			if (work == null)
+			    work = new Frames();
+			work.push(x, null, TERM);
+		    }
+		}
+		if (next != null) {
+		    t = next;
+		    continue;
+		}
+	    }
+	    if (work == null || work.empty())
+		return;
+	    t = (Term) work.a[work.top];
+	    work.a[work.top--] = null;
+	}
+    }
+
+    /** Stores <code>t</code> into the <code>slot</code>-th argument of <code>holder</code>. */
+    private static void store(Term holder, int slot, Term t) {
+	if (holder.tag == Term.TAG_LIST) {
+	    if (slot == 0)
+		((ListTerm) holder).car = t;
+	    else
+		((ListTerm) holder).cdr = t;
+	} else {
+	    ((StructureTerm) holder).args[slot] = t;
+	}
+    }
+
+    /** Returns the <code>i</code>-th argument of a list or structure. */
+    private static Term arg(Term t, int i) {
+	if (t.tag == Term.TAG_LIST)
+	    return i == 0 ? ((ListTerm) t).car : ((ListTerm) t).cdr;
+	return ((StructureTerm) t).args[i];
+    }
+
+    /** Returns the arity of a list or structure. */
+    private static int arity(Term t) {
+	if (t.tag == Term.TAG_LIST)
+	    return 2;
+	return ((StructureTerm) t).arity;
+    }
+
+    /** Returns the functor of a list or structure. */
+    private static SymbolTerm functor(Term t) {
+	if (t.tag == Term.TAG_LIST)
+	    return ListTerm.SYM_DOT;
+	return ((StructureTerm) t).functor;
+    }
+
+    /**
+     * Returns a copy of <code>t</code> whose unbound variables are
+     * replaced by the ones mapped in <code>engine.copyHash</code>.
+     * Subterms known to be ground are shared with <code>t</code> instead of being copied.
+     * If the copy turns out to be ground, it is marked so.
+     * @see Prolog#copy
+     */
+    public static Term copy(Term t, Prolog engine) {
+	Frames work = null;
+	Term result = null;
+	Term holder = null;  // where the copy of t is stored, or null for result
+	int slot = 0;
+	boolean ground = true;
+	for (;;) {
+	    t = deref(t);
+	    Term c;
+	    int n;
+	    if (knownGround(t)) {
+		c = t;
+		n = 0;
+	    } else if (t.tag == Term.TAG_LIST) {
+		c = new ListTerm(null, null);
+		n = 2;
+	    } else if (t.tag == Term.TAG_STRUCTURE) {
+		n = ((StructureTerm) t).arity;
+		c = new StructureTerm(((StructureTerm) t).functor, new Term[n]);
+	    } else {
+		c = t.copy(engine);
+		n = 0;
+		ground = false;
+	    }
+	    if (holder == null)
+		result = c;
+	    else
+		store(holder, slot, c);
+	    // copies atomic arguments in place, descends into the first compound one,
+	    // and saves the others
+	    Term next = null;
+	    for (int i = 0; i < n; i++) {
+		Term x = deref(arg(t, i));
+		if (knownGround(x)) {
+		    store(c, i, x);
+		} else if (! isCompound(x)) {
+		    store(c, i, x.copy(engine));
+		    ground = false;
+		} else if (next == null) {
+		    next = x;
+		    holder = c;
+		    slot = i;
+		} else {
+		    if (work == null)
+			work = new Frames();
+		    work.push(x, c, i);
+		}
+	    }
+	    if (next != null) {
+		t = next;
+		continue;
+	    }
+	    if (work == null || work.empty()) {
+		if (ground)
+		    markGround(result);
+		return result;
+	    }
+	    int i = work.top--;
+	    t      = (Term) work.a[i];
+	    holder = (Term) work.b[i];
+	    slot   = work.n[i];
+	    work.a[i] = work.b[i] = null;
+	}
+    }
+
+    /**
+     * Checks whether <code>t</code> is a ground term.
+     * Subterms known to be ground are not visited.
+     */
+    public static boolean isGround(Term t) {
+	Frames work = null;
+	for (;;) {
+	    t = deref(t);
+	    if (t.tag == Term.TAG_VARIABLE)
+		return false;
+	    if (isCompound(t) && ! knownGround(t)) {
+		int n = arity(t);
+		Term next = null;
+		for (int i = 0; i < n; i++) {
+		    Term x = deref(arg(t, i));
+		    if (x.tag == Term.TAG_VARIABLE)
+			return false;
+		    if (! isCompound(x) || knownGround(x))
+			continue;
+		    if (next == null) {
+			next = x;
+		    } else {
+			if (work == null)
+			    work = new Frames();
+			work.push(x, null, TERM);
+		    }
+		}
+		if (next != null) {
+		    t = next;
+		    continue;
+		}
+	    }
+	    if (work == null || work.empty())
+		return true;
+	    t = (Term) work.a[work.top];
+	    work.a[work.top--] = null;
+	}
+    }
+
+    /**
+     * Returns a hash code of <code>t</code>, which is consistent with <code>equals</code>.
+     * It combines the hash codes of all subterms in depth-first, left-to-right order,
+     * where a compound term contributes the hash code of its functor.
+     * The hash code of a structure known to be ground is computed only once.
+     */
+    public static int hashCode(Term t) {
+	StructureTerm cache = null;
+	if (t.tag == Term.TAG_STRUCTURE && ((StructureTerm) t).ground) {
+	    cache = (StructureTerm) t;
+	    if (cache.hash != 0)
+		return cache.hash;
+	}
+	Frames work = null;
+	int h = 1;
+	for (;;) {
+	    t = deref(t);
+	    if (isCompound(t)) {
+		h = 31*h + functor(t).hashCode();
+		int n = arity(t);
+		int i = 0;
+		Term x = null;
+		for (; i < n; i++) {
+		    x = deref(arg(t, i));
+		    if (isCompound(x))
+			break;
+		    h = 31*h + x.hashCode();
+		}
+		if (i < n) {
+		    if (i < n - 1 && work == null)
+			work = new Frames();
+		    for (int j = n - 1; j > i; j--)
+			work.push(arg(t, j), null, TERM);
+		    t = x;
+		    continue;
+		}
+	    } else {
+		h = 31*h + t.hashCode();
+	    }
+	    if (work == null || work.empty()) {
+		if (cache != null)
+		    cache.hash = h;
+		return h;
+	    }
+	    t = (Term) work.a[work.top];
+	    work.a[work.top--] = null;
+	}
+    }
+
+    /**
+     * Checks <em>term equality</em> of two terms.
+     * Two structures whose hash codes have been cached are first compared by them.
+     * @see Term#equals
+     */
+    public static boolean equals(Term t1, Term t2) {
+	if (t1.tag == Term.TAG_STRUCTURE && t2.tag == Term.TAG_STRUCTURE) {
+	    int h1 = ((StructureTerm) t1).hash;
+	    int h2 = ((StructureTerm) t2).hash;
+	    if (h1 != 0 && h2 != 0 && h1 != h2)
+		return false;
+	}
+	Frames work = null;
+	// the bottom pair of the work stack, kept out of it so that shallow terms need no allocation
+	Term p1 = null;
+	Term p2 = null;
+	for (;;) {
+	    t1 = deref(t1);
+	    t2 = deref(t2);
+	    if (t1 != t2) {
+		if (t1.tag != t2.tag)
+		    return false;
+		if (isCompound(t1)) {
+		    if (functor(t1) != functor(t2) && ! functor(t1).equals(functor(t2)))
+			return false;
+		    int n = arity(t1);
+		    int i = 0;
+		    Term x1 = null;
+		    Term x2 = null;
+		    for (; i < n; i++) {
+			x1 = deref(arg(t1, i));
+			x2 = deref(arg(t2, i));
+			if (x1 == x2)
+			    continue;
+			if (x1.tag != x2.tag)
+			    return false;
+			if (isCompound(x1))
+			    break;
+			if (! x1.equals(x2))
+			    return false;
+		    }
+		    if (i < n) {
+			for (int j = n - 1; j > i; j--) {
+			    if (p1 == null) {
+				p1 = arg(t1, j);
+				p2 = arg(t2, j);
+				continue;
+			    }
+			    if (work == null)
+				work = new Frames();
+			    work.push(arg(t1, j), arg(t2, j), TERM);
+			}
+			t1 = x1;
+			t2 = x2;
+			continue;
+		    }
+		} else if (! t1.equals(t2)) {
+		    return false;
+		}
+	    }
+	    if (work != null && ! work.empty()) {
+		int i = work.top--;
+		t1 = (Term) work.a[i];
+		t2 = (Term) work.b[i];
+		work.a[i] = work.b[i] = null;
+	    } else if (p1 != null) {
+		t1 = p1;
+		t2 = p2;
+		p1 = p2 = null;
+	    } else {
+		return true;
+	    }
+	}
+    }
+
+    /** 
+     * Compares two dereferenced terms that are not both compound terms
+     * in <em>Prolog standard order of terms</em>.
+     */
+    private static int compareAtomic(Term t1, Term t2) {
+	if (isCompound(t1) || isCompound(t2)) {
+	    // the type tags are numbered in the standard order
+	    return t1.tag < t2.tag ? Term.BEFORE : Term.AFTER;
+	}
+	return t1.compareTo(t2);
+    }
+
+    /**
+     * Compares two terms in <em>Prolog standard order of terms</em>.
+     * @see Term#compareTo
+     */
+    public static int compare(Term t1, Term t2) {
+	Frames work = null;
+	// the bottom pair of the work stack, kept out of it so that shallow terms need no allocation
+	Term p1 = null;
+	Term p2 = null;
+	for (;;) {
+	    t1 = deref(t1);
+	    t2 = deref(t2);
+	    if (t1 != t2) {
+		if (isCompound(t1) && isCompound(t2)) {
+		    int n = arity(t1);
+		    int n2 = arity(t2);
+		    if (n != n2)
+			return n - n2;
+		    SymbolTerm f1 = functor(t1);
+		    SymbolTerm f2 = functor(t2);
+		    if (f1 != f2 && ! f1.equals(f2))
+			return f1.compareTo(f2);
+		    int i = 0;
+		    Term x1 = null;
+		    Term x2 = null;
+		    for (; i < n; i++) {
+			x1 = deref(arg(t1, i));
+			x2 = deref(arg(t2, i));
+			if (x1 == x2)
+			    continue;
+			if (isCompound(x1) && isCompound(x2))
+			    break;
+			int rc = compareAtomic(x1, x2);
+			if (rc != Term.EQUAL)
+			    return rc;
+		    }
+		    if (i < n) {
+			for (int j = n - 1; j > i; j--) {
+			    if (p1 == null) {
+				p1 = arg(t1, j);
+				p2 = arg(t2, j);
+				continue;
+			    }
+			    if (work == null)
+				work = new Frames();
+			    work.push(arg(t1, j), arg(t2, j), TERM);
+			}
+			t1 = x1;
+			t2 = x2;
+			continue;
+		    }
+		} else {
+		    int rc = compareAtomic(t1, t2);
+		    if (rc != Term.EQUAL)
+			return rc;
+		}
+	    }
+	    if (work != null && ! work.empty()) {
+		int i = work.top--;
+		t1 = (Term) work.a[i];
+		t2 = (Term) work.b[i];
+		work.a[i] = work.b[i] = null;
+	    } else if (p1 != null) {
+		t1 = p1;
+		t2 = p2;
+		p1 = p2 = null;
+	    } else {
+		return Term.EQUAL;
+	    }
+	}
+    }
+
+    /**
+     * Returns a string representation of <code>t</code>.
+     * If <code>quoted</code> is <code>true</code>, atoms are quoted where necessary.
+     * @see Term#toString
+     * @see Term#toQuotedString
+     */
+    public static String toString(Term t, boolean quoted) {
+	StringBuilder sb = new StringBuilder();
+	Frames work = null;
+	Object x = t;
+	int kind = TERM;
+	for (;;) {
+	    if (kind == LITERAL) {
+		sb.append((String) x);
+	    } else {
+		t = deref((Term) x);
+		if (kind == TAIL) {
+		    if (t.tag == Term.TAG_LIST) {
+			sb.append(',');
+		    } else {
+			if (! t.isNil()) {
+			    sb.append('|');
+			    sb.append(quoted ? t.toQuotedString() : t.toString());
+			}
+			sb.append(']');
+			t = null;
+		    }
+		} else if (t.tag == Term.TAG_LIST) {
+		    sb.append('[');
+		}
+		if (t == null) {
+		    // end of list
+		} else if (t.tag == Term.TAG_LIST) {
+		    if (work == null)
+			work = new Frames();
+		    work.push(((ListTerm) t).cdr, null, TAIL);
+		    x = ((ListTerm) t).car;
+		    kind = TERM;
+		    continue;
+		} else if (t.tag == Term.TAG_STRUCTURE) {
+		    StructureTerm s = (StructureTerm) t;
+		    sb.append(quoted ? s.functor.toQuotedString() : s.functor.toString());
+		    sb.append('(');
+		    if (s.arity == 0) {
+			sb.append(')');
+		    } else {
+			if (work == null)
+			    work = new Frames();
+			work.push(")", null, LITERAL);
+			for (int i = s.arity - 1; i > 0; i--) {
+			    work.push(s.args[i], null, TERM);
+			    work.push(",", null, LITERAL);
+			}
+			x = s.args[0];
+			kind = TERM;
+			continue;
+		    }
+		} else {
+		    sb.append(quoted ? t.toQuotedString() : t.toString());
+		}
+	    }
+	    if (work == null || work.empty())
+		return sb.toString();
+	    int i = work.top--;
+	    x    = work.a[i];
+	    kind = work.n[i];
+	    work.a[i] = null;
+	}
+    }
+}
@@ -1,4 +1,7 @@
 package jp.ac.kobe_u.cs.prolog.lang;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 /**
  * Trail stack.<br>
@@ -11,8 +14,11 @@ import java.io.Serializable;
  * @version 1.0
  */
 public class Trail implements Serializable {
-    /** Maximum size of enties. Initial size is <code>20000</code>. */
-    protected int maxContents = 20000;
+    /** Initial size of entries. Default value is <code>256</code>. */
+    protected int initialContents = 256;
+
+    /** Maximum size of enties. This is <code>0</code> until the first entry is pushed. */
+    protected int maxContents = 0;
 
     /** An array of <code>Undoable</code> entries. */
     protected Undoable[] buffer;
@@ -20,22 +26,24 @@ public class Trail implements Serializable {
     /** the top index of this <code>Trail</code>. */
     protected int top;
 
+    /** The highest value of <code>top</code> since the last <code>shrink()</code>. */
+    protected int highWater;
+
     /** Holds the Prolog engine that this <code>Trail</code> belongs to. */
     protected Prolog engine;
 	
     /** Constructs a new trail stack. */
     public Trail(Prolog _engine) {
 	engine = _engine;
-	buffer = new Undoable[maxContents];
+	buffer = new Undoable[0];
 	top = -1;
+	highWater = -1;
     }
 
-    /** Constructs a new trail stack with the given size. */
+    /** Constructs a new trail stack with the given initial size. */
     public Trail(Prolog _engine, int n) {
-	engine = _engine;
-	maxContents = n;
-	buffer = new Undoable[maxContents];
-	top = -1;
+	this(_engine);
+	setInitialSize(n);
     }
 
     /** Discards all entries. */
@@ -43,19 +51,40 @@ public class Trail implements Serializable {
 
     /** Pushs an entry to this <code>Trail</code>. */
     public void push(Undoable t) {
-	try {
-	    buffer[++top] = t;
-	} catch (ArrayIndexOutOfBoundsException e) {
-	    System.out.println("{expanding trail...}");
-	    int len = buffer.length;
-	    Undoable[] new_buffer = new Undoable[len+20000];
-	    for(int i=0; i<len; i++){
-		new_buffer[i] = buffer[i];
-	    }
-	    buffer = new_buffer;
-	    buffer[top] = t;
-	    maxContents = len+20000;
-	}
+	if (++top == maxContents)
+	    expand();
+	buffer[top] = t;
+	if (top > highWater)
+	    highWater = top;
+    }
+
+    /** Doubles the size of this <code>Trail</code>. */
+    protected void expand() {
+	int len = maxContents == 0 ? initialContents : maxContents * 2;
+	resize(len);
+    }
+
+    private void resize(int len) {
+	Undoable[] new_buffer = new Undoable[len];
+	System.arraycopy(buffer, 0, new_buffer, 0, Math.min(buffer.length, len));
+	buffer = new_buffer;
+	maxContents = len;
+    }
+
+    /** 
+     * Shrinks this <code>Trail</code> to the smallest power-of-two multiple of 
+     * the initial size that holds the high-water mark since the last call,
+     * and then resets the high-water mark.
+     * This is invoked after a query completes.
+     */
+    public void shrink() {
+	int need = highWater + 1;
+	int len = maxContents;
+	while (len > initialContents && len / 2 >= need)
+	    len /= 2;
+	if (len < maxContents)
+	    resize(len);
+	highWater = top;
     }
 
     /** Pops an entry from this <code>Trail</code>. */
@@ -82,6 +111,22 @@ public class Trail implements Serializable {
      */
     public int max() { return maxContents; }
 
+    /** Returns the value of <code>initialContents</code>. 
+     * @see #initialContents
+     */
+    public int initialSize() { return initialContents; }
+
+    /** 
+     * Sets the value of <code>initialContents</code>.
+     * If no entry has been pushed yet, the first allocation uses this size.
+     * @see #initialContents
+     */
+    public void setInitialSize(int n) {
+	if (n < 1)
+	    throw new IllegalArgumentException("initial size must be positive: " + n);
+	initialContents = n;
+    }
+
     /** Returns the value of <code>top</code>. 
      * @see #top
      */
@@ -96,6 +141,36 @@ public class Trail implements Serializable {
 	}
     }
 
+    /** 
+     * Writes the entries of this <code>Trail</code> to <code>out</code>,
+     * without the unused part of its buffer.
+     * @see Checkpoint
+     */
+    void writeEntries(ObjectOutputStream out) throws IOException {
+	out.writeInt(top);
+	for (int i=0; i<=top; i++)
+	    out.writeObject(buffer[i]);
+    }
+
+    /** 
+     * Replaces the entries of this <code>Trail</code> with those read from <code>in</code>.
+     * @see #writeEntries
+     */
+    void readEntries(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	deleteAll();
+	int n = in.readInt();
+	int len = Math.max(maxContents, initialContents);
+	while (len < n + 1)
+	    len *= 2;
+	if (len > maxContents)
+	    resize(len);
+	for (int i=0; i<=n; i++)
+	    buffer[i] = (Undoable) in.readObject();
+	top = n;
+	if (top > highWater)
+	    highWater = top;
+    }
+
     /** Shows the contents of this <code>Trail</code>. */
     public void show() {
 	if (empty()) {
@@ -108,4 +183,3 @@ public class Trail implements Serializable {
 	}
     }
 }
-
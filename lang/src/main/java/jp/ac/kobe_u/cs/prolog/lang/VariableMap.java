@@ -0,0 +1,116 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.io.Serializable;
+/**
+ * Map from variables to their copies.<br>
+ * The <code>VariableMap</code> class is an open-addressing hash table with linear probing
+ * that compares variables by identity. It is not synchronized and is owned by one engine,
+ * where it is used to create a copy of term.
+ * Apart from growing the table, <code>put</code> allocates nothing, and
+ * <code>clear</code> takes time proportional to the number of entries, not to the capacity.
+ *
+ * @see Prolog#copy
+ * @version 1.2
+ */
+public final class VariableMap implements Serializable {
+    /** Holds the keys, or <code>null</code> for empty slots. */
+    private VariableTerm[] keys;
+
+    /** Holds the values corresponding to <code>keys</code>. */
+    private Term[] values;
+
+    /** Holds the indices of the occupied slots in the order of insertion. */
+    private int[] used;
+
+    /** The number of entries. */
+    private int size;
+
+    /** The initial capacity of the table. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Constructs a new empty map. */
+    public VariableMap() {
+	keys   = new VariableTerm[INITIAL_CAPACITY];
+	values = new Term[INITIAL_CAPACITY];
+	used   = new int[INITIAL_CAPACITY / 2];
+    }
+
+    /** Returns the first slot to probe for <code>v</code> in a table of length <code>len</code>. */
+    private static int slot(VariableTerm v, int len) {
+	int h = System.identityHashCode(v) * 0x9E3779B9;
+	return (h ^ (h >>> 16)) & (len - 1);
+    }
+
+    /** Returns the value to which <code>v</code> is mapped, or <code>null</code>. */
+    public Term get(VariableTerm v) {
+	VariableTerm[] k = keys;
+	int mask = k.length - 1;
+	for (int i = slot(v, k.length); ; i = (i + 1) & mask) {
+	    VariableTerm x = k[i];
+	    if (x == v)
+		return values[i];
+	    if (x == null)
+		return null;
+	}
+    }
+
+    /** Maps <code>v</code> to <code>t</code>. */
+    public void put(VariableTerm v, Term t) {
+	int mask = keys.length - 1;
+	int i = slot(v, keys.length);
+	for (; keys[i] != null; i = (i + 1) & mask) {
+	    if (keys[i] == v) {
+		values[i] = t;
+		return;
+	    }
+	}
+	keys[i] = v;
+	values[i] = t;
+	used[size++] = i;
+	if (size == used.length)
+	    rehash();
+    }
+
+    /** Doubles the capacity, keeping the load factor at most one half. */
+    private void rehash() {
+	VariableTerm[] ok = keys;
+	Term[] ov = values;
+	int[] ou = used;
+	int len = ok.length * 2;
+	keys   = new VariableTerm[len];
+	values = new Term[len];
+	used   = new int[len / 2];
+	int mask = len - 1;
+	for (int j = 0; j < size; j++) {
+	    int o = ou[j];
+	    int i = slot(ok[o], len);
+	    while (keys[i] != null)
+		i = (i + 1) & mask;
+	    keys[i] = ok[o];
+	    values[i] = ov[o];
+	    used[j] = i;
+	}
+    }
+
+    /** Returns the number of entries. */
+    public int size() { return size; }
+
+    /** Removes all entries. */
+    public void clear() {
+	for (int j = 0; j < size; j++) {
+	    int i = used[j];
+	    keys[i] = null;
+	    values[i] = null;
+	}
+	size = 0;
+    }
+
+    /** Removes all entries, and gives back the table to its initial capacity. */
+    public void shrink() {
+	clear();
+	if (keys.length > INITIAL_CAPACITY) {
+	    keys   = new VariableTerm[INITIAL_CAPACITY];
+	    values = new Term[INITIAL_CAPACITY];
+	    used   = new int[INITIAL_CAPACITY / 2];
+	}
+    }
+}
@@ -15,14 +15,15 @@ public class VariableTerm extends Term implements Undoable {
     /** Holds a term to which this variable is bound. Initial value is <code>this</code> (self-reference). */
     protected Term val;
     /** A CPF time stamp when this object is newly constructed. */
-    protected long timeStamp;
+    protected int timeStamp;
 
     /** Constructs a new logical variable so that
-     * the <code>timeStamp</code> field is set to <code>Long.MIN_VALUE</code>.
+     * the <code>timeStamp</code> field is set to <code>Integer.MIN_VALUE</code>.
      */
     public VariableTerm() {
+	super(TAG_VARIABLE);
 	val = this;
-    	timeStamp = Long.MIN_VALUE;
+    	timeStamp = Integer.MIN_VALUE;
     }
 
     /** Constructs a new logical variable so that
@@ -32,15 +33,16 @@ public class VariableTerm extends Term implements Undoable {
      * @see Prolog#getCPFTimeStamp
      */
     public VariableTerm(Prolog engine) {
+	super(TAG_VARIABLE);
 	val = this;
-	timeStamp = engine.getCPFTimeStamp();
+	timeStamp = engine.CPFTimeStamp;
     }
 
     /** 
      * Returns the value of <code>timeStamp</code>.
      * @see #timeStamp
      */
-    public long timeStamp() { return timeStamp; }
+    public int timeStamp() { return timeStamp; }
 
     /** Returns a string representation of this object.*/
     protected String name() { return "_" + Integer.toHexString(hashCode()).toUpperCase(); }
@@ -70,21 +72,25 @@ public class VariableTerm extends Term implements Undoable {
 
     /** 
      * Binds this variable to a given term. 
-     * And pushs this variable to trail stack if necessary. 
+     * If <code>t</code> is a younger variable, it is bound to this instead.
+     * And pushs the bound variable to trail stack if necessary,
+     * that is, if it is older than the top choice point frame.
+     * A <code>SuspendedVariable</code> is never younger, so that its goals are kept.
      * @param t a term to be bound.
      * @param trail Trail Stack
      * @see Trail
+     * @see Prolog#topTimeStamp
+     * @see SuspendedVariable
      */
     public void bind(Term t, Trail trail) {
-	if (t.isVariable() && ((VariableTerm)t).timeStamp() >= this.timeStamp) {
-	    ((VariableTerm)t).val = this;
-	    if (((VariableTerm)t).timeStamp() < trail.engine.stack.getTimeStamp())
-		trail.push((VariableTerm)t);
-	} else {
-	    this.val = t;
-	    if (this.timeStamp() < trail.engine.stack.getTimeStamp())
-		trail.push(this);
+	VariableTerm v = this;
+	if (t.tag == TAG_VARIABLE && ((VariableTerm)t).timeStamp > timeStamp) {
+	    v = (VariableTerm)t;
+	    t = this;
 	}
+	v.val = t;
+	if (v.timeStamp < trail.engine.topTimeStamp)
+	    trail.push(v);
     }
 
     /** 
@@ -108,7 +114,7 @@ public class VariableTerm extends Term implements Undoable {
      * @see #val
      */
     protected Term copy(Prolog engine) {
-	VariableTerm co;
+	Term co;
 	if (val != this)
 	    return val.copy(engine);
 	co = engine.copyHash.get(this);
@@ -205,7 +211,7 @@ public class VariableTerm extends Term implements Undoable {
     public int compareTo(Term anotherTerm) { // anotherTerm must be dereferenced.
 	if(val != this)
 	    return val.compareTo(anotherTerm);
-	if (! anotherTerm.isVariable())
+	if (anotherTerm.tag != TAG_VARIABLE)
 	    return BEFORE;
 	if (this == anotherTerm) 
 	    return EQUAL;
@@ -0,0 +1,80 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+/**
+ * Microbenchmark of <code>Arithmetic.evaluate</code>.<br>
+ * Each round evaluates every expression 3000000 times and reports the time per evaluation.
+ * Before the rounds, the values of the expressions are printed, as well as
+ * the value of <code>0+1+...+1</code> nested 100000 levels deep
+ * and the errors raised by some invalid expressions.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.ArithmeticBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class ArithmeticBenchmark {
+    static final int CALLS = 3000000;
+
+    static Term s(String f, Term... args) {
+	return new StructureTerm(SymbolTerm.makeSymbol(f, args.length), args);
+    }
+
+    static Term i(int v) { return new IntegerTerm(v); }
+
+    static Term d(double v) { return new DoubleTerm(v); }
+
+    public static void main(String[] args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+	Prolog engine = new PrologControl(new PrologClassLoader()).engine;
+	engine.init();
+
+	String[] names = {
+	    "1+2",
+	    "truncate(sin(0.5)*1000)",
+	    "max(17 mod 5, float_fractional_part(2.5))",
+	    "3*4+(100//7-abs(-9))",
+	    "truncate^8(2.5)"
+	};
+	Term[] exprs = {
+	    s("+", i(1), i(2)),
+	    s("truncate", s("*", s("sin", d(0.5)), i(1000))),
+	    s("max", s("mod", i(17), i(5)), s("float_fractional_part", d(2.5))),
+	    s("+", s("*", i(3), i(4)), s("-", s("//", i(100), i(7)), s("abs", i(-9)))),
+	    d(2.5)
+	};
+	for (int k = 0; k < 8; k++)
+	    exprs[4] = s("truncate", exprs[4]);
+	for (int k = 0; k < exprs.length; k++)
+	    System.out.println(names[k] + " = " + Arithmetic.evaluate(exprs[k]));
+
+	Term deep = i(0);
+	for (int k = 0; k < 100000; k++)
+	    deep = s("+", deep, i(1));
+	try {
+	    System.out.println("0+1+...+1 = " + Arithmetic.evaluate(deep));
+	} catch (StackOverflowError e) {
+	    System.out.println("0+1+...+1: StackOverflowError");
+	}
+
+	Term[] bad = {s("foo", i(1)), new VariableTerm(), s("+", i(1), SymbolTerm.makeSymbol("a"))};
+	for (int k = 0; k < bad.length; k++) {
+	    try {
+		Arithmetic.evaluate(bad[k]);
+	    } catch (PrologException e) {
+		System.out.println(bad[k] + ": " + e.getClass().getName());
+	    }
+	}
+
+	for (int r = 0; r < rounds; r++) {
+	    StringBuffer sb = new StringBuffer();
+	    for (int k = 0; k < exprs.length; k++) {
+		Term t = exprs[k];
+		long t0 = System.nanoTime();
+		for (int j = 0; j < CALLS; j++)
+		    Arithmetic.evaluate(t);
+		sb.append(String.format("%s: %.1f ns  ", names[k], (System.nanoTime() - t0) / (double) CALLS));
+	    }
+	    System.out.println(sb);
+	}
+    }
+}
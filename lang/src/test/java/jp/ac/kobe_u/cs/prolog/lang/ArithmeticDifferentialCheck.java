@@ -0,0 +1,108 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.Random;
+/**
+ * Differential test of <code>Arithmetic.evaluate</code>.<br>
+ * 200000 random expressions over the integer operations, with integers at the boundaries
+ * of <code>int</code> and <code>long</code>, odd shift counts, and some floats and
+ * <code>float_fractional_part/1</code>, are evaluated by <code>Arithmetic.evaluate</code>
+ * and by a reference evaluator that applies the <code>NumberTerm</code> methods from left to right.
+ * The values and the types of the values or of the errors must be the same.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.ArithmeticDifferentialCheck [expressions [seed]]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class ArithmeticDifferentialCheck {
+    static final String[] BINARY = {"+", "-", "*", "//", "mod", "<<", ">>", "/\\", "\\/", "#", "max", "min"};
+    static final String[] UNARY  = {"-", "+", "\\", "abs", "sign", "float_fractional_part"};
+    static final long[] LEAVES = {
+	0, 1, -1, 2, 3, 63, 64, 65, -64, 1000, 65535, 65536, -7, 1L << 40,
+	Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE / 2
+    };
+    static final long[] SHIFTS = {0, 1, 3, 62, 63, 64, 65, 100, -1, -64, 1L << 32};
+
+    static Term s(String f, Term... args) {
+	return new StructureTerm(SymbolTerm.makeSymbol(f, args.length), args);
+    }
+
+    static Term generate(Random r, int depth) {
+	if (depth == 0 || r.nextInt(4) == 0) {
+	    int k = r.nextInt(LEAVES.length + 2);
+	    if (k == LEAVES.length)
+		return new DoubleTerm(r.nextInt(3) == 0 ? 2.5 : 1.5);
+	    if (k == LEAVES.length + 1)
+		return IntegerTerm.valueOf(r.nextLong());
+	    return IntegerTerm.valueOf(LEAVES[k]);
+	}
+	if (r.nextInt(4) == 0)
+	    return s(UNARY[r.nextInt(UNARY.length)], generate(r, depth - 1));
+	String f = BINARY[r.nextInt(BINARY.length)];
+	if (f.equals("<<") || f.equals(">>"))
+	    return s(f, generate(r, depth - 1), IntegerTerm.valueOf(SHIFTS[r.nextInt(SHIFTS.length)]));
+	return s(f, generate(r, depth - 1), generate(r, depth - 1));
+    }
+
+    /** Evaluates <code>t</code> with the <code>NumberTerm</code> methods only. */
+    static NumberTerm reference(Term t) {
+	if (t instanceof NumberTerm)
+	    return (NumberTerm) t;
+	StructureTerm st = (StructureTerm) t;
+	String f = st.name();
+	NumberTerm x = reference(st.args()[0]);
+	if (st.arity() == 1) {
+	    if (f.equals("-"))     return x.negate();
+	    if (f.equals("+"))     return x;
+	    if (f.equals("\\"))    return x.not();
+	    if (f.equals("abs"))   return x.abs();
+	    if (f.equals("sign"))  return x.signum();
+	    if (f.equals("float_fractional_part")) return x.floatFractPart();
+	    throw new IllegalArgumentException(f);
+	}
+	NumberTerm y = reference(st.args()[1]);
+	if (f.equals("+"))   return x.add(y);
+	if (f.equals("-"))   return x.subtract(y);
+	if (f.equals("*"))   return x.multiply(y);
+	if (f.equals("//"))  return x.intDivide(y);
+	if (f.equals("mod")) return x.mod(y);
+	if (f.equals("<<"))  return x.shiftLeft(y);
+	if (f.equals(">>"))  return x.shiftRight(y);
+	if (f.equals("/\\")) return x.and(y);
+	if (f.equals("\\/")) return x.or(y);
+	if (f.equals("#"))   return x.xor(y);
+	if (f.equals("max")) return x.max(y);
+	if (f.equals("min")) return x.min(y);
+	throw new IllegalArgumentException(f);
+    }
+
+    /** Returns the type and value of the result of <code>t</code>, or the type of its error. */
+    static String outcome(Term t, boolean reference) {
+	try {
+	    NumberTerm v = reference ? reference(t) : Arithmetic.evaluate(t);
+	    return v.getClass().getName() + " " + v;
+	} catch (BuiltinException e) {
+	    return e.getClass().getName();
+	}
+    }
+
+    public static void main(String[] args) {
+	int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+	long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+	Random r = new Random(seed);
+	int longs = 0;
+	int errors = 0;
+	for (int i = 0; i < n; i++) {
+	    Term t = generate(r, 1 + r.nextInt(5));
+	    String expected = outcome(t, true);
+	    String actual = outcome(t, false);
+	    if (! expected.equals(actual))
+		throw new AssertionError(t + ": expected " + expected + ", got " + actual);
+	    if (expected.startsWith(IntegerTerm.class.getName()))
+		longs++;
+	    else if (! expected.startsWith(DoubleTerm.class.getName()) && ! expected.startsWith(BigIntegerTerm.class.getName()))
+		errors++;
+	}
+	System.out.println(n + " expressions agree: " + longs + " long results, " + errors + " errors");
+    }
+}
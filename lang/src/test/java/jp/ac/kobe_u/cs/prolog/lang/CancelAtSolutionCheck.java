@@ -0,0 +1,53 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.Iterator;
+/**
+ * Regression check of a cancellation that lands on the step where a solution is found.<br>
+ * In caller-thread mode, a goal that succeeds once is cancelled so that the next
+ * limit check falls on the <code>Success</code> step. The solution must be reported once,
+ * and the iterator must then end, instead of reporting the same solution again.
+ * The same is checked with the cancellation landing one step earlier and one step later.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.CancelAtSolutionCheck
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class CancelAtSolutionCheck {
+    /** Cancels the goal, and makes the limit check fall <code>steps</code> inferences later. */
+    static class CancelAfter extends Predicate {
+	final int steps;
+	CancelAfter(int steps) { this.steps = steps; }
+	public void setArgument(Term[] args, Predicate cont) { this.cont = cont; }
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) {
+	    engine.nextCheck = engine.inferences + steps;
+	    engine.cancel();
+	    return cont;
+	}
+    }
+
+    /** Returns the number of solutions reported, at most <code>5</code>. */
+    static int solutions(int steps) {
+	PrologControl c = new PrologControl(new PrologClassLoader());
+	c.setCallerThread(true);
+	Iterator<Term[]> it = c.solutions(new CancelAfter(steps), new Term[0]);
+	int n = 0;
+	while (n < 5 && it.hasNext()) {
+	    it.next();
+	    n++;
+	}
+	return n;
+    }
+
+    public static void main(String[] args) {
+	// 1: cancelled before the solution, 2: on the Success step, 3: after the solution
+	int[] expected = {0, 1, 1};
+	for (int k = 0; k < expected.length; k++) {
+	    int n = solutions(k + 1);
+	    System.out.println("cancel check after " + (k + 1) + " steps: " + n + " solutions");
+	    if (n != expected[k])
+		throw new AssertionError("expected " + expected[k] + " solutions, got " + n);
+	}
+    }
+}
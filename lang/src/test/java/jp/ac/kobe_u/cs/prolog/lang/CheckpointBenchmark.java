@@ -0,0 +1,244 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+/**
+ * Benchmark of checkpoints.<br>
+ * First, the search
+ * <pre>
+ * top(X) :- between(0, 1000, I), X = f(I, [I|_]), spin, X = f(700, _).
+ * </pre>
+ * where <code>spin</code> runs 300000 inferences, is run to its solution,
+ * and then run again, checkpointed at about 60% of its inferences, and resumed on another engine.
+ * The resumed goal must bind <code>X</code> in the same way, with the same number of inferences.
+ * Then a goal that leaves <code>n</code> choice points, each of which has trailed a binding of a list,
+ * is checkpointed for <code>n</code> = 1000, 10000, and 100000,
+ * and the size of the checkpoint and the times to write and read it are reported.
+ * Predicates are written by hand with <code>jtry</code> and <code>trust</code>,
+ * as the compiler would generate them.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.CheckpointBenchmark
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class CheckpointBenchmark {
+    static final int HI = 1000;
+    static final int TARGET = 700;
+    static final int SPIN = 300000;
+    static final SymbolTerm F = SymbolTerm.makeSymbol("f", 2);
+
+    /** Fails. */
+    static class Fail extends Predicate {
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) { return engine.fail(); }
+    }
+    static final Predicate FAIL = new Fail();
+
+    /** <code>top(X)</code>: the search. */
+    static class Top extends Predicate {
+	Term x;
+	public void setArgument(Term[] args, Predicate cont) {
+	    x = args[0];
+	    this.cont = cont;
+	}
+	public int arity() { return 1; }
+	public Predicate exec(Prolog engine) {
+	    return new Gen(IntegerTerm.valueOf(0), x, new Spin(x, cont));
+	}
+    }
+
+    /** <code>gen(I, X)</code>: binds <code>X</code> to <code>f(I, [I|_])</code>, or to the solutions of <code>gen(I+1, X)</code>. */
+    static class Gen extends Predicate {
+	final Term i, x;
+	Gen(Term i, Term x, Predicate cont) {
+	    this.i = i;
+	    this.x = x;
+	    this.cont = cont;
+	}
+	public int arity() { return 2; }
+	public Predicate exec(Prolog engine) {
+	    engine.aregs[1] = i;
+	    engine.aregs[2] = x;
+	    engine.cont = cont;
+	    return engine.jtry(GEN_1, GEN_2);
+	}
+    }
+    static final Predicate GEN_1 = new Predicate() {
+	    public int arity() { return 2; }
+	    public Predicate exec(Prolog engine) {
+		Term i = engine.aregs[1];
+		Term s = new StructureTerm(F, new Term[]{i, new ListTerm(i, new VariableTerm(engine))});
+		if (! engine.aregs[2].unify(s, engine.trail))
+		    return engine.fail();
+		return engine.cont;
+	    }
+	};
+    static final Predicate GEN_2_CLAUSE = new Predicate() {
+	    public int arity() { return 2; }
+	    public Predicate exec(Prolog engine) {
+		long i = ((IntegerTerm) engine.aregs[1].dereference()).longValue();
+		if (i >= HI)
+		    return engine.fail();
+		return new Gen(IntegerTerm.valueOf(i + 1), engine.aregs[2], engine.cont);
+	    }
+	};
+    static final Predicate GEN_2 = new Predicate() {
+	    public int arity() { return 2; }
+	    public Predicate exec(Prolog engine) { return engine.trust(GEN_2_CLAUSE); }
+	};
+
+    /** <code>spin, X = f(700, _)</code>. */
+    static class Spin extends Predicate {
+	final Term x;
+	int n = SPIN;
+	Spin(Term x, Predicate cont) {
+	    this.x = x;
+	    this.cont = cont;
+	}
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) {
+	    if (--n > 0)
+		return this;
+	    n = SPIN;
+	    Term i = ((StructureTerm) x.dereference()).args()[0].dereference();
+	    return ((IntegerTerm) i).longValue() == TARGET ? cont : engine.fail();
+	}
+    }
+
+    /** <code>build(L, N)</code>: leaves <code>N</code> choice points, each binding the tail of <code>L</code>, and then waits. */
+    static class Build extends Predicate {
+	int n;
+	Term tail;
+	Build() {}
+	Build(int n, Term tail, Predicate cont) {
+	    this.n = n;
+	    this.tail = tail;
+	    this.cont = cont;
+	}
+	public void setArgument(Term[] args, Predicate cont) {
+	    tail = args[0];
+	    n = ((IntegerTerm) args[1]).intValue();
+	    this.cont = cont;
+	}
+	public int arity() { return 2; }
+	public Predicate exec(Prolog engine) {
+	    if (n == 0)
+		return WAIT;
+	    engine.cont = cont;
+	    return engine.jtry(new Step(n, tail), TRUST_FAIL);
+	}
+    }
+    static class Step extends Predicate {
+	final int n;
+	final Term tail;
+	Step(int n, Term tail) {
+	    this.n = n;
+	    this.tail = tail;
+	}
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) {
+	    VariableTerm v = new VariableTerm(engine);
+	    tail.unify(new ListTerm(IntegerTerm.valueOf(n), v), engine.trail);
+	    return new Build(n - 1, v, engine.cont);
+	}
+    }
+    static final Predicate TRUST_FAIL = new Predicate() {
+	    public int arity() { return 0; }
+	    public Predicate exec(Prolog engine) { return engine.trust(FAIL); }
+	};
+    /** Loops until the goal is stopped. */
+    static final Predicate WAIT = new Predicate() {
+	    public int arity() { return 0; }
+	    public Predicate exec(Prolog engine) { return this; }
+	};
+
+    static double millis(long nanos) { return nanos / 1e6; }
+
+    /** Returns <code>I/J</code> for <code>x = f(I, [J|_])</code>. */
+    static String value(Term x) {
+	Term[] args = ((StructureTerm) x.dereference()).args();
+	return args[0].dereference() + "/" + ((ListTerm) args[1].dereference()).car().dereference();
+    }
+
+    static void search() throws Exception {
+	PrologControl c = new PrologControl(new PrologClassLoader());
+	Term x = new VariableTerm();
+	long t0 = System.nanoTime();
+	if (! c.execute(new Top(), new Term[]{x}))
+	    throw new AssertionError("top(X) failed");
+	long total = c.engine.inferences;
+	String expected = value(x);
+	System.out.println(String.format("search: X = f(I, [J|_]) with I/J = %s, %d inferences, %.0f ms",
+					 expected, total, millis(System.nanoTime() - t0)));
+
+	c = new PrologControl(new PrologClassLoader());
+	c.setPredicate(new Top(), new Term[]{new VariableTerm()});
+	c.start();
+	while (c.engine.inferences < total * 6 / 10)
+	    Thread.sleep(5);
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	t0 = System.nanoTime();
+	if (! c.checkpoint(out))
+	    throw new AssertionError("no checkpoint");
+	long t1 = System.nanoTime();
+	c.stop();
+	System.out.println(String.format("checkpoint: %d bytes in %.1f ms", out.size(), millis(t1 - t0)));
+
+	PrologControl d = new PrologControl(new PrologClassLoader());
+	t0 = System.nanoTime();
+	d.resume(new ByteArrayInputStream(out.toByteArray()));
+	if (! d.next())
+	    throw new AssertionError("resumed top(X) failed");
+	String actual = value(d.getArguments()[0]);
+	System.out.println(String.format("resumed: I/J = %s, %d inferences, %.0f ms",
+					 actual, d.engine.inferences, millis(System.nanoTime() - t0)));
+	if (! actual.equals(expected) || d.engine.inferences != total)
+	    throw new AssertionError("resumed goal differs from the full run");
+	d.stop();
+    }
+
+    static void size(int n) throws Exception {
+	PrologControl c = new PrologControl(new PrologClassLoader());
+	c.setPredicate(new Build(), new Term[]{new VariableTerm(), IntegerTerm.valueOf(n)});
+	c.start();
+	while (c.engine.stack.top() < n)
+	    Thread.sleep(20);
+	ByteArrayOutputStream out = null;
+	long write = 0;
+	// the last of four checkpoints is reported
+	for (int k = 0; k < 4; k++) {
+	    out = new ByteArrayOutputStream();
+	    long t0 = System.nanoTime();
+	    if (! c.checkpoint(out))
+		throw new AssertionError("no checkpoint");
+	    write = System.nanoTime() - t0;
+	}
+	int trail = c.engine.trail.top() + 1;
+	c.stop();
+
+	PrologControl d = new PrologControl(new PrologClassLoader());
+	d.setCallerThread(true);
+	long t0 = System.nanoTime();
+	d.resume(new ByteArrayInputStream(out.toByteArray()));
+	long read = System.nanoTime() - t0;
+	System.out.println(String.format("n=%d: %d bytes (%.1f B/choice point), trail %d, write %.1f ms, read %.1f ms; restored %d choice points, trail %d",
+					 n, out.size(), out.size() / (double) n, trail, millis(write), millis(read),
+					 d.engine.stack.top() + 1, d.engine.trail.top() + 1));
+	d.stop();
+    }
+
+    public static void main(String[] args) throws Exception {
+	// goals left by stopped controls may keep the Java Virtual Machine alive
+	try {
+	    search();
+	    int[] sizes = {1000, 10000, 100000};
+	    for (int k = 0; k < sizes.length; k++)
+		size(sizes[k]);
+	} catch (Throwable e) {
+	    e.printStackTrace();
+	    System.exit(1);
+	}
+	System.exit(0);
+    }
+}
@@ -0,0 +1,111 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+/**
+ * Microbenchmark of choice points.<br>
+ * The goal <code>p(X1), p(X2), ..., p(Xn)</code> is run to exhaustion,
+ * where <code>p/1</code> is the three-clause predicate
+ * <pre>
+ * p(1).
+ * p(2).
+ * p(3).
+ * </pre>
+ * written by hand with <code>jtry</code>, <code>retry</code>, and <code>trust</code>
+ * as the compiler would generate it. With the default depth of 13 there are
+ * 1594323 solutions. Each round reports the time and the bytes allocated.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.ChoicePointBenchmark [depth [rounds]]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class ChoicePointBenchmark {
+    static long count;
+
+    /** <code>p/1</code>: tries the first clause, and leaves a choice point for the others. */
+    static class P extends Predicate {
+	public int arity() { return 1; }
+	public Predicate exec(Prolog engine) {
+	    engine.setB0();
+	    return engine.jtry(CLAUSE_1, RETRY_2);
+	}
+    }
+
+    /** The clause <code>p(v)</code>. */
+    static class Clause extends Predicate {
+	final Term v;
+	Clause(int v) { this.v = new IntegerTerm(v); }
+	public int arity() { return 1; }
+	public Predicate exec(Prolog engine) {
+	    if (! engine.aregs[1].unify(v, engine.trail))
+		return engine.fail();
+	    return engine.cont;
+	}
+    }
+
+    static final Predicate CLAUSE_1 = new Clause(1);
+    static final Predicate CLAUSE_2 = new Clause(2);
+    static final Predicate CLAUSE_3 = new Clause(3);
+    static final Predicate TRUST_3 = new Predicate() {
+	    public int arity() { return 1; }
+	    public Predicate exec(Prolog engine) { return engine.trust(CLAUSE_3); }
+	};
+    static final Predicate RETRY_2 = new Predicate() {
+	    public int arity() { return 1; }
+	    public Predicate exec(Prolog engine) { return engine.retry(CLAUSE_2, TRUST_3); }
+	};
+
+    /** Calls <code>p(X)</code> with a new variable <code>X</code>, and then <code>next</code>. */
+    static class Call extends Predicate {
+	final Predicate next;
+	Call(Predicate next) { this.next = next; }
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) {
+	    engine.aregs[1] = new VariableTerm(engine);
+	    engine.cont = next;
+	    return new P();
+	}
+    }
+
+    /** Counts a solution, and fails into the next one. */
+    static class Count extends Predicate {
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) {
+	    count++;
+	    return engine.fail();
+	}
+    }
+
+    /** Returns the bytes allocated by the current thread, or <code>-1</code> if unknown. */
+    static long allocated() {
+	ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+	if (mx instanceof com.sun.management.ThreadMXBean)
+	    return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+	return -1;
+    }
+
+    public static void main(String[] args) {
+	int depth  = args.length > 0 ? Integer.parseInt(args[0]) : 13;
+	int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+	Prolog engine = new PrologControl(new PrologClassLoader()).engine;
+	for (int r = 0; r < rounds; r++) {
+	    engine.init();
+	    Predicate code = new Count();
+	    for (int i = 0; i < depth; i++)
+		code = new Call(code);
+	    count = 0;
+	    long a0 = allocated();
+	    long t0 = System.nanoTime();
+	    engine.exceptionRaised = 0;
+	    engine.cont = null;
+	    // runs until the bottom choice point of init() returns null
+	    while (code != null && engine.exceptionRaised == 0)
+		code = code.exec(engine);
+	    long t1 = System.nanoTime();
+	    long a1 = allocated();
+	    System.out.println("solutions=" + count + " ms=" + (t1 - t0) / 1000000
+			       + (a0 < 0 ? "" : " MB=" + (a1 - a0) / 1000000));
+	}
+    }
+}
@@ -0,0 +1,85 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.concurrent.ThreadFactory;
+/**
+ * Load test of concurrent <code>PrologControl</code> objects.<br>
+ * For each count <code>n</code>, <code>n</code> controls are started at once, 
+ * each with a goal that blocks for a second and then succeeds,
+ * and the results are collected with <code>next()</code>.
+ * The elapsed time and the number of successful goals are reported;
+ * if no more threads can be created, the number of controls started is reported instead.
+ * Goals run on platform threads, or with the argument <code>virtual</code>,
+ * on the virtual threads of <code>PrologControl.virtualThreadFactory()</code>,
+ * which requires a Java Virtual Machine that has them.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.ConcurrentControlBenchmark [platform|virtual [n ...]]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class ConcurrentControlBenchmark {
+    static final long BLOCK_MILLIS = 1000;
+
+    /** Blocks for <code>BLOCK_MILLIS</code> milliseconds, and then succeeds. */
+    static class Block extends Predicate {
+	public void setArgument(Term[] args, Predicate cont) { this.cont = cont; }
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) {
+	    try {
+		Thread.sleep(BLOCK_MILLIS);
+	    } catch (InterruptedException e) {
+		return engine.fail();
+	    }
+	    return cont;
+	}
+    }
+
+    public static void main(String[] args) {
+	String mode = args.length > 0 ? args[0] : "platform";
+	ThreadFactory factory = null;
+	if (mode.equals("virtual")) {
+	    factory = PrologControl.virtualThreadFactory();
+	    if (factory == null) {
+		System.out.println("virtual threads are not supported by Java " + System.getProperty("java.version"));
+		System.exit(2);
+	    }
+	} else if (! mode.equals("platform")) {
+	    throw new IllegalArgumentException("unknown mode: " + mode);
+	}
+	int[] counts = {1000, 2000, 4000, 8000};
+	if (args.length > 1) {
+	    counts = new int[args.length - 1];
+	    for (int i = 1; i < args.length; i++)
+		counts[i - 1] = Integer.parseInt(args[i]);
+	}
+	for (int k = 0; k < counts.length; k++) {
+	    int n = counts[k];
+	    PrologControl[] controls = new PrologControl[n];
+	    long t0 = System.nanoTime();
+	    int started = 0;
+	    try {
+		for (; started < n; started++) {
+		    PrologControl c = new PrologControl(new PrologClassLoader());
+		    c.setThreadFactory(factory);
+		    c.setPredicate(new Block(), new Term[0]);
+		    controls[started] = c;
+		    c.start();
+		}
+	    } catch (OutOfMemoryError e) {
+		if (controls[started] != null)
+		    controls[started].stop();
+		System.out.println(mode + " " + n + " controls: only " + started + " started (" + e.getMessage() + ")");
+	    }
+	    int succeeded = 0;
+	    for (int i = 0; i < started; i++) {
+		if (controls[i].next())
+		    succeeded++;
+		controls[i].stop();
+	    }
+	    long ms = (System.nanoTime() - t0) / 1000000;
+	    System.out.println(mode + " " + n + " controls: " + succeeded + " succeeded in " + ms + " ms");
+	    controls = null;
+	    System.gc();
+	}
+    }
+}
@@ -0,0 +1,69 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+/**
+ * Regression check of the inference limits of pooled engines.<br>
+ * A goal of 10000 steps is run on an engine leased from a pool without limits
+ * after the previous lessee set an inference limit of 100 on it.
+ * The goal must succeed, since the limit is restored when the engine is released.
+ * A goal that exceeds its limit raises a resource error, which <code>execute</code>
+ * prints before returning <code>false</code>.
+ * Then the limit of the pool is set to 100, which must apply to the idle engine on its next lease.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.EnginePoolLimitsCheck
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class EnginePoolLimitsCheck {
+    /** Runs <code>steps</code> steps, and then succeeds. */
+    static class Steps extends Predicate {
+	int steps;
+	Steps(int steps) { this.steps = steps; }
+	public void setArgument(Term[] args, Predicate cont) { this.cont = cont; }
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) {
+	    return --steps > 0 ? this : cont;
+	}
+    }
+
+    /**
+     * Returns <code>true</code> if a goal of 10000 steps succeeds on <code>c</code>,
+     * or <code>false</code> if it exceeds the inference limit of <code>c</code>.
+     */
+    static boolean run(PrologControl c) {
+	return c.execute(new Steps(10000), new Term[0]);
+    }
+
+    static void expect(String what, boolean expected, boolean actual) {
+	System.out.println(what + ": " + (actual ? "succeeded" : "exceeded"));
+	if (expected != actual)
+	    throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+    }
+
+    public static void main(String[] args) {
+	EnginePool pool = new EnginePool(new PrologClassLoader(), 1);
+	pool.setCallerThread(true);
+
+	PrologControl c = pool.lease();
+	c.setInferenceLimit(100);
+	expect("limit set by the lessee", false, run(c));
+	pool.release(c);
+
+	c = pool.lease();
+	expect("next lease", true, run(c));
+	pool.release(c);
+
+	pool.setInferenceLimit(100);
+	c = pool.lease();
+	expect("limit set on the pool", false, run(c));
+	c.setInferenceLimit(0);
+	expect("limit cleared by the lessee", true, run(c));
+	pool.release(c);
+
+	c = pool.lease();
+	expect("limit of the pool restored", false, run(c));
+	pool.release(c);
+	if (pool.getCreated() != 1)
+	    throw new AssertionError("expected one engine, created " + pool.getCreated());
+    }
+}
@@ -0,0 +1,123 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+/**
+ * Microbenchmark of the ground flags of compound terms.<br>
+ * First, the sharing of ground subterms by <code>copy</code>, the cached hash codes,
+ * and the flag updates by <code>setCdr</code> are checked, and the bytes allocated
+ * per <code>ListTerm</code> and <code>StructureTerm</code> are printed.
+ * Then each round times <code>copy</code>, <code>hashCode</code> of <code>k(L)</code>,
+ * and <code>isGround</code>, where <code>L</code> is a list of 1000 <code>f(I,a)</code>,
+ * built either directly, so that it is flagged ground, or through a variable bound to its last tail,
+ * so that it is not flagged and is traversed as before the flags.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.GroundTermBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class GroundTermBenchmark {
+    static final int LENGTH = 1000;
+    static final int CALLS = 2000;
+    static final int OBJECTS = 100000;
+    static final SymbolTerm A = SymbolTerm.makeSymbol("a");
+    static final SymbolTerm F = SymbolTerm.makeSymbol("f", 2);
+    static final SymbolTerm K = SymbolTerm.makeSymbol("k", 1);
+
+    /** Returns the bytes allocated by the current thread, or <code>-1</code> if unknown. */
+    static long allocated() {
+	ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+	if (mx instanceof com.sun.management.ThreadMXBean)
+	    return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+	return -1;
+    }
+
+    static void check(boolean b, String what) {
+	if (! b)
+	    throw new AssertionError(what);
+	System.out.println("ok: " + what);
+    }
+
+    /** Returns the list of <code>f(I,a)</code> for <code>I</code> from 999 down to 0 ending with <code>tail</code>. */
+    static Term list(Term tail) {
+	Term t = tail;
+	for (int i = 0; i < LENGTH; i++)
+	    t = new ListTerm(new StructureTerm(F, new Term[]{new IntegerTerm(i), A}), t);
+	return t;
+    }
+
+    static void checks(Prolog engine) {
+	Term g = new StructureTerm(F, new Term[]{A, new ListTerm(new IntegerTerm(1), Prolog.Nil)});
+	check(engine.copy(g) == g, "copy shares a ground term");
+	VariableTerm v = new VariableTerm(engine);
+	Term ng = new StructureTerm(F, new Term[]{v, g});
+	Term c = engine.copy(ng);
+	check(c != ng && ((StructureTerm) c).args()[1] == g, "copy shares a ground subterm");
+	check(((StructureTerm) c).args()[0] != v, "copy renames a variable");
+	v.bind(A, engine.trail);
+	Term c2 = engine.copy(ng);
+	check(c2 != ng && c2.isGround(), "copy of a bound variable is ground");
+	check(engine.copy(c2) == c2, "copy of that copy is shared");
+	check(c2.hashCode() == ng.hashCode() && c2.equals(ng) && ng.equals(c2), "hash codes of equal terms are equal");
+	Term other = new StructureTerm(F, new Term[]{SymbolTerm.makeSymbol("b"), g});
+	other.hashCode();
+	check(! c2.equals(other) && ! other.equals(c2), "cached hash codes tell different terms apart");
+	ListTerm l = new ListTerm(A, Prolog.Nil);
+	check(l.isGround(), "list of an atom is ground");
+	l.setCdr(new VariableTerm(engine));
+	check(! l.isGround() && engine.copy(l) != l, "setCdr to a variable clears the flag");
+    }
+
+    static void sizes() {
+	Term[] args = {A, A};
+	Object[] keep = new Object[OBJECTS];
+	long a0 = allocated();
+	for (int i = 0; i < OBJECTS; i++)
+	    keep[i] = new ListTerm(A, A);
+	long a1 = allocated();
+	for (int i = 0; i < OBJECTS; i++)
+	    keep[i] = new StructureTerm(F, args);
+	long a2 = allocated();
+	if (a0 >= 0)
+	    System.out.println("ListTerm " + (a1 - a0) / OBJECTS + " B, StructureTerm " + (a2 - a1) / OBJECTS + " B");
+    }
+
+    public static void main(String[] args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	Prolog engine = new PrologControl(new PrologClassLoader()).engine;
+	engine.init();
+	checks(engine);
+	sizes();
+
+	Term flagged = list(Prolog.Nil);
+	VariableTerm tail = new VariableTerm(engine);
+	Term unflagged = list(tail);
+	tail.bind(Prolog.Nil, engine.trail);
+	check(flagged.equals(unflagged) && flagged.hashCode() == unflagged.hashCode(), "both lists are equal");
+	String[] names = {"flagged", "unflagged"};
+	Term[] lists = {flagged, unflagged};
+	for (int r = 0; r < rounds; r++) {
+	    StringBuffer sb = new StringBuffer();
+	    for (int k = 0; k < lists.length; k++) {
+		Term l = lists[k];
+		Term key = new StructureTerm(K, new Term[]{l});
+		int s = 0;
+		long t0 = System.nanoTime();
+		for (int j = 0; j < CALLS; j++)
+		    s += engine.copy(l) == l ? 1 : 0;
+		long t1 = System.nanoTime();
+		for (int j = 0; j < CALLS; j++)
+		    s += key.hashCode();
+		long t2 = System.nanoTime();
+		for (int j = 0; j < CALLS; j++)
+		    s += l.isGround() ? 1 : 0;
+		long t3 = System.nanoTime();
+		sb.append(String.format("%s: copy %.0f ns, hash %.0f ns, isGround %.0f ns (%d)  ", names[k],
+					(t1 - t0) / (double) CALLS, (t2 - t1) / (double) CALLS,
+					(t3 - t2) / (double) CALLS, s & 1));
+	    }
+	    System.out.println(sb);
+	}
+    }
+}
@@ -0,0 +1,220 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+/**
+ * Benchmark of compiled clauses: naive reverse of a 30-element list.<br>
+ * The predicates
+ * <pre>
+ * app([], L, L).
+ * app([X|L1], L2, [X|L3]) :- app(L1, L2, L3).
+ *
+ * nrev([], []).
+ * nrev([X|L0], L) :- nrev(L0, L1), app(L1, [X], L).
+ * </pre>
+ * are written by hand as the compiler would generate them,
+ * with first argument indexing and a new goal object for each body goal.
+ * Each round runs <code>nrev/2</code> on the list <code>[1,...,30]</code> 20000 times
+ * in caller-thread mode, and reports the logical inferences per second (LIPS) and the bytes allocated
+ * per logical inference, as well as the number of steps of the continuation passing loop,
+ * which counts both the call of a predicate and the clause it selects.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.NrevBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class NrevBenchmark {
+    static final int LENGTH = 30;
+    static final int LOOPS  = 20000;
+    /** The number of logical inferences of <code>nrev/2</code> on a 30-element list. */
+    static final long LI = 496;
+    static final Predicate FAIL = new Predicate() {
+	    public int arity() { return 0; }
+	    public Predicate exec(Prolog engine) { return engine.fail(); }
+	};
+
+    /** <code>app/3</code> */
+    static class App extends Predicate {
+	static final Predicate CLAUSE_1 = new App1();
+	static final Predicate CLAUSE_2 = new App2();
+	static final Predicate VAR = new Predicate() {
+		public int arity() { return 3; }
+		public Predicate exec(Prolog engine) { return engine.jtry(CLAUSE_1, TRUST_2); }
+	    };
+	static final Predicate TRUST_2 = new Predicate() {
+		public int arity() { return 3; }
+		public Predicate exec(Prolog engine) { return engine.trust(CLAUSE_2); }
+	    };
+	Term arg1, arg2, arg3;
+
+	App() {}
+	App(Term a1, Term a2, Term a3, Predicate cont) {
+	    arg1 = a1;
+	    arg2 = a2;
+	    arg3 = a3;
+	    this.cont = cont;
+	}
+	public int arity() { return 3; }
+	public Predicate exec(Prolog engine) {
+	    engine.aregs[1] = arg1;
+	    engine.aregs[2] = arg2;
+	    engine.aregs[3] = arg3;
+	    engine.cont = cont;
+	    engine.setB0();
+	    return engine.switch_on_term(VAR, FAIL, FAIL, CLAUSE_1, FAIL, CLAUSE_2);
+	}
+    }
+
+    /** <code>app([], L, L).</code> */
+    static class App1 extends App {
+	public Predicate exec(Prolog engine) {
+	    Term a1 = engine.aregs[1].dereference();
+	    if (a1.isVariable())
+		((VariableTerm) a1).bind(Prolog.Nil, engine.trail);
+	    else if (a1 != Prolog.Nil)
+		return engine.fail();
+	    if (! engine.aregs[2].unify(engine.aregs[3], engine.trail))
+		return engine.fail();
+	    return engine.cont;
+	}
+    }
+
+    /** <code>app([X|L1], L2, [X|L3]) :- app(L1, L2, L3).</code> */
+    static class App2 extends App {
+	public Predicate exec(Prolog engine) {
+	    Term a1 = engine.aregs[1].dereference();
+	    Term a3 = engine.aregs[3].dereference();
+	    Term x, l1, l3;
+	    if (a1.isList()) {
+		x  = ((ListTerm) a1).car();
+		l1 = ((ListTerm) a1).cdr();
+	    } else if (a1.isVariable()) {
+		x  = new VariableTerm(engine);
+		l1 = new VariableTerm(engine);
+		((VariableTerm) a1).bind(new ListTerm(x, l1), engine.trail);
+	    } else {
+		return engine.fail();
+	    }
+	    if (a3.isList()) {
+		if (! x.unify(((ListTerm) a3).car(), engine.trail))
+		    return engine.fail();
+		l3 = ((ListTerm) a3).cdr();
+	    } else if (a3.isVariable()) {
+		l3 = new VariableTerm(engine);
+		((VariableTerm) a3).bind(new ListTerm(x, l3), engine.trail);
+	    } else {
+		return engine.fail();
+	    }
+	    return new App(l1, engine.aregs[2], l3, engine.cont);
+	}
+    }
+
+    /** <code>nrev/2</code> */
+    static class Nrev extends Predicate {
+	static final Predicate CLAUSE_1 = new Nrev1();
+	static final Predicate CLAUSE_2 = new Nrev2();
+	static final Predicate VAR = new Predicate() {
+		public int arity() { return 2; }
+		public Predicate exec(Prolog engine) { return engine.jtry(CLAUSE_1, TRUST_2); }
+	    };
+	static final Predicate TRUST_2 = new Predicate() {
+		public int arity() { return 2; }
+		public Predicate exec(Prolog engine) { return engine.trust(CLAUSE_2); }
+	    };
+	Term arg1, arg2;
+
+	Nrev() {}
+	Nrev(Term a1, Term a2, Predicate cont) {
+	    arg1 = a1;
+	    arg2 = a2;
+	    this.cont = cont;
+	}
+	public int arity() { return 2; }
+	public Predicate exec(Prolog engine) {
+	    engine.aregs[1] = arg1;
+	    engine.aregs[2] = arg2;
+	    engine.cont = cont;
+	    engine.setB0();
+	    return engine.switch_on_term(VAR, FAIL, FAIL, CLAUSE_1, FAIL, CLAUSE_2);
+	}
+    }
+
+    /** <code>nrev([], []).</code> */
+    static class Nrev1 extends Nrev {
+	public Predicate exec(Prolog engine) {
+	    if (! engine.aregs[1].unify(Prolog.Nil, engine.trail))
+		return engine.fail();
+	    if (! engine.aregs[2].unify(Prolog.Nil, engine.trail))
+		return engine.fail();
+	    return engine.cont;
+	}
+    }
+
+    /** <code>nrev([X|L0], L) :- nrev(L0, L1), app(L1, [X], L).</code> */
+    static class Nrev2 extends Nrev {
+	public Predicate exec(Prolog engine) {
+	    Term a1 = engine.aregs[1].dereference();
+	    Term x, l0;
+	    if (a1.isList()) {
+		x  = ((ListTerm) a1).car();
+		l0 = ((ListTerm) a1).cdr();
+	    } else if (a1.isVariable()) {
+		x  = new VariableTerm(engine);
+		l0 = new VariableTerm(engine);
+		((VariableTerm) a1).bind(new ListTerm(x, l0), engine.trail);
+	    } else {
+		return engine.fail();
+	    }
+	    Term l1 = new VariableTerm(engine);
+	    Predicate p1 = new App(l1, new ListTerm(x, Prolog.Nil), engine.aregs[2], engine.cont);
+	    return new Nrev(l0, l1, p1);
+	}
+    }
+
+    /** Runs <code>nrev(List, _)</code> <code>n</code> times. */
+    static class Loop extends Predicate {
+	final Term list;
+	final int n;
+	Loop(Term list, int n, Predicate cont) {
+	    this.list = list;
+	    this.n = n;
+	    this.cont = cont;
+	}
+	public void setArgument(Term[] args, Predicate cont) { this.cont = cont; }
+	public int arity() { return 0; }
+	public Predicate exec(Prolog engine) {
+	    if (n == 0)
+		return cont;
+	    return new Nrev(list, new VariableTerm(engine), new Loop(list, n - 1, cont));
+	}
+    }
+
+    /** Returns the bytes allocated by the current thread, or <code>-1</code> if unknown. */
+    static long allocated() {
+	ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+	if (mx instanceof com.sun.management.ThreadMXBean)
+	    return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+	return -1;
+    }
+
+    public static void main(String[] args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+	Term list = Prolog.Nil;
+	for (int i = LENGTH; i > 0; i--)
+	    list = new ListTerm(new IntegerTerm(i), list);
+	PrologControl c = new PrologControl(new PrologClassLoader());
+	c.setCallerThread(true);
+	for (int r = 0; r < rounds; r++) {
+	    long a0 = allocated();
+	    long t0 = System.nanoTime();
+	    if (! c.execute(new Loop(list, LOOPS, null), new Term[0]))
+		throw new AssertionError("nrev failed");
+	    long t1 = System.nanoTime();
+	    long a1 = allocated();
+	    long steps = c.engine.inferences;
+	    System.out.println(String.format("%d steps: %.1f M LIPS", steps, LI * LOOPS * 1000.0 / (t1 - t0))
+			       + (a0 < 0 ? "" : String.format("  %.1f B/LI", (a1 - a0) / (double) (LI * LOOPS))));
+	}
+    }
+}
@@ -0,0 +1,146 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+/**
+ * Benchmark of the latency of short goals behind long ones.<br>
+ * Four long goals of 2e8 inferences each are started, and then 200 short goals
+ * of 2e4 inferences arrive every 10 ms. Each short goal reports the time from its
+ * arrival to its completion, and the 50th and 99th percentiles are printed,
+ * with the time at which the long batch was done.
+ * With <code>sched</code>, the goals run on a <code>Scheduler</code> of one carrier thread
+ * with time slices of <code>slice</code> inferences.
+ * With <code>thread</code>, each goal runs to completion on a pool of one thread
+ * in caller-thread mode, as it would without a scheduler.
+ * Then one long goal is run alone three times, and four long goals are run together,
+ * which shows the cost of the time slices.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.SchedulerBenchmark [sched|thread [slice [inferences]]]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class SchedulerBenchmark {
+    static final int LONG_GOALS = 4;
+    static final int SHORT_GOALS = 200;
+    static final long SHORT = 20000;
+    static final long INTERVAL_MILLIS = 10;
+
+    /** <code>count(N)</code>: runs <code>N</code> inferences, and then succeeds. */
+    static class Count extends Predicate {
+	long n;
+	public void setArgument(Term[] args, Predicate cont) {
+	    n = ((IntegerTerm) args[0]).longValue();
+	    this.cont = cont;
+	}
+	public int arity() { return 1; }
+	public Predicate exec(Prolog engine) {
+	    return --n <= 0 ? cont : this;
+	}
+    }
+
+    static PrologClassLoader pcl;
+    static Scheduler scheduler;
+
+    /** Runs <code>count(n)</code> on a new control, on the scheduler if any. */
+    static void count(long n) {
+	PrologControl c = new PrologControl(pcl);
+	if (scheduler != null)
+	    c.setScheduler(scheduler);
+	else
+	    c.setCallerThread(true);
+	if (! c.execute(new Count(), new Term[]{new IntegerTerm(n)}))
+	    throw new AssertionError("count(" + n + ") failed");
+    }
+
+    /**
+     * Returns an executor for the goals.
+     * Goals on the scheduler are started by as many client threads as needed,
+     * since they block only their clients. Other goals share a single thread.
+     */
+    static ExecutorService clients() {
+	return scheduler != null ? Executors.newCachedThreadPool() : Executors.newFixedThreadPool(1);
+    }
+
+    static double millis(long nanos) { return nanos / 1e6; }
+
+    static void latency(final long inferences) throws InterruptedException {
+	final List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+	final long[] longDone = new long[1];
+	final CountDownLatch done = new CountDownLatch(LONG_GOALS + SHORT_GOALS);
+	final long t0 = System.nanoTime();
+	ExecutorService ex = clients();
+	for (int i = 0; i < LONG_GOALS; i++) {
+	    ex.execute(new Runnable() {
+		    public void run() {
+			count(inferences);
+			synchronized (longDone) {
+			    longDone[0] = Math.max(longDone[0], System.nanoTime());
+			}
+			done.countDown();
+		    }
+		});
+	}
+	for (int i = 0; i < SHORT_GOALS; i++) {
+	    Thread.sleep(INTERVAL_MILLIS);
+	    final long submitted = System.nanoTime();
+	    ex.execute(new Runnable() {
+		    public void run() {
+			count(SHORT);
+			latencies.add(System.nanoTime() - submitted);
+			done.countDown();
+		    }
+		});
+	}
+	done.await();
+	ex.shutdown();
+	Collections.sort(latencies);
+	int n = latencies.size();
+	System.out.println(String.format("short goals: p50 %.2f ms, p99 %.2f ms, max %.2f ms; long batch done at %.0f ms",
+					 millis(latencies.get(n / 2)), millis(latencies.get(n * 99 / 100)),
+					 millis(latencies.get(n - 1)), millis(longDone[0] - t0)));
+    }
+
+    static void batch(final long inferences) throws InterruptedException {
+	ExecutorService ex = clients();
+	long t0 = System.nanoTime();
+	for (int i = 0; i < LONG_GOALS; i++) {
+	    ex.execute(new Runnable() {
+		    public void run() { count(inferences); }
+		});
+	}
+	ex.shutdown();
+	ex.awaitTermination(1, TimeUnit.HOURS);
+	System.out.println(String.format("%d long goals together: %.0f ms", LONG_GOALS, millis(System.nanoTime() - t0)));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+	String mode = args.length > 0 ? args[0] : "sched";
+	int slice = args.length > 1 ? Integer.parseInt(args[1]) : Scheduler.DEFAULT_TIME_SLICE;
+	long inferences = args.length > 2 ? Long.parseLong(args[2]) : 200000000L;
+	pcl = new PrologClassLoader();
+	if (mode.equals("sched"))
+	    scheduler = new Scheduler(1, slice, null);
+	else if (! mode.equals("thread"))
+	    throw new IllegalArgumentException("unknown mode: " + mode);
+	System.out.println(mode + (scheduler != null ? ", slice " + slice : "") + ", " + inferences + " inferences per long goal");
+
+	// warms up the engine with the short goals alone
+	for (int i = 0; i < 50; i++)
+	    count(SHORT);
+	latency(inferences);
+	for (int r = 0; r < 3; r++) {
+	    long t0 = System.nanoTime();
+	    count(inferences);
+	    System.out.println(String.format("1 long goal alone: %.0f ms", millis(System.nanoTime() - t0)));
+	}
+	batch(inferences);
+	if (scheduler != null)
+	    scheduler.shutdown();
+    }
+}
@@ -0,0 +1,148 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+/**
+ * Microbenchmark of <code>switch_on_hash</code>.<br>
+ * First, 120000 random lookups in 300 random hashtables of atoms, functors, integers,
+ * floats, and big integers are checked against <code>Hashtable.get</code>,
+ * which <code>switch_on_hash</code> used before it was given switch tables.
+ * Then each round looks up 5000000 random keys in tables of 10000 atoms, integers, or functors,
+ * by <code>Hashtable.get</code> and by <code>switch_on_hash</code>,
+ * and reports the time per call, including the loop overhead.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.SwitchOnHashBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class SwitchOnHashBenchmark {
+    static final int ENTRIES = 10000;
+    static final int CALLS = 5000000;
+
+    /** A predicate that only holds a number, to tell the results apart. */
+    static class P extends Predicate {
+	final int n;
+	P(int n) { this.n = n; }
+	public int arity() { return 1; }
+	public Predicate exec(Prolog engine) { return null; }
+    }
+
+    /** Looks up <code>t</code> in <code>hash</code> as <code>switch_on_hash</code> did with <code>Hashtable.get</code>. */
+    static Predicate get(Hashtable<Term,Predicate> hash, Term t, Predicate otherwise) {
+	t = t.dereference();
+	Predicate p = hash.get(t.isStructure() ? ((StructureTerm) t).functor() : t);
+	return p == null ? otherwise : p;
+    }
+
+    static Term randomKey(Random r) {
+	switch (r.nextInt(5)) {
+	case 0:
+	    return SymbolTerm.makeSymbol("a" + r.nextInt(300));
+	case 1:
+	    return SymbolTerm.makeSymbol("f" + r.nextInt(50), 1 + r.nextInt(3));
+	case 2:
+	    return IntegerTerm.valueOf(r.nextInt(3) == 0 ? r.nextLong() : r.nextInt(400) - 100);
+	case 3:
+	    return new DoubleTerm(r.nextInt(20) / 4.0 - 2);
+	default:
+	    return IntegerTerm.valueOf("1" + Math.abs(r.nextLong()) + r.nextInt(9));
+	}
+    }
+
+    static Term randomProbe(Random r, List<Term> keys) {
+	switch (r.nextInt(5)) {
+	case 0:
+	    return SymbolTerm.makeSymbol("a" + r.nextInt(300));
+	case 1:
+	    SymbolTerm f = SymbolTerm.makeSymbol("f" + r.nextInt(50), 1 + r.nextInt(3));
+	    Term[] args = new Term[f.arity()];
+	    for (int i = 0; i < args.length; i++)
+		args[i] = new VariableTerm();
+	    return new StructureTerm(f, args);
+	case 2:
+	    return IntegerTerm.valueOf(r.nextInt(400) - 100);
+	case 3:
+	    return new DoubleTerm(r.nextInt(20) / 4.0 - 2);
+	default:
+	    return keys.isEmpty() ? SymbolTerm.makeSymbol("zz") : keys.get(r.nextInt(keys.size()));
+	}
+    }
+
+    /** Checks <code>switch_on_hash</code> against <code>Hashtable.get</code> on random tables and keys. */
+    static void check(Prolog engine) {
+	Random r = new Random(1);
+	Predicate otherwise = new P(-1);
+	int n = 0;
+	for (int k = 0; k < 300; k++) {
+	    Hashtable<Term,Predicate> hash = new Hashtable<Term,Predicate>();
+	    int m = r.nextInt(200);
+	    for (int i = 0; i < m; i++)
+		hash.put(randomKey(r), new P(i));
+	    List<Term> keys = new ArrayList<Term>(hash.keySet());
+	    for (int i = 0; i < 400; i++) {
+		Term t = randomProbe(r, keys);
+		engine.aregs[1] = t;
+		if (engine.switch_on_hash(hash, otherwise) != get(hash, t, otherwise))
+		    throw new AssertionError("switch_on_hash differs from Hashtable.get for " + t);
+		n++;
+	    }
+	}
+	System.out.println(n + " lookups agree with Hashtable.get");
+    }
+
+    public static void main(String[] args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+	Prolog engine = new PrologControl(new PrologClassLoader()).engine;
+	engine.init();
+	check(engine);
+
+	Hashtable<Term,Predicate> atoms = new Hashtable<Term,Predicate>();
+	Hashtable<Term,Predicate> ints  = new Hashtable<Term,Predicate>();
+	Hashtable<Term,Predicate> funcs = new Hashtable<Term,Predicate>();
+	Term[] atomKeys = new Term[ENTRIES];
+	Term[] intKeys  = new Term[ENTRIES];
+	Term[] funcKeys = new Term[ENTRIES];
+	for (int i = 0; i < ENTRIES; i++) {
+	    atomKeys[i] = SymbolTerm.makeSymbol("k" + i);
+	    atoms.put(atomKeys[i], new P(i));
+	    intKeys[i] = new IntegerTerm(i * 3);
+	    ints.put(intKeys[i], new P(i));
+	    SymbolTerm f = SymbolTerm.makeSymbol("f" + i, 2);
+	    funcs.put(f, new P(i));
+	    funcKeys[i] = new StructureTerm(f, new Term[]{atomKeys[i], intKeys[i]});
+	}
+	String[] names = {"atoms", "integers", "functors"};
+	List<Hashtable<Term,Predicate>> tables = new ArrayList<Hashtable<Term,Predicate>>();
+	tables.add(atoms);
+	tables.add(ints);
+	tables.add(funcs);
+	Term[][] keys = {atomKeys, intKeys, funcKeys};
+	Predicate otherwise = new P(-1);
+
+	for (int r = 0; r < rounds; r++) {
+	    StringBuffer sb = new StringBuffer();
+	    for (int k = 0; k < names.length; k++) {
+		Hashtable<Term,Predicate> hash = tables.get(k);
+		Term[] ks = keys[k];
+		long sum = 0;
+		long t0 = System.nanoTime();
+		for (int j = 0; j < CALLS; j++)
+		    sum += ((P) get(hash, ks[(int) ((j * 7919L) % ENTRIES)], otherwise)).n;
+		long t1 = System.nanoTime();
+		for (int j = 0; j < CALLS; j++) {
+		    engine.aregs[1] = ks[(int) ((j * 7919L) % ENTRIES)];
+		    sum -= ((P) engine.switch_on_hash(hash, otherwise)).n;
+		}
+		long t2 = System.nanoTime();
+		if (sum != 0)
+		    throw new AssertionError("switch_on_hash differs from Hashtable.get on " + names[k]);
+		sb.append(String.format("%s: get %.1f ns, switch_on_hash %.1f ns  ", names[k],
+					(t1 - t0) / (double) CALLS, (t2 - t1) / (double) CALLS));
+	    }
+	    System.out.println(sb);
+	}
+    }
+}
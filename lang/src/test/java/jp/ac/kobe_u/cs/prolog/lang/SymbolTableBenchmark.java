@@ -0,0 +1,141 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+/**
+ * Microbenchmark of <code>SymbolTerm.makeSymbol</code> from several threads.<br>
+ * Each round measures, for 1, 4, and 16 threads,
+ * <ul>
+ * <li><em>hits</em>: looking up 4096 existing atoms and functors,
+ * <li><em>creation</em>: creating atoms with fresh names, distinct in each thread,
+ * <li><em>races</em>: creating the same fresh atoms in all threads at once,
+ *     which also checks that every thread gets the same symbol.
+ * </ul>
+ * Allocation is reported where the JVM can measure it per thread.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.SymbolTableBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class SymbolTableBenchmark {
+    static final int HITS   = 8000000;
+    static final int FRESH  = 400000;
+    static final int NAMES  = 4096;
+    static final int[] THREADS = {1, 4, 16};
+
+    static final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+
+    static String[] names = new String[NAMES];
+    static int round;
+
+    /** Runs <code>body</code> on <code>n</code> threads started together, and returns the elapsed time in nanoseconds. */
+    static long run(int n, final Body body, final long[] alloc) throws InterruptedException {
+	Thread[] ts = new Thread[n];
+	final Object gate = new Object();
+	final boolean[] open = {false};
+	for (int i = 0; i < n; i++) {
+	    final int id = i;
+	    ts[i] = new Thread() {
+		public void run() {
+		    synchronized (gate) {
+			while (! open[0]) {
+			    try {
+				gate.wait();
+			    } catch (InterruptedException e) {
+				return;
+			    }
+			}
+		    }
+		    long a0 = allocated();
+		    body.run(id);
+		    alloc[id] = allocated() - a0;
+		}
+	    };
+	    ts[i].start();
+	}
+	long t0 = System.nanoTime();
+	synchronized (gate) {
+	    open[0] = true;
+	    gate.notifyAll();
+	}
+	for (int i = 0; i < n; i++)
+	    ts[i].join();
+	return System.nanoTime() - t0;
+    }
+
+    interface Body {
+	void run(int id);
+    }
+
+    /** Returns the bytes allocated by the current thread, or <code>-1</code> if unknown. */
+    static long allocated() {
+	if (mx instanceof com.sun.management.ThreadMXBean)
+	    return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+	return -1;
+    }
+
+    static String report(String what, int threads, long nanos, long[] alloc, long ops) {
+	long bytes = 0;
+	for (int i = 0; i < threads; i++) {
+	    if (alloc[i] < 0)
+		return String.format("%-8s %2d threads: %7.1f ns/op", what, threads, nanos / (double) ops);
+	    bytes += alloc[i];
+	}
+	return String.format("%-8s %2d threads: %7.1f ns/op %4d B/op", what, threads, nanos / (double) ops, bytes / ops);
+    }
+
+    public static void main(String[] args) throws Exception {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	for (int i = 0; i < NAMES; i++) {
+	    names[i] = "atom_" + i;
+	    SymbolTerm.makeSymbol(names[i], i & 3);
+	}
+	for (round = 0; round < rounds; round++) {
+	    System.out.println("round " + round);
+	    for (int t = 0; t < THREADS.length; t++) {
+		final int n = THREADS[t];
+		long[] alloc = new long[n];
+
+		final int per = HITS / n;
+		long dt = run(n, new Body() {
+			public void run(int id) {
+			    int k = id * 7;
+			    for (int j = 0; j < per; j++) {
+				k = (k + 1) & (NAMES - 1);
+				SymbolTerm.makeSymbol(names[k], k & 3);
+			    }
+			}
+		    }, alloc);
+		System.out.println(report("hits", n, dt, alloc, (long) per * n));
+
+		final int fresh = FRESH / n;
+		final String prefix = "fresh_" + round + "_" + n + "_";
+		dt = run(n, new Body() {
+			public void run(int id) {
+			    String p = prefix + id + "_";
+			    for (int j = 0; j < fresh; j++)
+				SymbolTerm.makeSymbol(p + j);
+			}
+		    }, alloc);
+		System.out.println(report("creation", n, dt, alloc, (long) fresh * n));
+
+		final String shared = "shared_" + round + "_" + n + "_";
+		final SymbolTerm[][] seen = new SymbolTerm[n][fresh];
+		dt = run(n, new Body() {
+			public void run(int id) {
+			    for (int j = 0; j < fresh; j++)
+				seen[id][j] = SymbolTerm.makeSymbol(shared + j);
+			}
+		    }, alloc);
+		for (int i = 1; i < n; i++) {
+		    for (int j = 0; j < fresh; j++) {
+			if (seen[i][j] != seen[0][j])
+			    throw new AssertionError("two symbols for " + shared + j);
+		    }
+		}
+		System.out.println(report("races", n, dt, alloc, (long) fresh * n));
+	    }
+	}
+    }
+}
@@ -0,0 +1,70 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+/**
+ * Microbenchmark of the dispatch on term types.<br>
+ * The terms are 64 ground terms <code>f(Atom, List, Int)</code>,
+ * where <code>List</code> mixes 8 integers and floats.
+ * Each round reports the time of
+ * <ul>
+ * <li><em>unify</em>: 20000 times, unifying each term with the next one and with itself,
+ * <li><em>compare</em>: 20000 times, comparing each term with the fifth next one,
+ * <li><em>evaluate</em>: 200000 evaluations of <code>((1+0)*1+2)*3+...</code> with 20 operators.
+ * </ul>
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.TermDispatchBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class TermDispatchBenchmark {
+    static final int TERMS = 64;
+    static final int LOOPS = 20000;
+    static final int EVALUATIONS = 200000;
+
+    public static void main(String[] args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	Prolog engine = new PrologControl(new PrologClassLoader()).engine;
+	engine.init();
+	SymbolTerm f = SymbolTerm.makeSymbol("f", 3);
+	Term[] terms = new Term[TERMS];
+	for (int i = 0; i < TERMS; i++) {
+	    Term l = Prolog.Nil;
+	    for (int j = 0; j < 8; j++)
+		l = new ListTerm(j % 2 == 0 ? (Term) new IntegerTerm(i + j) : new DoubleTerm(j), l);
+	    Term[] a = {SymbolTerm.makeSymbol("a" + (i % 5)), l, new IntegerTerm(i)};
+	    terms[i] = new StructureTerm(f, a);
+	}
+	SymbolTerm plus = SymbolTerm.makeSymbol("+", 2);
+	SymbolTerm times = SymbolTerm.makeSymbol("*", 2);
+	Term expr = new IntegerTerm(1);
+	for (int i = 0; i < 20; i++) {
+	    Term[] a = {expr, new IntegerTerm(i)};
+	    expr = new StructureTerm(i % 2 == 0 ? plus : times, a);
+	}
+
+	for (int r = 0; r < rounds; r++) {
+	    long n = 0;
+	    long t0 = System.nanoTime();
+	    for (int k = 0; k < LOOPS; k++) {
+		for (int i = 0; i < TERMS; i++) {
+		    if (terms[i].unify(terms[(i + 1) & (TERMS - 1)], engine.trail))
+			n++;
+		    if (terms[i].unify(terms[i], engine.trail))
+			n++;
+		}
+	    }
+	    long t1 = System.nanoTime();
+	    for (int k = 0; k < LOOPS; k++) {
+		for (int i = 0; i < TERMS; i++)
+		    n += terms[i].compareTo(terms[(i + 5) & (TERMS - 1)]);
+	    }
+	    long t2 = System.nanoTime();
+	    for (int k = 0; k < EVALUATIONS; k++)
+		n += Arithmetic.evaluate(expr).intValue();
+	    long t3 = System.nanoTime();
+	    // n is printed so that the loops are not optimized away
+	    System.out.println("unify " + (t1 - t0) / 1000000 + " ms  compare " + (t2 - t1) / 1000000
+			       + " ms  evaluate " + (t3 - t2) / 1000000 + " ms  (" + n + ")");
+	}
+    }
+}
@@ -0,0 +1,198 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+/**
+ * Microbenchmark of <code>throw/1</code> and <code>catch/3</code>.<br>
+ * The goal <code>catch(G, C, true)</code> is written by hand
+ * as the compiler generates <code>'$on_exception'/3</code>:
+ * the first clause runs <code>'$begin_exception'(L), G, '$end_exception'(L)</code>,
+ * and the second one gets the exception and either unifies it with <code>C</code> or rethrows it.
+ * For depths 1, 10, 100, and 1000, the best of 6 runs is reported, per catch and throw, for
+ * <ul>
+ * <li><em>nested</em>: <code>d</code> catch frames that do not match the ball around the throw,
+ *     each rethrowing it to the outermost one,
+ * <li><em>deep</em>: one catch frame, with the throw after <code>d</code> Prolog steps.
+ * </ul>
+ * With the argument <code>on</code>, the <code>print_stack_trace</code> flag of the engine is set,
+ * so that every exception walks the Java stack.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.ThrowCatchBenchmark [on]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class ThrowCatchBenchmark {
+    static final SymbolTerm BALL  = SymbolTerm.makeSymbol("ball");
+    static final SymbolTerm OTHER = SymbolTerm.makeSymbol("other");
+    static final int[] DEPTHS = {1, 10, 100, 1000};
+
+    /** Makes a goal that continues with <code>cont</code>. */
+    interface Goal {
+	Predicate make(Predicate cont);
+    }
+
+    static abstract class Step extends Predicate {
+	public void setArgument(Term[] args, Predicate cont) { this.cont = cont; }
+	public int arity() { return 0; }
+    }
+
+    /** <code>catch(G, C, true)</code>: tries the first clause, and leaves a choice point for the second. */
+    static class Catch extends Step {
+	final SymbolTerm catcher;
+	final Goal goal;
+	Catch(SymbolTerm catcher, Goal goal, Predicate cont) {
+	    this.catcher = catcher;
+	    this.goal = goal;
+	    this.cont = cont;
+	}
+	public int arity() { return 1; }
+	public Predicate exec(Prolog engine) {
+	    engine.aregs[1] = catcher;
+	    engine.cont = cont;
+	    return engine.jtry(new Clause1(goal), TRUST_2);
+	}
+    }
+
+    /** <code>'$begin_exception'(L), G, '$end_exception'(L)</code> */
+    static class Clause1 extends Step {
+	final Goal goal;
+	Clause1(Goal goal) { this.goal = goal; }
+	public int arity() { return 1; }
+	public Predicate exec(Prolog engine) {
+	    final CatchFrame frame = engine.beginCatch();
+	    final Predicate k = engine.cont;
+	    return goal.make(new Step() {
+		    public Predicate exec(Prolog engine) {
+			engine.endCatch(frame);
+			return k;
+		    }
+		});
+	}
+    }
+
+    static final Predicate TRUST_2 = new Step() {
+	    public int arity() { return 1; }
+	    public Predicate exec(Prolog engine) { return engine.trust(CLAUSE_2); }
+	};
+
+    /** <code>'$get_exception'(E), (E = C -&gt; true ; throw(E))</code> */
+    static final Predicate CLAUSE_2 = new Step() {
+	    public int arity() { return 1; }
+	    public Predicate exec(Prolog engine) {
+		Term e = engine.getException().dereference();
+		if (e == engine.aregs[1])
+		    return engine.cont;
+		throw new TermException(e);
+	    }
+	};
+
+    /** <code>throw(ball)</code> */
+    static class Throw extends Step {
+	Throw(Predicate cont) { this.cont = cont; }
+	public Predicate exec(Prolog engine) { throw new TermException(BALL); }
+    }
+
+    /** Runs <code>n</code> more steps, and then throws. */
+    static class Steps extends Step {
+	final int n;
+	Steps(int n, Predicate cont) {
+	    this.n = n;
+	    this.cont = cont;
+	}
+	public Predicate exec(Prolog engine) {
+	    return n == 0 ? new Throw(cont) : new Steps(n - 1, cont);
+	}
+    }
+
+    /** Runs the goal <code>n</code> times. */
+    static class Repeat extends Step {
+	final int n;
+	final Goal body;
+	Repeat(int n, Goal body, Predicate cont) {
+	    this.n = n;
+	    this.body = body;
+	    this.cont = cont;
+	}
+	public Predicate exec(Prolog engine) {
+	    return n == 0 ? cont : body.make(new Repeat(n - 1, body, cont));
+	}
+    }
+
+    /** <code>set_prolog_flag(print_stack_trace, Mode)</code> */
+    static class SetFlag extends Step {
+	final String mode;
+	final Step next;
+	SetFlag(String mode, Step next) {
+	    this.mode = mode;
+	    this.next = next;
+	}
+	public void setArgument(Term[] args, Predicate cont) { next.cont = cont; }
+	public Predicate exec(Prolog engine) {
+	    engine.setPrintStackTrace(mode);
+	    return next;
+	}
+    }
+
+    static Goal nestedInner(final int d) {
+	return new Goal() {
+		public Predicate make(Predicate k) {
+		    return d == 0 ? new Throw(k) : new Catch(OTHER, nestedInner(d - 1), k);
+		}
+	    };
+    }
+
+    static Goal nested(final int d) {
+	return new Goal() {
+		public Predicate make(Predicate k) { return new Catch(BALL, nestedInner(d), k); }
+	    };
+    }
+
+    static Goal deep(final int d) {
+	return new Goal() {
+		public Predicate make(Predicate k) {
+		    return new Catch(BALL, new Goal() {
+			    public Predicate make(Predicate k2) { return new Steps(d, k2); }
+			}, k);
+		}
+	    };
+    }
+
+    /** Returns the bytes allocated by the current thread, or <code>-1</code> if unknown. */
+    static long allocated() {
+	ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+	if (mx instanceof com.sun.management.ThreadMXBean)
+	    return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+	return -1;
+    }
+
+    public static void main(String[] args) {
+	PrologControl c = new PrologControl(new PrologClassLoader());
+	c.setCallerThread(true);
+	String flag = args.length > 0 ? args[0] : "off";
+	String[] kinds = {"nested", "deep"};
+	for (int i = 0; i < kinds.length; i++) {
+	    for (int j = 0; j < DEPTHS.length; j++) {
+		int d = DEPTHS[j];
+		boolean isNested = kinds[i].equals("nested");
+		Goal g = isNested ? nested(d) : deep(d);
+		int n = isNested ? Math.max(20, 50000 / d) : 20000;
+		double best = Double.MAX_VALUE;
+		long bytes = 0;
+		for (int r = 0; r < 6; r++) {
+		    long a0 = allocated();
+		    long t0 = System.nanoTime();
+		    boolean ok = c.execute(new SetFlag(flag, new Repeat(n, g, null)), new Term[0]);
+		    long dt = System.nanoTime() - t0;
+		    long a1 = allocated();
+		    if (! ok)
+			throw new AssertionError(kinds[i] + " " + d + " failed");
+		    best = Math.min(best, dt / (double) n);
+		    bytes = a0 < 0 ? -1 : (a1 - a0) / n;
+		}
+		System.out.println(String.format("%-6s depth %4d: %9.0f ns/catch+throw", kinds[i], d, best)
+				   + (bytes < 0 ? "" : String.format("  %8d B", bytes)));
+	    }
+	}
+    }
+}
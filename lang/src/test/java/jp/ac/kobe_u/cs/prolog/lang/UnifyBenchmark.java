@@ -0,0 +1,103 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+/**
+ * Microbenchmark of the unification of compound terms.<br>
+ * First, two 1000000-element lists of <code>f(N)</code> are unified,
+ * where every third element of the second list is a variable,
+ * and so are two terms <code>g(g(...g(0)...))</code> nested 1000000 levels deep,
+ * the second ending in a variable. The times and the maximum size of the
+ * push down list are reported.
+ * Then each round unifies <code>f(X,[K,Z],g(a,X))</code> with <code>f(1,Y,g(a,1))</code>
+ * for 256 different <code>K</code>, 20000 times, undoing each unification by unwinding the trail,
+ * that is, 5120000 unifications, and reports the time.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.UnifyBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class UnifyBenchmark {
+    static final int LENGTH = 1000000;
+    static final int TERMS  = 256;
+    static final int LOOPS  = 20000;
+
+    public static void main(String[] args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+	Prolog engine = new PrologControl(new PrologClassLoader()).engine;
+	engine.init();
+
+	SymbolTerm f1 = SymbolTerm.makeSymbol("f", 1);
+	Term l1 = Prolog.Nil;
+	Term l2 = Prolog.Nil;
+	VariableTerm[] vs = new VariableTerm[LENGTH];
+	for (int i = LENGTH - 1; i >= 0; i--) {
+	    Term[] a = {new IntegerTerm(i)};
+	    Term x = new StructureTerm(f1, a);
+	    vs[i] = new VariableTerm(engine);
+	    l1 = new ListTerm(x, l1);
+	    l2 = new ListTerm(i % 3 == 0 ? vs[i] : x, l2);
+	}
+	long t0 = System.nanoTime();
+	boolean ok = l1.unify(l2, engine.trail);
+	long t1 = System.nanoTime();
+	Term[] three = {new IntegerTerm(3)};
+	if (! ok || ! vs[3].dereference().equals(new StructureTerm(f1, three)))
+	    throw new AssertionError("list unification failed");
+	System.out.println(LENGTH + "-element lists: " + (t1 - t0) / 1000000 + " ms, push down list max " + engine.pdl.max());
+
+	SymbolTerm g1 = SymbolTerm.makeSymbol("g", 1);
+	VariableTerm bottom = new VariableTerm(engine);
+	Term d1 = new IntegerTerm(0);
+	Term d2 = bottom;
+	for (int i = 0; i < LENGTH; i++) {
+	    Term[] a1 = {d1};
+	    Term[] a2 = {d2};
+	    d1 = new StructureTerm(g1, a1);
+	    d2 = new StructureTerm(g1, a2);
+	}
+	t0 = System.nanoTime();
+	ok = d1.unify(d2, engine.trail);
+	t1 = System.nanoTime();
+	if (! ok || ! bottom.dereference().equals(new IntegerTerm(0)))
+	    throw new AssertionError("deep unification failed");
+	System.out.println(LENGTH + "-deep terms: " + (t1 - t0) / 1000000 + " ms, push down list max " + engine.pdl.max());
+
+	engine.init();
+	SymbolTerm f = SymbolTerm.makeSymbol("f", 3);
+	SymbolTerm g = SymbolTerm.makeSymbol("g", 2);
+	SymbolTerm a = SymbolTerm.makeSymbol("a");
+	Term one = new IntegerTerm(1);
+	Term[] left = new Term[TERMS];
+	Term[] right = new Term[TERMS];
+	for (int k = 0; k < TERMS; k++) {
+	    VariableTerm x = new VariableTerm(engine);
+	    VariableTerm y = new VariableTerm(engine);
+	    VariableTerm z = new VariableTerm(engine);
+	    Term[] ga = {a, x};
+	    Term[] la = {x, new ListTerm(new IntegerTerm(k), new ListTerm(z, Prolog.Nil)), new StructureTerm(g, ga)};
+	    Term[] gb = {a, one};
+	    Term[] rb = {one, y, new StructureTerm(g, gb)};
+	    left[k] = new StructureTerm(f, la);
+	    right[k] = new StructureTerm(f, rb);
+	}
+	// bindings are trailed as if made after a choice point
+	engine.stack.create(new Term[0], null);
+	engine.stack.setTimeStamp(Integer.MAX_VALUE);
+	for (int r = 0; r < rounds; r++) {
+	    long n = 0;
+	    t0 = System.nanoTime();
+	    for (int j = 0; j < LOOPS; j++) {
+		for (int k = 0; k < TERMS; k++) {
+		    int tr = engine.trail.top();
+		    if (left[k].unify(right[k], engine.trail))
+			n++;
+		    engine.trail.unwind(tr);
+		}
+	    }
+	    t1 = System.nanoTime();
+	    if (n != (long) TERMS * LOOPS)
+		throw new AssertionError(n + " unifications succeeded");
+	    System.out.println(n + " unifications: " + (t1 - t0) / 1000000 + " ms");
+	}
+    }
+}
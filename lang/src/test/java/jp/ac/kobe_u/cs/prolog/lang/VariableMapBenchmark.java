@@ -0,0 +1,105 @@
+package jp.ac.kobe_u.cs.prolog.lang;
+import java.util.Hashtable;
+/**
+ * Microbenchmark of <code>VariableMap</code>, the map from variables to their copies.<br>
+ * Each round times <code>copy</code> of <code>f(V, f(Y, a))</code>,
+ * of a list of 1000 <code>f(Vi, Y)</code> with distinct variables <code>Vi</code>,
+ * and of a list of 1000 <code>f(a, Y)</code>, and reports the best time of the round.
+ * It then times a clear followed by a put and a get of each of <code>n</code> variables,
+ * in a <code>VariableMap</code> and in the <code>Hashtable</code> that it replaced,
+ * for <code>n</code> = 2 and 1000.
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes jp.ac.kobe_u.cs.prolog.lang.VariableMapBenchmark [rounds]
+ * </pre>
+ *
+ * @version 1.2
+ */
+public class VariableMapBenchmark {
+    static final SymbolTerm A = SymbolTerm.makeSymbol("a");
+    static final SymbolTerm F = SymbolTerm.makeSymbol("f", 2);
+
+    /** Returns the best time in nanoseconds of <code>calls</code> copies of <code>t</code>, out of 30 trials. */
+    static long copy(Prolog engine, Term t, int calls) {
+	long best = Long.MAX_VALUE;
+	for (int k = 0; k < 30; k++) {
+	    long t0 = System.nanoTime();
+	    for (int j = 0; j < calls; j++) {
+		if (engine.copy(t) == t)
+		    throw new AssertionError("no copy of " + t);
+	    }
+	    best = Math.min(best, (System.nanoTime() - t0) / calls);
+	}
+	return best;
+    }
+
+    /** Returns the best time in nanoseconds of clearing <code>map</code>, and putting and getting all <code>vars</code>. */
+    static long map(VariableMap map, VariableTerm[] vars, int calls) {
+	long best = Long.MAX_VALUE;
+	for (int k = 0; k < 30; k++) {
+	    long t0 = System.nanoTime();
+	    for (int j = 0; j < calls; j++) {
+		map.clear();
+		for (int i = 0; i < vars.length; i++) {
+		    if (map.get(vars[i]) == null)
+			map.put(vars[i], A);
+		}
+	    }
+	    best = Math.min(best, (System.nanoTime() - t0) / calls);
+	}
+	return best;
+    }
+
+    /** Works as <code>map(VariableMap, VariableTerm[], int)</code> on a <code>Hashtable</code>. */
+    static long map(Hashtable<VariableTerm,Term> map, VariableTerm[] vars, int calls) {
+	long best = Long.MAX_VALUE;
+	for (int k = 0; k < 30; k++) {
+	    long t0 = System.nanoTime();
+	    for (int j = 0; j < calls; j++) {
+		map.clear();
+		for (int i = 0; i < vars.length; i++) {
+		    if (map.get(vars[i]) == null)
+			map.put(vars[i], A);
+		}
+	    }
+	    best = Math.min(best, (System.nanoTime() - t0) / calls);
+	}
+	return best;
+    }
+
+    public static void main(String[] args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+	Prolog engine = new PrologControl(new PrologClassLoader()).engine;
+	engine.init();
+	VariableTerm y = new VariableTerm(engine);
+	Term small = new StructureTerm(F, new Term[]{new VariableTerm(engine), new StructureTerm(F, new Term[]{y, A})});
+	Term fresh = Prolog.Nil;
+	Term shared = Prolog.Nil;
+	for (int i = 0; i < 1000; i++) {
+	    fresh = new ListTerm(new StructureTerm(F, new Term[]{new VariableTerm(engine), y}), fresh);
+	    shared = new ListTerm(new StructureTerm(F, new Term[]{A, y}), shared);
+	}
+	int[] sizes = {2, 1000};
+	VariableTerm[][] vars = new VariableTerm[sizes.length][];
+	for (int k = 0; k < sizes.length; k++) {
+	    vars[k] = new VariableTerm[sizes[k]];
+	    for (int i = 0; i < sizes[k]; i++)
+		vars[k][i] = new VariableTerm(engine);
+	}
+	VariableMap vmap = new VariableMap();
+	Hashtable<VariableTerm,Term> hmap = new Hashtable<VariableTerm,Term>();
+
+	for (int r = 0; r < rounds; r++) {
+	    System.out.println("copy: f(V,f(Y,a)) " + copy(engine, small, 20000) + " ns, "
+			       + "1000 f(Vi,Y) " + copy(engine, fresh, 100) + " ns, "
+			       + "1000 f(a,Y) " + copy(engine, shared, 100) + " ns");
+	    StringBuffer sb = new StringBuffer();
+	    for (int k = 0; k < sizes.length; k++) {
+		int calls = 200000 / sizes[k];
+		sb.append(sizes[k] + " variables: VariableMap " + map(vmap, vars[k], calls) + " ns, "
+			  + "Hashtable " + map(hmap, vars[k], calls) + " ns  ");
+	    }
+	    System.out.println(sb);
+	}
+    }
+}